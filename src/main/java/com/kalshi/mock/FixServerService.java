@@ -1,5 +1,8 @@
 package com.kalshi.mock;
 
+import com.fbg.api.rest.Order;
+import com.kalshi.mock.service.OrderBookService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -8,9 +11,14 @@ import quickfix.MemoryStoreFactory;
 import quickfix.field.*;
 import quickfix.fix50sp2.ExecutionReport;
 import quickfix.fix50sp2.NewOrderSingle;
+import quickfix.fix50sp2.OrderCancelReject;
+import quickfix.fix50sp2.OrderCancelReplaceRequest;
+import quickfix.fix50sp2.OrderMassCancelReport;
+import quickfix.fix50sp2.OrderMassCancelRequest;
 
 import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -23,6 +31,9 @@ public class FixServerService implements Application {
     private final AtomicBoolean serverRunning = new AtomicBoolean(false);
     private SessionSettings settings;
 
+    @Autowired
+    private OrderBookService orderBookService;
+
     public void startServer() throws Exception {
         if (serverRunning.get()) {
             System.out.println("FIX Server is already running");
@@ -275,6 +286,135 @@ public class FixServerService implements Application {
         }
     }
 
+    // Order Cancel/Replace Request (35=G): amend the price and/or size of a resting order
+    public void onMessage(OrderCancelReplaceRequest message, SessionID sessionID)
+            throws FieldNotFound {
+
+        System.out.println("Received Order Cancel/Replace Request: " + message);
+
+        String clOrdID = message.getClOrdID().getValue();
+        String origClOrdID = message.getOrigClOrdID().getValue();
+        // OrderID (37) is our order ID, and is required: OrigClOrdID is the
+        // client's own ID, not one the engine knows
+        String orderId = message.isSetOrderID() ? message.getOrderID().getValue() : "NONE";
+        int count = (int) message.getOrderQty().getValue();
+        Integer price = message.isSetPrice() ? (int) message.getPrice().getValue() : null;
+
+        Message response;
+        try {
+            if (!message.isSetOrderID()) {
+                throw new IllegalArgumentException("OrderID (37) is required");
+            }
+            // A session amends only its own user's orders
+            Order order = orderBookService.getOrder(orderId);
+            if (!sessionUser(sessionID).equals(order.getUser_id())) {
+                throw new IllegalArgumentException("Order does not belong to this session's user: " + orderId);
+            }
+            Order amended = orderBookService.amendOrder(orderId, price, count);
+
+            ExecutionReport executionReport = new ExecutionReport(
+                    new OrderID(amended.getId()),
+                    new ExecID("EXEC_" + System.currentTimeMillis()),
+                    new ExecType(ExecType.REPLACED),
+                    new OrdStatus(toOrdStatus(amended.getStatus())),
+                    message.getSide(),
+                    new LeavesQty(amended.getRemaining_quantity()),
+                    new CumQty(amended.getFilled_quantity())
+            );
+            executionReport.set(new ClOrdID(clOrdID));
+            executionReport.set(new OrigClOrdID(origClOrdID));
+            executionReport.set(new Symbol(amended.getSymbol()));
+            executionReport.set(new OrderQty(amended.getQuantity()));
+            executionReport.set(new Price(amended.getPrice()));
+            response = executionReport;
+        } catch (RuntimeException e) {
+            OrderCancelReject reject = new OrderCancelReject(
+                    new OrderID(orderId),
+                    new ClOrdID(clOrdID),
+                    new OrigClOrdID(origClOrdID),
+                    new OrdStatus(OrdStatus.REJECTED),
+                    new CxlRejResponseTo(CxlRejResponseTo.ORDER_CANCEL_REPLACE_REQUEST)
+            );
+            reject.set(new Text(e.getMessage()));
+            response = reject;
+        }
+
+        try {
+            Session.sendToTarget(response, sessionID);
+            System.out.println("Sent cancel/replace response: " + response);
+        } catch (SessionNotFound e) {
+            System.err.println("Session not found: " + e.getMessage());
+        }
+    }
+
+    // Order Mass Cancel Request (35=q): cancel all of the account's resting
+    // orders, in one market (MassCancelRequestType=1) or everywhere (=7)
+    public void onMessage(OrderMassCancelRequest message, SessionID sessionID)
+            throws FieldNotFound {
+
+        System.out.println("Received Order Mass Cancel Request: " + message);
+
+        String clOrdID = message.getClOrdID().getValue();
+        char requestType = message.getMassCancelRequestType().getValue();
+        // Always the session's own user; an Account (1) naming anyone else is rejected
+        String userId = sessionUser(sessionID);
+        boolean otherAccount = message.isSetField(Account.FIELD) && !userId.equals(message.getString(Account.FIELD));
+
+        OrderMassCancelReport report;
+        if (otherAccount) {
+            report = new OrderMassCancelReport(
+                    new OrderID("MASS_" + System.currentTimeMillis()),
+                    new MassCancelRequestType(requestType),
+                    new MassCancelResponse(MassCancelResponse.CANCEL_REQUEST_REJECTED)
+            );
+            report.set(new MassCancelRejectReason(MassCancelRejectReason.OTHER));
+            report.set(new Text("Account does not match the session's user"));
+        } else if (requestType == MassCancelRequestType.CANCEL_ORDERS_FOR_A_SECURITY && message.isSetSymbol()
+                || requestType == MassCancelRequestType.CANCEL_ALL_ORDERS) {
+            String symbol = requestType == MassCancelRequestType.CANCEL_ALL_ORDERS ? null : message.getSymbol().getValue();
+            List<String> canceled = orderBookService.cancelUserOrders(userId, symbol);
+
+            report = new OrderMassCancelReport(
+                    new OrderID("MASS_" + System.currentTimeMillis()),
+                    new MassCancelRequestType(requestType),
+                    new MassCancelResponse(requestType)
+            );
+            report.set(new TotalAffectedOrders(canceled.size()));
+            if (symbol != null) {
+                report.set(new Symbol(symbol));
+            }
+        } else {
+            report = new OrderMassCancelReport(
+                    new OrderID("MASS_" + System.currentTimeMillis()),
+                    new MassCancelRequestType(requestType),
+                    new MassCancelResponse(MassCancelResponse.CANCEL_REQUEST_REJECTED)
+            );
+            report.set(new MassCancelRejectReason(MassCancelRejectReason.OTHER));
+            report.set(new Text("Only cancel by security (with Symbol) or cancel all is supported"));
+        }
+        report.set(new ClOrdID(clOrdID));
+
+        try {
+            Session.sendToTarget(report, sessionID);
+            System.out.println("Sent mass cancel report: " + report);
+        } catch (SessionNotFound e) {
+            System.err.println("Session not found: " + e.getMessage());
+        }
+    }
+
+    // The user a session trades as: its counterparty's comp ID, fixed at logon
+    private static String sessionUser(SessionID sessionID) {
+        return sessionID.getTargetCompID();
+    }
+
+    private static char toOrdStatus(String status) {
+        return switch (status) {
+            case "filled" -> OrdStatus.FILLED;
+            case "partially_filled" -> OrdStatus.PARTIALLY_FILLED;
+            default -> OrdStatus.NEW;
+        };
+    }
+
     // Helper method to crack messages
     private void crack(Message message, SessionID sessionID)
             throws FieldNotFound, IncorrectDataFormat, IncorrectTagValue, UnsupportedMessageType {
@@ -285,6 +425,12 @@ public class FixServerService implements Application {
             case MsgType.NEW_ORDER_SINGLE:
                 onMessage((NewOrderSingle) message, sessionID);
                 break;
+            case MsgType.ORDER_CANCEL_REPLACE_REQUEST:
+                onMessage((OrderCancelReplaceRequest) message, sessionID);
+                break;
+            case MsgType.ORDER_MASS_CANCEL_REQUEST:
+                onMessage((OrderMassCancelRequest) message, sessionID);
+                break;
             default:
                 System.out.println("Unhandled message type: " + msgType);
         }
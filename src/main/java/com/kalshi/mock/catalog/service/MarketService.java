@@ -4,19 +4,32 @@ import com.kalshi.mock.catalog.model.Market;
 import com.kalshi.mock.catalog.model.Market.MarketStatus;
 import com.kalshi.mock.catalog.model.Market.MarketType;
 import com.kalshi.mock.service.OrderBookService;
+import com.kalshi.mock.service.TimerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Service class for managing Market entities in the catalog system.
@@ -25,12 +38,44 @@ import java.util.*;
 @Service
 public class MarketService {
     
+    private static final Logger logger = LoggerFactory.getLogger(MarketService.class);
+    
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
     @Autowired
     private OrderBookService orderBookService;
     
+    @Autowired
+    private TimerService timerService;
+    
+    // Pending open and close transitions, by market ticker
+    private final Map<String, PendingTransition> openTimers = new ConcurrentHashMap<>();
+    private final Map<String, PendingTransition> closeTimers = new ConcurrentHashMap<>();
+    
+    private final TimerService.Handler<PendingTransition> openHandler = due -> onTransitionsDue(due, openTimers, this::openMarket);
+    private final TimerService.Handler<PendingTransition> closeHandler = due -> onTransitionsDue(due, closeTimers, this::closeMarket);
+    
+    // Transitions block on JDBC and the sequencers, so they get their own
+    // threads rather than the common pool
+    @Value("${markets.transition-threads:4}")
+    private int transitionThreads = 4;
+    
+    private ExecutorService transitionExecutor;
+    
+    /**
+     * A scheduled transition, and the payload of its timer: a timer that
+     * fires after it was replaced or cancelled finds its own entry gone
+     */
+    private static final class PendingTransition {
+        private final String ticker;
+        private TimerService.Timeout timeout;
+        
+        private PendingTransition(String ticker) {
+            this.ticker = ticker;
+        }
+    }
+    
     // Market RowMapper
     private final RowMapper<Market> marketRowMapper = new RowMapper<Market>() {
         @Override
@@ -228,9 +273,11 @@ public class MarketService {
             Timestamp.valueOf(market.getUpdatedAt())
         );
         
-        // Initialize order book for the market if it's open
+        // Initialize order book for the market if it's open; before its open
+        // time the book queues orders for the opening auction
         if (market.getStatus() == MarketStatus.OPEN) {
             initializeOrderBook(market.getTicker());
+            scheduleTransitions(market);
         }
         
         return market;
@@ -375,6 +422,14 @@ public class MarketService {
         String sql = "UPDATE markets SET " + String.join(", ", setClauses) + " WHERE ticker = ?";
         jdbcTemplate.update(sql, params.toArray());
         
+        // A new close time replaces the pending close; a closed market has none
+        if (updates.getStatus() != null && updates.getStatus() != MarketStatus.OPEN) {
+            cancelTimer(openTimers, ticker);
+            cancelTimer(closeTimers, ticker);
+        } else if (updates.getCloseTime() != null) {
+            scheduleTimer(closeTimers, ticker, updates.getCloseTime(), closeHandler);
+        }
+        
         return getMarketByTicker(ticker);
     }
     
@@ -485,25 +540,146 @@ public class MarketService {
      * Initialize order book for a market
      */
     private void initializeOrderBook(String ticker) {
-        // OrderBookService will handle the initialization
-        // This is called when a market transitions to OPEN status
+        // Called when a market is created open, or when its open time comes
+        if (!orderBookService.hasOrderBook(ticker)) {
+            orderBookService.createOrderBook(ticker);
+        }
     }
     
     /**
      * Cancel all open orders for a market
      */
     private void cancelAllOpenOrders(String ticker) {
+        // Trading closes in the journal and resting orders leave the book
+        orderBookService.closeMarket(ticker);
+        
+        // Sweep up anything the book did not hold
         String sql = """
             UPDATE orders SET 
                 status = 'canceled',
+                remaining_quantity = 0,
                 updated_time = ?
-            WHERE symbol = ? 
+            WHERE market_ticker = ? 
             AND status IN ('open', 'partially_filled')
         """;
         
         jdbcTemplate.update(sql, System.currentTimeMillis(), ticker);
     }
     
+    /**
+     * Open a market whose open time has come: the orders queued in its
+     * opening auction are uncrossed in one pass, then matching is continuous
+     */
+    private void openMarket(String ticker) {
+        initializeOrderBook(ticker);
+        int traded = orderBookService.endAuction(ticker);
+        logger.info("Opened market {}, {} contracts traded in the opening auction", ticker, traded);
+    }
+    
+    /**
+     * Close a market whose close time has come, if it is still open
+     */
+    private void closeMarket(String ticker) {
+        String sql = """
+            UPDATE markets SET 
+                status = ?, 
+                updated_at = ?
+            WHERE ticker = ? 
+            AND UPPER(status) = ?
+        """;
+        
+        int updated = jdbcTemplate.update(sql, MarketStatus.CLOSED.name(), Timestamp.valueOf(LocalDateTime.now()),
+            ticker, MarketStatus.OPEN.name());
+        if (updated > 0) {
+            cancelAllOpenOrders(ticker);
+            logger.info("Closed market {} at its close time", ticker);
+        }
+    }
+    
+    /**
+     * Schedule the open and close transitions of every open market. Times
+     * already passed are left to closeExpiredMarkets, so a restart does not
+     * close markets whose close time went by while the service was down.
+     */
+    public void scheduleMarketTransitions() {
+        String sql = "SELECT * FROM markets WHERE UPPER(status) = ?";
+        List<Market> markets = jdbcTemplate.query(sql, marketRowMapper, MarketStatus.OPEN.name());
+        for (Market market : markets) {
+            scheduleTransitions(market);
+        }
+        logger.info("Scheduled transitions for {} open markets, {} pending", markets.size(), timerService.pending());
+    }
+    
+    /**
+     * Put the market's future open and close times on the timer wheel. A
+     * market not open yet takes orders into its opening auction meanwhile.
+     */
+    private void scheduleTransitions(Market market) {
+        if (isFuture(market.getOpenTime())) {
+            orderBookService.beginAuction(market.getTicker());
+            scheduleTimer(openTimers, market.getTicker(), market.getOpenTime(), openHandler);
+        }
+        if (isFuture(market.getCloseTime())) {
+            scheduleTimer(closeTimers, market.getTicker(), market.getCloseTime(), closeHandler);
+        }
+    }
+    
+    private void scheduleTimer(Map<String, PendingTransition> timers, String ticker, LocalDateTime time,
+                               TimerService.Handler<PendingTransition> handler) {
+        long deadline = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        PendingTransition pending = new PendingTransition(ticker);
+        pending.timeout = timerService.schedule(deadline, handler, pending);
+        PendingTransition previous = timers.put(ticker, pending);
+        if (previous != null) {
+            timerService.cancel(previous.timeout);
+        }
+    }
+    
+    private void cancelTimer(Map<String, PendingTransition> timers, String ticker) {
+        PendingTransition pending = timers.remove(ticker);
+        if (pending != null) {
+            timerService.cancel(pending.timeout);
+        }
+    }
+    
+    /**
+     * Timer callback. Transitions touch the database and the sequencers, so
+     * they run off the timer thread. A timer replaced or cancelled after it
+     * came due no longer owns its entry, and does nothing.
+     */
+    private void onTransitionsDue(List<PendingTransition> due, Map<String, PendingTransition> timers,
+                                  Consumer<String> transition) {
+        for (PendingTransition pending : due) {
+            if (!timers.remove(pending.ticker, pending)) {
+                continue;
+            }
+            CompletableFuture.runAsync(() -> transition.accept(pending.ticker), transitionExecutor)
+                .exceptionally(e -> {
+                    logger.error("Market transition failed for " + pending.ticker, e);
+                    return null;
+                });
+        }
+    }
+    
+    @PostConstruct
+    public void startTransitions() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        transitionExecutor = Executors.newFixedThreadPool(transitionThreads, runnable -> {
+            Thread thread = new Thread(runnable, "market-transition-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void stopTransitions() {
+        transitionExecutor.shutdownNow();
+    }
+    
+    private static boolean isFuture(LocalDateTime time) {
+        return time != null && time.isAfter(LocalDateTime.now());
+    }
+    
     /**
      * Get market count
      */
@@ -2,7 +2,9 @@ package com.kalshi.mock.controller;
 
 import com.fbg.api.rest.*;
 import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.dto.AmendOrderRequest;
 import com.kalshi.mock.dto.KalshiOrderRequest;
+import com.kalshi.mock.dto.MassCancelResponse;
 import com.kalshi.mock.service.OrderBookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -65,7 +67,8 @@ public class OrderController {
                 kalshiRequest.getMarketTicker(),
                 orderRequest,
                 kalshiRequest.getAction(),
-                DEMO_USER_ID
+                DEMO_USER_ID,
+                expirationMillis(kalshiRequest)
             );
             
             return ResponseEntity.status(HttpStatus.CREATED).body(new OrderResponse(order));
@@ -168,6 +171,67 @@ public class OrderController {
         }
     }
     
+    @DeleteMapping("/orders")
+    @Operation(summary = "Mass cancel orders", description = "Cancel all of the user's resting orders, in one market or in every market")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Orders canceled successfully"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<MassCancelResponse> cancelOrders(
+            @Parameter(description = "Only cancel orders in this market") @RequestParam(required = false) String ticker,
+            @RequestHeader(value = "KALSHI-ACCESS-KEY", required = false) String apiKey) {
+        
+        try {
+            List<String> canceled = orderBookService.cancelUserOrders(DEMO_USER_ID, ticker);
+            return ResponseEntity.ok(new MassCancelResponse(canceled));
+        } catch (Exception e) {
+            logger.error("Error mass canceling orders", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/orders/{order_id}/amend")
+    @Operation(summary = "Amend order", description = "Change the price and/or size of a resting order. Reducing size at the same price keeps queue priority; a price change or size increase moves the order to the back of the queue.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Order amended successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid amend request"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "404", description = "Order not found"),
+        @ApiResponse(responseCode = "409", description = "Order is no longer resting"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<OrderResponse> amendOrder(
+            @Parameter(description = "Order ID", required = true) @PathVariable String order_id,
+            @Valid @RequestBody AmendOrderRequest amendRequest,
+            @RequestHeader(value = "KALSHI-ACCESS-KEY", required = false) String apiKey) {
+        
+        // Verify order exists and belongs to user
+        Order existingOrder;
+        try {
+            existingOrder = orderBookService.getOrder(order_id);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!existingOrder.getUser_id().equals(DEMO_USER_ID)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        try {
+            Order amendedOrder = orderBookService.amendOrder(order_id, amendRequest.getPrice(), amendRequest.getCount());
+            return ResponseEntity.ok(new OrderResponse(amendedOrder));
+        } catch (IllegalStateException e) {
+            logger.error("Cannot amend order {}: {}", order_id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            logger.error("Bad amend request for order {}: {}", order_id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error amending order", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     @PostMapping("/batch_orders")
     @Operation(summary = "Create batch orders", description = "Submit multiple orders in a single request")
     @ApiResponses(value = {
@@ -198,7 +262,8 @@ public class OrderController {
                     kalshiRequest.getMarketTicker(),
                     orderRequest,
                     kalshiRequest.getAction(),
-                    DEMO_USER_ID
+                    DEMO_USER_ID,
+                    expirationMillis(kalshiRequest)
                 );
                 createdOrders.add(order);
             } catch (Exception e) {
@@ -245,4 +310,9 @@ public class OrderController {
         
         return ResponseEntity.ok(new FillsResponse(fills, null));
     }
-}
\ No newline at end of file
+    
+    // Kalshi sends expirations in epoch seconds, the engine works in millis
+    private static Long expirationMillis(KalshiOrderRequest kalshiRequest) {
+        return kalshiRequest.getExpirationTs() != null ? kalshiRequest.getExpirationTs() * 1000 : null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.kalshi.mock.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.*;
+
+/**
+ * Request to amend a resting order's price and/or size
+ */
+@Schema(description = "Amend request for a resting order")
+public class AmendOrderRequest {
+    
+    @NotNull
+    @Min(1)
+    @Schema(description = "Total number of contracts the order should have, including those already filled", example = "50", required = true)
+    private Integer count;
+    
+    @Min(1)
+    @Max(99)
+    @Schema(description = "New price in cents, on the order's side; omit to keep the current price", example = "64")
+    private Integer price;
+    
+    // Getters and setters
+    public Integer getCount() { return count; }
+    public void setCount(Integer count) { this.count = count; }
+    
+    public Integer getPrice() { return price; }
+    public void setPrice(Integer price) { this.price = price; }
+}
@@ -40,11 +40,16 @@ public class KalshiOrderRequest {
     @Schema(description = "Price in cents (required for limit orders)", example = "65")
     private Integer price;
     
-    @Pattern(regexp = "GTC|IOC|FOK", message = "Time in force must be 'GTC', 'IOC', or 'FOK'")
-    @Schema(description = "Time in force", allowableValues = {"GTC", "IOC", "FOK"}, defaultValue = "GTC")
+    @Pattern(regexp = "GTC|GTD|IOC|FOK", message = "Time in force must be 'GTC', 'GTD', 'IOC', or 'FOK'")
+    @Schema(description = "Time in force", allowableValues = {"GTC", "GTD", "IOC", "FOK"}, defaultValue = "GTC")
     @JsonProperty("time_in_force")
     private String timeInForce;
     
+    @Positive
+    @Schema(description = "Unix timestamp in seconds after which a resting order is canceled (required for GTD)", example = "1735689600")
+    @JsonProperty("expiration_ts")
+    private Long expirationTs;
+    
     @Schema(description = "Client order ID for tracking", example = "MY-ORDER-123")
     @JsonProperty("client_order_id")
     private String clientOrderId;
@@ -71,6 +76,9 @@ public class KalshiOrderRequest {
     public String getTimeInForce() { return timeInForce; }
     public void setTimeInForce(String timeInForce) { this.timeInForce = timeInForce; }
     
+    public Long getExpirationTs() { return expirationTs; }
+    public void setExpirationTs(Long expirationTs) { this.expirationTs = expirationTs; }
+    
     public String getClientOrderId() { return clientOrderId; }
     public void setClientOrderId(String clientOrderId) { this.clientOrderId = clientOrderId; }
 }
\ No newline at end of file
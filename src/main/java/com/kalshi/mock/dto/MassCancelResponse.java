@@ -0,0 +1,45 @@
+package com.kalshi.mock.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * Response to a mass cancel: the IDs of every order it canceled.
+ *
+ * Example:
+ * {
+ *   "canceled_count": 2,
+ *   "order_ids": ["ORD-1001", "ORD-1007"]
+ * }
+ */
+public class MassCancelResponse {
+
+    @JsonProperty("canceled_count")
+    private int canceledCount;
+
+    @JsonProperty("order_ids")
+    private List<String> orderIds;
+
+    public MassCancelResponse() {}
+
+    public MassCancelResponse(List<String> orderIds) {
+        this.orderIds = orderIds;
+        this.canceledCount = orderIds.size();
+    }
+
+    public int getCanceledCount() {
+        return canceledCount;
+    }
+
+    public void setCanceledCount(int canceledCount) {
+        this.canceledCount = canceledCount;
+    }
+
+    public List<String> getOrderIds() {
+        return orderIds;
+    }
+
+    public void setOrderIds(List<String> orderIds) {
+        this.orderIds = orderIds;
+    }
+}
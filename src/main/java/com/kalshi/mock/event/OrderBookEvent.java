@@ -45,29 +45,43 @@ public class OrderBookEvent {
         private final Integer price;
         private final Integer delta;
         private final String side;
+        private final Long seq; // per-market delta sequence, null if unsequenced
         
         public DeltaData(Integer price, Integer delta, String side) {
+            this(price, delta, side, null);
+        }
+        
+        public DeltaData(Integer price, Integer delta, String side, Long seq) {
             this.price = price;
             this.delta = delta;
             this.side = side;
+            this.seq = seq;
         }
         
         public Integer getPrice() { return price; }
         public Integer getDelta() { return delta; }
         public String getSide() { return side; }
+        public Long getSeq() { return seq; }
     }
     
     public static class SnapshotData {
         private final List<List<Integer>> yesSide;
         private final List<List<Integer>> noSide;
+        private final Long seq; // last delta sequence included in the snapshot
         
         public SnapshotData(List<List<Integer>> yesSide, List<List<Integer>> noSide) {
+            this(yesSide, noSide, null);
+        }
+        
+        public SnapshotData(List<List<Integer>> yesSide, List<List<Integer>> noSide, Long seq) {
             this.yesSide = yesSide;
             this.noSide = noSide;
+            this.seq = seq;
         }
         
         public List<List<Integer>> getYesSide() { return yesSide; }
         public List<List<Integer>> getNoSide() { return noSide; }
+        public Long getSeq() { return seq; }
     }
     
     public static class TradeData {
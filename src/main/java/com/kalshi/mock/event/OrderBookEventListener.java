@@ -1,5 +1,19 @@
 package com.kalshi.mock.event;
 
+import java.util.List;
+
 public interface OrderBookEventListener {
     void onOrderBookEvent(OrderBookEvent event);
-}
\ No newline at end of file
+    
+    /**
+     * All events produced by one order book command (trades, the resulting
+     * snapshot, the ticker update), in the order they happened. Listeners that
+     * can send one combined update should override this; by default each event
+     * is handled on its own.
+     */
+    default void onOrderBookEvents(List<OrderBookEvent> events) {
+        for (OrderBookEvent event : events) {
+            onOrderBookEvent(event);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -17,7 +18,16 @@ public class OrderBookEventPublisher {
     private static final Logger logger = LoggerFactory.getLogger(OrderBookEventPublisher.class);
     
     private final List<OrderBookEventListener> listeners = new CopyOnWriteArrayList<>();
-    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    
+    // Single-threaded lanes; a market always publishes on the same lane so its
+    // updates reach listeners in the order they were produced
+    private final ExecutorService[] lanes = new ExecutorService[4];
+    
+    public OrderBookEventPublisher() {
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor();
+        }
+    }
     
     public void addListener(OrderBookEventListener listener) {
         listeners.add(listener);
@@ -36,10 +46,11 @@ public class OrderBookEventPublisher {
         }
         
         // Publish asynchronously to avoid blocking
-        executor.submit(() -> {
+        laneFor(event.getMarketTicker()).submit(() -> {
             for (OrderBookEventListener listener : listeners) {
                 try {
-                    log.info("Notifying Websocket Listener: "+listener.getClass().getSimpleName() + " with event: " + event.toString());
+                    log.debug("Notifying Websocket Listener: {} with event: {}",
+                              listener.getClass().getSimpleName(), event);
 
                     listener.onOrderBookEvent(event);
 
@@ -50,7 +61,42 @@ public class OrderBookEventPublisher {
         });
     }
     
+    /**
+     * Publish every event produced by one order book command as a single update.
+     * Each listener receives the whole batch in one onOrderBookEvents call.
+     */
+    public void publishBatch(List<OrderBookEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (listeners.isEmpty()) {
+            log.warn("Zero listeners in OrderBookEventPublisher; not publishing to any websockets!");
+            return;
+        }
+        
+        List<OrderBookEvent> batch = List.copyOf(events);
+        laneFor(batch.get(0).getMarketTicker()).submit(() -> {
+            for (OrderBookEventListener listener : listeners) {
+                try {
+                    log.debug("Notifying Websocket Listener: {} with batch of {} events for {}",
+                              listener.getClass().getSimpleName(), batch.size(), batch.get(0).getMarketTicker());
+
+                    listener.onOrderBookEvents(batch);
+
+                } catch (Exception e) {
+                    logger.error("Error notifying listener: {}", listener.getClass().getSimpleName(), e);
+                }
+            }
+        });
+    }
+    
+    private ExecutorService laneFor(String marketTicker) {
+        return lanes[Math.floorMod(Objects.hashCode(marketTicker), lanes.length)];
+    }
+    
     public void shutdown() {
-        executor.shutdown();
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
     }
 }
\ No newline at end of file
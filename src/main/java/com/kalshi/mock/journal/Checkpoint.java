@@ -0,0 +1,24 @@
+package com.kalshi.mock.journal;
+
+import com.fbg.api.market.KalshiSide;
+
+import java.util.List;
+
+/**
+ * Every order book as of a point in the journal. Each book is captured on
+ * its own market's sequencer, so it reflects exactly the events of that
+ * market up to its own journal sequence number; journalSequence is the
+ * lowest of them, where replay of the journal tail has to start.
+ */
+public record Checkpoint(long journalSequence, List<Book> books) {
+
+    /**
+     * One market's book: its resting orders in time priority, buy-only form
+     */
+    public record Book(String marketTicker, long journalSequence, boolean auction, List<RestingOrder> orders) {
+    }
+
+    public record RestingOrder(String orderId, String userId, KalshiSide side, String action, int price,
+                               int quantity, long timestamp, Long expirationTime) {
+    }
+}
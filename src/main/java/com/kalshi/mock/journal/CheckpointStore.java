@@ -0,0 +1,194 @@
+package com.kalshi.mock.journal;
+
+import com.fbg.api.market.KalshiSide;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpoint files, one per checkpoint, named after the journal sequence
+ * number replay starts from. A checkpoint is written to a temporary file,
+ * forced and then renamed into place, and ends with a CRC32C of everything
+ * before it, so a crash mid-write leaves the previous checkpoint as the
+ * latest. The newest few are kept.
+ */
+@Slf4j
+@Service
+public class CheckpointStore {
+
+    private static final int MAGIC = 0x4B434B50; // "KCKP"
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+
+    @Value("${journal.checkpoint.directory:data/checkpoints}")
+    private String directory = "data/checkpoints";
+
+    // Checkpoints kept on disk; older ones are deleted after each write
+    @Value("${journal.checkpoint.retain:2}")
+    private int retain = 2;
+
+    /**
+     * Write a checkpoint and drop the ones it supersedes
+     */
+    public void save(Checkpoint checkpoint) {
+        Path dir = Path.of(directory);
+        String name = String.format("%s%020d", PREFIX, checkpoint.journalSequence());
+        Path temp = dir.resolve(name + ".tmp");
+        try {
+            Files.createDirectories(dir);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                CRC32C crc = new CRC32C();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES), crc));
+                write(out, checkpoint);
+                out.flush();
+                // The checksum covers everything before it
+                long value = crc.getValue();
+                out.writeLong(value);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, dir.resolve(name + SUFFIX), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint in " + directory, e);
+        }
+
+        List<Path> checkpoints = checkpoints();
+        for (int i = 0; i < checkpoints.size() - retain; i++) {
+            try {
+                Files.deleteIfExists(checkpoints.get(i));
+            } catch (IOException e) {
+                log.warn("Cannot delete old checkpoint {}", checkpoints.get(i), e);
+            }
+        }
+    }
+
+    /**
+     * The newest checkpoint that reads back intact, or null if there is none
+     */
+    public Checkpoint loadLatest() {
+        List<Path> checkpoints = checkpoints();
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Path path = checkpoints.get(i);
+            try {
+                return read(path);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Skipping unreadable checkpoint {}", path, e);
+            }
+        }
+        return null;
+    }
+
+    private static void write(DataOutputStream out, Checkpoint checkpoint) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(checkpoint.journalSequence());
+        out.writeInt(checkpoint.books().size());
+        for (Checkpoint.Book book : checkpoint.books()) {
+            writeString(out, book.marketTicker());
+            out.writeLong(book.journalSequence());
+            out.writeBoolean(book.auction());
+            out.writeInt(book.orders().size());
+            for (Checkpoint.RestingOrder order : book.orders()) {
+                writeString(out, order.orderId());
+                writeString(out, order.userId());
+                out.writeByte(order.side().ordinal());
+                writeString(out, order.action());
+                out.writeByte(order.price());
+                out.writeInt(order.quantity());
+                out.writeLong(order.timestamp());
+                out.writeLong(order.expirationTime() != null ? order.expirationTime() : Long.MIN_VALUE);
+            }
+        }
+    }
+
+    private static Checkpoint read(Path path) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                 new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES), new CRC32C())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " checkpoint");
+            }
+            long journalSequence = in.readLong();
+            int bookCount = in.readInt();
+            List<Checkpoint.Book> books = new ArrayList<>(bookCount);
+            for (int b = 0; b < bookCount; b++) {
+                String marketTicker = readString(in);
+                long bookSequence = in.readLong();
+                boolean auction = in.readBoolean();
+                int orderCount = in.readInt();
+                List<Checkpoint.RestingOrder> orders = new ArrayList<>(orderCount);
+                for (int o = 0; o < orderCount; o++) {
+                    String orderId = readString(in);
+                    String userId = readString(in);
+                    KalshiSide side = KalshiSide.values()[in.readByte()];
+                    String action = readString(in);
+                    int price = in.readByte();
+                    int quantity = in.readInt();
+                    long timestamp = in.readLong();
+                    long expiration = in.readLong();
+                    orders.add(new Checkpoint.RestingOrder(orderId, userId, side, action, price, quantity, timestamp,
+                        expiration != Long.MIN_VALUE ? expiration : null));
+                }
+                books.add(new Checkpoint.Book(marketTicker, bookSequence, auction, orders));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            return new Checkpoint(journalSequence, books);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private List<Path> checkpoints() {
+        Path dir = Path.of(directory);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                .filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                             && path.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparing(Path::getFileName))
+                .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list checkpoints in " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.kalshi.mock.journal;
+
+import com.fbg.api.market.KalshiSide;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only record of what the engine did - orders accepted, executed,
+ * canceled and amended, and market state changes - kept ahead of the
+ * database. Each market's sequencer appends its command's events and calls
+ * {@link #sync()} before acknowledging, so an acknowledged order is as
+ * durable as the fsync policy makes it:
+ * <ul>
+ * <li>always - sync forces the journal to disk; concurrent commands share a force</li>
+ * <li>interval - a background thread forces every fsync-interval; a crash
+ *     loses at most that much</li>
+ * <li>never - the OS writes pages back in its own time</li>
+ * </ul>
+ * The journal is what the order books are rebuilt from on restart. The
+ * database is written separately by PersistenceService, not fed from the
+ * journal. Disabled, every method is a no-op.
+ */
+@Slf4j
+@Service
+public class EventJournal {
+
+    public enum FsyncPolicy {
+        ALWAYS, INTERVAL, NEVER
+    }
+
+    private static final int MAX_RECORD_BYTES = 4096;
+
+    @Value("${journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${journal.directory:data/journal}")
+    private String directory = "data/journal";
+
+    @Value("${journal.segment-size-mb:64}")
+    private int segmentSizeMb = 64;
+
+    @Value("${journal.fsync:interval}")
+    private String fsync = "interval";
+
+    @Value("${journal.fsync-interval-millis:10}")
+    private long fsyncIntervalMillis = 10;
+
+    private volatile MappedJournal journal;
+    private FsyncPolicy fsyncPolicy;
+    private ScheduledExecutorService syncer;
+
+    // Payloads are encoded here, then copied into the journal's mapping
+    private final ThreadLocal<ByteBuffer> encodeBuffer =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_BYTES));
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        fsyncPolicy = FsyncPolicy.valueOf(fsync.toUpperCase());
+        journal = new MappedJournal(Path.of(directory), segmentSizeMb * 1024 * 1024);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::forceQuietly, fsyncIntervalMillis, fsyncIntervalMillis,
+                                          TimeUnit.MILLISECONDS);
+        }
+        log.info("Event journal in {} at sequence {}, fsync {}", directory, journal.lastSequence(), fsyncPolicy);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    public void orderAccepted(String marketTicker, String orderId, String clientOrderId, String userId,
+                              KalshiSide side, String action, String orderType, Integer price, int quantity,
+                              String timeInForce, Long expirationTime) {
+        if (journal == null) {
+            return;
+        }
+        ByteBuffer buffer = buffer();
+        JournalCodec.encodeOrderAccepted(buffer, marketTicker, orderId, clientOrderId, userId, side, action,
+            orderType, price != null ? price : 0, quantity, timeInForce, expirationTime);
+        append(JournalCodec.ORDER_ACCEPTED, buffer);
+    }
+
+    public void orderExecuted(String marketTicker, String tradeId, String aggressorOrderId, String passiveOrderId,
+                              int price, int quantity) {
+        if (journal == null) {
+            return;
+        }
+        ByteBuffer buffer = buffer();
+        JournalCodec.encodeOrderExecuted(buffer, marketTicker, tradeId, aggressorOrderId, passiveOrderId, price,
+            quantity);
+        append(JournalCodec.ORDER_EXECUTED, buffer);
+    }
+
+    public void orderCanceled(String marketTicker, String orderId) {
+        if (journal == null) {
+            return;
+        }
+        ByteBuffer buffer = buffer();
+        JournalCodec.encodeOrderCanceled(buffer, marketTicker, orderId);
+        append(JournalCodec.ORDER_CANCELED, buffer);
+    }
+
+    public void orderAmended(String marketTicker, String orderId, int price, int count, int bookPrice,
+                             int bookQuantity) {
+        if (journal == null) {
+            return;
+        }
+        ByteBuffer buffer = buffer();
+        JournalCodec.encodeOrderAmended(buffer, marketTicker, orderId, price, count, bookPrice, bookQuantity);
+        append(JournalCodec.ORDER_AMENDED, buffer);
+    }
+
+    public void marketStateChanged(String marketTicker, JournalEvent.MarketState state) {
+        if (journal == null) {
+            return;
+        }
+        ByteBuffer buffer = buffer();
+        JournalCodec.encodeMarketStateChanged(buffer, marketTicker, state);
+        append(JournalCodec.MARKET_STATE_CHANGED, buffer);
+    }
+
+    /**
+     * Make everything appended so far as durable as the fsync policy
+     * promises. Called once per command, before it is acknowledged.
+     */
+    public void sync() {
+        if (journal != null && fsyncPolicy == FsyncPolicy.ALWAYS) {
+            journal.force();
+        }
+    }
+
+    /**
+     * Sequence number of the last event appended, 0 if none
+     */
+    public long lastSequence() {
+        return journal != null ? journal.lastSequence() : 0;
+    }
+
+    /**
+     * Read back every event from the given sequence number on, in order
+     */
+    public void replay(long fromSequence, Consumer<JournalEvent> consumer) {
+        if (journal == null) {
+            return;
+        }
+        journal.replay(fromSequence, (sequence, timestamp, type, payload) ->
+            consumer.accept(JournalCodec.decode(sequence, timestamp, type, payload)));
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer buffer = encodeBuffer.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    private void append(byte type, ByteBuffer buffer) {
+        buffer.flip();
+        journal.append(type, System.currentTimeMillis(), buffer);
+    }
+
+    private void forceQuietly() {
+        try {
+            MappedJournal current = journal;
+            if (current != null) {
+                current.force();
+            }
+        } catch (RuntimeException e) {
+            log.error("Journal fsync failed", e);
+        }
+    }
+}
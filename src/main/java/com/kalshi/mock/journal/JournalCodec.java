@@ -0,0 +1,125 @@
+package com.kalshi.mock.journal;
+
+import com.fbg.api.market.KalshiSide;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary payloads of the journal's records. Strings are a signed short
+ * length (-1 for null) and UTF-8 bytes; nullable longs use Long.MIN_VALUE.
+ */
+final class JournalCodec {
+
+    static final byte ORDER_ACCEPTED = 1;
+    static final byte ORDER_EXECUTED = 2;
+    static final byte ORDER_CANCELED = 3;
+    static final byte ORDER_AMENDED = 4;
+    static final byte MARKET_STATE_CHANGED = 5;
+
+    private JournalCodec() {
+    }
+
+    static void encodeOrderAccepted(ByteBuffer buffer, String marketTicker, String orderId, String clientOrderId,
+                                    String userId, KalshiSide side, String action, String orderType, int price,
+                                    int quantity, String timeInForce, Long expirationTime) {
+        putString(buffer, marketTicker);
+        putString(buffer, orderId);
+        putString(buffer, clientOrderId);
+        putString(buffer, userId);
+        buffer.put((byte) side.ordinal());
+        putString(buffer, action);
+        putString(buffer, orderType);
+        buffer.putInt(price);
+        buffer.putInt(quantity);
+        putString(buffer, timeInForce);
+        buffer.putLong(expirationTime != null ? expirationTime : Long.MIN_VALUE);
+    }
+
+    static void encodeOrderExecuted(ByteBuffer buffer, String marketTicker, String tradeId, String aggressorOrderId,
+                                    String passiveOrderId, int price, int quantity) {
+        putString(buffer, marketTicker);
+        putString(buffer, tradeId);
+        putString(buffer, aggressorOrderId);
+        putString(buffer, passiveOrderId);
+        buffer.putInt(price);
+        buffer.putInt(quantity);
+    }
+
+    static void encodeOrderCanceled(ByteBuffer buffer, String marketTicker, String orderId) {
+        putString(buffer, marketTicker);
+        putString(buffer, orderId);
+    }
+
+    static void encodeOrderAmended(ByteBuffer buffer, String marketTicker, String orderId, int price, int count,
+                                   int bookPrice, int bookQuantity) {
+        putString(buffer, marketTicker);
+        putString(buffer, orderId);
+        buffer.putInt(price);
+        buffer.putInt(count);
+        buffer.putInt(bookPrice);
+        buffer.putInt(bookQuantity);
+    }
+
+    static void encodeMarketStateChanged(ByteBuffer buffer, String marketTicker, JournalEvent.MarketState state) {
+        putString(buffer, marketTicker);
+        buffer.put((byte) state.ordinal());
+    }
+
+    static JournalEvent decode(long sequence, long timestamp, byte type, ByteBuffer payload) {
+        String marketTicker = getString(payload);
+        switch (type) {
+            case ORDER_ACCEPTED: {
+                String orderId = getString(payload);
+                String clientOrderId = getString(payload);
+                String userId = getString(payload);
+                KalshiSide side = KalshiSide.values()[payload.get()];
+                String action = getString(payload);
+                String orderType = getString(payload);
+                int price = payload.getInt();
+                int quantity = payload.getInt();
+                String timeInForce = getString(payload);
+                long expiration = payload.getLong();
+                return new JournalEvent.OrderAccepted(sequence, timestamp, marketTicker, orderId, clientOrderId,
+                    userId, side, action, orderType, price, quantity, timeInForce,
+                    expiration != Long.MIN_VALUE ? expiration : null);
+            }
+            case ORDER_EXECUTED:
+                return new JournalEvent.OrderExecuted(sequence, timestamp, marketTicker, getString(payload),
+                    getString(payload), getString(payload), payload.getInt(), payload.getInt());
+            case ORDER_CANCELED:
+                return new JournalEvent.OrderCanceled(sequence, timestamp, marketTicker, getString(payload));
+            case ORDER_AMENDED:
+                return new JournalEvent.OrderAmended(sequence, timestamp, marketTicker, getString(payload),
+                    payload.getInt(), payload.getInt(), payload.getInt(), payload.getInt());
+            case MARKET_STATE_CHANGED:
+                return new JournalEvent.MarketStateChanged(sequence, timestamp, marketTicker,
+                    JournalEvent.MarketState.values()[payload.get()]);
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type + " at sequence " + sequence);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long for the journal: " + bytes.length + " bytes");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
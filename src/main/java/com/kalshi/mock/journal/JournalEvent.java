@@ -0,0 +1,53 @@
+package com.kalshi.mock.journal;
+
+import com.fbg.api.market.KalshiSide;
+
+/**
+ * An engine event as read back from the journal. Every event carries the
+ * journal's sequence number, which orders events across all markets, and
+ * the time it was appended.
+ */
+public sealed interface JournalEvent {
+
+    long sequence();
+
+    long timestamp();
+
+    String marketTicker();
+
+    /**
+     * A new order as the engine accepted it, before matching. Replaying these
+     * in sequence order through the matching engine reproduces the book.
+     */
+    record OrderAccepted(long sequence, long timestamp, String marketTicker, String orderId, String clientOrderId,
+                         String userId, KalshiSide side, String action, String orderType, int price, int quantity,
+                         String timeInForce, Long expirationTime) implements JournalEvent {}
+
+    /**
+     * A trade between an incoming (or later-queued) order and a resting one,
+     * at the execution price in YES terms
+     */
+    record OrderExecuted(long sequence, long timestamp, String marketTicker, String tradeId,
+                         String aggressorOrderId, String passiveOrderId, int price, int quantity)
+        implements JournalEvent {}
+
+    /**
+     * A resting order removed from the book, by its owner, expiry or a mass cancel
+     */
+    record OrderCanceled(long sequence, long timestamp, String marketTicker, String orderId)
+        implements JournalEvent {}
+
+    /**
+     * A resting order given a new price (in its own side terms) and total
+     * count, with the price and quantity that left on the buy-only book
+     */
+    record OrderAmended(long sequence, long timestamp, String marketTicker, String orderId, int price, int count,
+                        int bookPrice, int bookQuantity) implements JournalEvent {}
+
+    record MarketStateChanged(long sequence, long timestamp, String marketTicker, MarketState state)
+        implements JournalEvent {}
+
+    enum MarketState {
+        AUCTION, OPEN, CLOSED
+    }
+}
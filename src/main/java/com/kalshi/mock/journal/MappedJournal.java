@@ -0,0 +1,354 @@
+package com.kalshi.mock.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of binary records in memory-mapped segment files.
+ * <p>
+ * Each segment is a fixed-size file named after the sequence number of its
+ * first record. A record is a header - payload length, CRC32C, sequence
+ * number, timestamp and type - followed by the payload; a zero length ends
+ * the segment. Appends copy into the mapping, so they cost a memcpy; they
+ * reach the disk when {@link #force()} is called or when the OS writes the
+ * pages back.
+ * <p>
+ * Appenders share no lock. Each claims its sequence number and byte range
+ * with one compare-and-set, copies and checksums its record alongside the
+ * others, then publishes it in sequence order, so a record only counts as
+ * written - for {@link #force()} and {@link #lastSequence()} - once every
+ * record before it is complete. Only rolling to a new segment makes
+ * appenders wait.
+ * <p>
+ * On open, the last segment is scanned and everything after the last
+ * complete record (a torn write from a crash) is zeroed, so appends carry on
+ * from exactly where the durable journal ends.
+ */
+final class MappedJournal implements AutoCloseable {
+
+    // length, crc, sequence, timestamp, type
+    static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 1;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    interface RecordHandler {
+        void onRecord(long sequence, long timestamp, byte type, ByteBuffer payload);
+    }
+
+    // Set in a segment's reservation once it is full and being rolled
+    private static final long SEALED = Long.MIN_VALUE;
+
+    /**
+     * One segment file. Its progress is kept as (records << 32) | bytes:
+     * reserved counts what appenders have claimed, written what they have
+     * finished, and written only passes a record once all before it are done.
+     */
+    private static final class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long firstSequence;
+        private final AtomicLong reserved;
+        private final AtomicLong written;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer, long firstSequence, long progress) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.firstSequence = firstSequence;
+            this.reserved = new AtomicLong(progress);
+            this.written = new AtomicLong(progress);
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ThreadLocal<CRC32C> crc = ThreadLocal.withInitial(CRC32C::new);
+
+    // The segment being appended to, replaced by whichever appender seals it
+    private volatile Segment current;
+
+    // Extent of the current segment known to be on disk, guarded by forceLock
+    private final Object forceLock = new Object();
+    private Segment forcedSegment;
+    private int forcedPosition;
+
+    MappedJournal(Path directory, int segmentBytes) {
+        if (segmentBytes < HEADER_BYTES * 2) {
+            throw new IllegalArgumentException("Journal segments must hold a record, got " + segmentBytes + " bytes");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments();
+            if (segments.isEmpty()) {
+                current = openSegment(1);
+            } else {
+                // Earlier segments were forced when they filled; only the last can be torn
+                Path last = segments.get(segments.size() - 1);
+                FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+                long expected = firstSequence(last);
+                current = new Segment(channel, buffer, expected, recoverTail(buffer, expected));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Append a record and return its sequence number. The payload is read
+     * from its position to its limit. Safe to call from any number of
+     * threads at once.
+     */
+    long append(byte type, long timestamp, ByteBuffer payload) {
+        int length = payload.remaining();
+        int size = HEADER_BYTES + length;
+        if (size + 4 > segmentBytes) {
+            throw new IllegalArgumentException("Journal record of " + length + " bytes exceeds the segment size");
+        }
+
+        while (true) {
+            Segment segment = current;
+            long claimed = segment.reserved.get();
+            if ((claimed & SEALED) != 0) {
+                // Another appender is rolling to the next segment
+                Thread.onSpinWait();
+                continue;
+            }
+            int records = records(claimed);
+            int start = bytes(claimed);
+            // Leave room for the zero length that ends a full segment
+            if (start + size + 4 > segmentBytes) {
+                if (segment.reserved.compareAndSet(claimed, claimed | SEALED)) {
+                    roll(segment, claimed);
+                }
+                continue;
+            }
+            long next = progress(records + 1, start + size);
+            if (!segment.reserved.compareAndSet(claimed, next)) {
+                continue;
+            }
+
+            long sequence = segment.firstSequence + records;
+            write(segment.buffer, start, size, sequence, timestamp, type, payload);
+
+            // Publish in reservation order: wait for the records before this one
+            while (!segment.written.compareAndSet(claimed, next)) {
+                Thread.onSpinWait();
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Write everything appended so far to disk
+     */
+    void force() {
+        Segment target = current;
+        int end = bytes(target.written.get());
+        synchronized (forceLock) {
+            if (target != forcedSegment) {
+                // The previous segment was forced as it filled
+                forcedSegment = target;
+                forcedPosition = 0;
+            }
+            if (end > forcedPosition) {
+                target.buffer.force(forcedPosition, end - forcedPosition);
+                forcedPosition = end;
+            }
+        }
+    }
+
+    /**
+     * Hand every record from the given sequence number on to the handler, in
+     * order. Records appended while replaying may or may not be included.
+     */
+    void replay(long fromSequence, RecordHandler handler) {
+        try {
+            List<Path> segments = segments();
+            for (int i = 0; i < segments.size(); i++) {
+                // Skip segments that end before the first wanted record
+                if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+                    continue;
+                }
+                Path path = segments.get(i);
+                ByteBuffer buffer = map(path, FileChannel.MapMode.READ_ONLY);
+                long last = scan(buffer, firstSequence(path), (sequence, timestamp, type, payload) -> {
+                    if (sequence >= fromSequence) {
+                        handler.onRecord(sequence, timestamp, type, payload);
+                    }
+                });
+                if (i + 1 < segments.size() && last + 1 != firstSequence(segments.get(i + 1))) {
+                    throw new IllegalStateException("Journal segment " + path + " is damaged after record " + last);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Sequence number of the last record written, with every record before it
+     */
+    long lastSequence() {
+        Segment segment = current;
+        return segment.firstSequence + records(segment.written.get()) - 1;
+    }
+
+    @Override
+    public void close() {
+        try {
+            force();
+            current.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close journal in " + directory, e);
+        }
+    }
+
+    // Header and payload go in first and the length last: a reader never
+    // sees a record without its body
+    private void write(MappedByteBuffer buffer, int start, int size, long sequence, long timestamp, byte type,
+                       ByteBuffer payload) {
+        buffer.putLong(start + 8, sequence);
+        buffer.putLong(start + 16, timestamp);
+        buffer.put(start + 24, type);
+        buffer.put(start + HEADER_BYTES, payload, payload.position(), size - HEADER_BYTES);
+
+        CRC32C checksum = crc.get();
+        checksum.reset();
+        checksum.update(buffer.slice(start + 8, size - 8));
+        buffer.putInt(start + 4, (int) checksum.getValue());
+        buffer.putInt(start, size - HEADER_BYTES);
+    }
+
+    // Called by the appender that sealed the full segment, once per segment
+    private void roll(Segment full, long claimed) {
+        // Appends that fit before the seal are still being written
+        while (full.written.get() != claimed) {
+            Thread.onSpinWait();
+        }
+        try {
+            full.buffer.force();
+            full.channel.close();
+            current = openSegment(full.firstSequence + records(claimed));
+        } catch (IOException e) {
+            // Unseal so appenders fail on their own instead of waiting forever
+            full.reserved.set(claimed);
+            throw new UncheckedIOException("Cannot start a new journal segment in " + directory, e);
+        }
+    }
+
+    private Segment openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        return new Segment(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes), firstSequence,
+                           progress(0, 0));
+    }
+
+    // Find the end of the last complete record and clear whatever follows it
+    private long recoverTail(MappedByteBuffer segment, long firstSequence) {
+        int records = 0;
+        int offset = 0;
+        while (true) {
+            int size = validRecordSize(segment, offset, firstSequence + records);
+            if (size < 0) {
+                break;
+            }
+            offset += size;
+            records++;
+        }
+        boolean torn = false;
+        for (int i = offset; i < segmentBytes && !torn; i++) {
+            torn = segment.get(i) != 0;
+        }
+        if (torn) {
+            // Zero the torn tail so no stale record survives behind new ones
+            for (int i = offset; i < segmentBytes; i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+        }
+        return progress(records, offset);
+    }
+
+    private static long progress(int records, int bytes) {
+        return ((long) records << 32) | bytes;
+    }
+
+    private static int records(long progress) {
+        return (int) (progress >>> 32);
+    }
+
+    private static int bytes(long progress) {
+        return (int) progress;
+    }
+
+    private long scan(ByteBuffer buffer, long firstSequence, RecordHandler handler) {
+        long last = firstSequence - 1;
+        int offset = 0;
+        while (true) {
+            int size = validRecordSize(buffer, offset, last + 1);
+            if (size < 0) {
+                return last;
+            }
+            last++;
+            handler.onRecord(last, buffer.getLong(offset + 16), buffer.get(offset + 24),
+                             buffer.slice(offset + HEADER_BYTES, size - HEADER_BYTES));
+            offset += size;
+        }
+    }
+
+    // Size of the record at offset, or -1 if there is no complete record with
+    // the expected sequence number there
+    private int validRecordSize(ByteBuffer buffer, int offset, long expectedSequence) {
+        if (offset + HEADER_BYTES > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_BYTES + length > buffer.capacity()) {
+            return -1;
+        }
+        if (buffer.getLong(offset + 8) != expectedSequence) {
+            return -1;
+        }
+        CRC32C check = new CRC32C();
+        check.update(buffer.slice(offset + 8, HEADER_BYTES - 8 + length));
+        if ((int) check.getValue() != buffer.getInt(offset + 4)) {
+            return -1;
+        }
+        return HEADER_BYTES + length;
+    }
+
+    private ByteBuffer map(Path path, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            return file.map(mode, 0, file.size());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                             && path.getFileName().toString().endsWith(SUFFIX))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
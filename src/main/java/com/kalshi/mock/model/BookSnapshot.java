@@ -0,0 +1,61 @@
+package com.kalshi.mock.model;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Immutable view of one version of an order book, as [price, quantity] levels.
+ *
+ * ConcurrentOrderBook builds at most one per book version and hands the same
+ * instance to every reader (REST, WebSocket, STOMP), so polling a market costs
+ * one snapshot per book change rather than one per request. Depth-limited
+ * views are sublists of the shared, unmodifiable level lists.
+ */
+public class BookSnapshot {
+    @Getter
+    private final long version;
+    @Getter
+    private final long deltaSequence; // last orderbook delta reflected here
+
+    // Normalized YES bids, highest price first. In Kalshi's view these are the YES bids.
+    private final List<List<Integer>> bids;
+    // Normalized YES asks, lowest price first
+    private final List<List<Integer>> asks;
+    // NO bids at NO prices, lowest first
+    private final List<List<Integer>> noBids;
+
+    BookSnapshot(long version, long deltaSequence,
+                 List<List<Integer>> bids, List<List<Integer>> asks, List<List<Integer>> noBids) {
+        this.version = version;
+        this.deltaSequence = deltaSequence;
+        this.bids = List.copyOf(bids);
+        this.asks = List.copyOf(asks);
+        this.noBids = List.copyOf(noBids);
+    }
+
+    /**
+     * Kalshi "yes" side: YES bids, highest price first
+     */
+    public List<List<Integer>> getYes(int depth) {
+        return head(bids, depth);
+    }
+
+    /**
+     * Kalshi "no" side: NO bids, lowest NO price first
+     */
+    public List<List<Integer>> getNo(int depth) {
+        return head(noBids, depth);
+    }
+
+    /**
+     * Normalized YES asks, lowest price first
+     */
+    public List<List<Integer>> getAsks(int depth) {
+        return head(asks, depth);
+    }
+
+    private static List<List<Integer>> head(List<List<Integer>> levels, int depth) {
+        return depth >= levels.size() ? levels : levels.subList(0, Math.max(depth, 0));
+    }
+}
@@ -1,16 +1,16 @@
 package com.kalshi.mock.model;
 
-import com.fbg.api.rest.Orderbook;
 import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Orderbook;
 import com.kalshi.mock.dto.OrderbookResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -18,25 +18,57 @@ import java.util.stream.Collectors;
  * 
  * Key features:
  * - All NO orders are internally converted to YES equivalents
- * - Maintains FIFO order priority at each price level
- * - Detects both self-crosses and external crosses
+ * - Maintains FIFO order priority at each price level, using intrusive
+ *   doubly-linked queues so cancels never scan a level
+ * - Price levels live in fixed 1-99 cent ladders, so best bid/ask lookups and
+ *   level insert/removal are O(1) and allocation-free
+ * - Detects both self-crosses and external crosses in O(1) from the tracked
+ *   best YES bid and best NO bid
  * - Thread-safe using concurrent collections and read/write locks
+ * - The write lock only covers in-memory mutation: listener events raised by a
+ *   command are buffered and dispatched after the lock is released
+ * - Every change to a visible price level is recorded as a sequenced
+ *   OrderBookDelta, which the book's writer drains after each command
+ * - Every level change bumps the book version; readers share one immutable
+ *   BookSnapshot per version instead of rebuilding views per request
+ * - The best bid/offer and last trade are published under a seqlock when a
+ *   command releases the lock, so BBO polling never takes the book lock and
+ *   publishing never allocates
+ * - Optionally keeps resting orders off-heap in an OrderSlab, for books too
+ *   deep to hold as objects; readers then get detached copies of the orders
+ * - Chains each user's resting orders together, so cancelling all of a
+ *   user's orders costs O(their orders) rather than a scan of the book
  */
 @Slf4j
 public class ConcurrentOrderBook {
     private final String marketTicker;
     
-    // Normalized order books (all converted to YES perspective)
-    // Bids are buy orders (sorted high to low)
-    private final ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> bids = 
-        new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+    // Normalized order books (all converted to YES perspective), one fixed
+    // 1-99 cent price ladder per side
+    // Bids are buy orders (best = highest price)
+    // Every bid level is a YES bid in Kalshi's view
+    private final PriceLadder bids;
+    
+    // Asks are sell orders (best = lowest price)
+    // Only the NO bids resting here are visible, as NO bids at 100 - price
+    private final PriceLadder asks;
+    
+    // Resting order lookup by primitive order ID, guarded by the lock
+    private final OrderIndex orderIndex = new OrderIndex();
     
-    // Asks are sell orders (sorted low to high)
-    private final ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> asks = 
-        new ConcurrentSkipListMap<>();
+    // String IDs of resting orders the engine did not mint
+    private final OrderIds orderIds = new OrderIds();
     
-    // Order lookup by orderId
-    private final ConcurrentHashMap<String, OrderBookEntry> orderMap = new ConcurrentHashMap<>();
+    // Most recently rested order of each user with orders in the (on-heap)
+    // book, heading a chain through OrderBookEntry.userNext. Guarded by the lock.
+    private final UserIndex userOrders = new UserIndex();
+    
+    // Off-heap record storage replacing the entries and orderIndex, or null
+    private final OrderSlab slab;
+    
+    // Optional recycling of removed orders (see setEntryPool)
+    private OrderBookEntryPool entryPool;
+    private final List<OrderBookEntry> retired = new ArrayList<>();
     
     // Lock for complex operations
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
@@ -44,363 +76,1346 @@ public class ConcurrentOrderBook {
     // Listeners for order book events
     private final List<OrderBookListener> listeners = new CopyOnWriteArrayList<>();
     
+    // Events raised under the write lock, waiting to be dispatched outside
+    // it. Raised into pendingEvents under the write lock; a dispatcher swaps
+    // it for the drained dispatchingEvents under the write lock too, then
+    // hands the events out without it. Neither allocates once grown.
+    private EventBuffer pendingEvents = new EventBuffer();
+    private EventBuffer dispatchingEvents = new EventBuffer();
+    
+    // Serializes dispatch so listeners see events in the order they were raised
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    
+    // Level changes not yet drained by the writer, as parallel primitive
+    // arrays so recording them never allocates. Only the book's single writer
+    // records and drains them (see MarketSequencer).
+    private boolean[] pendingDeltaYes = new boolean[64];
+    private int[] pendingDeltaPrice = new int[64];
+    private int[] pendingDeltaQuantity = new int[64];
+    private int pendingDeltaCount;
+    
+    // Sequence number of the last recorded delta
+    private volatile long deltaSequence;
+    
+    // FIFO sequence of the last order to join a queue in this book, under
+    // the write lock. Per book, so markets never contend on a shared counter.
+    private long orderSequence;
+    
+    // Bumped on every level change, under the write lock
+    private volatile long version;
+    
+    // Snapshot of the latest version any reader asked for
+    private volatile BookSnapshot snapshot;
+    
+    // Lets one reader build a version's snapshot while the others wait for it
+    private final Object snapshotMonitor = new Object();
+    
+    // Seqlock over the published top of book: the writer stores plain fields,
+    // readers copy them under an optimistic stamp and retry if it moved
+    private final StampedLock topLock = new StampedLock();
+    private long topVersion;
+    private int topBid;
+    private int topBidSize;
+    private int topAsk;
+    private int topAskSize;
+    private int topNoBid;
+    private int topNoBidSize;
+    private int topTradePrice;
+    private int topTradeQuantity;
+    
+    // Last record handed to a reader, reused until the top of book moves
+    private volatile TopOfBook topOfBook = TopOfBook.EMPTY;
+    
+    // Last execution, written by the matcher under the write lock
+    private int lastTradePrice;
+    private int lastTradeQuantity;
+    
+    // In the opening auction orders queue without matching, see getClearingPrice
+    private volatile boolean auction;
+    
     public ConcurrentOrderBook(String marketTicker) {
+        this(marketTicker, null);
+    }
+    
+    /**
+     * Book that stores its resting orders in the given slab (null for on-heap).
+     * Orders are copied in when they rest, and every read returns a detached
+     * copy, so callers must not expect changes to an entry to reach the book.
+     */
+    public ConcurrentOrderBook(String marketTicker, OrderSlab slab) {
         this.marketTicker = marketTicker;
+        this.slab = slab;
+        this.bids = new PriceLadder(true, slab,
+            (price, quantityDelta, noBidQuantityDelta) -> levelChanged(true, price, quantityDelta));
+        this.asks = new PriceLadder(false, slab,
+            (price, quantityDelta, noBidQuantityDelta) -> levelChanged(false, 100 - price, noBidQuantityDelta));
+    }
+    
+    public String getMarketTicker() {
+        return marketTicker;
     }
     
     /**
-     * Add a new order to the book
+     * Whether resting orders are kept off-heap
      */
-    public boolean addOrder(OrderBookEntry order) {
+    public boolean isOffHeap() {
+        return slab != null;
+    }
+    
+    /**
+     * Record storage of an off-heap book, for the writer's matching loop
+     */
+    public OrderSlab getOrderSlab() {
+        return slab;
+    }
+    
+    /**
+     * Run a multi-step mutation, such as matching an incoming order, as one
+     * critical section. Readers never see a half-applied command, and listener
+     * events raised inside are dispatched once the lock is released.
+     */
+    public <T> T mutate(Supplier<T> mutation) {
+        beginMutation();
+        try {
+            return mutation.get();
+        } finally {
+            endMutation();
+        }
+    }
+    
+    /**
+     * Allocation-free form of mutate() for the matching hot path: every
+     * beginMutation() must be paired with endMutation() in a finally block.
+     */
+    public void beginMutation() {
         lock.writeLock().lock();
+    }
+    
+    public void endMutation() {
+        unlockWrite();
+        afterUnlock();
+    }
+    
+    /**
+     * mutate() for commands that touch many orders at once, such as an
+     * auction uncross: the level changes made inside are merged into one
+     * delta per price level.
+     */
+    public <T> T mutateCoalesced(Supplier<T> mutation) {
+        beginMutation();
         try {
-            // Check if order already exists
-            if (orderMap.containsKey(order.getOrderId())) {
-                return false;
-            }
-            
-            // Check for crosses before adding
-            if (checkForCross(order)) {
-                notifyListeners(listener -> listener.onCrossDetected(marketTicker, order));
-            }
-            
-            // Add to appropriate side based on normalized values
-            ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> book = 
-                order.isNormalizedBuy() ? bids : asks;
-            
-            Queue<OrderBookEntry> priceLevel = book.computeIfAbsent(
-                order.getNormalizedPrice(), 
-                k -> new LinkedBlockingDeque<>()
-            );
-            
-            priceLevel.offer(order);
-            orderMap.put(order.getOrderId(), order);
-            
-            notifyListeners(listener -> listener.onOrderAdded(marketTicker, order));
-            return true;
+            int firstDelta = pendingDeltaCount;
+            T result = mutation.get();
+            coalesceDeltas(firstDelta);
+            return result;
         } finally {
-            lock.writeLock().unlock();
+            endMutation();
         }
     }
     
     /**
-     * Cancel an order
+     * Whether the book is in its opening auction: orders rest as they come,
+     * crossed or not, until the writer uncrosses the book at the clearing price
      */
-    public boolean cancelOrder(String orderId) {
+    public boolean isInAuction() {
+        return auction;
+    }
+    
+    public void setAuction(boolean auction) {
+        this.auction = auction;
+    }
+    
+    /**
+     * Recycle removed orders into the given pool. Removed entries are held
+     * until the writer calls recycleRetired, since the executions, fills and
+     * events of the command that removed them may still refer to them. The
+     * pool belongs to the book's single writer.
+     */
+    public void setEntryPool(OrderBookEntryPool entryPool) {
+        this.entryPool = entryPool;
+    }
+    
+    public OrderBookEntryPool getEntryPool() {
+        return entryPool;
+    }
+    
+    /**
+     * Hand the orders removed since the last call back to the entry pool.
+     * Called by the writer once it has finished the command that removed
+     * them; does nothing inside a mutation.
+     */
+    public void recycleRetired() {
+        OrderBookEntryPool pool = entryPool;
+        if (pool == null || retired.isEmpty() || lock.isWriteLockedByCurrentThread()) {
+            return;
+        }
+        for (int i = 0; i < retired.size(); i++) {
+            pool.release(retired.get(i));
+        }
+        retired.clear();
+    }
+    
+    /**
+     * Add a new order to the book
+     */
+    public boolean addOrder(OrderBookEntry order) {
         lock.writeLock().lock();
         try {
-            OrderBookEntry order = orderMap.remove(orderId);
-            if (order == null) {
+            // Check if order already exists
+            if (slab != null ? slab.find(order.getId()) != OrderSlab.NIL : orderIndex.get(order.getId()) != null) {
+                return false;
+            }
+            if (!orderIds.register(order)) {
                 return false;
             }
             
-            // Remove from price level
-            ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> book = 
-                order.isNormalizedBuy() ? bids : asks;
-            
-            Queue<OrderBookEntry> priceLevel = book.get(order.getNormalizedPrice());
-            if (priceLevel != null) {
-                priceLevel.remove(order);
-                
-                // Clean up empty price levels
-                if (priceLevel.isEmpty()) {
-                    book.remove(order.getNormalizedPrice());
+            // Check for crosses before adding; an auction book crosses by design
+            if (!auction && checkForCross(order)) {
+                if (!listeners.isEmpty()) {
+                    raise(EventBuffer.CROSS_DETECTED, order, 0);
                 }
             }
             
-            notifyListeners(listener -> listener.onOrderCanceled(marketTicker, order));
-            return true;
+            // Add to appropriate side based on normalized values
+            PriceLadder book = order.isNormalizedBuy() ? bids : asks;
+            order.assignSequence(++orderSequence);
+            
+            if (slab != null) {
+                // The record is the resting order from now on
+                book.level(order.getNormalizedPrice()).appendSlot(slab.allocate(order));
+                retire(order);
+            } else {
+                book.level(order.getNormalizedPrice()).append(order);
+                orderIndex.putIfAbsent(order);
+                linkUserOrder(order);
+            }
+            
+            if (!listeners.isEmpty()) {
+                raise(EventBuffer.ADDED, order, 0);
+            }
         } finally {
-            lock.writeLock().unlock();
+            unlockWrite();
         }
+        
+        afterUnlock();
+        return true;
     }
     
     /**
-     * Get order by ID
+     * Cancel an order by its Kalshi string ID
      */
-    public OrderBookEntry getOrder(String orderId) {
-        return orderMap.get(orderId);
+    public boolean cancelOrder(String orderId) {
+        long id = orderIds.lookup(orderId);
+        return id != OrderIds.UNKNOWN && cancelOrder(id);
     }
     
     /**
-     * Get best bid (highest buy price)
+     * Cancel an order
      */
-    public Map.Entry<Integer, Queue<OrderBookEntry>> getBestBid() {
-        lock.readLock().lock();
+    public boolean cancelOrder(long id) {
+        lock.writeLock().lock();
         try {
-            return bids.firstEntry();
+            return cancelLocked(id) != null;
         } finally {
-            lock.readLock().unlock();
+            unlockWrite();
+            afterUnlock();
         }
     }
     
     /**
-     * Get best ask (lowest sell price)
+     * Cancel several orders as one command, e.g. every GTD order that expired
+     * in the same tick. IDs no longer resting are skipped. The level changes
+     * are merged into one delta per price level touched.
+     * @return Kalshi IDs of the canceled orders
      */
-    public Map.Entry<Integer, Queue<OrderBookEntry>> getBestAsk() {
-        lock.readLock().lock();
+    public List<String> cancelOrders(long[] ids) {
+        List<String> canceled = new ArrayList<>(ids.length);
+        lock.writeLock().lock();
         try {
-            return asks.firstEntry();
+            int firstDelta = pendingDeltaCount;
+            for (long id : ids) {
+                String orderId = cancelLocked(id);
+                if (orderId != null) {
+                    canceled.add(orderId);
+                }
+            }
+            coalesceDeltas(firstDelta);
         } finally {
-            lock.readLock().unlock();
+            unlockWrite();
+            afterUnlock();
         }
+        return canceled;
     }
     
     /**
-     * Remove a filled order from the order map
+     * Cancel every resting order in the book as one command, for a market
+     * that closes. Leaves one delta per price level that was occupied.
+     * @return Kalshi IDs of the canceled orders
      */
-    public void removeFilledOrder(String orderId) {
-        orderMap.remove(orderId);
+    public List<String> cancelAllOrders() {
+        lock.writeLock().lock();
+        try {
+            // Collect first; cancelling unlinks the levels being walked
+            long[] ids = new long[slab != null ? slab.size() : orderIndex.size()];
+            int count = 0;
+            for (PriceLadder ladder : new PriceLadder[] {bids, asks}) {
+                for (int price = ladder.bestPrice(); price != PriceLadder.NONE; price = ladder.nextPrice(price)) {
+                    PriceLevel level = ladder.level(price);
+                    if (slab != null) {
+                        for (int slot = level.getFirstSlot(); slot != OrderSlab.NIL; slot = slab.nextAtLevel(slot)) {
+                            ids[count++] = slab.id(slot);
+                        }
+                    } else {
+                        for (OrderBookEntry order = level.getFirst(); order != null; order = order.next) {
+                            ids[count++] = order.getId();
+                        }
+                    }
+                }
+            }
+            return cancelOrders(count == ids.length ? ids : Arrays.copyOf(ids, count));
+        } finally {
+            unlockWrite();
+            afterUnlock();
+        }
     }
     
     /**
-     * Remove empty ask level
+     * Remove a resting order under the write lock, queueing its cancel event
+     * @return the order's Kalshi ID, or null if it is not resting here
      */
-    public void removeEmptyAskLevel(int price) {
-        asks.remove(price);
+    private String cancelLocked(long id) {
+        if (slab != null) {
+            int slot = slab.find(id);
+            if (slot == OrderSlab.NIL) {
+                return null;
+            }
+            OrderBookEntry order = slab.toEntry(slot);
+            if (!listeners.isEmpty()) {
+                raise(EventBuffer.CANCELED, order, 0);
+            }
+            removeSlot(slot);
+            return order.getOrderId();
+        }
+        
+        OrderBookEntry order = orderIndex.remove(id);
+        if (order == null) {
+            return null;
+        }
+        orderIds.release(id);
+        
+        // Unlink straight from the order's price level, no queue scan.
+        // The level clears itself from the ladder once it is empty.
+        PriceLevel priceLevel = order.level;
+        if (priceLevel != null) {
+            priceLevel.unlink(order);
+        }
+        unlinkUserOrder(order);
+        
+        if (!listeners.isEmpty()) {
+            raise(EventBuffer.CANCELED, order, 0);
+        }
+        String orderId = order.getOrderId();
+        retire(order);
+        return orderId;
     }
     
     /**
-     * Remove empty bid level
+     * Cancel every order the user has resting in this book as one command.
+     * Walks the user's own chain of orders, so the cost does not depend on
+     * how deep the book is, and merges the level changes into one delta per
+     * price level touched.
+     * @return Kalshi IDs of the canceled orders, empty if the user had none
      */
-    public void removeEmptyBidLevel(int price) {
-        bids.remove(price);
+    public List<String> cancelUserOrders(String userId) {
+        List<String> canceled = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            int firstDelta = pendingDeltaCount;
+            if (slab != null) {
+                int slot = slab.firstForUser(userId);
+                while (slot != OrderSlab.NIL) {
+                    int next = slab.nextForUser(slot);
+                    OrderBookEntry order = slab.toEntry(slot);
+                    canceled.add(order.getOrderId());
+                    if (!listeners.isEmpty()) {
+                        raise(EventBuffer.CANCELED, order, 0);
+                    }
+                    removeSlot(slot);
+                    slot = next;
+                }
+            } else {
+                OrderBookEntry order = userOrders.remove(userId);
+                while (order != null) {
+                    OrderBookEntry next = order.userNext;
+                    order.userPrev = null;
+                    order.userNext = null;
+                    orderIndex.remove(order.getId());
+                    orderIds.release(order.getId());
+                    if (order.level != null) {
+                        order.level.unlink(order);
+                    }
+                    canceled.add(order.getOrderId());
+                    if (!listeners.isEmpty()) {
+                        raise(EventBuffer.CANCELED, order, 0);
+                    }
+                    retire(order);
+                    order = next;
+                }
+            }
+            coalesceDeltas(firstDelta);
+        } finally {
+            unlockWrite();
+            afterUnlock();
+        }
+        return canceled;
     }
     
     /**
-     * Notify listeners of order execution
+     * Whether the user has any order resting in this book
      */
-    public void notifyOrderExecuted(OrderBookEntry order, int executedQuantity) {
-        notifyListeners(listener -> listener.onOrderExecuted(marketTicker, order, executedQuantity));
+    public boolean hasUserOrders(String userId) {
+        lock.readLock().lock();
+        try {
+            return slab != null ? slab.firstForUser(userId) != OrderSlab.NIL : userOrders.get(userId) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
     
     /**
-     * Get orderbook snapshot in Kalshi format
+     * Number of orders the user has resting in this book
      */
-    public Orderbook getOrderbookSnapshot(int depth) {
+    public int getUserOrderCount(String userId) {
         lock.readLock().lock();
         try {
-            CopyOnWriteArrayList<List<Integer>> yesBids = new CopyOnWriteArrayList<>();
-            List<List<Integer>> yesAsks = new CopyOnWriteArrayList<>();
-            List<List<Integer>> noBids = new CopyOnWriteArrayList<>();
-            List<List<Integer>> noAsks = new CopyOnWriteArrayList<>();
-            
-            // Aggregate orders by price level and convert back to YES/NO format
-            aggregateLevels(bids, true, depth, yesBids, yesAsks, noBids, noAsks);
-            aggregateLevels(asks, false, depth, yesBids, yesAsks, noBids, noAsks);
-            
-            // Combine YES bids and asks into a single list
-            List<List<Integer>> yesOrderbook = new CopyOnWriteArrayList<>();
-            yesOrderbook.addAll(yesBids);
-            yesOrderbook.addAll(yesAsks);
-            
-            return new Orderbook(
-                yesOrderbook.isEmpty() ? null : yesOrderbook,
-                null  // No longer returning NO side as per design
-            );
+            int count = 0;
+            if (slab != null) {
+                for (int slot = slab.firstForUser(userId); slot != OrderSlab.NIL; slot = slab.nextForUser(slot)) {
+                    count++;
+                }
+            } else {
+                for (OrderBookEntry order = userOrders.get(userId); order != null; order = order.userNext) {
+                    count++;
+                }
+            }
+            return count;
         } finally {
             lock.readLock().unlock();
         }
     }
     
     /**
-     * Get orderbook snapshot in proper Kalshi API format with separated YES and NO sides
-     * Returns structure matching: {"yes": [[price, qty], ...], "no": [[price, qty], ...]}
-     * 
-     * In Kalshi's format:
-     * - YES array contains Buy YES orders (our bids where side=yes)
-     * - NO array contains Buy NO orders (which we store as Sell YES)
-     * 
-     * Since we normalize everything to YES:
-     * - Buy YES @ X → stored as Buy @ X (in bids)
-     * - Buy NO @ X → stored as Sell @ (100-X) (in asks)
+     * Every resting order, level by level from the best price and in time
+     * priority within a level, so adding them to an empty book in this order
+     * rebuilds the same queues. Off-heap books return detached copies.
      */
-    public OrderbookResponse.OrderbookData getOrderbookSnapshotKalshiFormat(int depth) {
+    public List<OrderBookEntry> getRestingOrders() {
         lock.readLock().lock();
         try {
-            List<List<Integer>> yesSide = new ArrayList<>();
-            List<List<Integer>> noSide = new ArrayList<>();
-            
-            // In buy-only architecture, we need to separate Buy YES and Buy NO orders
-            // Both are stored in the order book, but we need to identify them correctly
-            
-            // Process Buy YES orders (these appear in bids)
-            Map<Integer, Integer> yesLevels = new TreeMap<>(Comparator.reverseOrder()); // YES: descending
-            Map<Integer, Integer> noLevels = new TreeMap<>(); // NO: ascending (natural order)
-            
-            // Check bids for Buy YES orders
-            for (Map.Entry<Integer, Queue<OrderBookEntry>> level : bids.entrySet()) {
-                for (OrderBookEntry order : level.getValue()) {
-                    if (order.getSide() == KalshiSide.yes && order.getAction().equals("buy")) {
-                        yesLevels.merge(order.getPrice(), order.getQuantity(), Integer::sum);
-                    }
-                }
-            }
-            
-            // Check asks for Buy NO orders (they appear as Sell YES after normalization)
-            for (Map.Entry<Integer, Queue<OrderBookEntry>> level : asks.entrySet()) {
-                for (OrderBookEntry order : level.getValue()) {
-                    if (order.getSide() == KalshiSide.no && order.getAction().equals("buy")) {
-                        // This is a Buy NO order at its original price
-                        noLevels.merge(order.getPrice(), order.getQuantity(), Integer::sum);
+            List<OrderBookEntry> orders = new ArrayList<>(slab != null ? slab.size() : orderIndex.size());
+            for (PriceLadder ladder : new PriceLadder[] {bids, asks}) {
+                for (int price = ladder.bestPrice(); price != PriceLadder.NONE; price = ladder.nextPrice(price)) {
+                    PriceLevel level = ladder.level(price);
+                    if (slab != null) {
+                        for (int slot = level.getFirstSlot(); slot != OrderSlab.NIL; slot = slab.nextAtLevel(slot)) {
+                            orders.add(slab.toEntry(slot));
+                        }
+                    } else {
+                        for (OrderBookEntry order = level.getFirst(); order != null; order = order.next) {
+                            orders.add(order);
+                        }
                     }
                 }
             }
-            
-            // Also check bids for Sell NO orders (they were converted to Buy YES)
-            for (Map.Entry<Integer, Queue<OrderBookEntry>> level : bids.entrySet()) {
-                for (OrderBookEntry order : level.getValue()) {
-                    if (order.getSide() == KalshiSide.no && order.getAction().equals("sell")) {
-                        // This was originally Sell NO @ X, converted to Buy YES @ (100-X)
-                        // It should appear as Buy YES at the normalized price
-                        yesLevels.merge(order.getNormalizedPrice(), order.getQuantity(), Integer::sum);
-                    }
-                }
-            }
-            
-            // Build YES side (up to depth)
-            int count = 0;
-            for (Map.Entry<Integer, Integer> entry : yesLevels.entrySet()) {
-                if (count >= depth) break;
-                yesSide.add(Arrays.asList(entry.getKey(), entry.getValue()));
-                count++;
-            }
-            
-            // Build NO side (up to depth)
-            count = 0;
-            for (Map.Entry<Integer, Integer> entry : noLevels.entrySet()) {
-                if (count >= depth) break;
-                noSide.add(Arrays.asList(entry.getKey(), entry.getValue()));
-                count++;
-            }
-            
-            return new OrderbookResponse.OrderbookData(yesSide, noSide);
+            return orders;
         } finally {
             lock.readLock().unlock();
         }
     }
+
+    private void linkUserOrder(OrderBookEntry order) {
+        OrderBookEntry head = userOrders.put(order);
+        order.userPrev = null;
+        order.userNext = head;
+        if (head != null) {
+            head.userPrev = order;
+        }
+    }
     
-    /**
-     * Check for crosses (both self-cross and external cross)
-     */
-    private boolean checkForCross(OrderBookEntry newOrder) {
-        if (newOrder.isNormalizedBuy()) {
-            // Check if buy crosses with any ask
-            Map.Entry<Integer, Queue<OrderBookEntry>> bestAsk = asks.firstEntry();
-            if (bestAsk != null && newOrder.getNormalizedPrice() >= bestAsk.getKey()) {
-                return true; // Self-cross detected
-            }
+    private void unlinkUserOrder(OrderBookEntry order) {
+        OrderBookEntry prev = order.userPrev;
+        OrderBookEntry next = order.userNext;
+        if (prev != null) {
+            prev.userNext = next;
+        } else if (next != null) {
+            userOrders.put(next);
         } else {
-            // Check if sell crosses with any bid
-            Map.Entry<Integer, Queue<OrderBookEntry>> bestBid = bids.firstEntry();
-            if (bestBid != null && newOrder.getNormalizedPrice() <= bestBid.getKey()) {
-                return true; // Self-cross detected
-            }
+            userOrders.remove(order.getUserId());
         }
-        
-        // Check for external cross after adding any order
-        // This needs to check if YES bid + NO bid > 100 (not >= 100)
-        return checkExternalCross();
+        if (next != null) {
+            next.userPrev = prev;
+        }
+        order.userPrev = null;
+        order.userNext = null;
     }
     
     /**
-     * Check for external cross where YES bid + NO bid > 100
+     * Amend a resting order to a new limit price and resting quantity, in the
+     * order's own side/action terms. Lowering the quantity at the same price
+     * keeps the order's place in the queue and changes its level by a single
+     * delta. Raising the quantity sends it to the back of the queue, still as
+     * one delta; a new price requeues it at the back of the new level.
+     * 
+     * A new price that would trade is refused (see wouldTrade): such amends
+     * are a cancel/replace through the matching engine.
+     * @return false if the order is not resting in this book
      */
-    private boolean checkExternalCross() {
-        Map.Entry<Integer, Queue<OrderBookEntry>> bestBid = bids.firstEntry();
-        if (bestBid == null) return false;
+    public boolean amendOrder(long id, int price, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Amended quantity must be positive, got: " + quantity);
+        }
+        if (price < PriceLadder.MIN_PRICE || price > PriceLadder.MAX_PRICE) {
+            throw new IllegalArgumentException("Price must be between 1 and 99 cents, got: " + price);
+        }
         
-        // Find best NO bid (which appears as YES ask from NO buy orders)
-        for (Map.Entry<Integer, Queue<OrderBookEntry>> askLevel : asks.entrySet()) {
-            for (OrderBookEntry order : askLevel.getValue()) {
-                if (order.getSide() == KalshiSide.no && order.getAction().equals("buy")) {
-                    int noBidPrice = order.getPrice();
-                    int yesBidPrice = bestBid.getKey();
-                    if (yesBidPrice + noBidPrice > 100) {
-                        return true; // External cross detected
-                    }
-                    break; // Only need to check the best NO bid
+        lock.writeLock().lock();
+        try {
+            if (slab != null) {
+                int slot = slab.find(id);
+                if (slot == OrderSlab.NIL) {
+                    return false;
+                }
+                amendSlot(slot, price, quantity);
+                if (!listeners.isEmpty()) {
+                    OrderBookEntry amended = slab.toEntry(slot);
+                    raise(EventBuffer.AMENDED, amended, 0);
                 }
+                return true;
             }
-        }
-        
-        return false;
-    }
-    
-    /**
-     * Aggregate orders by price level and separate into YES/NO sides
-     */
-    private void aggregateLevels(
-            ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> book,
-            boolean isBidSide,
-            int maxLevels,
-            List<List<Integer>> yesBids,
-            List<List<Integer>> yesAsks,
-            List<List<Integer>> noBids,
-            List<List<Integer>> noAsks) {
-        
-        int levelCount = 0;
-        for (Map.Entry<Integer, Queue<OrderBookEntry>> level : book.entrySet()) {
-            if (levelCount >= maxLevels) break;
             
-            // Aggregate all orders at this normalized price level
-            int totalQuantity = 0;
-            for (OrderBookEntry order : level.getValue()) {
-                totalQuantity += order.getQuantity();
+            OrderBookEntry order = orderIndex.get(id);
+            if (order == null) {
+                return false;
             }
             
-            // All orders are shown as YES at their normalized price
-            int normalizedPrice = level.getKey();
-            List<Integer> priceLevel = new CopyOnWriteArrayList<>(Arrays.asList(normalizedPrice, totalQuantity));
-            
-            // Determine if this level is bid or ask based on the book it came from
-            if (isBidSide) {
-                yesBids.add(priceLevel);
+            PriceLevel priceLevel = order.level;
+            if (price == order.getPrice()) {
+                int change = quantity - order.getQuantity();
+                if (change > 0) {
+                    priceLevel.moveToBack(order);
+                }
+                order.amend(price, quantity, change > 0 ? ++orderSequence : order.getSequence());
+                priceLevel.quantityChanged(order.isNoBid(), change);
             } else {
-                yesAsks.add(priceLevel);
+                requireNoTrade(order.getSide(), order.getAction(), price);
+                priceLevel.unlink(order);
+                order.amend(price, quantity, ++orderSequence);
+                (order.isNormalizedBuy() ? bids : asks).level(order.getNormalizedPrice()).append(order);
             }
             
-            // We no longer populate NO sides as everything is normalized to YES
-            
-            levelCount++;
+            if (!listeners.isEmpty()) {
+                raise(EventBuffer.AMENDED, order, 0);
+            }
+        } finally {
+            unlockWrite();
+            afterUnlock();
         }
-        
-        // Sort the lists
-        yesBids.sort((a, b) -> b.get(0).compareTo(a.get(0))); // High to low
-        yesAsks.sort(Comparator.comparing(a -> a.get(0))); // Low to high
-        noBids.sort((a, b) -> b.get(0).compareTo(a.get(0))); // High to low
-        noAsks.sort(Comparator.comparing(a -> a.get(0))); // Low to high
+        return true;
     }
     
-    // Listener management
-    public void addListener(OrderBookListener listener) {
-        listeners.add(listener);
+    private void amendSlot(int slot, int price, int quantity) {
+        PriceLevel priceLevel = levelOf(slot);
+        if (price == slab.price(slot)) {
+            int change = quantity - slab.quantity(slot);
+            if (change > 0) {
+                priceLevel.moveSlotToBack(slot);
+            }
+            slab.amend(slot, price, quantity, change > 0 ? ++orderSequence : slab.sequence(slot));
+            priceLevel.quantityChanged(slab.isNoBid(slot), change);
+        } else {
+            OrderBookEntry order = slab.toEntry(slot);
+            requireNoTrade(order.getSide(), order.getAction(), price);
+            priceLevel.unlinkSlot(slot);
+            slab.amend(slot, price, quantity, ++orderSequence);
+            levelOf(slot).appendSlot(slot);
+        }
     }
     
-    public void removeListener(OrderBookListener listener) {
-        listeners.remove(listener);
+    private void requireNoTrade(KalshiSide side, String action, int price) {
+        // Nothing trades until an auction book is uncrossed
+        if (!auction && wouldTradeAt(OrderBookEntry.normalizeIsBuy(side, action), OrderBookEntry.normalizePrice(side, price))) {
+            throw new IllegalStateException("Amended price " + price + " would trade against the book");
+        }
     }
     
-    private void notifyListeners(java.util.function.Consumer<OrderBookListener> action) {
-        for (OrderBookListener listener : listeners) {
-            try {
-                action.accept(listener);
-                log.info("Notified listener "+listener+" of order book event for market "+marketTicker+" (thread "+Thread.currentThread().getName()+")");
-            } catch (Exception e) {
-                log.info("Listener notify failed; maybe it is gone? "+e.getMessage());
-                // Log error but don't let one listener break others
-                // e.printStackTrace();
-            }
+    /**
+     * Whether an order with this side, action and price would match resting
+     * orders, i.e. is marketable rather than able to rest
+     */
+    public boolean wouldTrade(KalshiSide side, String action, int price) {
+        boolean buy = OrderBookEntry.normalizeIsBuy(side, action);
+        int normalizedPrice = OrderBookEntry.normalizePrice(side, price);
+        if (lock.isWriteLockedByCurrentThread()) {
+            return wouldTradeAt(buy, normalizedPrice);
+        }
+        lock.readLock().lock();
+        try {
+            return wouldTradeAt(buy, normalizedPrice);
+        } finally {
+            lock.readLock().unlock();
         }
     }
     
     /**
-     * Interface for order book event listeners
+     * How much of an order on the YES-normalized book could fill right now:
+     * the aggregated quantity of the opposite levels up to its limit price,
+     * capped at {@code quantity}. Reads only the per-level aggregates, so it
+     * costs O(levels crossed) and never changes the book.
      */
-    public interface OrderBookListener {
-        void onOrderAdded(String marketTicker, OrderBookEntry order);
-        void onOrderCanceled(String marketTicker, OrderBookEntry order);
-        void onOrderExecuted(String marketTicker, OrderBookEntry order, int executedQuantity);
-        void onCrossDetected(String marketTicker, OrderBookEntry order);
+    public int getFillableQuantity(boolean normalizedBuy, int normalizedPrice, int quantity) {
+        if (lock.isWriteLockedByCurrentThread()) {
+            return fillableQuantity(normalizedBuy, normalizedPrice, quantity);
+        }
+        lock.readLock().lock();
+        try {
+            return fillableQuantity(normalizedBuy, normalizedPrice, quantity);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Uncrossing price of an auction book: the price at which the most
+     * contracts trade when every bid at or above it meets every ask at or
+     * below it. Ties go to the price leaving the smallest surplus on either
+     * side, then to the middle of the prices still tied.
+     * @return the clearing price in normalized YES terms, or 0 if the book is not crossed
+     */
+    public int getClearingPrice() {
+        if (lock.isWriteLockedByCurrentThread()) {
+            return clearingPrice();
+        }
+        lock.readLock().lock();
+        try {
+            return clearingPrice();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private int clearingPrice() {
+        int bestBid = bids.bestPrice();
+        int bestAsk = asks.bestPrice();
+        if (bestBid == PriceLadder.NONE || bestAsk == PriceLadder.NONE || bestBid < bestAsk) {
+            return PriceLadder.NONE;
+        }
+        
+        // Cumulative curves: bids at or above each price, asks at or below it
+        int[] demand = new int[101];
+        int[] supply = new int[101];
+        for (int price = bestBid; price != PriceLadder.NONE; price = bids.nextPrice(price)) {
+            demand[price] = bids.level(price).getQuantity();
+        }
+        for (int price = bestAsk; price != PriceLadder.NONE; price = asks.nextPrice(price)) {
+            supply[price] = asks.level(price).getQuantity();
+        }
+        for (int price = 98; price >= 1; price--) {
+            demand[price] += demand[price + 1];
+        }
+        for (int price = 2; price <= 99; price++) {
+            supply[price] += supply[price - 1];
+        }
+        
+        // Only prices between the best ask and the best bid can trade anything
+        int[] tied = new int[bestBid - bestAsk + 1];
+        int tiedCount = 0;
+        int bestVolume = 0;
+        int bestSurplus = Integer.MAX_VALUE;
+        for (int price = bestAsk; price <= bestBid; price++) {
+            int volume = Math.min(demand[price], supply[price]);
+            int surplus = Math.abs(demand[price] - supply[price]);
+            if (volume > bestVolume || (volume == bestVolume && surplus < bestSurplus)) {
+                bestVolume = volume;
+                bestSurplus = surplus;
+                tiedCount = 0;
+            } else if (volume != bestVolume || surplus != bestSurplus) {
+                continue;
+            }
+            tied[tiedCount++] = price;
+        }
+        return bestVolume == 0 ? PriceLadder.NONE : tied[(tiedCount - 1) / 2];
+    }
+    
+    private int fillableQuantity(boolean buy, int normalizedPrice, int quantity) {
+        PriceLadder book = buy ? asks : bids;
+        int available = 0;
+        for (int price = book.bestPrice(); price != PriceLadder.NONE && available < quantity; price = book.nextPrice(price)) {
+            if (buy ? price > normalizedPrice : price < normalizedPrice) {
+                break;
+            }
+            available += book.level(price).getQuantity();
+        }
+        return Math.min(available, quantity);
+    }
+    
+    private boolean wouldTradeAt(boolean buy, int normalizedPrice) {
+        if (buy) {
+            int bestAsk = asks.bestPrice();
+            return bestAsk != PriceLadder.NONE && normalizedPrice >= bestAsk;
+        }
+        int bestBid = bids.bestPrice();
+        return bestBid != PriceLadder.NONE && normalizedPrice <= bestBid;
+    }
+    
+    /**
+     * Get order by its Kalshi string ID
+     */
+    public OrderBookEntry getOrder(String orderId) {
+        long id = orderIds.lookup(orderId);
+        return id == OrderIds.UNKNOWN ? null : getOrder(id);
+    }
+    
+    /**
+     * Get order by ID. Off-heap books return a detached copy.
+     */
+    public OrderBookEntry getOrder(long id) {
+        if (lock.isWriteLockedByCurrentThread()) {
+            return findOrder(id);
+        }
+        lock.readLock().lock();
+        try {
+            return findOrder(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private OrderBookEntry findOrder(long id) {
+        if (slab != null) {
+            int slot = slab.find(id);
+            return slot == OrderSlab.NIL ? null : slab.toEntry(slot);
+        }
+        return orderIndex.get(id);
+    }
+    
+    /**
+     * Get best bid (highest buy price)
+     */
+    public Map.Entry<Integer, Queue<OrderBookEntry>> getBestBid() {
+        if (lock.isWriteLockedByCurrentThread()) {
+            return bids.bestLevel(); // the matcher, already inside mutate()
+        }
+        lock.readLock().lock();
+        try {
+            return bids.bestLevel();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get best ask (lowest sell price)
+     */
+    public Map.Entry<Integer, Queue<OrderBookEntry>> getBestAsk() {
+        if (lock.isWriteLockedByCurrentThread()) {
+            return asks.bestLevel(); // the matcher, already inside mutate()
+        }
+        lock.readLock().lock();
+        try {
+            return asks.bestLevel();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Best bid level for the book's writer inside a mutation, or null.
+     * Takes no lock.
+     */
+    public PriceLevel getBestBidLevel() {
+        return bids.bestLevel();
+    }
+    
+    /**
+     * Best ask level for the book's writer inside a mutation, or null.
+     * Takes no lock.
+     */
+    public PriceLevel getBestAskLevel() {
+        return asks.bestLevel();
+    }
+    
+    /**
+     * Best YES bid price in cents, or 0 when there are no bids
+     */
+    public int getBestYesBidPrice() {
+        return bids.bestPrice();
+    }
+    
+    /**
+     * Best NO bid price in cents (Buy NO orders only), or 0 when there are none
+     */
+    public int getBestNoBidPrice() {
+        int price = asks.lowestNoBidPrice();
+        return price == PriceLadder.NONE ? PriceLadder.NONE : 100 - price;
+    }
+    
+    /**
+     * Remove a filled order from the order map, unlinking it from its price
+     * level if the caller has not already done so
+     */
+    public void removeFilledOrder(String orderId) {
+        long id = orderIds.lookup(orderId);
+        if (id != OrderIds.UNKNOWN) {
+            removeFilledOrder(id);
+        }
+    }
+    
+    public void removeFilledOrder(long id) {
+        lock.writeLock().lock();
+        try {
+            if (slab != null) {
+                int slot = slab.find(id);
+                if (slot != OrderSlab.NIL) {
+                    removeSlot(slot);
+                }
+                return;
+            }
+            
+            OrderBookEntry order = orderIndex.remove(id);
+            if (order == null) {
+                return;
+            }
+            orderIds.release(id);
+            PriceLevel priceLevel = order.level;
+            if (priceLevel != null) {
+                priceLevel.unlink(order);
+            }
+            unlinkUserOrder(order);
+            retire(order);
+        } finally {
+            unlockWrite();
+            afterUnlock();
+        }
+    }
+    
+    /**
+     * Fill part or all of an on-heap resting order, for the writer's matching
+     * loop inside a mutation. A fully filled order is removed from the book.
+     */
+    public void fillResting(OrderBookEntry order, int quantity) {
+        fillResting(order, quantity, order.getNormalizedPrice());
+    }
+    
+    /**
+     * fillResting at a given execution price, for an auction uncross where
+     * both orders trade at the clearing price
+     */
+    public void fillResting(OrderBookEntry order, int quantity, int executionPrice) {
+        lock.writeLock().lock();
+        try {
+            order.reduceQuantity(quantity);
+            notifyOrderExecuted(order, quantity, executionPrice);
+            if (order.getQuantity() == 0) {
+                removeFilledOrder(order.getId());
+            }
+        } finally {
+            unlockWrite();
+            afterUnlock();
+        }
+    }
+    
+    /**
+     * Fill part or all of an off-heap resting order, for the writer's matching
+     * loop inside a mutation. A fully filled record is removed from the book.
+     * @return a detached copy of the order after the fill
+     */
+    public OrderBookEntry fillResting(int slot, int quantity) {
+        return fillResting(slot, quantity, slab.normalizedPrice(slot));
+    }
+    
+    /**
+     * fillResting at a given execution price, for an auction uncross where
+     * both orders trade at the clearing price
+     */
+    public OrderBookEntry fillResting(int slot, int quantity, int executionPrice) {
+        int remaining = slab.quantity(slot) - quantity;
+        if (quantity <= 0 || remaining < 0) {
+            throw new IllegalArgumentException("Cannot fill " + quantity + " of order " + slab.id(slot)
+                + " with " + slab.quantity(slot) + " remaining");
+        }
+        
+        slab.setQuantity(slot, remaining);
+        levelOf(slot).quantityReduced(slab.isNoBid(slot), quantity);
+        
+        OrderBookEntry filled = slab.toEntry(slot);
+        notifyOrderExecuted(filled, quantity, executionPrice);
+        if (remaining == 0) {
+            removeSlot(slot);
+        }
+        return filled;
+    }
+    
+    private void removeSlot(int slot) {
+        orderIds.release(slab.id(slot));
+        levelOf(slot).unlinkSlot(slot);
+        slab.free(slot);
+    }
+    
+    private PriceLevel levelOf(int slot) {
+        return (slab.isNormalizedBuy(slot) ? bids : asks).level(slab.normalizedPrice(slot));
+    }
+    
+    private void retire(OrderBookEntry order) {
+        if (entryPool != null) {
+            retired.add(order);
+        }
+    }
+    
+    /**
+     * Dispatch buffered events. Does nothing while the calling thread holds
+     * the lock.
+     */
+    private void afterUnlock() {
+        if (lock.isWriteLockedByCurrentThread()) {
+            return;
+        }
+        dispatchPendingEvents();
+    }
+    
+    /**
+     * Remove empty ask level
+     */
+    public void removeEmptyAskLevel(int price) {
+        removeEmptyLevel(asks, price);
+    }
+    
+    /**
+     * Remove empty bid level
+     */
+    public void removeEmptyBidLevel(int price) {
+        removeEmptyLevel(bids, price);
+    }
+    
+    private void removeEmptyLevel(PriceLadder book, int price) {
+        lock.writeLock().lock();
+        try {
+            if (book.isOccupied(price) && book.level(price).isEmpty()) {
+                book.markEmpty(price);
+            }
+        } finally {
+            unlockWrite();
+        }
+    }
+    
+    /**
+     * Notify listeners of order execution. Called by the matching engine from
+     * inside mutate(), so the event waits until the command releases the lock.
+     */
+    public void notifyOrderExecuted(OrderBookEntry order, int executedQuantity) {
+        // Executions happen at the resting order's price
+        notifyOrderExecuted(order, executedQuantity, order.getNormalizedPrice());
+    }
+    
+    /**
+     * notifyOrderExecuted for an execution at a given normalized price
+     */
+    public void notifyOrderExecuted(OrderBookEntry order, int executedQuantity, int executionPrice) {
+        lastTradePrice = executionPrice;
+        lastTradeQuantity = executedQuantity;
+        if (!listeners.isEmpty()) {
+            raise(EventBuffer.EXECUTED, order, executedQuantity);
+        }
+        dispatchPendingEvents();
+    }
+    
+    /**
+     * Buffer an event for dispatch once the lock is released
+     */
+    private void raise(byte type, OrderBookEntry order, int quantity) {
+        if (lock.isWriteLockedByCurrentThread()) {
+            pendingEvents.add(type, order, quantity);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pendingEvents.add(type, order, quantity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Hand buffered events to the listeners. Does nothing while the calling
+     * thread still holds the book lock, so listener work (persistence,
+     * snapshot publishing) never blocks other readers or writers of the book.
+     */
+    private void dispatchPendingEvents() {
+        // A thread dispatches the events it raised itself, so it sees their count.
+        // Events a listener raises mid-dispatch are left to the dispatch under way.
+        if (pendingEvents.count == 0 || lock.isWriteLockedByCurrentThread() || dispatchLock.isHeldByCurrentThread()) {
+            return;
+        }
+        
+        dispatchLock.lock();
+        try {
+            while (pendingEvents.count > 0) {
+                EventBuffer events;
+                lock.writeLock().lock();
+                try {
+                    events = pendingEvents;
+                    pendingEvents = dispatchingEvents;
+                    dispatchingEvents = events;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                for (int i = 0; i < events.count; i++) {
+                    notifyListeners(events.types[i], events.orders[i], events.quantities[i]);
+                }
+                events.clear();
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+    
+    private void levelChanged(boolean yesSide, int price, int delta) {
+        version++;
+        if (delta != 0) {
+            int slot = pendingDeltaCount;
+            if (slot == pendingDeltaPrice.length) {
+                pendingDeltaYes = Arrays.copyOf(pendingDeltaYes, slot * 2);
+                pendingDeltaPrice = Arrays.copyOf(pendingDeltaPrice, slot * 2);
+                pendingDeltaQuantity = Arrays.copyOf(pendingDeltaQuantity, slot * 2);
+            }
+            pendingDeltaYes[slot] = yesSide;
+            pendingDeltaPrice[slot] = price;
+            pendingDeltaQuantity[slot] = delta;
+            pendingDeltaCount = slot + 1;
+            deltaSequence++;
+        }
+    }
+    
+    /**
+     * Merge the level changes recorded from index {@code from} on into one
+     * per price level, in order of first change. Merged-away changes give
+     * back their sequence numbers, so the drained deltas stay contiguous.
+     */
+    private void coalesceDeltas(int from) {
+        int count = pendingDeltaCount;
+        int kept = from;
+        for (int i = from; i < count; i++) {
+            int match = kept;
+            for (int j = from; j < kept; j++) {
+                if (pendingDeltaYes[j] == pendingDeltaYes[i] && pendingDeltaPrice[j] == pendingDeltaPrice[i]) {
+                    match = j;
+                    break;
+                }
+            }
+            if (match < kept) {
+                pendingDeltaQuantity[match] += pendingDeltaQuantity[i];
+            } else {
+                pendingDeltaYes[kept] = pendingDeltaYes[i];
+                pendingDeltaPrice[kept] = pendingDeltaPrice[i];
+                pendingDeltaQuantity[kept] = pendingDeltaQuantity[i];
+                kept++;
+            }
+        }
+        deltaSequence -= count - kept;
+        pendingDeltaCount = kept;
+    }
+    
+    /**
+     * Take the level changes recorded since the last drain, in sequence order.
+     * Must be called from the book's writer.
+     */
+    public List<OrderBookDelta> drainDeltas() {
+        int count = pendingDeltaCount;
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        long firstSequence = deltaSequence - count + 1;
+        List<OrderBookDelta> drained = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            drained.add(new OrderBookDelta(firstSequence + i, pendingDeltaYes[i] ? "yes" : "no",
+                pendingDeltaPrice[i], pendingDeltaQuantity[i]));
+        }
+        pendingDeltaCount = 0;
+        return drained;
+    }
+    
+    /**
+     * Drop the recorded level changes without materializing them, for writers
+     * with nobody consuming deltas. Sequence numbers still advance.
+     */
+    public void discardDeltas() {
+        pendingDeltaCount = 0;
+    }
+    
+    /**
+     * Sequence number of the last level change applied to the book. A snapshot
+     * taken by the writer reflects exactly the deltas up to this number.
+     */
+    public long getDeltaSequence() {
+        return deltaSequence;
+    }
+    
+    /**
+     * Best bid/offer and last trade as of the last completed command. Never
+     * blocks and never blocks the writer: copies the published fields under an
+     * optimistic seqlock read, retrying only if a publish raced with it.
+     */
+    public TopOfBook getTopOfBook() {
+        TopOfBook cached = topOfBook;
+        while (true) {
+            long stamp = topLock.tryOptimisticRead();
+            long publishedVersion = topVersion;
+            if (cached.getVersion() == publishedVersion && topLock.validate(stamp)) {
+                return cached;
+            }
+            
+            TopOfBook current = new TopOfBook(publishedVersion, topBid, topBidSize, topAsk, topAskSize,
+                topNoBid, topNoBidSize, topTradePrice, topTradeQuantity);
+            if (topLock.validate(stamp)) {
+                topOfBook = current;
+                return current;
+            }
+            Thread.onSpinWait();
+        }
+    }
+    
+    /**
+     * Release the write lock, first publishing the top of book if this is
+     * the outermost hold and the book changed since the last publish
+     */
+    private void unlockWrite() {
+        if (lock.getWriteHoldCount() == 1 && topVersion != version) {
+            publishTopOfBook();
+        }
+        lock.writeLock().unlock();
+    }
+    
+    private void publishTopOfBook() {
+        int bestBid = bids.bestPrice();
+        int bestAsk = asks.bestPrice();
+        int bestNoBidLevel = asks.lowestNoBidPrice();
+        
+        long stamp = topLock.writeLock();
+        try {
+            topVersion = version;
+            topBid = bestBid;
+            topBidSize = bestBid == PriceLadder.NONE ? 0 : bids.level(bestBid).getQuantity();
+            topAsk = bestAsk;
+            topAskSize = bestAsk == PriceLadder.NONE ? 0 : asks.level(bestAsk).getQuantity();
+            topNoBid = bestNoBidLevel == PriceLadder.NONE ? PriceLadder.NONE : 100 - bestNoBidLevel;
+            topNoBidSize = bestNoBidLevel == PriceLadder.NONE ? 0 : asks.level(bestNoBidLevel).getNoBidQuantity();
+            topTradePrice = lastTradePrice;
+            topTradeQuantity = lastTradeQuantity;
+        } finally {
+            topLock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Whether any thread currently holds the book's write lock
+     */
+    public boolean isWriteLocked() {
+        return lock.isWriteLocked();
+    }
+    
+    /**
+     * Monotonically increasing version, bumped by every change to a price level
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Immutable snapshot of the current version. Built at most once per version
+     * and shared by every reader until the book changes again.
+     */
+    public BookSnapshot getSnapshot() {
+        BookSnapshot current = snapshot;
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        
+        lock.readLock().lock();
+        try {
+            synchronized (snapshotMonitor) {
+                // Another reader may have built this version while we waited
+                current = snapshot;
+                if (current == null || current.getVersion() != version) {
+                    current = buildSnapshot();
+                    snapshot = current;
+                }
+                return current;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Walk the ladders into a new snapshot. Reads the per-level aggregates
+     * maintained by PriceLevel, so the cost is O(levels) regardless of how
+     * many orders are resting. Caller holds the read lock.
+     * 
+     * Since we normalize everything to YES:
+     * - Buy YES @ X → stored as Buy @ X (in bids)
+     * - Buy NO @ X → stored as Sell @ (100-X) (in asks)
+     */
+    private BookSnapshot buildSnapshot() {
+        List<List<Integer>> bidLevels = new ArrayList<>();
+        List<List<Integer>> askLevels = new ArrayList<>();
+        List<List<Integer>> noBidLevels = new ArrayList<>();
+        
+        // Every bid level is Buy YES @ X or Sell NO stored as Buy YES @ X,
+        // so the level aggregate is the YES bid depth. Descending by price.
+        for (int price = bids.bestPrice(); price != PriceLadder.NONE; price = bids.nextPrice(price)) {
+            bidLevels.add(List.of(price, bids.level(price).getQuantity()));
+        }
+        
+        for (int price = asks.bestPrice(); price != PriceLadder.NONE; price = asks.nextPrice(price)) {
+            askLevels.add(List.of(price, asks.level(price).getQuantity()));
+        }
+        
+        // Buy NO @ X rests as Sell YES @ (100-X). Walking the ask levels that
+        // hold NO bids from the highest YES price down gives NO prices ascending.
+        for (int price = asks.highestNoBidPrice(); price != PriceLadder.NONE; price = asks.nextLowerNoBidPrice(price)) {
+            noBidLevels.add(List.of(100 - price, asks.level(price).getNoBidQuantity()));
+        }
+        
+        return new BookSnapshot(version, deltaSequence, bidLevels, askLevels, noBidLevels);
+    }
+    
+    /**
+     * Get orderbook snapshot in Kalshi format
+     */
+    public Orderbook getOrderbookSnapshot(int depth) {
+        BookSnapshot current = getSnapshot();
+        
+        // YES bids high to low, then YES asks low to high
+        List<List<Integer>> yesOrderbook = new ArrayList<>(current.getYes(depth));
+        yesOrderbook.addAll(current.getAsks(depth));
+        
+        return new Orderbook(
+            yesOrderbook.isEmpty() ? null : yesOrderbook,
+            null  // No longer returning NO side as per design
+        );
+    }
+    
+    /**
+     * Get orderbook snapshot in proper Kalshi API format with separated YES and NO sides
+     * Returns structure matching: {"yes": [[price, qty], ...], "no": [[price, qty], ...]}
+     * 
+     * In Kalshi's format:
+     * - YES array contains Buy YES orders (our bids where side=yes)
+     * - NO array contains Buy NO orders (which we store as Sell YES)
+     * 
+     * Served from the shared snapshot of the current version.
+     */
+    public OrderbookResponse.OrderbookData getOrderbookSnapshotKalshiFormat(int depth) {
+        BookSnapshot current = getSnapshot();
+        return new OrderbookResponse.OrderbookData(current.getYes(depth), current.getNo(depth));
+    }
+    
+    /**
+     * Check for crosses (both self-cross and external cross)
+     */
+    private boolean checkForCross(OrderBookEntry newOrder) {
+        // A buy crossing any ask, or a sell crossing any bid
+        if (wouldTradeAt(newOrder.isNormalizedBuy(), newOrder.getNormalizedPrice())) {
+            return true; // Self-cross detected
+        }
+        
+        // Check for external cross after adding any order
+        // This needs to check if YES bid + NO bid > 100 (not >= 100)
+        return checkExternalCross();
+    }
+    
+    /**
+     * Check for external cross where YES bid + NO bid > 100
+     */
+    private boolean checkExternalCross() {
+        int yesBidPrice = getBestYesBidPrice();
+        int noBidPrice = getBestNoBidPrice();
+        return yesBidPrice != PriceLadder.NONE && noBidPrice != PriceLadder.NONE
+            && yesBidPrice + noBidPrice > 100;
+    }
+    
+    // Listener management
+    public void addListener(OrderBookListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(OrderBookListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void notifyListeners(byte type, OrderBookEntry order, int quantity) {
+        for (OrderBookListener listener : listeners) {
+            try {
+                switch (type) {
+                    case EventBuffer.ADDED -> listener.onOrderAdded(marketTicker, order);
+                    case EventBuffer.CANCELED -> listener.onOrderCanceled(marketTicker, order);
+                    case EventBuffer.EXECUTED -> listener.onOrderExecuted(marketTicker, order, quantity);
+                    case EventBuffer.CROSS_DETECTED -> listener.onCrossDetected(marketTicker, order);
+                    case EventBuffer.AMENDED -> listener.onOrderAmended(marketTicker, order);
+                    default -> throw new IllegalStateException("Unknown event type " + type);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Notified listener "+listener+" of order book event for market "+marketTicker+" (thread "+Thread.currentThread().getName()+")");
+                }
+            } catch (Exception e) {
+                log.info("Listener notify failed; maybe it is gone? "+e.getMessage());
+                // Log error but don't let one listener break others
+                // e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Listener events as parallel arrays of type, order and executed
+     * quantity, grown by doubling and reused after each dispatch
+     */
+    private static final class EventBuffer {
+        static final byte ADDED = 0;
+        static final byte CANCELED = 1;
+        static final byte EXECUTED = 2;
+        static final byte CROSS_DETECTED = 3;
+        static final byte AMENDED = 4;
+        
+        byte[] types = new byte[64];
+        OrderBookEntry[] orders = new OrderBookEntry[64];
+        int[] quantities = new int[64];
+        int count;
+        
+        void add(byte type, OrderBookEntry order, int quantity) {
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                orders = Arrays.copyOf(orders, count * 2);
+                quantities = Arrays.copyOf(quantities, count * 2);
+            }
+            types[count] = type;
+            orders[count] = order;
+            quantities[count] = quantity;
+            count++;
+        }
+        
+        // Drop the order references, so entries are not held past their dispatch
+        void clear() {
+            Arrays.fill(orders, 0, count, null);
+            count = 0;
+        }
+    }
+    
+    public interface OrderBookListener {
+        void onOrderAdded(String marketTicker, OrderBookEntry order);
+        void onOrderCanceled(String marketTicker, OrderBookEntry order);
+        void onOrderExecuted(String marketTicker, OrderBookEntry order, int executedQuantity);
+        void onCrossDetected(String marketTicker, OrderBookEntry order);
+        
+        default void onOrderAmended(String marketTicker, OrderBookEntry order) {
+        }
     }
 }
\ No newline at end of file
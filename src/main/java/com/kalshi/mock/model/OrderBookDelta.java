@@ -0,0 +1,30 @@
+package com.kalshi.mock.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One change to a price level in Kalshi's view of the book: the resting quantity
+ * on the given side ("yes" or "no") and price moved by a signed delta.
+ *
+ * Sequence numbers are per market and gap-free, so applying every delta after a
+ * snapshot's sequence to that snapshot reproduces the live book.
+ */
+@ToString
+public class OrderBookDelta {
+    @Getter
+    private final long sequence;
+    @Getter
+    private final String side; // "yes" or "no"
+    @Getter
+    private final int price; // in cents, on that side
+    @Getter
+    private final int delta; // signed change in resting quantity
+
+    public OrderBookDelta(long sequence, String side, int price, int delta) {
+        this.sequence = sequence;
+        this.side = side;
+        this.price = price;
+        this.delta = delta;
+    }
+}
@@ -5,48 +5,105 @@ import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.atomic.AtomicLong;
-
 /**
  * Represents a single order in the order book
  */
 @ToString
 @Slf4j
 public class OrderBookEntry {
-    private static final AtomicLong SEQUENCE_GENERATOR = new AtomicLong(0);
-
-    // Getters
+    // Fields are only reassigned when an OrderBookEntryPool recycles the entry
+    
+    // Primitive ID used everywhere inside the engine
     @Getter
-    private final String orderId;
+    private long id;
+    
+    // Kalshi string form, rendered on first use at the edge
+    @ToString.Exclude
+    private String orderId;
+    
+    // Getters
     @Getter
-    private final String userId;
+    private String userId;
     @Getter
-    private final KalshiSide side;  // YES or NO
+    private KalshiSide side;  // YES or NO
     @Getter
-    private final String action; // buy or sell
+    private String action; // buy or sell
     @Getter
-    private final int price; // in cents
+    private int price; // in cents
     @Getter
     private volatile int quantity;
     @Getter
-    private final int originalQuantity;
+    private int originalQuantity;
     @Getter
-    private final long timestamp;
+    private long timestamp;
     @Getter
-    private final long sequence; // for FIFO ordering
+    private long sequence; // for FIFO ordering, assigned by the book the order rests in
     
     // Normalized values for internal order book representation
     @Getter
-    private final int normalizedPrice;
-    private final boolean normalizedIsBuy;
+    private int normalizedPrice;
+    private boolean normalizedIsBuy;
+    
+    // Intrusive FIFO links, maintained by the PriceLevel this order rests at
+    @ToString.Exclude
+    PriceLevel level;
+    @ToString.Exclude
+    OrderBookEntry prev;
+    @ToString.Exclude
+    OrderBookEntry next;
+    
+    // Links through the same user's resting orders, maintained by ConcurrentOrderBook
+    @ToString.Exclude
+    OrderBookEntry userPrev;
+    @ToString.Exclude
+    OrderBookEntry userNext;
     
     public OrderBookEntry(String orderId, String userId, KalshiSide side, String action, 
                          int price, int quantity, long timestamp) {
+        init(OrderIds.parse(orderId), orderId, userId, side, action, price, quantity, timestamp, 0);
+    }
+    
+    public OrderBookEntry(long id, String userId, KalshiSide side, String action, 
+                         int price, int quantity, long timestamp) {
+        init(id, null, userId, side, action, price, quantity, timestamp, 0);
+    }
+    
+    /**
+     * Replacement for an order that keeps its ID and string form, e.g. a
+     * requeued amend
+     */
+    public OrderBookEntry(long id, String orderId, String userId, KalshiSide side, String action,
+                          int price, int quantity, long timestamp) {
+        init(id, orderId, userId, side, action, price, quantity, timestamp, 0);
+    }
+    
+    /**
+     * Rebuild an order that was stored elsewhere (OrderSlab), keeping its
+     * original quantity and time priority
+     */
+    OrderBookEntry(long id, String userId, KalshiSide side, String action, int price,
+                   int quantity, int originalQuantity, long timestamp, long sequence) {
+        init(id, null, userId, side, action, price, quantity, timestamp, sequence);
+        this.originalQuantity = originalQuantity;
+    }
+    
+    /**
+     * Reuse this entry for a new order. Only called by OrderBookEntryPool, once
+     * the entry has left the book.
+     */
+    void reinitialize(long id, String userId, KalshiSide side, String action, 
+                      int price, int quantity, long timestamp) {
+        init(id, null, userId, side, action, price, quantity, timestamp, 0);
+    }
+    
+    private void init(long id, String orderId, String userId, KalshiSide side, String action, 
+                      int price, int quantity, long timestamp, long sequence) {
         // Validate price is between 1 and 99 cents
         if (price < 1 || price > 99) {
             throw new IllegalArgumentException("Price must be between 1 and 99 cents, got: " + price);
         }
         
+        this.id = id;
         this.orderId = orderId;
         this.userId = userId;
         this.side = side;
@@ -55,40 +112,110 @@ public class OrderBookEntry {
         this.quantity = quantity;
         this.originalQuantity = quantity;
         this.timestamp = timestamp;
-        this.sequence = SEQUENCE_GENERATOR.incrementAndGet();
+        this.sequence = sequence;
         
         // Apply NO/YES conversion for order book normalization
-        if (side == KalshiSide.no) {
-            if (action.equals("buy")) {
-                // Buy NO @ P → Sell YES @ (100 - P)
-                this.normalizedPrice = 100 - price;
-                this.normalizedIsBuy = false;
-            } else {
-                // Sell NO @ P → Buy YES @ (100 - P)
-                this.normalizedPrice = 100 - price;
-                this.normalizedIsBuy = true;
-            }
-        } else {
-            // YES orders remain as-is
-            this.normalizedPrice = price;
-            this.normalizedIsBuy = action.equals("buy");
+        this.normalizedPrice = normalizePrice(side, price);
+        this.normalizedIsBuy = normalizeIsBuy(side, action);
+    }
+    
+    /**
+     * Stamp the FIFO sequence number the book drew for this order as it
+     * joins the back of a queue. Sequences are per book, so they only
+     * order orders within one market.
+     */
+    void assignSequence(long sequence) {
+        this.sequence = sequence;
+    }
+    
+    /**
+     * Price on the YES-normalized book: NO orders at P rest at 100 - P
+     */
+    public static int normalizePrice(KalshiSide side, int price) {
+        return side == KalshiSide.no ? 100 - price : price;
+    }
+    
+    /**
+     * Whether an order rests as a YES bid: Buy YES and Sell NO do,
+     * Sell YES and Buy NO (which becomes Sell YES) rest as asks
+     */
+    public static boolean normalizeIsBuy(KalshiSide side, String action) {
+        return (side == KalshiSide.no) != action.equals("buy");
+    }
+    
+    /**
+     * Change the limit price and resting quantity of an amended order. Fills
+     * so far are kept; a requeued order is given a new sequence number by
+     * the book, i.e. the back of the queue. The owning level updates its
+     * aggregates.
+     */
+    void amend(int newPrice, int newQuantity, long newSequence) {
+        int filled = getFilledQuantity();
+        init(id, orderId, userId, side, action, newPrice, newQuantity, timestamp, newSequence);
+        this.originalQuantity = filled + newQuantity;
+    }
+    
+    /**
+     * Take a fill of an order that is not resting in a book: an incoming
+     * order while it matches. A resting order fills through its book
+     * (ConcurrentOrderBook.fillResting), under the book's lock.
+     * @throws IllegalStateException if the order rests at a price level
+     */
+    public void fillIncoming(int amount) {
+        if (level != null) {
+            throw new IllegalStateException("Order " + id + " rests in a book and fills through it");
         }
+        reduceQuantity(amount);
     }
     
-    public void reduceQuantity(int amount) {
+    /**
+     * Reduce the quantity by a fill. The resting level's aggregates follow,
+     * so the book calls this under its write lock.
+     */
+    void reduceQuantity(int amount) {
         if (amount > quantity) {
-            log.error("Attempted to reduce quantity by " + amount + " from " + quantity + " for order " + orderId + ", ignoring request");
-            throw new RuntimeException("Attempted to reduce quantity by " + amount + " from " + quantity + " for order " + orderId + ", ignoring request");
+            log.error("Attempted to reduce quantity by " + amount + " from " + quantity + " for order " + id + ", ignoring request");
+            throw new RuntimeException("Attempted to reduce quantity by " + amount + " from " + quantity + " for order " + id + ", ignoring request");
         }
 
         int newQty = quantity - amount;
-        log.info("Reducing quantity for order " + orderId + " by " + amount + " to " + newQty+", due to execution.");
+        if (log.isDebugEnabled()) {
+            log.debug("Reducing quantity for order " + id + " by " + amount + " to " + newQty + ", due to execution.");
+        }
 
         this.quantity = newQty;
+
+        // Keep the resting level's aggregates in step
+        PriceLevel restingLevel = level;
+        if (restingLevel != null) {
+            restingLevel.quantityReduced(this, amount);
+        }
     }
 
+    /**
+     * Kalshi string form of the ID, for the REST/FIX/WebSocket edge
+     */
+    public String getOrderId() {
+        String rendered = orderId;
+        if (rendered == null) {
+            rendered = OrderIds.format(id);
+            orderId = rendered;
+        }
+        return rendered;
+    }
+    
     public boolean isNormalizedBuy() { return normalizedIsBuy; }
     
+    /**
+     * Next order in time priority at the same price level, or null
+     */
+    public OrderBookEntry getNextAtLevel() { return next; }
+    
+    /**
+     * True for Buy NO orders, which rest as YES asks but make up the Kalshi NO side
+     */
+    public boolean isNoBid() { return side == KalshiSide.no && !normalizedIsBuy; }
+    
     public int getFilledQuantity() {
         return originalQuantity - quantity;
     }
@@ -0,0 +1,56 @@
+package com.kalshi.mock.model;
+
+import com.fbg.api.market.KalshiSide;
+
+import java.util.Arrays;
+
+/**
+ * Free list of OrderBookEntry instances for a zero-garbage order path.
+ *
+ * A writer acquires entries for incoming orders from here instead of
+ * allocating them, and a ConcurrentOrderBook with this pool attached hands
+ * filled and canceled entries back when the writer has finished the command
+ * that removed them (ConcurrentOrderBook.recycleRetired). Owned by one
+ * writer thread; not thread-safe.
+ */
+public class OrderBookEntryPool {
+
+    private OrderBookEntry[] free;
+    private int size;
+
+    public OrderBookEntryPool(int initialCapacity) {
+        this.free = new OrderBookEntry[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * A recycled entry reinitialized for a new order, or a new one if the pool is empty
+     */
+    public OrderBookEntry acquire(long id, String userId, KalshiSide side, String action,
+                                  int price, int quantity, long timestamp) {
+        if (size == 0) {
+            return new OrderBookEntry(id, userId, side, action, price, quantity, timestamp);
+        }
+        OrderBookEntry entry = free[--size];
+        free[size] = null;
+        entry.reinitialize(id, userId, side, action, price, quantity, timestamp);
+        return entry;
+    }
+
+    /**
+     * Return an entry that is no longer in any book. Incoming orders that
+     * filled completely are released by the writer itself.
+     */
+    public void release(OrderBookEntry entry) {
+        if (entry.level != null) {
+            throw new IllegalStateException("Order " + entry.getId() + " is still resting in a book");
+        }
+        if (size == free.length) {
+            free = Arrays.copyOf(free, size * 2);
+        }
+        free[size++] = entry;
+    }
+
+    public int available() {
+        return size;
+    }
+}
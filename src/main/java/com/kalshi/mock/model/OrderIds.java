@@ -0,0 +1,121 @@
+package com.kalshi.mock.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conversion between the engine's primitive order IDs and the Kalshi string
+ * form ("ORD-" + number) used at the REST, FIX and WebSocket edge.
+ *
+ * IDs minted by this engine are positive and round-trip without any lookup.
+ * Any other string (tests, hand-written FIX orders) is given a fresh negative
+ * ID. An instance is the registry of one book: it maps those strings back to
+ * their IDs while the orders rest there, and forgets them as the orders
+ * leave, so it never holds more than the book's resting foreign orders.
+ */
+public final class OrderIds {
+
+    public static final String ORDER_PREFIX = "ORD-";
+
+    /** Returned by {@link #lookup(String)} for a string that maps to no order */
+    public static final long UNKNOWN = 0L;
+
+    private static final AtomicLong NEXT_FOREIGN_ID = new AtomicLong();
+
+    // Strings of the foreign orders resting in the book, both ways. Written
+    // under the book's write lock, read by lookups that take no lock.
+    private final Map<String, Long> foreignIds = new ConcurrentHashMap<>();
+    private final Map<Long, String> foreignStrings = new ConcurrentHashMap<>();
+
+    /**
+     * Render an engine-minted ID in Kalshi's string form
+     */
+    public static String format(long id) {
+        return ORDER_PREFIX + id;
+    }
+
+    /**
+     * ID for a new order: the engine's own IDs parse back, any other string
+     * gets a fresh negative ID
+     */
+    public static long parse(String orderId) {
+        long id = parseCanonical(orderId);
+        return id != UNKNOWN ? id : NEXT_FOREIGN_ID.decrementAndGet();
+    }
+
+    /**
+     * ID of an order resting in this registry's book, for lookups and
+     * cancels. Never registers anything, so unknown strings cost nothing and
+     * return UNKNOWN.
+     */
+    public long lookup(String orderId) {
+        if (orderId == null) {
+            return UNKNOWN;
+        }
+        long id = parseCanonical(orderId);
+        if (id != UNKNOWN) {
+            return id;
+        }
+        Long foreign = foreignIds.get(orderId);
+        return foreign != null ? foreign : UNKNOWN;
+    }
+
+    /**
+     * Record the string of an order entering the book
+     * @return false if another resting order already has this string
+     */
+    public boolean register(OrderBookEntry order) {
+        long id = order.getId();
+        if (id > 0) {
+            return true;
+        }
+        String orderId = order.getOrderId();
+        if (foreignIds.putIfAbsent(orderId, id) != null) {
+            return false;
+        }
+        foreignStrings.put(id, orderId);
+        return true;
+    }
+
+    /**
+     * Forget the string of an order that left the book
+     */
+    public void release(long id) {
+        if (id > 0) {
+            return;
+        }
+        String orderId = foreignStrings.remove(id);
+        if (orderId != null) {
+            foreignIds.remove(orderId, id);
+        }
+    }
+
+    /**
+     * Number of foreign strings held, i.e. foreign orders resting in the book
+     */
+    public int foreignCount() {
+        return foreignStrings.size();
+    }
+
+    /**
+     * Whether the string is exactly what format() renders for some ID
+     */
+    private static long parseCanonical(String orderId) {
+        int length = orderId.length();
+        int start = ORDER_PREFIX.length();
+        // At most 18 digits always fits in a long; no leading zeros so the form is unique
+        if (length <= start || length - start > 18 || !orderId.startsWith(ORDER_PREFIX) || orderId.charAt(start) == '0') {
+            return UNKNOWN;
+        }
+        long id = 0;
+        for (int i = start; i < length; i++) {
+            char c = orderId.charAt(i);
+            if (c < '0' || c > '9') {
+                return UNKNOWN;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+}
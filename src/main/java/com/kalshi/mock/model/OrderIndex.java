@@ -0,0 +1,130 @@
+package com.kalshi.mock.model;
+
+/**
+ * Open-addressing hash index from primitive order ID to resting order.
+ *
+ * Linear probing over parallel key/value arrays with backward-shift deletion,
+ * so lookups hash a long instead of a string and neither puts nor removes
+ * allocate (apart from growing). The table doubles at half full.
+ *
+ * Not thread-safe on its own; ConcurrentOrderBook guards it with its lock.
+ */
+final class OrderIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private OrderBookEntry[] values; // null marks an empty slot
+    private int mask;
+    private int size;
+
+    OrderIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    OrderIndex(int expectedOrders) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedOrders * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    OrderBookEntry get(long id) {
+        for (int slot = slot(id, mask); ; slot = (slot + 1) & mask) {
+            OrderBookEntry value = values[slot];
+            if (value == null) {
+                return null;
+            }
+            if (keys[slot] == id) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Index an order under its ID
+     * @return false if an order with that ID is already indexed
+     */
+    boolean putIfAbsent(OrderBookEntry order) {
+        long id = order.getId();
+        int slot = slot(id, mask);
+        while (values[slot] != null) {
+            if (keys[slot] == id) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        values[slot] = order;
+        if (++size * 2 > values.length) {
+            grow();
+        }
+        return true;
+    }
+
+    OrderBookEntry remove(long id) {
+        int slot = slot(id, mask);
+        while (true) {
+            OrderBookEntry value = values[slot];
+            if (value == null) {
+                return null;
+            }
+            if (keys[slot] == id) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        OrderBookEntry removed = values[slot];
+
+        // Shift back any later entry of the probe run that would otherwise
+        // become unreachable through the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            boolean reachable = hole <= next
+                ? hole < home && home <= next
+                : hole < home || home <= next;
+            if (!reachable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        OrderBookEntry[] oldValues = values;
+        allocate(oldValues.length << 1);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i], mask);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new OrderBookEntry[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int slot(long id, int mask) {
+        // Fibonacci hashing spreads sequential IDs across the table
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
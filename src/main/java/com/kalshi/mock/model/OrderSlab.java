@@ -0,0 +1,394 @@
+package com.kalshi.mock.model;
+
+import com.fbg.api.market.KalshiSide;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Off-heap storage for the resting orders of one order book.
+ *
+ * Each order is a fixed-width record in a direct ByteBuffer chunk, addressed
+ * by an int slot. The FIFO links of a price level are slot numbers stored in
+ * the records themselves, freed slots are chained into a free list and reused
+ * first, and the ID lookup is an open-addressing table over primitive arrays.
+ * Each user's resting records are chained through a second pair of links, so
+ * a user's orders can be found without walking the book.
+ * However many orders rest in the book, the heap only holds the chunk
+ * buffers, the lookup arrays and one interned string per user, so GC work
+ * does not grow with book depth.
+ *
+ * A resting order is read back as a detached OrderBookEntry copy (toEntry);
+ * changing the copy does not change the book.
+ *
+ * Not thread-safe on its own; ConcurrentOrderBook guards it with its lock.
+ */
+public final class OrderSlab {
+
+    /**
+     * Slot number meaning "no record", for level links and lookups
+     */
+    public static final int NIL = -1;
+
+    // Record layout, 56 bytes per order
+    static final int RECORD_SIZE = 56;
+    private static final int ID = 0;
+    private static final int TIMESTAMP = 8;
+    private static final int SEQUENCE = 16;
+    private static final int USER = 24;
+    private static final int QUANTITY = 28;
+    private static final int ORIGINAL_QUANTITY = 32;
+    private static final int PRICE = 36;
+    private static final int FLAGS = 37;
+    private static final int PREV = 40;
+    private static final int NEXT = 44;
+    private static final int USER_PREV = 48;
+    private static final int USER_NEXT = 52;
+
+    private static final byte FLAG_NO = 1;
+    private static final byte FLAG_SELL = 2;
+
+    private static final int MIN_INDEX_CAPACITY = 16;
+
+    private final int chunkShift;
+    private final int chunkMask;
+    private ByteBuffer[] chunks = new ByteBuffer[8];
+    private int chunkCount;
+
+    // Slots below the high-water mark have been handed out at least once
+    private int highWater;
+    private int freeHead = NIL;
+    private int size;
+
+    // Order ID -> slot, linear probing with backward-shift deletion
+    private long[] indexKeys;
+    private int[] indexSlots; // NIL marks an empty entry
+    private int indexMask;
+
+    // Users are stored in records by their index in this table, with the
+    // head of each user's chain of records (NIL when they have none)
+    private final Map<String, Integer> userNumbers = new HashMap<>();
+    private String[] users = new String[16];
+    private int[] userHeads = newUserHeads(16);
+
+    /**
+     * @param ordersPerChunk records per direct buffer chunk, rounded up to a power of two
+     */
+    public OrderSlab(int ordersPerChunk) {
+        int perChunk = Integer.highestOneBit(Math.min(Math.max(ordersPerChunk, 64), 1 << 24) - 1) << 1;
+        this.chunkShift = Integer.numberOfTrailingZeros(perChunk);
+        this.chunkMask = perChunk - 1;
+        allocateIndex(MIN_INDEX_CAPACITY);
+    }
+
+    /**
+     * Number of resting orders
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bytes reserved off-heap for records
+     */
+    public long reservedBytes() {
+        return (long) chunkCount * (chunkMask + 1) * RECORD_SIZE;
+    }
+
+    /**
+     * Copy an order into a free record and index it under its ID
+     * @return the record's slot
+     */
+    int allocate(OrderBookEntry order) {
+        int slot;
+        if (freeHead != NIL) {
+            slot = freeHead;
+            freeHead = getInt(slot, NEXT);
+        } else {
+            slot = highWater++;
+            if ((slot >>> chunkShift) == chunkCount) {
+                addChunk();
+            }
+        }
+
+        int user = userNumber(order.getUserId());
+        int userHead = userHeads[user];
+        if (userHead != NIL) {
+            putInt(userHead, USER_PREV, slot);
+        }
+        userHeads[user] = slot;
+
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        chunk.putLong(base + ID, order.getId());
+        chunk.putLong(base + TIMESTAMP, order.getTimestamp());
+        chunk.putLong(base + SEQUENCE, order.getSequence());
+        chunk.putInt(base + USER, user);
+        chunk.putInt(base + QUANTITY, order.getQuantity());
+        chunk.putInt(base + ORIGINAL_QUANTITY, order.getOriginalQuantity());
+        chunk.put(base + PRICE, (byte) order.getPrice());
+        chunk.put(base + FLAGS, (byte) ((order.getSide() == KalshiSide.no ? FLAG_NO : 0)
+            | ("sell".equals(order.getAction()) ? FLAG_SELL : 0)));
+        chunk.putInt(base + PREV, NIL);
+        chunk.putInt(base + NEXT, NIL);
+        chunk.putInt(base + USER_PREV, NIL);
+        chunk.putInt(base + USER_NEXT, userHead);
+
+        index(order.getId(), slot);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Drop a record's ID from the index and put its slot on the free list.
+     * The record must already be unlinked from its level.
+     */
+    void free(int slot) {
+        int prev = getInt(slot, USER_PREV);
+        int next = getInt(slot, USER_NEXT);
+        if (prev == NIL) {
+            userHeads[getInt(slot, USER)] = next;
+        } else {
+            putInt(prev, USER_NEXT, next);
+        }
+        if (next != NIL) {
+            putInt(next, USER_PREV, prev);
+        }
+
+        unindex(getLong(slot, ID));
+        putInt(slot, NEXT, freeHead);
+        freeHead = slot;
+        size--;
+    }
+
+    /**
+     * Slot of the resting order with this ID, or NIL
+     */
+    int find(long id) {
+        for (int i = hash(id, indexMask); ; i = (i + 1) & indexMask) {
+            int slot = indexSlots[i];
+            if (slot == NIL || indexKeys[i] == id) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * First of the user's resting records, or NIL. Follow with nextForUser.
+     */
+    int firstForUser(String userId) {
+        Integer user = userNumbers.get(userId);
+        return user == null ? NIL : userHeads[user];
+    }
+
+    int nextForUser(int slot) {
+        return getInt(slot, USER_NEXT);
+    }
+
+    public long id(int slot) {
+        return getLong(slot, ID);
+    }
+
+    public int quantity(int slot) {
+        return getInt(slot, QUANTITY);
+    }
+
+    /**
+     * Next record in time priority at the same price level, or NIL
+     */
+    public int nextAtLevel(int slot) {
+        return getInt(slot, NEXT);
+    }
+
+    /**
+     * Detached copy of a resting order
+     */
+    public OrderBookEntry toEntry(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        byte flags = chunk.get(base + FLAGS);
+        return new OrderBookEntry(
+            chunk.getLong(base + ID),
+            users[chunk.getInt(base + USER)],
+            (flags & FLAG_NO) != 0 ? KalshiSide.no : KalshiSide.yes,
+            (flags & FLAG_SELL) != 0 ? "sell" : "buy",
+            chunk.get(base + PRICE),
+            chunk.getInt(base + QUANTITY),
+            chunk.getInt(base + ORIGINAL_QUANTITY),
+            chunk.getLong(base + TIMESTAMP),
+            chunk.getLong(base + SEQUENCE));
+    }
+
+    void setQuantity(int slot, int quantity) {
+        putInt(slot, QUANTITY, quantity);
+    }
+
+    /**
+     * New price and resting quantity for an amended order, keeping its fills.
+     * A requeued order gets the given new sequence number.
+     */
+    void amend(int slot, int price, int quantity, long sequence) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        int filled = chunk.getInt(base + ORIGINAL_QUANTITY) - chunk.getInt(base + QUANTITY);
+        chunk.putInt(base + QUANTITY, quantity);
+        chunk.putInt(base + ORIGINAL_QUANTITY, filled + quantity);
+        chunk.put(base + PRICE, (byte) price);
+        chunk.putLong(base + SEQUENCE, sequence);
+    }
+
+    int price(int slot) {
+        return chunk(slot).get(offset(slot) + PRICE);
+    }
+
+    long sequence(int slot) {
+        return getLong(slot, SEQUENCE);
+    }
+
+    int prev(int slot) {
+        return getInt(slot, PREV);
+    }
+
+    void setPrev(int slot, int prev) {
+        putInt(slot, PREV, prev);
+    }
+
+    void setNext(int slot, int next) {
+        putInt(slot, NEXT, next);
+    }
+
+    /**
+     * Price on the YES-normalized ladder (see OrderBookEntry)
+     */
+    int normalizedPrice(int slot) {
+        return (flags(slot) & FLAG_NO) != 0 ? 100 - price(slot) : price(slot);
+    }
+
+    boolean isNormalizedBuy(int slot) {
+        byte flags = flags(slot);
+        // Buy YES and Sell NO rest as bids
+        return ((flags & FLAG_NO) != 0) == ((flags & FLAG_SELL) != 0);
+    }
+
+    boolean isNoBid(int slot) {
+        return flags(slot) == FLAG_NO;
+    }
+
+    private byte flags(int slot) {
+        return chunk(slot).get(offset(slot) + FLAGS);
+    }
+
+    private int userNumber(String userId) {
+        Integer number = userNumbers.get(userId);
+        if (number == null) {
+            number = userNumbers.size();
+            if (number == users.length) {
+                users = Arrays.copyOf(users, number * 2);
+                int[] heads = newUserHeads(number * 2);
+                System.arraycopy(userHeads, 0, heads, 0, number);
+                userHeads = heads;
+            }
+            users[number] = userId;
+            userNumbers.put(userId, number);
+        }
+        return number;
+    }
+
+    private static int[] newUserHeads(int capacity) {
+        int[] heads = new int[capacity];
+        Arrays.fill(heads, NIL);
+        return heads;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect((chunkMask + 1) * RECORD_SIZE)
+            .order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks[slot >>> chunkShift];
+    }
+
+    private int offset(int slot) {
+        return (slot & chunkMask) * RECORD_SIZE;
+    }
+
+    private int getInt(int slot, int field) {
+        return chunk(slot).getInt(offset(slot) + field);
+    }
+
+    private void putInt(int slot, int field, int value) {
+        chunk(slot).putInt(offset(slot) + field, value);
+    }
+
+    private long getLong(int slot, int field) {
+        return chunk(slot).getLong(offset(slot) + field);
+    }
+
+    private void index(long id, int slot) {
+        int i = hash(id, indexMask);
+        while (indexSlots[i] != NIL) {
+            i = (i + 1) & indexMask;
+        }
+        indexKeys[i] = id;
+        indexSlots[i] = slot;
+        if ((size + 1) * 2 > indexSlots.length) {
+            growIndex();
+        }
+    }
+
+    private void unindex(long id) {
+        int i = hash(id, indexMask);
+        while (indexKeys[i] != id || indexSlots[i] == NIL) {
+            i = (i + 1) & indexMask;
+        }
+
+        // Backward-shift deletion, as in OrderIndex
+        int hole = i;
+        for (int next = (hole + 1) & indexMask; indexSlots[next] != NIL; next = (next + 1) & indexMask) {
+            int home = hash(indexKeys[next], indexMask);
+            boolean reachable = hole <= next
+                ? hole < home && home <= next
+                : hole < home || home <= next;
+            if (!reachable) {
+                indexKeys[hole] = indexKeys[next];
+                indexSlots[hole] = indexSlots[next];
+                hole = next;
+            }
+        }
+        indexSlots[hole] = NIL;
+    }
+
+    private void growIndex() {
+        long[] oldKeys = indexKeys;
+        int[] oldSlots = indexSlots;
+        allocateIndex(oldSlots.length << 1);
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != NIL) {
+                int j = hash(oldKeys[i], indexMask);
+                while (indexSlots[j] != NIL) {
+                    j = (j + 1) & indexMask;
+                }
+                indexKeys[j] = oldKeys[i];
+                indexSlots[j] = oldSlots[i];
+            }
+        }
+    }
+
+    private void allocateIndex(int capacity) {
+        indexKeys = new long[capacity];
+        indexSlots = new int[capacity];
+        Arrays.fill(indexSlots, NIL);
+        indexMask = capacity - 1;
+    }
+
+    private static int hash(long id, int mask) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
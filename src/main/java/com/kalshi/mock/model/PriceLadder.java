@@ -0,0 +1,233 @@
+package com.kalshi.mock.model;
+
+/**
+ * One side of the order book as a fixed 1-99 cent price ladder.
+ *
+ * Kalshi prices are always whole cents between 1 and 99, so instead of a sorted
+ * map we keep one preallocated PriceLevel per price plus a 128-bit occupancy
+ * bitmap (two longs). Finding the best level, or the next level after it, is a
+ * leading/trailing-zero count on at most two words.
+ *
+ * A second bitmap tracks which levels hold NO bids (Buy NO orders resting as
+ * YES asks), so the Kalshi NO view can be walked without touching levels that
+ * only hold YES sells.
+ *
+ * Every change in a level's resting quantity is reported to a DeltaSink, which
+ * ConcurrentOrderBook turns into sequenced orderbook deltas.
+ *
+ * When given an OrderSlab, the levels queue off-heap order records instead of
+ * OrderBookEntry objects.
+ *
+ * Not thread-safe on its own; ConcurrentOrderBook guards it with its lock.
+ */
+final class PriceLadder {
+    static final int MIN_PRICE = 1;
+    static final int MAX_PRICE = 99;
+    static final int NONE = 0;
+
+    private final PriceLevel[] levels = new PriceLevel[MAX_PRICE + 1];
+
+    // true for bids (best = highest price), false for asks (best = lowest price)
+    private final boolean descending;
+
+    // bit p set when the level at price p has resting orders
+    private long lowMask;   // prices 0-63
+    private long highMask;  // prices 64-127
+
+    // bit p set when the level at price p has resting NO bids
+    private long noBidLowMask;
+    private long noBidHighMask;
+
+    private final DeltaSink deltaSink;
+
+    // Record storage for off-heap books, null for on-heap ones
+    private final OrderSlab slab;
+
+    private int best = NONE;
+
+    // Lowest price holding NO bids, i.e. the best NO bid at 100 minus this price
+    private int bestNoBid = NONE;
+
+    PriceLadder(boolean descending, DeltaSink deltaSink) {
+        this(descending, null, deltaSink);
+    }
+
+    PriceLadder(boolean descending, OrderSlab slab, DeltaSink deltaSink) {
+        this.descending = descending;
+        this.slab = slab;
+        this.deltaSink = deltaSink;
+        for (int price = MIN_PRICE; price <= MAX_PRICE; price++) {
+            levels[price] = new PriceLevel(this, price);
+        }
+    }
+
+    OrderSlab slab() {
+        return slab;
+    }
+
+    PriceLevel level(int price) {
+        return levels[price];
+    }
+
+    boolean isOccupied(int price) {
+        return price < 64
+            ? (lowMask & (1L << price)) != 0
+            : (highMask & (1L << (price - 64))) != 0;
+    }
+
+    /**
+     * Mark a level as holding orders and update the best price
+     */
+    void markOccupied(int price) {
+        if (price < 64) {
+            lowMask |= 1L << price;
+        } else {
+            highMask |= 1L << (price - 64);
+        }
+
+        if (best == NONE || (descending ? price > best : price < best)) {
+            best = price;
+        }
+    }
+
+    /**
+     * Mark a level as empty and, if it was the best, move to the next best
+     */
+    void markEmpty(int price) {
+        if (price < 64) {
+            lowMask &= ~(1L << price);
+        } else {
+            highMask &= ~(1L << (price - 64));
+        }
+
+        if (price == best) {
+            best = descending ? highest(lowMask, highMask) : lowest(lowMask, highMask);
+        }
+    }
+
+    /**
+     * Best price on this side, or NONE when the side is empty
+     */
+    int bestPrice() {
+        return best;
+    }
+
+    /**
+     * Best level on this side, or null when the side is empty
+     */
+    PriceLevel bestLevel() {
+        return best == NONE ? null : levels[best];
+    }
+
+    /**
+     * Next occupied price after the given one, walking away from the best price
+     */
+    int nextPrice(int price) {
+        return descending ? below(lowMask, highMask, price) : above(lowMask, highMask, price);
+    }
+
+    boolean isEmpty() {
+        return best == NONE;
+    }
+
+    /**
+     * Called by a level whenever its resting quantity changes
+     */
+    void levelChanged(int price, int quantityDelta, int noBidQuantityDelta) {
+        if (quantityDelta != 0) {
+            deltaSink.levelChanged(price, quantityDelta, noBidQuantityDelta);
+        }
+    }
+
+    /**
+     * Record that the level at this price now holds at least one NO bid
+     */
+    void markNoBid(int price) {
+        if (price < 64) {
+            noBidLowMask |= 1L << price;
+        } else {
+            noBidHighMask |= 1L << (price - 64);
+        }
+
+        if (bestNoBid == NONE || price < bestNoBid) {
+            bestNoBid = price;
+        }
+    }
+
+    /**
+     * Record that the level at this price no longer holds any NO bids
+     */
+    void clearNoBid(int price) {
+        if (price < 64) {
+            noBidLowMask &= ~(1L << price);
+        } else {
+            noBidHighMask &= ~(1L << (price - 64));
+        }
+
+        if (price == bestNoBid) {
+            bestNoBid = lowest(noBidLowMask, noBidHighMask);
+        }
+    }
+
+    /**
+     * Lowest price holding NO bids (i.e. the best NO bid), or NONE
+     */
+    int lowestNoBidPrice() {
+        return bestNoBid;
+    }
+
+    /**
+     * Highest price holding NO bids (i.e. the lowest NO price), or NONE
+     */
+    int highestNoBidPrice() {
+        return highest(noBidLowMask, noBidHighMask);
+    }
+
+    /**
+     * Next lower price holding NO bids, or NONE
+     */
+    int nextLowerNoBidPrice(int price) {
+        return below(noBidLowMask, noBidHighMask, price);
+    }
+
+    // Highest set bit strictly below the given price
+    private static int below(long lowMask, long highMask, int price) {
+        long low = price >= 64 ? lowMask : lowMask & ((1L << price) - 1);
+        long high = price >= 64 ? highMask & ((1L << (price - 64)) - 1) : 0;
+        return highest(low, high);
+    }
+
+    // Lowest set bit strictly above the given price
+    private static int above(long lowMask, long highMask, int price) {
+        long low = price >= 63 ? 0 : lowMask & -(1L << (price + 1));
+        long high = price >= 63 ? highMask & -(1L << Math.max(0, price - 63)) : highMask;
+        return lowest(low, high);
+    }
+
+    private static int highest(long low, long high) {
+        if (high != 0) {
+            return 127 - Long.numberOfLeadingZeros(high);
+        }
+        if (low != 0) {
+            return 63 - Long.numberOfLeadingZeros(low);
+        }
+        return NONE;
+    }
+
+    private static int lowest(long low, long high) {
+        if (low != 0) {
+            return Long.numberOfTrailingZeros(low);
+        }
+        if (high != 0) {
+            return 64 + Long.numberOfTrailingZeros(high);
+        }
+        return NONE;
+    }
+
+    /**
+     * Receives quantity changes for the levels of a ladder
+     */
+    interface DeltaSink {
+        void levelChanged(int price, int quantityDelta, int noBidQuantityDelta);
+    }
+}
@@ -0,0 +1,434 @@
+package com.kalshi.mock.model;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * A single price level in the order book ladder.
+ *
+ * Levels are preallocated for every valid price (1-99 cents) on each side, so
+ * a level becoming active or empty never allocates - the owning ladder only
+ * flips a bit in its occupancy bitmap.
+ *
+ * Resting orders form an intrusive doubly-linked FIFO: the prev/next links
+ * live on OrderBookEntry itself, and each entry points back at its level.
+ * Appending, cancelling and removing a filled order are all O(1) and never
+ * scan the queue, no matter how deep the level is.
+ *
+ * On an off-heap book the queue is made of OrderSlab records instead, linked
+ * by slot number (appendSlot/unlinkSlot); the two kinds are never mixed.
+ *
+ * Each level also keeps running totals (quantity and order count, overall and
+ * for NO bids only) that are updated on every append, unlink and fill, so
+ * snapshots read one number per level instead of summing orders. The level
+ * keeps its ladder's occupancy bitmaps in step as it fills and drains.
+ *
+ * Implements Map.Entry so it can be returned directly from
+ * ConcurrentOrderBook.getBestBid()/getBestAsk() (key = normalized price,
+ * value = FIFO queue of resting orders).
+ */
+public final class PriceLevel implements Map.Entry<Integer, Queue<OrderBookEntry>> {
+    private final PriceLadder ladder;
+    private final int price;
+
+    // FIFO of resting orders at this price, linked through the entries
+    private OrderBookEntry head;
+    private OrderBookEntry tail;
+    private int size;
+
+    // Off-heap FIFO of OrderSlab records, linked through the records
+    private int headSlot = OrderSlab.NIL;
+    private int tailSlot = OrderSlab.NIL;
+
+    // Aggregates for L2 depth; NO bids are Buy NO orders resting as YES asks
+    private int quantity;
+    private int noBidQuantity;
+    private int noBidCount;
+
+    // Queue view over the intrusive list
+    private final Queue<OrderBookEntry> orders = new Orders();
+
+    PriceLevel(PriceLadder ladder, int price) {
+        this.ladder = ladder;
+        this.price = price;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Total remaining quantity resting at this price
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Remaining quantity of NO bids resting at this price
+     */
+    public int getNoBidQuantity() {
+        return noBidQuantity;
+    }
+
+    public int getNoBidCount() {
+        return noBidCount;
+    }
+
+    /**
+     * Oldest resting order at this price, or null when the level is empty
+     */
+    OrderBookEntry head() {
+        return head;
+    }
+
+    /**
+     * Oldest order at this level, or null. Walk on with getNextAtLevel().
+     */
+    public OrderBookEntry getFirst() {
+        return head;
+    }
+
+    /**
+     * Oldest record at this level of an off-heap book, or OrderSlab.NIL.
+     * Walk on with OrderSlab.nextAtLevel().
+     */
+    public int getFirstSlot() {
+        return headSlot;
+    }
+
+    /**
+     * Append an order to the back of the queue
+     */
+    void append(OrderBookEntry order) {
+        if (order.level != null) {
+            throw new IllegalStateException("Order " + order.getOrderId() + " is already resting at price " + order.level.price);
+        }
+
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+
+        added(order.getQuantity(), order.isNoBid());
+    }
+
+    /**
+     * Append an off-heap record to the back of the queue
+     */
+    void appendSlot(int slot) {
+        OrderSlab slab = ladder.slab();
+        slab.setPrev(slot, tailSlot);
+        slab.setNext(slot, OrderSlab.NIL);
+        if (tailSlot == OrderSlab.NIL) {
+            headSlot = slot;
+        } else {
+            slab.setNext(tailSlot, slot);
+        }
+        tailSlot = slot;
+
+        added(slab.quantity(slot), slab.isNoBid(slot));
+    }
+
+    /**
+     * Unlink an order from this level in O(1)
+     * @return false if the order was not resting here
+     */
+    boolean unlink(OrderBookEntry order) {
+        if (order.level != this) {
+            return false;
+        }
+
+        OrderBookEntry prev = order.prev;
+        OrderBookEntry next = order.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+
+        order.level = null;
+        order.prev = null;
+        order.next = null;
+
+        removed(order.getQuantity(), order.isNoBid());
+        return true;
+    }
+
+    /**
+     * Unlink an off-heap record resting at this level in O(1)
+     */
+    void unlinkSlot(int slot) {
+        OrderSlab slab = ladder.slab();
+        int prev = slab.prev(slot);
+        int next = slab.nextAtLevel(slot);
+        if (prev == OrderSlab.NIL) {
+            headSlot = next;
+        } else {
+            slab.setNext(prev, next);
+        }
+        if (next == OrderSlab.NIL) {
+            tailSlot = prev;
+        } else {
+            slab.setPrev(next, prev);
+        }
+
+        removed(slab.quantity(slot), slab.isNoBid(slot));
+    }
+
+    /**
+     * Called by a resting order after its quantity was reduced in place
+     */
+    void quantityReduced(OrderBookEntry order, int amount) {
+        quantityReduced(order.isNoBid(), amount);
+    }
+
+    void quantityReduced(boolean noBid, int amount) {
+        quantityChanged(noBid, -amount);
+    }
+
+    /**
+     * Called after a resting order's quantity changed in place, e.g. by an amend
+     */
+    void quantityChanged(boolean noBid, int change) {
+        quantity += change;
+        if (noBid) {
+            noBidQuantity += change;
+        }
+        ladder.levelChanged(price, change, noBid ? change : 0);
+    }
+
+    /**
+     * Move a resting order to the back of the queue, losing its time priority.
+     * Aggregates are unchanged.
+     */
+    void moveToBack(OrderBookEntry order) {
+        if (order.level != this || order == tail) {
+            return;
+        }
+        OrderBookEntry prev = order.prev;
+        OrderBookEntry next = order.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        next.prev = prev;
+
+        order.prev = tail;
+        order.next = null;
+        tail.next = order;
+        tail = order;
+    }
+
+    /**
+     * moveToBack for an off-heap record resting at this level
+     */
+    void moveSlotToBack(int slot) {
+        if (slot == tailSlot) {
+            return;
+        }
+        OrderSlab slab = ladder.slab();
+        int prev = slab.prev(slot);
+        int next = slab.nextAtLevel(slot);
+        if (prev == OrderSlab.NIL) {
+            headSlot = next;
+        } else {
+            slab.setNext(prev, next);
+        }
+        slab.setPrev(next, prev);
+
+        slab.setPrev(slot, tailSlot);
+        slab.setNext(slot, OrderSlab.NIL);
+        slab.setNext(tailSlot, slot);
+        tailSlot = slot;
+    }
+
+    private void added(int amount, boolean noBid) {
+        quantity += amount;
+        if (noBid) {
+            noBidQuantity += amount;
+            if (noBidCount++ == 0) {
+                ladder.markNoBid(price);
+            }
+        }
+        if (size++ == 0) {
+            ladder.markOccupied(price);
+        }
+        ladder.levelChanged(price, amount, noBid ? amount : 0);
+    }
+
+    private void removed(int amount, boolean noBid) {
+        quantity -= amount;
+        if (noBid) {
+            noBidQuantity -= amount;
+            if (--noBidCount == 0) {
+                ladder.clearNoBid(price);
+            }
+        }
+        if (--size == 0) {
+            ladder.markEmpty(price);
+        }
+        ladder.levelChanged(price, -amount, noBid ? -amount : 0);
+    }
+
+    @Override
+    public Integer getKey() {
+        // Prices are 1-99, always served from the Integer cache
+        return price;
+    }
+
+    @Override
+    public Queue<OrderBookEntry> getValue() {
+        return orders;
+    }
+
+    @Override
+    public Queue<OrderBookEntry> setValue(Queue<OrderBookEntry> value) {
+        throw new UnsupportedOperationException("Price levels are owned by the order book");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Map.Entry<?, ?> other)) return false;
+        return Objects.equals(getKey(), other.getKey()) && Objects.equals(orders, other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return price ^ orders.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return price + "=" + orders;
+    }
+
+    /**
+     * Read-only queue view of the level. Orders only join or leave a level
+     * through the order book, under its write lock, which also keeps its
+     * order index, ID registry and per-user chains in step; the mutators
+     * here throw. Membership checks go through the entry's level
+     * back-pointer rather than scanning.
+     *
+     * On an off-heap book the view yields detached copies of the records.
+     */
+    private final class Orders extends AbstractQueue<OrderBookEntry> {
+        @Override
+        public boolean offer(OrderBookEntry order) {
+            throw readOnly();
+        }
+
+        @Override
+        public OrderBookEntry poll() {
+            throw readOnly();
+        }
+
+        @Override
+        public OrderBookEntry peek() {
+            OrderSlab slab = ladder.slab();
+            if (slab != null) {
+                return headSlot == OrderSlab.NIL ? null : slab.toEntry(headSlot);
+            }
+            return head;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof OrderBookEntry order)) {
+                return false;
+            }
+            OrderSlab slab = ladder.slab();
+            if (slab != null) {
+                // Copies are matched by order ID
+                for (int slot = headSlot; slot != OrderSlab.NIL; slot = slab.nextAtLevel(slot)) {
+                    if (slab.id(slot) == order.getId()) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return order.level == PriceLevel.this;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw readOnly();
+        }
+
+        @Override
+        public Iterator<OrderBookEntry> iterator() {
+            OrderSlab slab = ladder.slab();
+            if (slab != null) {
+                return new Iterator<>() {
+                    private int next = headSlot;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != OrderSlab.NIL;
+                    }
+
+                    @Override
+                    public OrderBookEntry next() {
+                        if (next == OrderSlab.NIL) {
+                            throw new NoSuchElementException();
+                        }
+                        OrderBookEntry copy = slab.toEntry(next);
+                        next = slab.nextAtLevel(next);
+                        return copy;
+                    }
+                };
+            }
+            return new Iterator<>() {
+                private OrderBookEntry next = head;
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public OrderBookEntry next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    OrderBookEntry order = next;
+                    next = next.next;
+                    return order;
+                }
+            };
+        }
+
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Price levels only change through the order book");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.kalshi.mock.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Immutable best bid/offer of an order book, plus the last trade.
+ *
+ * The book's writer publishes these values under a seqlock whenever a command
+ * changes the book, and readers (ticker, depth-1 REST, risk checks, UI polling)
+ * copy them into one of these records, so they get a consistent top of book
+ * without taking the book lock or ever blocking the matcher. A record is
+ * reused by later readers until the book moves. Prices are normalized YES
+ * cents, and 0 means that side is empty.
+ */
+@ToString
+public class TopOfBook {
+    static final TopOfBook EMPTY = new TopOfBook(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    @Getter
+    private final long version;
+    @Getter
+    private final int bestBid;
+    @Getter
+    private final int bestBidSize;
+    @Getter
+    private final int bestAsk;
+    @Getter
+    private final int bestAskSize;
+    @Getter
+    private final int bestNoBid; // NO price of the best NO bid
+    @Getter
+    private final int bestNoBidSize;
+    @Getter
+    private final int lastTradePrice;
+    @Getter
+    private final int lastTradeQuantity;
+
+    TopOfBook(long version, int bestBid, int bestBidSize, int bestAsk, int bestAskSize,
+              int bestNoBid, int bestNoBidSize, int lastTradePrice, int lastTradeQuantity) {
+        this.version = version;
+        this.bestBid = bestBid;
+        this.bestBidSize = bestBidSize;
+        this.bestAsk = bestAsk;
+        this.bestAskSize = bestAskSize;
+        this.bestNoBid = bestNoBid;
+        this.bestNoBidSize = bestNoBidSize;
+        this.lastTradePrice = lastTradePrice;
+        this.lastTradeQuantity = lastTradeQuantity;
+    }
+
+    public boolean hasBid() {
+        return bestBid != PriceLadder.NONE;
+    }
+
+    public boolean hasAsk() {
+        return bestAsk != PriceLadder.NONE;
+    }
+
+    public boolean hasNoBid() {
+        return bestNoBid != PriceLadder.NONE;
+    }
+}
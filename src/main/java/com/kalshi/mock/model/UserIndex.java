@@ -0,0 +1,115 @@
+package com.kalshi.mock.model;
+
+import java.util.Objects;
+
+/**
+ * Open-addressing hash index from user ID to the head of that user's chain
+ * of resting orders (see OrderBookEntry.userNext).
+ *
+ * Linear probing over one array of chain heads, keyed by the head's own
+ * user ID, with backward-shift deletion, so a user's first order resting
+ * and their last one leaving allocate nothing (apart from growing). The
+ * table doubles at half full.
+ *
+ * Not thread-safe on its own; ConcurrentOrderBook guards it with its lock.
+ */
+final class UserIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private OrderBookEntry[] heads = new OrderBookEntry[MIN_CAPACITY]; // null marks an empty slot
+    private int mask = MIN_CAPACITY - 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    OrderBookEntry get(String userId) {
+        for (int slot = slot(userId, mask); ; slot = (slot + 1) & mask) {
+            OrderBookEntry head = heads[slot];
+            if (head == null || Objects.equals(head.getUserId(), userId)) {
+                return head;
+            }
+        }
+    }
+
+    /**
+     * Make an order the head of its user's chain
+     * @return the previous head, or null if the user had no orders here
+     */
+    OrderBookEntry put(OrderBookEntry head) {
+        int slot = slot(head.getUserId(), mask);
+        while (heads[slot] != null) {
+            if (Objects.equals(heads[slot].getUserId(), head.getUserId())) {
+                OrderBookEntry previous = heads[slot];
+                heads[slot] = head;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        heads[slot] = head;
+        if (++size * 2 > heads.length) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * Drop the user's chain
+     * @return its head, or null if the user had no orders here
+     */
+    OrderBookEntry remove(String userId) {
+        int slot = slot(userId, mask);
+        while (true) {
+            OrderBookEntry head = heads[slot];
+            if (head == null) {
+                return null;
+            }
+            if (Objects.equals(head.getUserId(), userId)) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        OrderBookEntry removed = heads[slot];
+
+        // Shift back any later entry of the probe run that would otherwise
+        // become unreachable through the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; heads[next] != null; next = (next + 1) & mask) {
+            int home = slot(heads[next].getUserId(), mask);
+            boolean reachable = hole <= next
+                ? hole < home && home <= next
+                : hole < home || home <= next;
+            if (!reachable) {
+                heads[hole] = heads[next];
+                hole = next;
+            }
+        }
+        heads[hole] = null;
+        size--;
+        return removed;
+    }
+
+    private void grow() {
+        OrderBookEntry[] oldHeads = heads;
+        heads = new OrderBookEntry[oldHeads.length << 1];
+        mask = heads.length - 1;
+        for (OrderBookEntry head : oldHeads) {
+            if (head != null) {
+                int slot = slot(head.getUserId(), mask);
+                while (heads[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                heads[slot] = head;
+            }
+        }
+    }
+
+    private static int slot(String userId, int mask) {
+        // String hash codes are cached; spread their high bits into the low ones
+        int hash = Objects.hashCode(userId);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
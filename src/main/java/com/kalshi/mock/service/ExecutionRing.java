@@ -0,0 +1,108 @@
+package com.kalshi.mock.service;
+
+import com.kalshi.mock.service.MatchingEngine.Execution;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Preallocated ring of reusable execution records for the zero-garbage
+ * matching path (MatchingEngine.matchOrder with a ring).
+ *
+ * Each match claims records from the ring's cursor onwards, overwriting the
+ * oldest ones, so a record is valid until the ring wraps around to it. If a
+ * single match needs more records than the ring holds, the ring grows rather
+ * than overwrite executions of that same match. Owned by one writer thread;
+ * not thread-safe.
+ */
+public class ExecutionRing {
+
+    private Execution[] records;
+    private int mask;
+    private int cursor;
+    private int matchStart;
+    private int matchCount;
+
+    // Read-only view of the last match, reused for every match
+    private final List<Execution> lastMatch = new AbstractList<>() {
+        @Override
+        public Execution get(int index) {
+            return ExecutionRing.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return matchCount;
+        }
+    };
+
+    public ExecutionRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        records = new Execution[size];
+        for (int i = 0; i < size; i++) {
+            records[i] = new Execution();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Number of executions produced by the last match
+     */
+    public int size() {
+        return matchCount;
+    }
+
+    /**
+     * The i-th execution of the last match
+     */
+    public Execution get(int i) {
+        if (i < 0 || i >= matchCount) {
+            throw new IndexOutOfBoundsException("Execution " + i + " of " + matchCount);
+        }
+        return records[(matchStart + i) & mask];
+    }
+
+    /**
+     * The executions of the last match as a list. The view itself is reused:
+     * it shows the next match once that starts.
+     */
+    public List<Execution> lastMatch() {
+        return lastMatch;
+    }
+
+    public int capacity() {
+        return records.length;
+    }
+
+    void startMatch() {
+        matchStart = cursor;
+        matchCount = 0;
+    }
+
+    Execution claim() {
+        if (matchCount == records.length) {
+            grow();
+        }
+        Execution record = records[cursor];
+        cursor = (cursor + 1) & mask;
+        matchCount++;
+        return record;
+    }
+
+    /**
+     * Double the ring, keeping the current match's records in order at the front
+     */
+    private void grow() {
+        Execution[] larger = new Execution[records.length * 2];
+        for (int i = 0; i < records.length; i++) {
+            larger[i] = records[(matchStart + i) & mask];
+        }
+        for (int i = records.length; i < larger.length; i++) {
+            larger[i] = new Execution();
+        }
+        cursor = records.length;
+        matchStart = 0;
+        records = larger;
+        mask = larger.length - 1;
+    }
+}
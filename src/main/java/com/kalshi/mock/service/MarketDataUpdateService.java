@@ -9,6 +9,7 @@ import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * Service that listens for order book events and updates market data
@@ -30,13 +31,31 @@ public class MarketDataUpdateService implements OrderBookEventListener {
     @Override
     public void onOrderBookEvent(OrderBookEvent event) {
         if (event.getType() == OrderBookEvent.EventType.TICKER_UPDATE) {
-            handleTickerUpdate(event);
+            OrderBookEvent.TickerData tickerData = (OrderBookEvent.TickerData) event.getData();
+            handleTickerUpdate(tickerData, tickerData.getVolume());
         }
     }
     
-    private void handleTickerUpdate(OrderBookEvent event) {
-        OrderBookEvent.TickerData tickerData = (OrderBookEvent.TickerData) event.getData();
-        
+    /**
+     * One market data update per order book command: the prices of its last
+     * ticker update and the volume of all of them
+     */
+    @Override
+    public void onOrderBookEvents(List<OrderBookEvent> events) {
+        OrderBookEvent.TickerData latest = null;
+        long volume = 0;
+        for (OrderBookEvent event : events) {
+            if (event.getType() == OrderBookEvent.EventType.TICKER_UPDATE) {
+                latest = (OrderBookEvent.TickerData) event.getData();
+                volume += latest.getVolume();
+            }
+        }
+        if (latest != null) {
+            handleTickerUpdate(latest, volume);
+        }
+    }
+    
+    private void handleTickerUpdate(OrderBookEvent.TickerData tickerData, long volume) {
         // Update market prices in database
         BigDecimal lastPrice = BigDecimal.valueOf(tickerData.getLastPrice());
         BigDecimal bestBid = BigDecimal.valueOf(tickerData.getBestBid());
@@ -52,6 +71,6 @@ public class MarketDataUpdateService implements OrderBookEventListener {
         );
         
         // Update volume
-        marketService.updateMarketVolume(tickerData.getMarketTicker(), tickerData.getVolume());
+        marketService.updateMarketVolume(tickerData.getMarketTicker(), volume);
     }
 }
\ No newline at end of file
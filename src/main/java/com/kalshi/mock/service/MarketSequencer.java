@@ -0,0 +1,99 @@
+package com.kalshi.mock.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer command sequencer for the order books.
+ *
+ * Every market is pinned to one shard, and each shard is a single thread
+ * draining its own command queue. All commands that mutate a market's book
+ * (new orders, cancels, amends) are submitted here, so a book only ever has
+ * one writer and its commands run strictly in submission order. Markets on
+ * different shards match in parallel instead of serializing on one monitor.
+ *
+ * Callers get a CompletableFuture back; a command submitted from the shard's
+ * own thread runs inline so commands can call each other without deadlocking.
+ */
+@Slf4j
+public class MarketSequencer implements AutoCloseable {
+
+    private final ExecutorService[] shards;
+    private final Thread[] shardThreads;
+
+    public MarketSequencer(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Sequencer needs at least one thread, got: " + threads);
+        }
+
+        this.shards = new ExecutorService[threads];
+        this.shardThreads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int shard = i;
+            shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "market-sequencer-" + shard);
+                thread.setDaemon(true);
+                shardThreads[shard] = thread;
+                return thread;
+            });
+        }
+        log.info("Started market sequencer with {} shard threads", threads);
+    }
+
+    /**
+     * Submit a command for a market. Commands for the same market run one at a
+     * time, in submission order, on that market's shard thread.
+     */
+    public <T> CompletableFuture<T> submit(String marketTicker, Callable<T> command) {
+        int shard = shardFor(marketTicker);
+
+        if (Thread.currentThread() == shardThreads[shard]) {
+            // Already sequenced for this market
+            try {
+                return CompletableFuture.completedFuture(command.call());
+            } catch (Throwable t) {
+                return CompletableFuture.failedFuture(t);
+            }
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        shards[shard].execute(() -> {
+            try {
+                future.complete(command.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    int shardFor(String marketTicker) {
+        return Math.floorMod(marketTicker.hashCode(), shards.length);
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        for (ExecutorService shard : shards) {
+            try {
+                if (!shard.awaitTermination(5, TimeUnit.SECONDS)) {
+                    shard.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                shard.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.kalshi.mock.service;
 
 import com.kalshi.mock.model.ConcurrentOrderBook;
 import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.OrderSlab;
+import com.kalshi.mock.model.PriceLevel;
 import com.fbg.api.rest.*;
 import com.fbg.api.market.KalshiSide;
 import lombok.ToString;
@@ -14,6 +16,11 @@ import java.util.concurrent.atomic.AtomicLong;
 /**
  * Matching engine that executes trades when orders cross in the order book.
  * All matching is done in the normalized YES order book space.
+ *
+ * The engine holds no per-market state and is not synchronized: callers must
+ * only match against a book from its single writer thread (see MarketSequencer).
+ * Each match runs inside the book's write lock, so readers and snapshots never
+ * see a partially matched book.
  */
 @Slf4j
 public class MatchingEngine {
@@ -25,102 +32,258 @@ public class MatchingEngine {
      * Attempt to match a new order against the order book
      * @return List of executions that occurred
      */
-    public synchronized List<Execution> matchOrder(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook) {
+    public List<Execution> matchOrder(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook) {
+        return matchOrder(incomingOrder, orderBook, TimeInForce.GTC);
+    }
+    
+    /**
+     * Attempt to match a new order with the given time in force. A FOK order
+     * is first checked against the aggregated depth up to its limit price;
+     * if that cannot fill it completely it is killed with no executions and
+     * the book untouched. The matching itself is the same for every time in
+     * force: whatever is left in the order's quantity afterwards is for the
+     * caller to rest (GTC, GTD) or discard (IOC, FOK).
+     * @return List of executions that occurred
+     */
+    public List<Execution> matchOrder(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook,
+                                      TimeInForce timeInForce) {
 
         // I'm making everything thread safe when likely not strictly necessary - just a mock - avoids thread safety issues
         List<Execution> executions = new CopyOnWriteArrayList<>();
 
-        // Reject market orders
+        rejectMarketOrder(incomingOrder);
+        
+        orderBook.beginMutation();
+        try {
+            if (timeInForce == TimeInForce.FOK && orderBook.getFillableQuantity(incomingOrder.isNormalizedBuy(),
+                    incomingOrder.getNormalizedPrice(), incomingOrder.getQuantity()) < incomingOrder.getQuantity()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Killing FOK order, not enough depth to fill " + incomingOrder);
+                }
+                return executions;
+            }
+            match(incomingOrder, orderBook, null, executions);
+        } finally {
+            orderBook.endMutation();
+        }
+        return executions;
+    }
+    
+    /**
+     * Zero-garbage variant of matchOrder: executions are written into reusable
+     * records claimed from the ring, and nothing is allocated in steady state.
+     * The records stay valid until the ring wraps around to them again.
+     * @return number of executions, readable as ring.get(0 .. n-1)
+     */
+    public int matchOrder(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook, ExecutionRing ring) {
+        return matchOrder(incomingOrder, orderBook, TimeInForce.GTC, ring);
+    }
+    
+    /**
+     * Zero-garbage matchOrder with the given time in force; a FOK order the
+     * book cannot fill completely leaves the ring empty
+     * @return number of executions, readable as ring.get(0 .. n-1)
+     */
+    public int matchOrder(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook, TimeInForce timeInForce,
+                          ExecutionRing ring) {
+        rejectMarketOrder(incomingOrder);
+        
+        ring.startMatch();
+        orderBook.beginMutation();
+        try {
+            if (timeInForce == TimeInForce.FOK && orderBook.getFillableQuantity(incomingOrder.isNormalizedBuy(),
+                    incomingOrder.getNormalizedPrice(), incomingOrder.getQuantity()) < incomingOrder.getQuantity()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Killing FOK order, not enough depth to fill " + incomingOrder);
+                }
+                return 0;
+            }
+            return match(incomingOrder, orderBook, ring, null);
+        } finally {
+            orderBook.endMutation();
+        }
+    }
+    
+    /**
+     * Uncross a book at the end of its opening auction, in one pass: every
+     * bid at or above the clearing price trades with every ask at or below
+     * it, oldest first within each level, all at the clearing price (see
+     * ConcurrentOrderBook.getClearingPrice). Neither side took liquidity, so
+     * each execution names the later of its two orders as the aggressor.
+     * @return executions, empty if the book is not crossed
+     */
+    public List<Execution> uncross(ConcurrentOrderBook orderBook) {
+        List<Execution> executions = new ArrayList<>();
+        
+        orderBook.beginMutation();
+        try {
+            int clearingPrice = orderBook.getClearingPrice();
+            if (clearingPrice == 0) {
+                return executions;
+            }
+            
+            while (true) {
+                PriceLevel bidLevel = orderBook.getBestBidLevel();
+                PriceLevel askLevel = orderBook.getBestAskLevel();
+                if (bidLevel == null || askLevel == null
+                        || bidLevel.getPrice() < clearingPrice || askLevel.getPrice() > clearingPrice) {
+                    break;
+                }
+                
+                boolean matched = orderBook.isOffHeap()
+                    ? uncrossOffHeapPair(orderBook, bidLevel, askLevel, clearingPrice, executions)
+                    : uncrossPair(orderBook, bidLevel, askLevel, clearingPrice, executions);
+                if (!matched) {
+                    break; // Only depleted orders left at a best level
+                }
+                
+                if (bidLevel.isEmpty()) {
+                    orderBook.removeEmptyBidLevel(bidLevel.getPrice());
+                }
+                if (askLevel.isEmpty()) {
+                    orderBook.removeEmptyAskLevel(askLevel.getPrice());
+                }
+            }
+        } finally {
+            orderBook.endMutation();
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Uncrossed " + orderBook.getMarketTicker() + " with " + executions.size() + " executions");
+        }
+        return executions;
+    }
+    
+    /**
+     * Trade the oldest live bid and ask of two levels against each other
+     * @return false if either level has no live order
+     */
+    private boolean uncrossPair(ConcurrentOrderBook orderBook, PriceLevel bidLevel, PriceLevel askLevel,
+                                int clearingPrice, List<Execution> executions) {
+        OrderBookEntry bid = bidLevel.getFirst();
+        while (bid != null && bid.getQuantity() == 0) {
+            bid = bid.getNextAtLevel();
+        }
+        OrderBookEntry ask = askLevel.getFirst();
+        while (ask != null && ask.getQuantity() == 0) {
+            ask = ask.getNextAtLevel();
+        }
+        if (bid == null || ask == null) {
+            return false;
+        }
+        
+        int executionQty = Math.min(bid.getQuantity(), ask.getQuantity());
+        orderBook.fillResting(bid, executionQty, clearingPrice);
+        orderBook.fillResting(ask, executionQty, clearingPrice);
+        addAuctionExecution(bid, ask, executionQty, clearingPrice, executions);
+        return true;
+    }
+    
+    private boolean uncrossOffHeapPair(ConcurrentOrderBook orderBook, PriceLevel bidLevel, PriceLevel askLevel,
+                                       int clearingPrice, List<Execution> executions) {
+        OrderSlab slab = orderBook.getOrderSlab();
+        int bidSlot = bidLevel.getFirstSlot();
+        while (bidSlot != OrderSlab.NIL && slab.quantity(bidSlot) == 0) {
+            bidSlot = slab.nextAtLevel(bidSlot);
+        }
+        int askSlot = askLevel.getFirstSlot();
+        while (askSlot != OrderSlab.NIL && slab.quantity(askSlot) == 0) {
+            askSlot = slab.nextAtLevel(askSlot);
+        }
+        if (bidSlot == OrderSlab.NIL || askSlot == OrderSlab.NIL) {
+            return false;
+        }
+        
+        int executionQty = Math.min(slab.quantity(bidSlot), slab.quantity(askSlot));
+        OrderBookEntry bid = orderBook.fillResting(bidSlot, executionQty, clearingPrice);
+        OrderBookEntry ask = orderBook.fillResting(askSlot, executionQty, clearingPrice);
+        addAuctionExecution(bid, ask, executionQty, clearingPrice, executions);
+        return true;
+    }
+    
+    private void addAuctionExecution(OrderBookEntry bid, OrderBookEntry ask, int quantity, int clearingPrice,
+                                     List<Execution> executions) {
+        boolean bidLater = bid.getSequence() > ask.getSequence();
+        Execution execution = new Execution();
+        execution.set(
+            generateTradeId(),
+            bidLater ? bid : ask,
+            bidLater ? ask : bid,
+            quantity,
+            clearingPrice,
+            System.currentTimeMillis()
+        );
+        executions.add(execution);
+    }
+    
+    private void rejectMarketOrder(OrderBookEntry incomingOrder) {
         if (incomingOrder.getNormalizedPrice() == 0) {
             log.info("Rejecting market order (must never send a market order!) " + incomingOrder);
             throw new IllegalArgumentException("Market orders are not supported - price must be specified, is a market order: " + incomingOrder);
         }
-        
+    }
+    
+    /**
+     * Matching loop, run inside the book's write lock. Records each execution
+     * in the ring if one is given, otherwise in a new Execution added to the list.
+     */
+    private int match(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook,
+                      ExecutionRing ring, List<Execution> executions) {
         // Determine which side of the book to match against
         boolean incomingIsBuy = incomingOrder.isNormalizedBuy();
+        int executionCount = 0;
         
         while (incomingOrder.getQuantity() > 0) {
-            Map.Entry<Integer, Queue<OrderBookEntry>> bestLevel = null;
+            PriceLevel bestLevel;
             
             if (incomingIsBuy) {
                 // Buy order matches against asks (sells)
-                bestLevel = orderBook.getBestAsk();
+                bestLevel = orderBook.getBestAskLevel();
                 
                 // Check if we can match (buy price >= ask price)
-                if (bestLevel == null || incomingOrder.getNormalizedPrice() < bestLevel.getKey()) {
-                    log.info("No BUY match possible, bestLevel="+bestLevel+", incomingOrder="+incomingOrder);
+                if (bestLevel == null || incomingOrder.getNormalizedPrice() < bestLevel.getPrice()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("No BUY match possible, bestLevel=" + bestLevel + ", incomingOrder=" + incomingOrder);
+                    }
                     break; // No match possible
                 }
             } else {
                 // Sell order matches against bids (buys)
-                bestLevel = orderBook.getBestBid();
+                bestLevel = orderBook.getBestBidLevel();
                 
                 // Check if we can match (sell price <= bid price)
-                if (bestLevel == null || incomingOrder.getNormalizedPrice() > bestLevel.getKey()) {
-                    log.info("No SELL match possible, bestLevel="+bestLevel+", incomingOrder="+incomingOrder);
+                if (bestLevel == null || incomingOrder.getNormalizedPrice() > bestLevel.getPrice()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("No SELL match possible, bestLevel=" + bestLevel + ", incomingOrder=" + incomingOrder);
+                    }
                     break; // No match possible
                 }
             }
             
-            // Match against orders at the best level
-            Queue<OrderBookEntry> ordersAtLevel = bestLevel.getValue();
-
-            log.info("Matching against level " + bestLevel.getKey() + ", orders=" + ordersAtLevel);
-
-            Iterator<OrderBookEntry> iterator = ordersAtLevel.iterator();
-            
-            while (iterator.hasNext() && incomingOrder.getQuantity() > 0) {
-                OrderBookEntry restingOrder = iterator.next();
-                
-                if (restingOrder.getQuantity() == 0) {
-                    continue; // Skip depleted orders
-                }
-                
-                // Calculate execution quantity
-                int executionQty = Math.min(incomingOrder.getQuantity(), restingOrder.getQuantity());
-                
-                // Determine execution price (price of resting order)
-                int executionPrice = bestLevel.getKey();
-                
-                // Create execution record
-                Execution execution = new Execution(
-                    generateTradeId(),
-                    incomingOrder,
-                    restingOrder,
-                    executionQty,
-                    executionPrice,
-                    System.currentTimeMillis()
-                );
-
-                log.info("Order incoming is MATCHED and EXECUTION being generated, orderID and quantity: "+incomingOrder+", Execution is: "+execution);
-
-                executions.add(execution);
-                
-                // Update quantities
-                incomingOrder.reduceQuantity(executionQty);
-                restingOrder.reduceQuantity(executionQty);
-                
-                // Notify order book of execution
-                orderBook.notifyOrderExecuted(restingOrder, executionQty);
-                
-                // Remove resting order if fully filled
-                if (restingOrder.getQuantity() == 0) {
-                    iterator.remove();
-                    orderBook.removeFilledOrder(restingOrder.getOrderId());
-                }
+            // Match against orders at the best level, oldest first
+            int executionPrice = bestLevel.getPrice(); // price of the resting orders
+            if (log.isDebugEnabled()) {
+                log.debug("Matching against level " + executionPrice + ", orders=" + bestLevel.getValue());
             }
             
+            int levelExecutions = orderBook.isOffHeap()
+                ? matchOffHeapLevel(incomingOrder, orderBook, bestLevel, ring, executions)
+                : matchLevel(incomingOrder, orderBook, bestLevel, ring, executions);
+            executionCount += levelExecutions;
+            
             // Clean up empty price level
-            if (ordersAtLevel.isEmpty()) {
+            if (bestLevel.isEmpty()) {
                 if (incomingIsBuy) {
-                    orderBook.removeEmptyAskLevel(bestLevel.getKey());
+                    orderBook.removeEmptyAskLevel(executionPrice);
                 } else {
-                    orderBook.removeEmptyBidLevel(bestLevel.getKey());
+                    orderBook.removeEmptyBidLevel(executionPrice);
                 }
+            } else if (levelExecutions == 0) {
+                break; // Only depleted orders left at the best level
             }
         }
         
-        return executions;
+        return executionCount;
     }
     
     /**
@@ -162,33 +325,181 @@ public class MatchingEngine {
         List<Fill> fills = new ArrayList<>();
         
         for (Execution exec : executions) {
-            // Create fill for aggressor
-            fills.add(createFill(exec, exec.getAggressor(), marketTicker, true));
+            String tradeId = exec.getTradeId();
+            
+            // Create fill for aggressor, at its original price rather than the execution price
+            fills.add(createFill(exec, tradeId, exec.getAggressor(), marketTicker, true, exec.getAggressor().getPrice()));
             
             // Create fill for passive order
-            fills.add(createFill(exec, exec.getPassive(), marketTicker, false));
+            fills.add(createFill(exec, tradeId, exec.getPassive(), marketTicker, false, exec.getPassive().getPrice()));
         }
         
         return fills;
     }
     
-    private Fill createFill(Execution exec, OrderBookEntry order, String marketTicker, boolean isTaker) {
+    /**
+     * Fills for the executions of an auction uncross, aggressor then passive
+     * for each. Both orders fill at the clearing price, in their own side's terms.
+     */
+    public List<Fill> uncrossExecutionsToFills(List<Execution> executions, String marketTicker) {
+        List<Fill> fills = new ArrayList<>();
+        
+        for (Execution exec : executions) {
+            String tradeId = exec.getTradeId();
+            fills.add(createFill(exec, tradeId, exec.getAggressor(), marketTicker, true, sidePrice(exec.getAggressor(), exec)));
+            fills.add(createFill(exec, tradeId, exec.getPassive(), marketTicker, false, sidePrice(exec.getPassive(), exec)));
+        }
+        
+        return fills;
+    }
+    
+    private static int sidePrice(OrderBookEntry order, Execution exec) {
+        return order.getSide() == KalshiSide.yes ? exec.getExecutionPrice() : 100 - exec.getExecutionPrice();
+    }
+    
+    private Fill createFill(Execution exec, String tradeId, OrderBookEntry order, String marketTicker, boolean isTaker,
+                            int price) {
         return new Fill(
             "FILL-" + fillIdGenerator.incrementAndGet(),
             order.getOrderId(),
             marketTicker,
             marketTicker,
             order.getSide(),
-            order.getPrice(), // Original price, not execution price
+            price,
             exec.getQuantity(),
             isTaker,
             exec.getTimestamp(),
-            exec.getTradeId()
+            tradeId
         );
     }
     
-    private String generateTradeId() {
-        return "TRD-" + tradeIdGenerator.incrementAndGet();
+    /**
+     * Match against the resting orders of one level, oldest first
+     * @return number of executions at this level
+     */
+    private int matchLevel(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook, PriceLevel bestLevel,
+                           ExecutionRing ring, List<Execution> executions) {
+        int executionPrice = bestLevel.getPrice(); // price of the resting orders
+        int levelExecutions = 0;
+        OrderBookEntry restingOrder = bestLevel.getFirst();
+        while (restingOrder != null && incomingOrder.getQuantity() > 0) {
+            // Unlinking a filled order clears its link, so step first
+            OrderBookEntry nextOrder = restingOrder.getNextAtLevel();
+            
+            if (restingOrder.getQuantity() == 0) {
+                restingOrder = nextOrder;
+                continue; // Skip depleted orders
+            }
+            
+            // Calculate execution quantity
+            int executionQty = Math.min(incomingOrder.getQuantity(), restingOrder.getQuantity());
+            
+            // Create execution record
+            Execution execution = ring != null ? ring.claim() : new Execution();
+            execution.set(
+                generateTradeId(),
+                incomingOrder,
+                restingOrder,
+                executionQty,
+                executionPrice,
+                System.currentTimeMillis()
+            );
+            if (executions != null) {
+                executions.add(execution);
+            }
+            levelExecutions++;
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Order incoming is MATCHED and EXECUTION being generated, orderID and quantity: " + incomingOrder + ", Execution is: " + execution);
+            }
+            
+            // Update quantities; the book notifies the execution and removes
+            // the resting order if it is fully filled
+            incomingOrder.fillIncoming(executionQty);
+            orderBook.fillResting(restingOrder, executionQty);
+            
+            restingOrder = nextOrder;
+        }
+        return levelExecutions;
+    }
+    
+    /**
+     * matchLevel for an off-heap book: walks the level's records by slot and
+     * fills them through the book. Each execution refers to a detached copy
+     * of the resting order as it was right after the fill.
+     */
+    private int matchOffHeapLevel(OrderBookEntry incomingOrder, ConcurrentOrderBook orderBook, PriceLevel bestLevel,
+                                  ExecutionRing ring, List<Execution> executions) {
+        OrderSlab slab = orderBook.getOrderSlab();
+        int executionPrice = bestLevel.getPrice();
+        
+        int levelExecutions = 0;
+        int slot = bestLevel.getFirstSlot();
+        while (slot != OrderSlab.NIL && incomingOrder.getQuantity() > 0) {
+            // A filled record goes back to the free list, so step first
+            int nextSlot = slab.nextAtLevel(slot);
+            
+            int restingQuantity = slab.quantity(slot);
+            if (restingQuantity == 0) {
+                slot = nextSlot;
+                continue; // Skip depleted orders
+            }
+            
+            int executionQty = Math.min(incomingOrder.getQuantity(), restingQuantity);
+            incomingOrder.fillIncoming(executionQty);
+            OrderBookEntry restingOrder = orderBook.fillResting(slot, executionQty);
+            
+            Execution execution = ring != null ? ring.claim() : new Execution();
+            execution.set(
+                generateTradeId(),
+                incomingOrder,
+                restingOrder,
+                executionQty,
+                executionPrice,
+                System.currentTimeMillis()
+            );
+            if (executions != null) {
+                executions.add(execution);
+            }
+            levelExecutions++;
+            
+            slot = nextSlot;
+        }
+        return levelExecutions;
+    }
+    
+    private long generateTradeId() {
+        return tradeIdGenerator.incrementAndGet();
+    }
+    
+    /**
+     * How long an order's unmatched remainder lives: GTC rests in the book,
+     * GTD rests until its expiration time, IOC is discarded after matching,
+     * FOK fills completely or not at all
+     */
+    public enum TimeInForce {
+        GTC, GTD, IOC, FOK;
+        
+        /**
+         * Whether an unmatched remainder goes into the book
+         */
+        public boolean rests() {
+            return this == GTC || this == GTD;
+        }
+        
+        /**
+         * Parse the REST/FIX value; a missing time in force means GTC
+         */
+        public static TimeInForce of(String value) {
+            if (value == null || value.isBlank()) {
+                return GTC;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Time in force must be GTC, GTD, IOC or FOK, got: " + value);
+            }
+        }
     }
     
     /**
@@ -196,25 +507,45 @@ public class MatchingEngine {
      */
     @ToString
     public static class Execution {
-        private final String tradeId;
-        private final OrderBookEntry aggressor;
-        private final OrderBookEntry passive;
-        private final int quantity;
-        private final int executionPrice; // In normalized YES space
-        private final long timestamp;
-        
-        public Execution(String tradeId, OrderBookEntry aggressor, OrderBookEntry passive, 
+        private long tradeId;
+        private OrderBookEntry aggressor;
+        private OrderBookEntry passive;
+        private int quantity;
+        private int executionPrice; // In normalized YES space
+        private long timestamp;
+        // Kalshi string form of the trade ID, rendered on first read
+        @ToString.Exclude
+        private String tradeIdText;
+        
+        // Empty record, filled in by the matcher (see ExecutionRing)
+        Execution() {
+        }
+        
+        public Execution(long tradeId, OrderBookEntry aggressor, OrderBookEntry passive, 
                         int quantity, int executionPrice, long timestamp) {
+            set(tradeId, aggressor, passive, quantity, executionPrice, timestamp);
+        }
+        
+        void set(long tradeId, OrderBookEntry aggressor, OrderBookEntry passive, 
+                 int quantity, int executionPrice, long timestamp) {
             this.tradeId = tradeId;
             this.aggressor = aggressor;
             this.passive = passive;
             this.quantity = quantity;
             this.executionPrice = executionPrice;
             this.timestamp = timestamp;
+            this.tradeIdText = null;
         }
         
         // Getters
-        public String getTradeId() { return tradeId; }
+        public long getTradeNumber() { return tradeId; }
+        // Kalshi string form, rendered once per trade, only when first asked for
+        public String getTradeId() {
+            if (tradeIdText == null) {
+                tradeIdText = "TRD-" + tradeId;
+            }
+            return tradeIdText;
+        }
         public OrderBookEntry getAggressor() { return aggressor; }
         public OrderBookEntry getPassive() { return passive; }
         public int getQuantity() { return quantity; }
@@ -1,5 +1,6 @@
 package com.kalshi.mock.service;
 
+import com.kalshi.mock.catalog.service.MarketService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,11 +33,24 @@ public class MockMarketsInitializer implements ApplicationRunner {
     @Autowired
     private PersistenceService persistenceService;
     
+    @Autowired
+    private MarketService marketService;
+    
+    @Autowired
+    private RecoveryService recoveryService;
+    
+    @Autowired
+    private PositionsService positionsService;
+    
     @Override
     public void run(ApplicationArguments args) throws Exception {
         logger.info("Initializing mock markets and order books...");
         
         try {
+            // Positions are held in memory from here on, before any fill
+            int positions = positionsService.loadPositions();
+            logger.info("Loaded {} positions from the database", positions);
+            
             // Load all active markets from database
             String sql = "SELECT ticker FROM markets WHERE status = 'open'";
             List<String> marketTickers = jdbcTemplate.queryForList(sql, String.class);
@@ -48,30 +62,33 @@ public class MockMarketsInitializer implements ApplicationRunner {
                 return;
             }
             
-            // Create order book for each market
-            for (String ticker : marketTickers) {
-                logger.info("Creating order book for market: {}", ticker);
-                
-                // Create the order book
-                orderBookService.createOrderBook(ticker);
-                
-                // The order book service will automatically load existing orders
-                // from the database via loadOpenOrdersForMarket
-                
-                logger.info("Order book created for market: {}", ticker);
+            // Rebuild the books from the last checkpoint and the journal when
+            // there is one, otherwise from the database
+            if (!recoveryService.recover(marketTickers)) {
+                // One streamed query for every market's resting orders
+                int restingOrders = orderBookService.loadOrderBooks(marketTickers);
+                logger.info("Loaded {} resting orders from the database", restingOrders);
             }
             
+            // Markets close (and future ones open) on the timer from here on
+            marketService.scheduleMarketTransitions();
+            recoveryService.startCheckpoints();
+            
             // Log summary
             logger.info("Market initialization complete. Created {} order books.", marketTickers.size());
             
-            // Log order book status for each market
+            // Log order book status for each market; a line per market is
+            // too much at startup for more than a handful of them
+            if (!logger.isDebugEnabled()) {
+                return;
+            }
             for (String ticker : marketTickers) {
                 com.fbg.api.rest.Orderbook orderbook = orderBookService.getOrderbook(ticker);
                 
                 int buyOrders = orderbook.getYes() != null ? orderbook.getYes().size() : 0;
                 int sellOrders = orderbook.getNo() != null ? orderbook.getNo().size() : 0;
                 
-                logger.info("Market {} orderbook - Buy levels: {}, Sell levels: {}", 
+                logger.debug("Market {} orderbook - Buy levels: {}, Sell levels: {}", 
                     ticker, buyOrders, sellOrders);
             }
             
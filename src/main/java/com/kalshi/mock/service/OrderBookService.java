@@ -4,33 +4,90 @@ import com.fbg.api.rest.*;
 import com.fbg.api.market.KalshiSide;
 import com.fbg.api.market.KalshiAction;
 import com.kalshi.mock.dto.OrderbookResponse;
+import com.kalshi.mock.model.BookSnapshot;
 import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookDelta;
 import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.OrderBookEntryPool;
+import com.kalshi.mock.model.OrderIds;
+import com.kalshi.mock.model.OrderSlab;
+import com.kalshi.mock.model.TopOfBook;
 import com.kalshi.mock.service.MatchingEngine;
 import com.kalshi.mock.service.MatchingEngine.Execution;
+import com.kalshi.mock.service.MatchingEngine.TimeInForce;
 import com.kalshi.mock.event.OrderBookEvent;
 import com.kalshi.mock.event.OrderBookEventPublisher;
 import com.kalshi.mock.converter.YesNoConverter;
 import com.kalshi.mock.converter.YesNoConverter.ConvertedOrder;
+import com.kalshi.mock.journal.Checkpoint;
+import com.kalshi.mock.journal.EventJournal;
+import com.kalshi.mock.journal.JournalEvent;
+import com.kalshi.mock.journal.JournalEvent.MarketState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookService.class);
+
+    // Published snapshots carry every level (1-99 cents per side)
+    private static final int SNAPSHOT_DEPTH = 99;
+
     // one order book per market
     private final Map<String, ConcurrentOrderBook> orderBooks = new ConcurrentHashMap<>();
+    
+    // Markets each user may have resting orders in, so a mass cancel only
+    // visits those books. Added to as orders rest, trimmed on a market's
+    // shard once the user has nothing left resting there; a user with no
+    // markets left is dropped.
+    private final Map<String, Set<String>> userMarkets = new ConcurrentHashMap<>();
 
     // system.current time millis makes sure the next ID is unique.
     private final AtomicLong orderIdGenerator = new AtomicLong(System.currentTimeMillis());
 
     private final MatchingEngine matchingEngine = new MatchingEngine();
     
+    // Number of single-writer shards; 0 means one per available core
+    @Value("${orderbook.sequencer.threads:0}")
+    private int sequencerThreads;
+    
+    // Every mutation of a market's book runs on that market's sequencer shard
+    private MarketSequencer sequencer;
+    
+    // "heap" keeps resting orders as objects, "offheap" in per-book OrderSlabs
+    @Value("${orderbook.storage.mode:heap}")
+    private String storageMode;
+    
+    // Orders per direct buffer chunk of an off-heap book
+    @Value("${orderbook.storage.chunk-orders:4096}")
+    private int storageChunkOrders;
+    
+    // Match new orders with pooled entries and a reused ring of execution
+    // records per book instead of allocating them for every order
+    @Value("${orderbook.matching.zero-garbage:false}")
+    private boolean zeroGarbage;
+    
+    // Initial execution records per ring; a ring grows for a larger sweep
+    @Value("${orderbook.matching.ring-size:256}")
+    private int executionRingSize = 256;
+    
+    // Execution ring of each market in zero-garbage mode, only touched on
+    // its market's sequencer shard
+    private final Map<String, ExecutionRing> executionRings = new ConcurrentHashMap<>();
+    
     @Autowired
     private PersistenceService persistenceService;
     
@@ -40,9 +97,61 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
     @Autowired
     private OrderBookEventPublisher eventPublisher;
     
+    @Autowired
+    private TimerService timerService;
+    
+    // Disabled until Spring injects the configured one
+    @Autowired
+    private EventJournal eventJournal = new EventJournal();
+    
+    // Current state of live and recently finished orders; the database is only written
+    @Autowired
+    private OrderStateStore orderStates = new OrderStateStore();
+    
+    // Pending expiry of each resting order that has one, by engine ID
+    private final Map<Long, TimerService.Timeout> orderExpiries = new ConcurrentHashMap<>();
+    
+    private final TimerService.Handler<Expiry> expiryHandler = this::onOrdersExpired;
+    
+    private record Expiry(String marketTicker, long id) {
+    }
+    
+    // A book being rebuilt from a checkpoint and the journal, out of sight of
+    // readers and listeners. Only touched on its market's sequencer shard.
+    private static final class RecoveringBook {
+        private final ConcurrentOrderBook orderBook;
+        // Events of this market up to here are already in the book
+        private final long journalSequence;
+        // Expiration times of orders that had one, by engine ID
+        private final Map<Long, Long> expirations = new HashMap<>();
+        // Latest state of every order the replay changed, and its action, for the database
+        private final Map<String, Order> changed = new LinkedHashMap<>();
+        private final Map<String, String> actions = new HashMap<>();
+        private long highestId;
+        private int failed;
+        
+        private RecoveringBook(ConcurrentOrderBook orderBook, long journalSequence) {
+            this.orderBook = orderBook;
+            this.journalSequence = journalSequence;
+        }
+    }
+    
+    
+    @PostConstruct
+    public void startSequencer() {
+        int threads = sequencerThreads > 0 ? sequencerThreads : Runtime.getRuntime().availableProcessors();
+        sequencer = new MarketSequencer(threads);
+    }
+    
+    @PreDestroy
+    public void stopSequencer() {
+        if (sequencer != null) {
+            sequencer.close();
+        }
+    }
     
     public void createOrderBook(String marketTicker) {
-        ConcurrentOrderBook orderBook = new ConcurrentOrderBook(marketTicker);
+        ConcurrentOrderBook orderBook = newOrderBook(marketTicker);
         orderBook.addListener(this);
         orderBooks.put(marketTicker, orderBook);
         
@@ -50,40 +159,445 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
         loadOpenOrdersForMarket(marketTicker);
     }
     
+    /**
+     * Put the market into its opening auction, creating its book if needed:
+     * orders queue without matching until endAuction uncrosses the book.
+     */
+    public void beginAuction(String marketTicker) {
+        if (!orderBooks.containsKey(marketTicker)) {
+            createOrderBook(marketTicker);
+        }
+        await(sequencer.submit(marketTicker, () -> {
+            orderBooks.get(marketTicker).setAuction(true);
+            eventJournal.marketStateChanged(marketTicker, MarketState.AUCTION);
+            eventJournal.sync();
+            return null;
+        }));
+    }
+    
+    /**
+     * End the market's opening auction: uncross the queued book at the price
+     * that trades the most contracts, in one command, and switch to
+     * continuous matching. Subscribers get a single batch - every trade, one
+     * delta per level touched, the snapshot and the ticker.
+     * @return contracts traded in the uncross
+     */
+    public int endAuction(String marketTicker) {
+        if (!orderBooks.containsKey(marketTicker)) {
+            return 0;
+        }
+        return await(submit(marketTicker, () -> processUncross(marketTicker)));
+    }
+    
+    private ConcurrentOrderBook newOrderBook(String marketTicker) {
+        ConcurrentOrderBook orderBook = "offheap".equalsIgnoreCase(storageMode)
+            ? new ConcurrentOrderBook(marketTicker, new OrderSlab(storageChunkOrders))
+            : new ConcurrentOrderBook(marketTicker);
+        if (zeroGarbage) {
+            orderBook.setEntryPool(new OrderBookEntryPool(executionRingSize));
+            executionRings.computeIfAbsent(marketTicker, ticker -> new ExecutionRing(executionRingSize));
+        }
+        return orderBook;
+    }
+    
     private synchronized void loadOpenOrdersForMarket(String marketTicker) {
         // Load existing open orders from the database
         ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
         if (orderBook == null) {
             System.out.println("No order book found for market " + marketTicker + ", creating new order book");
-            orderBook = new ConcurrentOrderBook(marketTicker);
+            orderBook = newOrderBook(marketTicker);
         }
         
         // Fetch all open orders for this market
-        List<Map<String, Object>> openOrders = persistenceService.getOpenOrdersForMarket(marketTicker);
-        
-        // Add each order to the order book
-        for (Map<String, Object> orderData : openOrders) {
-            OrderBookEntry bookEntry = new OrderBookEntry(
-                (String) orderData.get("order_id"),
-                (String) orderData.get("user_id"),
-                KalshiSide.valueOf((String) orderData.get("side")),
-                (String) orderData.get("action"), // Get action directly from DB
-                (Integer) orderData.get("price"),
-                (Integer) orderData.get("remaining_quantity"),
-                (Long) orderData.get("created_time")
-            );
-            
-            // Add to order book without matching (since these are existing orders)
+        List<PersistenceService.RestingOrderRow> openOrders = persistenceService.getRestingOrdersForMarket(marketTicker);
+        
+        // Add each order to the order book without matching (since these are existing orders)
+        for (PersistenceService.RestingOrderRow row : openOrders) {
+            OrderBookEntry bookEntry = restingEntry(row);
             orderBook.addOrder(bookEntry);
+            addUserMarket(row.userId(), marketTicker);
+            if (row.expirationTime() != null) {
+                scheduleExpiry(marketTicker, bookEntry.getId(), row.expirationTime());
+            }
         }
         
+        // The snapshot below already covers the loaded orders
+        orderBook.drainDeltas();
+        
         // Publish initial snapshot after loading orders
         if (!openOrders.isEmpty()) {
             publishOrderBookSnapshot(marketTicker);
         }
     }
     
+    /**
+     * Create the books of the given markets and load their resting orders
+     * from the database, all at once: one query streams every open order,
+     * oldest first, and the rows are split by market on the way in. The
+     * books are then filled in parallel, out of sight and without listeners,
+     * and each market gets one snapshot once all of them are in place.
+     * Orders of markets not in the list stay in the database untouched.
+     * @return number of resting orders loaded
+     */
+    public int loadOrderBooks(Collection<String> marketTickers) {
+        Map<String, List<PersistenceService.RestingOrderRow>> rowsByMarket = new HashMap<>();
+        for (String marketTicker : marketTickers) {
+            rowsByMarket.put(marketTicker, new ArrayList<>());
+        }
+        persistenceService.streamRestingOrders(row -> {
+            List<PersistenceService.RestingOrderRow> rows = rowsByMarket.get(row.marketTicker());
+            if (rows != null) {
+                rows.add(row);
+            }
+        });
+        
+        int restingOrders = rowsByMarket.entrySet().parallelStream()
+            .mapToInt(market -> hydrateBook(market.getKey(), market.getValue()))
+            .sum();
+        
+        for (String marketTicker : rowsByMarket.keySet()) {
+            publishOrderBookSnapshot(marketTicker);
+        }
+        logger.debug("Loaded {} order books with {} resting orders from the database", rowsByMarket.size(),
+                     restingOrders);
+        return restingOrders;
+    }
+    
+    // Fill a new book with its stored orders, in time priority, then hand it
+    // over to trading. Nothing else can see the book until the end.
+    private int hydrateBook(String marketTicker, List<PersistenceService.RestingOrderRow> rows) {
+        ConcurrentOrderBook orderBook = newOrderBook(marketTicker);
+        long highestId = 0;
+        for (PersistenceService.RestingOrderRow row : rows) {
+            OrderBookEntry bookEntry = restingEntry(row);
+            orderBook.addOrder(bookEntry);
+            highestId = Math.max(highestId, bookEntry.getId());
+            addUserMarket(row.userId(), marketTicker);
+            if (row.expirationTime() != null) {
+                scheduleExpiry(marketTicker, bookEntry.getId(), row.expirationTime());
+            }
+        }
+        // The snapshot published afterwards covers the loaded orders
+        orderBook.discardDeltas();
+        
+        // New IDs must not collide with loaded ones
+        orderIdGenerator.accumulateAndGet(highestId, Math::max);
+        orderBook.addListener(this);
+        orderBooks.put(marketTicker, orderBook);
+        return rows.size();
+    }
+    
+    // A stored order rests in the book in buy-only form, like a new one
+    private static OrderBookEntry restingEntry(PersistenceService.RestingOrderRow row) {
+        String action = row.action() != null ? row.action() : KalshiAction.buy.name();
+        ConvertedOrder converted = YesNoConverter.convertToBuyOnly(row.side(), KalshiAction.valueOf(action),
+                                                                   row.price());
+        return new OrderBookEntry(row.orderId(), row.userId(), converted.getSide(), converted.getAction().name(),
+                                  converted.getPrice(), row.remainingQuantity(), row.createdTime());
+    }
+    
+    /**
+     * Capture every book for a checkpoint. Each book is captured on its own
+     * market's sequencer between commands, together with the journal
+     * sequence number it is current to.
+     */
+    public Checkpoint checkpoint() {
+        long journalSequence = eventJournal.lastSequence();
+        List<CompletableFuture<Checkpoint.Book>> captures = new ArrayList<>(orderBooks.size());
+        for (String marketTicker : orderBooks.keySet()) {
+            captures.add(sequencer.submit(marketTicker, () -> captureBook(marketTicker)));
+        }
+        List<Checkpoint.Book> books = new ArrayList<>(captures.size());
+        for (CompletableFuture<Checkpoint.Book> capture : captures) {
+            books.add(await(capture));
+        }
+        return new Checkpoint(journalSequence, books);
+    }
+    
+    // Runs on the market's sequencer thread - the only writer for this book
+    private Checkpoint.Book captureBook(String marketTicker) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+        // Only this thread journals this market, so nothing of it is past this number
+        long journalSequence = eventJournal.lastSequence();
+        List<OrderBookEntry> resting = orderBook.getRestingOrders();
+        List<Checkpoint.RestingOrder> orders = new ArrayList<>(resting.size());
+        for (OrderBookEntry order : resting) {
+            TimerService.Timeout expiry = orderExpiries.get(order.getId());
+            orders.add(new Checkpoint.RestingOrder(order.getOrderId(), order.getUserId(), order.getSide(),
+                order.getAction(), order.getPrice(), order.getQuantity(), order.getTimestamp(),
+                expiry != null ? expiry.getDeadlineMillis() : null));
+        }
+        return new Checkpoint.Book(marketTicker, journalSequence, orderBook.isInAuction(), orders);
+    }
+    
+    /**
+     * Rebuild the books of the given markets from a checkpoint (null for
+     * none) and the journal events after it, instead of loading them from
+     * the database. Markets recover in parallel, each on its own sequencer
+     * shard, replaying events through the same matching code that produced
+     * them. The books stay out of sight and without listeners until all of
+     * them are done, so nothing is published on the way. Orders the replay
+     * changed are held in the OrderStateStore as it goes, and written to the
+     * database once every event has replayed; then each market gets one
+     * snapshot.
+     * @return number of journal events replayed
+     * @throws IllegalStateException if a checkpointed book could not be
+     *         restored or an event replayed; no recovered book goes live then
+     */
+    public long recoverOrderBooks(Collection<String> marketTickers, Checkpoint checkpoint) {
+        long fromSequence = checkpoint != null ? checkpoint.journalSequence() : 0;
+        Map<String, Checkpoint.Book> saved = new HashMap<>();
+        if (checkpoint != null) {
+            for (Checkpoint.Book book : checkpoint.books()) {
+                saved.put(book.marketTicker(), book);
+            }
+        }
+        
+        Map<String, RecoveringBook> recovering = new HashMap<>();
+        for (String marketTicker : marketTickers) {
+            Checkpoint.Book book = saved.get(marketTicker);
+            RecoveringBook target = new RecoveringBook(newOrderBook(marketTicker),
+                book != null ? book.journalSequence() : fromSequence);
+            recovering.put(marketTicker, target);
+            if (book != null) {
+                sequencer.submit(marketTicker, () -> restoreBook(target, book));
+            }
+        }
+        
+        // One reader decodes the journal; each event is applied on its market's shard
+        long[] replayed = new long[1];
+        eventJournal.replay(fromSequence + 1, event -> {
+            RecoveringBook target = recovering.get(event.marketTicker());
+            if (target != null && event.sequence() > target.journalSequence) {
+                sequencer.submit(event.marketTicker(), () -> replayEvent(target, event));
+                replayed[0]++;
+            }
+        });
+        
+        // Shards run commands in submission order, so these see every replayed event
+        List<CompletableFuture<Integer>> failures = new ArrayList<>(recovering.size());
+        for (RecoveringBook target : recovering.values()) {
+            failures.add(sequencer.submit(target.orderBook.getMarketTicker(), () -> target.failed));
+        }
+        int failed = 0;
+        for (CompletableFuture<Integer> failure : failures) {
+            failed += await(failure);
+        }
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " checkpointed books or journal events could not be restored; "
+                + "not going live with the recovered books");
+        }
+        
+        List<CompletableFuture<Integer>> finished = new ArrayList<>(recovering.size());
+        for (Map.Entry<String, RecoveringBook> market : recovering.entrySet()) {
+            finished.add(sequencer.submit(market.getKey(), () -> finishRecovery(market.getKey(), market.getValue())));
+        }
+        for (CompletableFuture<Integer> done : finished) {
+            await(done);
+        }
+        
+        for (String marketTicker : recovering.keySet()) {
+            publishOrderBookSnapshot(marketTicker);
+        }
+        return replayed[0];
+    }
+    
+    // Runs on the market's sequencer thread. A book that cannot be restored
+    // whole counts as a failure, so recovery does not go live with it.
+    private Void restoreBook(RecoveringBook target, Checkpoint.Book book) {
+        try {
+            target.orderBook.setAuction(book.auction());
+            for (Checkpoint.RestingOrder order : book.orders()) {
+                OrderBookEntry entry = new OrderBookEntry(order.orderId(), order.userId(), order.side(),
+                    order.action(), order.price(), order.quantity(), order.timestamp());
+                if (!target.orderBook.addOrder(entry)) {
+                    throw new IllegalStateException("Order " + order.orderId() + " could not be added");
+                }
+                target.highestId = Math.max(target.highestId, entry.getId());
+                if (order.expirationTime() != null) {
+                    target.expirations.put(entry.getId(), order.expirationTime());
+                }
+            }
+        } catch (RuntimeException e) {
+            target.failed++;
+            logger.error("Could not restore the checkpointed book of {}", book.marketTicker(), e);
+        }
+        target.orderBook.discardDeltas();
+        return null;
+    }
+    
+    // Runs on the market's sequencer thread. Executions are the outcome of
+    // the other events, so they are not inputs to the replay. Orders change
+    // state here as they did when the events happened.
+    private Void replayEvent(RecoveringBook target, JournalEvent event) {
+        ConcurrentOrderBook orderBook = target.orderBook;
+        try {
+            if (event instanceof JournalEvent.OrderAccepted accepted) {
+                ConvertedOrder converted = YesNoConverter.convertToBuyOnly(
+                    accepted.side(), KalshiAction.valueOf(accepted.action()), accepted.price());
+                OrderBookEntry entry = new OrderBookEntry(accepted.orderId(), accepted.userId(), converted.getSide(),
+                    converted.getAction().name(), converted.getPrice(), accepted.quantity(), accepted.timestamp());
+                TimeInForce timeInForce = TimeInForce.of(accepted.timeInForce());
+                List<Execution> executions = applyNewOrder(orderBook, entry, timeInForce);
+                replayFills(target, executions, false);
+                
+                OrderRequest request = new OrderRequest(accepted.side(), accepted.marketTicker(), accepted.orderType(),
+                    accepted.quantity(), accepted.price(), accepted.timeInForce(), accepted.clientOrderId());
+                int remainingQuantity = entry.getQuantity() > 0 && timeInForce.rests() ? entry.getQuantity() : 0;
+                Order order = acceptedOrder(accepted.orderId(), accepted.marketTicker(), request, accepted.userId(),
+                    accepted.timestamp(), accepted.expirationTime(), executions, remainingQuantity);
+                orderStates.put(order);
+                target.changed.put(order.getId(), order);
+                target.actions.put(order.getId(), accepted.action());
+                
+                target.highestId = Math.max(target.highestId, entry.getId());
+                if (accepted.expirationTime() != null) {
+                    target.expirations.put(entry.getId(), accepted.expirationTime());
+                }
+            } else if (event instanceof JournalEvent.OrderCanceled canceled) {
+                OrderBookEntry resting = orderBook.getOrder(canceled.orderId());
+                Order order = resting != null ? replayState(target, resting, List.of(), 0) : null;
+                if (orderBook.cancelOrder(canceled.orderId()) && order != null) {
+                    target.changed.put(order.getId(), orderStates.canceled(order.getId()));
+                }
+            } else if (event instanceof JournalEvent.OrderAmended amended) {
+                OrderBookEntry resting = orderBook.getOrder(amended.orderId());
+                if (resting != null) {
+                    Order order = replayState(target, resting, List.of(), 0);
+                    List<Execution> executions = applyAmend(orderBook, resting, amended.orderId(),
+                        amended.bookPrice(), amended.bookQuantity());
+                    replayFills(target, executions, false);
+                    if (order != null) {
+                        Order amendedOrder = amendedOrder(order, amended.price(), amended.count(),
+                            amended.bookQuantity(), executions);
+                        orderStates.put(amendedOrder);
+                        target.changed.put(amendedOrder.getId(), amendedOrder);
+                    }
+                }
+            } else if (event instanceof JournalEvent.MarketStateChanged changed) {
+                switch (changed.state()) {
+                    case AUCTION -> orderBook.setAuction(true);
+                    case OPEN -> {
+                        if (orderBook.isInAuction()) {
+                            List<Execution> executions = applyUncross(orderBook);
+                            replayFills(target, executions, true);
+                        }
+                    }
+                    case CLOSED -> {
+                        for (OrderBookEntry resting : orderBook.getRestingOrders()) {
+                            replayState(target, resting, List.of(), 0);
+                        }
+                        for (String orderId : orderBook.cancelAllOrders()) {
+                            Order order = orderStates.canceled(orderId);
+                            if (order != null) {
+                                target.changed.put(orderId, order);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            target.failed++;
+            logger.error("Could not replay journal event {}", event, e);
+        }
+        // Nobody consumes a recovering book's deltas
+        orderBook.discardDeltas();
+        return null;
+    }
+    
+    /**
+     * Apply a replayed match's fills to the state of the orders that were
+     * resting: each execution's passive order, and its aggressor only when
+     * that was resting too, as in an uncross.
+     */
+    private void replayFills(RecoveringBook target, List<Execution> executions, boolean incomingResting) {
+        for (int i = incomingResting ? 0 : 1; i < 2 * executions.size(); i += incomingResting ? 1 : 2) {
+            Execution exec = executions.get(i / 2);
+            OrderBookEntry resting = i % 2 == 0 ? exec.getAggressor() : exec.getPassive();
+            if (replayState(target, resting, executions, i / 2) != null) {
+                Order order = orderStates.executed(resting.getOrderId(), exec.getQuantity(), exec.getExecutionPrice());
+                target.changed.put(order.getId(), order);
+            }
+        }
+    }
+    
+    // Runs on the market's sequencer thread. The held state of an order in a
+    // recovering book; one from before the replayed events is read from the
+    // database and given what the book held of it before executions[from..].
+    // Null for an order the database does not have either.
+    private Order replayState(RecoveringBook target, OrderBookEntry resting, List<Execution> executions, int from) {
+        String orderId = resting.getOrderId();
+        Order order = orderStates.get(orderId);
+        if (order == null) {
+            Order stored = persistenceService.getOrder(orderId);
+            if (stored == null) {
+                return null;
+            }
+            int remainingQuantity = resting.getQuantity();
+            for (int i = from; i < executions.size(); i++) {
+                Execution exec = executions.get(i);
+                if (exec.getAggressor().getId() == resting.getId() || exec.getPassive().getId() == resting.getId()) {
+                    remainingQuantity += exec.getQuantity();
+                }
+            }
+            order = orderStates.resting(stored, remainingQuantity);
+        }
+        // The book holds the buy-only form: a sell was flipped to the other side
+        target.actions.putIfAbsent(orderId, resting.getSide() != order.getSide() ? "sell" : "buy");
+        return order;
+    }
+    
+    // Runs on the market's sequencer thread: hand the rebuilt book over to trading
+    private int finishRecovery(String marketTicker, RecoveringBook target) {
+        // The database learns what the replayed events did to orders before any new command runs
+        for (Order order : target.changed.values()) {
+            persistenceService.saveOrder(order, target.actions.get(order.getId()));
+        }
+        
+        ConcurrentOrderBook orderBook = target.orderBook;
+        List<OrderBookEntry> resting = orderBook.getRestingOrders();
+        for (OrderBookEntry order : resting) {
+            addUserMarket(order.getUserId(), marketTicker);
+            Long expirationTime = target.expirations.get(order.getId());
+            if (expirationTime != null) {
+                scheduleExpiry(marketTicker, order.getId(), expirationTime);
+            }
+        }
+        // New IDs must not collide with recovered ones
+        orderIdGenerator.accumulateAndGet(target.highestId, Math::max);
+        orderBook.addListener(this);
+        orderBooks.put(marketTicker, orderBook);
+        return resting.size();
+    }
+    
     public Order createOrder(String marketTicker, OrderRequest request, String action, String userId) {
+        return await(createOrderAsync(marketTicker, request, action, userId, null));
+    }
+    
+    public Order createOrder(String marketTicker, OrderRequest request, String action, String userId,
+                             Long expirationTime) {
+        return await(createOrderAsync(marketTicker, request, action, userId, expirationTime));
+    }
+    
+    /**
+     * Queue a new order on its market's sequencer shard
+     */
+    public CompletableFuture<Order> createOrderAsync(String marketTicker, OrderRequest request, String action, String userId) {
+        return createOrderAsync(marketTicker, request, action, userId, null);
+    }
+    
+    /**
+     * Queue a new order that, if it rests, is canceled at the given
+     * expiration time (epoch millis; null for none). GTD orders require one.
+     */
+    public CompletableFuture<Order> createOrderAsync(String marketTicker, OrderRequest request, String action, String userId,
+                                                     Long expirationTime) {
+        return submit(marketTicker, () -> processNewOrder(marketTicker, request, action, userId, expirationTime));
+    }
+    
+    // Runs on the market's sequencer thread - the only writer for this book
+    private Order processNewOrder(String marketTicker, OrderRequest request, String action, String userId,
+                                  Long expirationTime) {
         ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
         if (orderBook == null) {
             throw new IllegalArgumentException("Market not found: " + marketTicker);
@@ -91,9 +605,15 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
         
         // Validate order request
         validateOrderRequest(request);
+        TimeInForce timeInForce = TimeInForce.of(request.getTime_in_force());
+        validateExpiration(timeInForce, expirationTime);
+        if (orderBook.isInAuction() && !timeInForce.rests()) {
+            throw new IllegalArgumentException(timeInForce + " orders are not accepted during the opening auction");
+        }
         
-        // Generate order ID
-        String orderId = "ORD-" + orderIdGenerator.incrementAndGet();
+        // Generate order ID; the engine only sees the long, the string is for the Order record
+        long id = orderIdGenerator.incrementAndGet();
+        String orderId = OrderIds.format(id);
         long timestamp = System.currentTimeMillis();
         
         // Convert to buy-only format using YesNoConverter
@@ -112,9 +632,18 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
             ));
         }
         
-        // Create order book entry with converted values
-        OrderBookEntry bookEntry = new OrderBookEntry(
-            orderId,
+        // Create order book entry with converted values, from the book's pool in zero-garbage mode
+        OrderBookEntryPool entryPool = orderBook.getEntryPool();
+        OrderBookEntry bookEntry = entryPool != null ? entryPool.acquire(
+            id,
+            userId,
+            converted.getSide(),
+            converted.getAction().name(),
+            converted.getPrice(),
+            request.getQuantity(),
+            timestamp
+        ) : new OrderBookEntry(
+            id,
             userId,
             converted.getSide(),
             converted.getAction().name(), // Convert enum back to string
@@ -123,102 +652,82 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
             timestamp
         );
         
-        // First, attempt to match the order
-        List<Execution> executions = matchingEngine.matchOrder(bookEntry, orderBook);
+        eventJournal.orderAccepted(marketTicker, orderId, request.getClient_order_id(), userId, request.getSide(),
+            action, request.getOrder_type(), request.getPrice(), request.getQuantity(), request.getTime_in_force(),
+            expirationTime);
         
-        // Process executions
-        if (!executions.isEmpty()) {
-            // Convert to trades and fills
-            List<Trade> trades = matchingEngine.executionsToTrades(executions, marketTicker);
-            List<Fill> fills = matchingEngine.executionsToFills(executions, marketTicker);
-            
-            // Store trades in database using execution data
-            for (int i = 0; i < trades.size() && i < executions.size(); i++) {
-                Trade trade = trades.get(i);
-                Execution exec = executions.get(i);
-                persistenceService.saveTrade(
-                    trade.getTrade_id(),
-                    marketTicker,
-                    exec.getAggressor().getOrderId(),
-                    exec.getPassive().getOrderId(),
-                    trade.getCount(), // Use getCount() instead of getQuantity()
-                    trade.getPrice()
-                );
-            }
-            
-            // Store fills and update positions
-            for (Fill fill : fills) {
-                OrderBookEntry orderEntry = orderBook.getOrder(fill.getOrder_id());
-                if (orderEntry != null) {
-                    persistenceService.saveFill(fill, orderEntry.getUserId());
-                    // Pass whether this was a buy or sell order
-                    boolean isBuy = orderEntry.getAction().equals("buy");
-                    positionsService.updatePositionFromFill(fill, orderEntry.getUserId(), isBuy);
-                } else if (fill.getOrder_id().equals(orderId)) {
-                    // This is the incoming order
-                    persistenceService.saveFill(fill, userId);
-                    boolean isBuy = action.equals("buy");
-                    positionsService.updatePositionFromFill(fill, userId, isBuy);
-                }
-            }
-            
-            // Update market price and volume based on trades
-            if (!trades.isEmpty()) {
-                // Get the last trade price
-                Integer lastPrice = trades.get(trades.size() - 1).getPrice();
-                
-                // Calculate total volume
-                int totalVolume = trades.stream()
-                    .mapToInt(Trade::getCount)
-                    .sum();
-                
-                // Publish trade event for market data update
-                // The MarketService will listen for this event and update prices
-                
-                // Publish ticker update event for WebSocket subscribers
-                OrderBookEvent.TickerData tickerData = new OrderBookEvent.TickerData(
-                    marketTicker,
-                    lastPrice,
-                    totalVolume,
-                    lastPrice, // For now, using last price as best bid/ask
-                    lastPrice
-                );
-                OrderBookEvent tickerEvent = new OrderBookEvent(
-                    OrderBookEvent.EventType.TICKER_UPDATE,
-                    marketTicker,
-                    tickerData
-                );
-                eventPublisher.publishEvent(tickerEvent);
+        // Everything this order changes goes out to subscribers as one batch
+        List<OrderBookEvent> batch = new ArrayList<>();
+        
+        // Match, and rest whatever the time in force lets rest
+        List<Execution> executions = applyNewOrder(orderBook, bookEntry, timeInForce);
+        
+        // Persist trades and fills, with a TRADE event per execution
+        recordExecutions(marketTicker, executions, userId, action, batch);
+        
+        int remainingQuantity = 0;
+        if (bookEntry.getQuantity() > 0 && timeInForce.rests()) {
+            remainingQuantity = bookEntry.getQuantity();
+            if (expirationTime != null) {
+                scheduleExpiry(marketTicker, id, expirationTime);
             }
         }
         
-        // If order has remaining quantity, add to order book
-        if (bookEntry.getQuantity() > 0) {
-            boolean added = orderBook.addOrder(bookEntry);
-            if (!added) {
-                throw new IllegalStateException("Failed to add order to book");
-            }
+        // A killed IOC or FOK changed nothing subscribers could see
+        boolean bookChanged = !executions.isEmpty() || remainingQuantity > 0;
+        if (bookChanged) {
+            appendBookEvents(orderBook, executions, batch);
         }
         
-        // Calculate filled quantity and status
-        int filledQuantity = request.getQuantity() - bookEntry.getQuantity();
-        String status = filledQuantity == 0 ? "open" : 
-                       (bookEntry.getQuantity() == 0 ? "filled" : "partially_filled");
+        Order order = acceptedOrder(orderId, marketTicker, request, userId, timestamp, expirationTime, executions,
+                                    remainingQuantity);
+        
+        // Journal first: the book is rebuilt from it after a restart
+        eventJournal.sync();
+        orderStates.put(order);
+        persistenceService.saveOrder(order, action);
         
+        if (bookChanged) {
+            eventPublisher.publishBatch(batch);
+        }
+        
+        // An order that never rested goes back to the pool now that nothing refers to it
+        if (entryPool != null && remainingQuantity == 0) {
+            entryPool.release(bookEntry);
+        }
+        
+        return order;
+    }
+    
+    /**
+     * A new order's state after its match: what filled, what rests, its
+     * status and average fill price in its own side's terms. Shared with
+     * journal replay.
+     */
+    private static Order acceptedOrder(String orderId, String marketTicker, OrderRequest request, String userId,
+                                       long timestamp, Long expirationTime, List<Execution> executions,
+                                       int remainingQuantity) {
         // Calculate average fill price
+        int filledQuantity = 0;
         Integer avgFillPrice = null;
         if (!executions.isEmpty()) {
             int totalValue = 0;
-            int totalQty = 0;
             for (Execution exec : executions) {
-                totalValue += exec.getExecutionPrice() * exec.getQuantity();
-                totalQty += exec.getQuantity();
+                totalValue += OrderStateStore.sidePrice(request.getSide(), exec.getExecutionPrice()) * exec.getQuantity();
+                filledQuantity += exec.getQuantity();
             }
-            avgFillPrice = totalQty > 0 ? totalValue / totalQty : null;
+            avgFillPrice = filledQuantity > 0 ? totalValue / filledQuantity : null;
+        }
+        
+        // Calculate status; an IOC or FOK that did not fill completely is canceled
+        String status;
+        if (remainingQuantity == 0) {
+            status = filledQuantity == request.getQuantity() ? "filled" : "canceled";
+        } else {
+            status = filledQuantity == 0 ? "open" : "partially_filled";
         }
         
-        // Create and store Order object
-        Order order = new Order(
+        return new Order(
             orderId,
             request.getClient_order_id(),
             userId,
@@ -227,39 +736,226 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
             request.getOrder_type(),
             request.getQuantity(),
             filledQuantity,
-            bookEntry.getQuantity(), // remaining_quantity
+            remainingQuantity,
             request.getPrice(),
             avgFillPrice,
             status,
             request.getTime_in_force(),
             timestamp,
             timestamp,
-            null // expiration_time
+            expirationTime
         );
+    }
+    
+    public Order cancelOrder(String orderId) {
+        return await(cancelOrderAsync(orderId));
+    }
+    
+    /**
+     * Queue a cancel on the order's market sequencer shard
+     */
+    public CompletableFuture<Order> cancelOrderAsync(String orderId) {
+        String marketTicker = marketOf(orderId);
+        if (marketTicker == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Order not found: " + orderId));
+        }
         
-        // Persist order to database
-        persistenceService.saveOrder(order, action);
+        return submit(marketTicker, () -> processCancel(marketTicker, orderId));
+    }
+    
+    public List<String> cancelUserOrders(String userId, String marketTicker) {
+        return await(cancelUserOrdersAsync(userId, marketTicker));
+    }
+    
+    /**
+     * Queue a mass cancel of the user's resting orders in one market, or in
+     * every market when the ticker is null. Each market cancels on its own
+     * sequencer shard in a single pass over the user's orders in that book,
+     * publishing one batch and persisting its cancellations as one JDBC batch.
+     * @return IDs of the canceled orders
+     */
+    public CompletableFuture<List<String>> cancelUserOrdersAsync(String userId, String marketTicker) {
+        Set<String> markets = userMarkets.get(userId);
+        if (markets == null) {
+            return CompletableFuture.completedFuture(List.of());
+        }
         
-        return order;
+        List<String> tickers = marketTicker == null ? new ArrayList<>(markets)
+            : markets.contains(marketTicker) ? List.of(marketTicker) : List.of();
+        List<CompletableFuture<List<String>>> cancels = new ArrayList<>(tickers.size());
+        for (String ticker : tickers) {
+            cancels.add(submit(ticker, () -> processMassCancel(ticker, userId)));
+        }
+        
+        return CompletableFuture.allOf(cancels.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<String> canceled = new ArrayList<>();
+            for (CompletableFuture<List<String>> cancel : cancels) {
+                canceled.addAll(cancel.join());
+            }
+            return canceled;
+        });
     }
     
-    public Order cancelOrder(String orderId) {
-        Order order = persistenceService.getOrder(orderId);
-        if (order == null) {
-            throw new IllegalArgumentException("Order not found: " + orderId);
+    // Runs on the market's sequencer thread - the only writer for this book
+    private List<String> processMassCancel(String marketTicker, String userId) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+        if (orderBook == null) {
+            return List.of();
+        }
+        
+        List<String> canceled = orderBook.cancelUserOrders(userId);
+        
+        // Nothing of this user's rests here now; a later order re-adds the market
+        removeUserMarket(userId, marketTicker);
+        
+        publishCancellations(marketTicker, orderBook, canceled);
+        return canceled;
+    }
+    
+    /**
+     * Persist a multi-order cancel as one JDBC batch and publish its deltas
+     * and snapshot as one batch
+     */
+    private void publishCancellations(String marketTicker, ConcurrentOrderBook orderBook, List<String> canceled) {
+        if (canceled.isEmpty()) {
+            return;
+        }
+        
+        for (String orderId : canceled) {
+            eventJournal.orderCanceled(marketTicker, orderId);
+        }
+        eventJournal.sync();
+        for (String orderId : canceled) {
+            orderStates.canceled(orderId);
         }
+        persistenceService.cancelOrders(canceled);
         
-        ConcurrentOrderBook orderBook = orderBooks.get(order.getSymbol());
+        List<OrderBookEvent> batch = drainDeltaEvents(orderBook);
+        OrderBookEvent snapshotEvent = buildSnapshotEvent(marketTicker);
+        if (snapshotEvent != null) {
+            batch.add(snapshotEvent);
+        }
+        eventPublisher.publishBatch(batch);
+    }
+    
+    /**
+     * Cancel every resting order in the market as one command. The book is
+     * left empty but kept.
+     * @return IDs of the canceled orders
+     */
+    public List<String> cancelAllOrders(String marketTicker) {
+        if (!orderBooks.containsKey(marketTicker)) {
+            return List.of();
+        }
+        return await(submit(marketTicker, () -> processCancelAll(marketTicker)));
+    }
+    
+    /**
+     * Close trading in the market: journal the close and cancel every
+     * resting order, in one command.
+     * @return IDs of the canceled orders
+     */
+    public List<String> closeMarket(String marketTicker) {
+        if (!orderBooks.containsKey(marketTicker)) {
+            return List.of();
+        }
+        return await(submit(marketTicker, () -> {
+            eventJournal.marketStateChanged(marketTicker, MarketState.CLOSED);
+            List<String> canceled = processCancelAll(marketTicker);
+            eventJournal.sync();
+            return canceled;
+        }));
+    }
+    
+    // Runs on the market's sequencer thread - the only writer for this book
+    private List<String> processCancelAll(String marketTicker) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+        List<String> canceled = orderBook.cancelAllOrders();
+        publishCancellations(marketTicker, orderBook, canceled);
+        return canceled;
+    }
+    
+    // Runs on the market's sequencer thread - the only writer for this book
+    private int processUncross(String marketTicker) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+        if (!orderBook.isInAuction()) {
+            return 0;
+        }
+        
+        int clearingPrice = orderBook.getClearingPrice();
+        List<Execution> executions = applyUncross(orderBook);
+        
+        List<OrderBookEvent> batch = new ArrayList<>();
+        int volume = 0;
+        for (Execution exec : executions) {
+            eventJournal.orderExecuted(marketTicker, exec.getTradeId(), exec.getAggressor().getOrderId(),
+                exec.getPassive().getOrderId(), exec.getExecutionPrice(), exec.getQuantity());
+            persistenceService.saveTrade(
+                exec.getTradeId(),
+                marketTicker,
+                exec.getAggressor().getOrderId(),
+                exec.getPassive().getOrderId(),
+                exec.getQuantity(),
+                exec.getExecutionPrice()
+            );
+            batch.add(new OrderBookEvent(
+                OrderBookEvent.EventType.TRADE,
+                marketTicker,
+                new OrderBookEvent.TradeData(
+                    exec.getExecutionPrice(),
+                    exec.getQuantity(),
+                    KalshiSide.yes.name(),
+                    exec.getTradeId()
+                )
+            ));
+            volume += exec.getQuantity();
+        }
+        eventJournal.marketStateChanged(marketTicker, MarketState.OPEN);
+        eventJournal.sync();
+        
+        // Fills come in aggressor, passive pairs; both orders were resting. Their
+        // state goes first, as one run of updates for the database to batch.
+        List<Fill> fills = matchingEngine.uncrossExecutionsToFills(executions, marketTicker);
+        for (int i = 0; i < fills.size(); i++) {
+            Execution exec = executions.get(i / 2);
+            OrderBookEntry order = i % 2 == 0 ? exec.getAggressor() : exec.getPassive();
+            orderStates.executed(order.getOrderId(), exec.getQuantity(), exec.getExecutionPrice());
+            persistenceService.recordExecution(order.getOrderId(), exec.getQuantity(), exec.getExecutionPrice());
+        }
+        for (int i = 0; i < fills.size(); i++) {
+            Execution exec = executions.get(i / 2);
+            OrderBookEntry order = i % 2 == 0 ? exec.getAggressor() : exec.getPassive();
+            persistenceService.saveFill(fills.get(i), order.getUserId());
+            positionsService.updatePositionFromFill(fills.get(i), order.getUserId(), order.getAction().equals("buy"));
+        }
+        
+        appendBookEvents(orderBook, executions, clearingPrice, batch);
+        eventPublisher.publishBatch(batch);
+        
+        logger.info("Uncrossed {} at {}: {} contracts in {} executions", marketTicker, clearingPrice, volume,
+                    executions.size());
+        return volume;
+    }
+    
+    // Runs on the market's sequencer thread - the only writer for this book
+    private Order processCancel(String marketTicker, String orderId) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
         if (orderBook == null) {
             throw new IllegalArgumentException("Market not found for order");
         }
+        if (liveOrder(orderId) == null) {
+            throw new IllegalArgumentException("Order not found: " + orderId);
+        }
         
         boolean canceled = orderBook.cancelOrder(orderId);
         if (!canceled) {
             throw new IllegalStateException("Failed to cancel order");
         }
+        eventJournal.orderCanceled(marketTicker, orderId);
+        eventJournal.sync();
         
-        // Update order status in database
+        // Update order state, then the database
+        Order order = orderStates.canceled(orderId);
         persistenceService.updateOrderStatus(
             orderId,
             "canceled",
@@ -268,8 +964,163 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
             order.getAvg_fill_price()
         );
         
-        // Return updated order
-        return persistenceService.getOrder(orderId);
+        List<OrderBookEvent> batch = drainDeltaEvents(orderBook);
+        OrderBookEvent snapshotEvent = buildSnapshotEvent(marketTicker);
+        if (snapshotEvent != null) {
+            batch.add(snapshotEvent);
+        }
+        eventPublisher.publishBatch(batch);
+        
+        return order;
+    }
+    
+    public Order amendOrder(String orderId, Integer price, int count) {
+        return await(amendOrderAsync(orderId, price, count));
+    }
+    
+    /**
+     * Queue an amend on the order's market sequencer shard. The new price (in
+     * the order's own side terms, null to keep it) and count (total contracts,
+     * including those already filled) replace the order's current ones.
+     */
+    public CompletableFuture<Order> amendOrderAsync(String orderId, Integer price, int count) {
+        String marketTicker = marketOf(orderId);
+        if (marketTicker == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Order not found: " + orderId));
+        }
+        
+        return submit(marketTicker, () -> processAmend(marketTicker, orderId, price, count));
+    }
+    
+    // Runs on the market's sequencer thread - the only writer for this book
+    private Order processAmend(String marketTicker, String orderId, Integer newPrice, int newCount) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+        if (orderBook == null) {
+            throw new IllegalArgumentException("Market not found for order");
+        }
+        Order order = liveOrder(orderId);
+        if (order == null) {
+            throw new IllegalArgumentException("Order not found: " + orderId);
+        }
+        
+        OrderBookEntry resting = orderBook.getOrder(orderId);
+        if (resting == null) {
+            throw new IllegalStateException("Order is not resting: " + orderId);
+        }
+        
+        int price = newPrice != null ? newPrice : order.getPrice();
+        if (price < 1 || price > 99) {
+            throw new IllegalArgumentException("Price must be between 1 and 99 cents, got: " + price);
+        }
+        int remaining = newCount - order.getFilled_quantity();
+        if (remaining <= 0) {
+            throw new IllegalArgumentException("Count must exceed the " + order.getFilled_quantity() + " contracts already filled");
+        }
+        
+        // The book holds the buy-only form: a sell was flipped to the other side at 100 - price
+        boolean converted = resting.getSide() != order.getSide();
+        String action = converted ? "sell" : "buy";
+        int bookPrice = converted ? 100 - price : price;
+        eventJournal.orderAmended(marketTicker, orderId, price, newCount, bookPrice, remaining);
+        
+        List<OrderBookEvent> batch = new ArrayList<>();
+        List<Execution> executions = applyAmend(orderBook, resting, orderId, bookPrice, remaining);
+        recordExecutions(marketTicker, executions, resting.getUserId(), action, batch);
+        
+        // A marketable amend's cancel half dropped the order's expiry; the replacement keeps it
+        if (order.getExpiration_time() != null && !orderExpiries.containsKey(resting.getId())
+                && orderBook.getOrder(resting.getId()) != null) {
+            scheduleExpiry(marketTicker, resting.getId(), order.getExpiration_time());
+        }
+        
+        Order amended = amendedOrder(order, price, newCount, remaining, executions);
+        
+        eventJournal.sync();
+        orderStates.put(amended);
+        persistenceService.amendOrder(orderId, newCount, price, amended.getFilled_quantity(),
+            amended.getRemaining_quantity(), amended.getAvg_fill_price(), amended.getStatus());
+        
+        appendBookEvents(orderBook, executions, batch);
+        eventPublisher.publishBatch(batch);
+        
+        return amended;
+    }
+    
+    /**
+     * An order's state after an amend to the given price, count and resting
+     * quantity and the amend's match. Shared with journal replay.
+     */
+    private static Order amendedOrder(Order order, int price, int newCount, int remaining, List<Execution> executions) {
+        int executed = 0;
+        int executedValue = 0;
+        for (Execution exec : executions) {
+            executed += exec.getQuantity();
+            executedValue += OrderStateStore.sidePrice(order.getSide(), exec.getExecutionPrice()) * exec.getQuantity();
+        }
+        // What filled before the amend is whatever of the new count does not rest
+        int previouslyFilled = newCount - remaining;
+        int filledQuantity = previouslyFilled + executed;
+        int remainingQuantity = remaining - executed;
+        String status = remainingQuantity == 0 ? "filled" : (filledQuantity > 0 ? "partially_filled" : "open");
+        
+        Integer avgFillPrice = order.getAvg_fill_price();
+        if (executed > 0) {
+            int previousValue = avgFillPrice != null ? avgFillPrice * previouslyFilled : 0;
+            avgFillPrice = (previousValue + executedValue) / filledQuantity;
+        }
+        
+        return new Order(
+            order.getId(),
+            order.getClient_order_id(),
+            order.getUser_id(),
+            order.getSide(),
+            order.getSymbol(),
+            order.getOrder_type(),
+            newCount,
+            filledQuantity,
+            remainingQuantity,
+            price,
+            avgFillPrice,
+            status,
+            order.getTime_in_force(),
+            order.getCreated_time(),
+            System.currentTimeMillis(),
+            order.getExpiration_time()
+        );
+    }
+    
+    /**
+     * The market an order trades in, from its held state or, for an order
+     * not held in memory, the database
+     */
+    private String marketOf(String orderId) {
+        Order order = orderStates.get(orderId);
+        if (order == null) {
+            order = persistenceService.getOrder(orderId);
+        }
+        return order != null ? order.getSymbol() : null;
+    }
+    
+    // Runs on the market's sequencer thread. A live order not held in memory -
+    // one that rested before a restart - is read from the database once, after
+    // every write queued for it, and held from then on.
+    private Order liveOrder(String orderId) {
+        Order order = orderStates.get(orderId);
+        if (order == null) {
+            order = persistenceService.getOrder(orderId);
+            if (order != null && !OrderStateStore.isTerminal(order.getStatus())) {
+                orderStates.put(order);
+            }
+        }
+        return order;
+    }
+    
+    ConcurrentOrderBook getOrderBook(String marketTicker) {
+        return orderBooks.get(marketTicker);
+    }
+    
+    public boolean hasOrderBook(String marketTicker) {
+        return orderBooks.containsKey(marketTicker);
     }
     
     public Orderbook getOrderbook(String marketTicker) {
@@ -288,6 +1139,15 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
             return new OrderbookResponse.OrderbookData(new ArrayList<>(), new ArrayList<>());
         }
         
+        // Top-of-book polls are answered from the lock-free BBO record
+        if (depth == 1) {
+            TopOfBook top = orderBook.getTopOfBook();
+            return new OrderbookResponse.OrderbookData(
+                top.hasBid() ? List.of(List.of(top.getBestBid(), top.getBestBidSize())) : List.of(),
+                top.hasNoBid() ? List.of(List.of(top.getBestNoBid(), top.getBestNoBidSize())) : List.of()
+            );
+        }
+        
         // Get orderbook snapshot in Kalshi format with specified depth
         return orderBook.getOrderbookSnapshotKalshiFormat(depth);
     }
@@ -296,8 +1156,15 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
         return persistenceService.getUserOrders(userId);
     }
     
+    /**
+     * An order's current state, from memory for live and recently finished
+     * orders and from the database for older ones
+     */
     public Order getOrder(String orderId) {
-        Order order = persistenceService.getOrder(orderId);
+        Order order = orderStates.get(orderId);
+        if (order == null) {
+            order = persistenceService.getOrder(orderId);
+        }
         if (order == null) {
             throw new IllegalArgumentException("Order not found: " + orderId);
         }
@@ -319,8 +1186,9 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
         // Log or process order addition
         System.out.println("Order added: " + order.getOrderId() + " to market " + marketTicker);
         
-        // Publish order book delta event
-        publishOrderBookDelta(marketTicker);
+        addUserMarket(order.getUserId(), marketTicker);
+        
+        // Subscribers are updated once per command, see createOrder/cancelOrder
     }
     
     @Override
@@ -328,8 +1196,10 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
         // Log or process order cancellation
         System.out.println("Order canceled: " + order.getOrderId() + " from market " + marketTicker);
         
-        // Publish order book delta event
-        publishOrderBookDelta(marketTicker);
+        cancelExpiry(order.getId());
+        pruneUserMarket(marketTicker, order.getUserId());
+        
+        // Subscribers are updated once per command, see createOrder/cancelOrder
     }
     
     @Override
@@ -337,24 +1207,14 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
         // Process execution - update order status, create fills and trades
         System.out.println("Order executed: " + order.getOrderId() + " quantity: " + executedQuantity);
         
-        // Update order in database
-        Order storedOrder = persistenceService.getOrder(order.getOrderId());
-        if (storedOrder != null) {
-            int newFilledQuantity = storedOrder.getFilled_quantity() + executedQuantity;
-            int newRemainingQuantity = storedOrder.getQuantity() - newFilledQuantity;
-            String newStatus = newRemainingQuantity == 0 ? "filled" : "partially_filled";
-            
-            persistenceService.updateOrderStatus(
-                order.getOrderId(),
-                newStatus,
-                newFilledQuantity,
-                newRemainingQuantity,
-                storedOrder.getAvg_fill_price() // Will be recalculated if needed
-            );
+        if (order.getQuantity() == 0) {
+            cancelExpiry(order.getId());
+            pruneUserMarket(marketTicker, order.getUserId());
         }
         
-        // Publish order book snapshot after execution
-        publishOrderBookSnapshot(marketTicker);
+        // Order state and the database are updated with the fills, see recordExecutions and processUncross
+        
+        // The snapshot for the whole sweep is published with the command's batch
     }
     
     @Override
@@ -364,6 +1224,75 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
     }
     
     // Helper methods
+    
+    private void addUserMarket(String userId, String marketTicker) {
+        // A market is only removed on its own shard, the one adding it here,
+        // so a set that holds it is not dropped under us
+        Set<String> markets = userMarkets.get(userId);
+        if (markets != null && markets.contains(marketTicker)) {
+            return;
+        }
+        userMarkets.compute(userId, (user, held) -> {
+            Set<String> updated = held != null ? held : ConcurrentHashMap.newKeySet();
+            updated.add(marketTicker);
+            return updated;
+        });
+    }
+    
+    // Runs on the market's sequencer thread, after an order left the book
+    private void pruneUserMarket(String marketTicker, String userId) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+        if (orderBook != null && !orderBook.hasUserOrders(userId)) {
+            removeUserMarket(userId, marketTicker);
+        }
+    }
+    
+    private void removeUserMarket(String userId, String marketTicker) {
+        userMarkets.computeIfPresent(userId, (user, markets) -> {
+            markets.remove(marketTicker);
+            return markets.isEmpty() ? null : markets;
+        });
+    }
+    
+    /**
+     * Queue a command that changes the market's book on its sequencer shard.
+     * Orders the command removed from the book go back to the book's entry
+     * pool only once it has returned, as its executions, fills and events
+     * refer to them until then.
+     */
+    private <T> CompletableFuture<T> submit(String marketTicker, Callable<T> command) {
+        if (!zeroGarbage) {
+            return sequencer.submit(marketTicker, command);
+        }
+        return sequencer.submit(marketTicker, () -> {
+            try {
+                return command.call();
+            } finally {
+                ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+                if (orderBook != null) {
+                    orderBook.recycleRetired();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Wait for a sequenced command, rethrowing its original exception
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
     private void validateOrderRequest(OrderRequest request) {
         if (request.getSymbol() == null || request.getSymbol().isEmpty()) {
             throw new IllegalArgumentException("Market ticker is required");
@@ -380,33 +1309,310 @@ public class OrderBookService implements ConcurrentOrderBook.OrderBookListener {
         }
     }
     
-    private void publishOrderBookDelta(String marketTicker) {
-        // For now, we'll publish a snapshot instead of tracking individual deltas
-        // In a real implementation, we would track the actual changes
-        publishOrderBookSnapshot(marketTicker);
+    private void validateExpiration(TimeInForce timeInForce, Long expirationTime) {
+        if (expirationTime == null) {
+            if (timeInForce == TimeInForce.GTD) {
+                throw new IllegalArgumentException("GTD orders require an expiration time");
+            }
+            return;
+        }
+        if (!timeInForce.rests()) {
+            throw new IllegalArgumentException(timeInForce + " orders cannot have an expiration time");
+        }
+        if (expirationTime <= System.currentTimeMillis()) {
+            throw new IllegalArgumentException("Expiration time is in the past: " + expirationTime);
+        }
     }
     
-    private void publishOrderBookSnapshot(String marketTicker) {
+    /**
+     * Cancel the resting order when its expiration time comes
+     */
+    private void scheduleExpiry(String marketTicker, long id, long expirationTime) {
+        TimerService.Timeout timeout = timerService.schedule(expirationTime, expiryHandler, new Expiry(marketTicker, id));
+        TimerService.Timeout previous = orderExpiries.put(id, timeout);
+        if (previous != null) {
+            timerService.cancel(previous);
+        }
+    }
+    
+    private void cancelExpiry(long id) {
+        // Most orders have no expiry
+        if (orderExpiries.isEmpty()) {
+            return;
+        }
+        TimerService.Timeout timeout = orderExpiries.remove(id);
+        if (timeout != null) {
+            timerService.cancel(timeout);
+        }
+    }
+    
+    /**
+     * Timer callback with every expiry of one tick: one cancel command per
+     * market, each on that market's sequencer shard
+     */
+    private void onOrdersExpired(List<Expiry> expiries) {
+        Map<String, List<Expiry>> byMarket = new HashMap<>();
+        for (Expiry expiry : expiries) {
+            byMarket.computeIfAbsent(expiry.marketTicker(), ticker -> new ArrayList<>()).add(expiry);
+        }
+        for (Map.Entry<String, List<Expiry>> market : byMarket.entrySet()) {
+            long[] ids = new long[market.getValue().size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = market.getValue().get(i).id();
+            }
+            submit(market.getKey(), () -> processExpiry(market.getKey(), ids));
+        }
+    }
+    
+    // Runs on the market's sequencer thread - the only writer for this book
+    private List<String> processExpiry(String marketTicker, long[] ids) {
+        for (long id : ids) {
+            orderExpiries.remove(id);
+        }
         ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
         if (orderBook == null) {
+            return List.of();
+        }
+        
+        // Orders filled or canceled since are no longer in the book and are skipped
+        List<String> expired = orderBook.cancelOrders(ids);
+        publishCancellations(marketTicker, orderBook, expired);
+        return expired;
+    }
+    
+    /**
+     * Match a new order and rest whatever its time in force lets rest. A FOK
+     * the book cannot fill completely comes back with no executions and the
+     * book untouched; IOC and FOK remainders are dropped, never added to the
+     * book. Nothing matches during the opening auction. Shared with journal
+     * replay, so a replayed order does exactly what the original did.
+     */
+    private List<Execution> applyNewOrder(ConcurrentOrderBook orderBook, OrderBookEntry bookEntry,
+                                          TimeInForce timeInForce) {
+        ExecutionRing ring = executionRings.get(orderBook.getMarketTicker());
+        List<Execution> executions;
+        if (orderBook.isInAuction()) {
+            executions = List.of();
+        } else if (ring != null) {
+            matchingEngine.matchOrder(bookEntry, orderBook, timeInForce, ring);
+            executions = ring.lastMatch();
+        } else {
+            executions = matchingEngine.matchOrder(bookEntry, orderBook, timeInForce);
+        }
+        if (bookEntry.getQuantity() > 0 && timeInForce.rests()) {
+            boolean added = orderBook.addOrder(bookEntry);
+            if (!added) {
+                throw new IllegalStateException("Failed to add order to book");
+            }
+        }
+        return executions;
+    }
+    
+    /**
+     * Give a resting order a new book price and resting quantity. Same price
+     * and smaller: in place, one delta. Otherwise requeued; an auction book
+     * takes crossing amends the same way. A marketable amend trades like a
+     * new order under the same ID.
+     */
+    private List<Execution> applyAmend(ConcurrentOrderBook orderBook, OrderBookEntry resting, String orderId,
+                                       int bookPrice, int quantity) {
+        if (orderBook.isInAuction() || !orderBook.wouldTrade(resting.getSide(), resting.getAction(), bookPrice)) {
+            orderBook.amendOrder(resting.getId(), bookPrice, quantity);
+            return List.of();
+        }
+        OrderBookEntry replacement = new OrderBookEntry(resting.getId(), orderId, resting.getUserId(), resting.getSide(),
+            resting.getAction(), bookPrice, quantity, System.currentTimeMillis());
+        return orderBook.mutate(() -> {
+            orderBook.cancelOrder(resting.getId());
+            List<Execution> matched = matchingEngine.matchOrder(replacement, orderBook);
+            if (replacement.getQuantity() > 0) {
+                orderBook.addOrder(replacement);
+            }
+            return matched;
+        });
+    }
+    
+    /**
+     * Uncross an auction book at its clearing price and switch it to
+     * continuous matching, as one coalesced mutation
+     */
+    private List<Execution> applyUncross(ConcurrentOrderBook orderBook) {
+        return orderBook.mutateCoalesced(() -> {
+            List<Execution> matched = matchingEngine.uncross(orderBook);
+            orderBook.setAuction(false);
+            return matched;
+        });
+    }
+    
+    /**
+     * Store the trades and fills of a match, apply the fills to the resting
+     * orders' state and update positions, adding a TRADE event per execution
+     * to the batch. userId and action describe the incoming order.
+     */
+    private void recordExecutions(String marketTicker, List<Execution> executions, String userId, String action,
+                                  List<OrderBookEvent> batch) {
+        if (executions.isEmpty()) {
             return;
         }
         
-        // Get current order book state in Kalshi format
-        OrderbookResponse.OrderbookData orderbookData = orderBook.getOrderbookSnapshotKalshiFormat(10);
+        // Convert to trades and fills
+        List<Trade> trades = matchingEngine.executionsToTrades(executions, marketTicker);
+        List<Fill> fills = matchingEngine.executionsToFills(executions, marketTicker);
         
-        // Convert to list format for WebSocket - now with proper YES/NO separation
-        List<List<Integer>> yesLevels = orderbookData.getYes() != null ? orderbookData.getYes() : new ArrayList<>();
-        List<List<Integer>> noLevels = orderbookData.getNo() != null ? orderbookData.getNo() : new ArrayList<>();
+        // Store trades in database using execution data
+        for (int i = 0; i < trades.size() && i < executions.size(); i++) {
+            Trade trade = trades.get(i);
+            Execution exec = executions.get(i);
+            eventJournal.orderExecuted(marketTicker, exec.getTradeId(), exec.getAggressor().getOrderId(),
+                exec.getPassive().getOrderId(), exec.getExecutionPrice(), exec.getQuantity());
+            persistenceService.saveTrade(
+                trade.getTrade_id(),
+                marketTicker,
+                exec.getAggressor().getOrderId(),
+                exec.getPassive().getOrderId(),
+                trade.getCount(), // Use getCount() instead of getQuantity()
+                trade.getPrice()
+            );
+            
+            batch.add(new OrderBookEvent(
+                OrderBookEvent.EventType.TRADE,
+                marketTicker,
+                new OrderBookEvent.TradeData(
+                    exec.getAggressor().getPrice(),
+                    exec.getQuantity(),
+                    exec.getAggressor().getSide().name(),
+                    exec.getTradeId()
+                )
+            ));
+        }
+        
+        // Fills come in incoming, resting pairs. The incoming order's state is
+        // stored by the caller; the resting orders' fills apply here, as one run
+        // of updates for the database to batch.
+        for (int i = 0; i < executions.size(); i++) {
+            Execution exec = executions.get(i);
+            String restingOrderId = exec.getPassive().getOrderId();
+            orderStates.executed(restingOrderId, exec.getQuantity(), exec.getExecutionPrice());
+            persistenceService.recordExecution(restingOrderId, exec.getQuantity(), exec.getExecutionPrice());
+        }
         
-        // Publish snapshot event with both YES and NO sides
-        OrderBookEvent.SnapshotData snapshotData = new OrderBookEvent.SnapshotData(yesLevels, noLevels);
-        OrderBookEvent event = new OrderBookEvent(OrderBookEvent.EventType.SNAPSHOT, marketTicker, snapshotData);
-        eventPublisher.publishEvent(event);
+        // Store fills and update positions
+        for (int i = 0; i < fills.size(); i++) {
+            Fill fill = fills.get(i);
+            if (i % 2 == 0) {
+                // This is the incoming order
+                persistenceService.saveFill(fill, userId);
+                boolean isBuy = action.equals("buy");
+                positionsService.updatePositionFromFill(fill, userId, isBuy);
+            } else {
+                // The resting order, whether or not this filled it completely
+                OrderBookEntry resting = executions.get(i / 2).getPassive();
+                persistenceService.saveFill(fill, resting.getUserId());
+                // Pass whether this was a buy or sell order
+                boolean isBuy = resting.getAction().equals("buy");
+                positionsService.updatePositionFromFill(fill, resting.getUserId(), isBuy);
+            }
+        }
+    }
+    
+    /**
+     * Finish a command's batch: the exact level changes, one snapshot covering
+     * them, and a ticker update if anything traded. Best bid/ask come from the
+     * lock-free top of book; an empty side falls back to the last trade price.
+     */
+    private void appendBookEvents(ConcurrentOrderBook orderBook, List<Execution> executions, List<OrderBookEvent> batch) {
+        // Trades print at the aggressor's price
+        int lastPrice = executions.isEmpty() ? 0 : executions.get(executions.size() - 1).getAggressor().getPrice();
+        appendBookEvents(orderBook, executions, lastPrice, batch);
+    }
+    
+    private void appendBookEvents(ConcurrentOrderBook orderBook, List<Execution> executions, int lastPrice,
+                                  List<OrderBookEvent> batch) {
+        String marketTicker = orderBook.getMarketTicker();
+        batch.addAll(drainDeltaEvents(orderBook));
+        
+        OrderBookEvent snapshotEvent = buildSnapshotEvent(marketTicker);
+        if (snapshotEvent != null) {
+            batch.add(snapshotEvent);
+        }
+        
+        if (!executions.isEmpty()) {
+            int totalVolume = 0;
+            for (Execution exec : executions) {
+                totalVolume += exec.getQuantity();
+            }
+            
+            TopOfBook top = orderBook.getTopOfBook();
+            OrderBookEvent.TickerData tickerData = new OrderBookEvent.TickerData(
+                marketTicker,
+                lastPrice,
+                totalVolume,
+                top.hasBid() ? top.getBestBid() : lastPrice,
+                top.hasAsk() ? top.getBestAsk() : lastPrice
+            );
+            batch.add(new OrderBookEvent(
+                OrderBookEvent.EventType.TICKER_UPDATE,
+                marketTicker,
+                tickerData
+            ));
+        }
+    }
+    
+    private void publishOrderBookSnapshot(String marketTicker) {
+        OrderBookEvent event = buildSnapshotEvent(marketTicker);
+        if (event != null) {
+            eventPublisher.publishEvent(event);
+        }
+    }
+    
+    /**
+     * Turn the level changes recorded by the last command into DELTA events.
+     * Must run on the market's sequencer thread.
+     */
+    private List<OrderBookEvent> drainDeltaEvents(ConcurrentOrderBook orderBook) {
+        List<OrderBookEvent> events = new ArrayList<>();
+        for (OrderBookDelta delta : orderBook.drainDeltas()) {
+            OrderBookEvent.DeltaData deltaData = new OrderBookEvent.DeltaData(
+                delta.getPrice(), delta.getDelta(), delta.getSide(), delta.getSequence());
+            events.add(new OrderBookEvent(OrderBookEvent.EventType.DELTA, orderBook.getMarketTicker(), deltaData));
+        }
+        return events;
+    }
+    
+    private OrderBookEvent buildSnapshotEvent(String marketTicker) {
+        ConcurrentOrderBook orderBook = orderBooks.get(marketTicker);
+        if (orderBook == null) {
+            return null;
+        }
+        
+        // Shared snapshot of the current book version, at full depth so delta
+        // subscribers can rebuild every level from it. Its delta sequence is
+        // exactly the last delta the levels include.
+        BookSnapshot snapshot = orderBook.getSnapshot();
+        
+        // Snapshot event with both YES and NO sides
+        OrderBookEvent.SnapshotData snapshotData = new OrderBookEvent.SnapshotData(
+            snapshot.getYes(SNAPSHOT_DEPTH), snapshot.getNo(SNAPSHOT_DEPTH), snapshot.getDeltaSequence());
+        return new OrderBookEvent(OrderBookEvent.EventType.SNAPSHOT, marketTicker, snapshotData);
     }
     
     public void publishInitialSnapshot(String marketTicker, String sessionId) {
-        publishOrderBookSnapshot(marketTicker);
+        if (orderBooks.containsKey(marketTicker)) {
+            sequencer.submit(marketTicker, () -> {
+                publishOrderBookSnapshot(marketTicker);
+                return null;
+            });
+        }
+    }
+    
+    /**
+     * Snapshot for a new orderbook_delta subscriber. Its seq is exactly the last
+     * delta it includes; deltas with a higher seq apply on top of it. Returns
+     * null for an unknown market.
+     */
+    public OrderBookEvent.SnapshotData getSequencedSnapshot(String marketTicker) {
+        OrderBookEvent event = buildSnapshotEvent(marketTicker);
+        return event != null ? (OrderBookEvent.SnapshotData) event.getData() : null;
     }
     
 }
\ No newline at end of file
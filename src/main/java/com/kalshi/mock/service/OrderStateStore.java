@@ -0,0 +1,164 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Order;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The current state of every live order, and of the most recently filled
+ * or canceled ones: status, filled and remaining quantity, average fill
+ * price. The trading path reads orders from here, never from the database,
+ * which is only written to.
+ *
+ * An order changes only on its market's sequencer shard, so updates of one
+ * order never race. Each change replaces the stored Order with a new one,
+ * and readers on any thread see a whole state, never half of an update.
+ * Terminal orders are kept, oldest evicted first, up to terminal-retain;
+ * older ones are read from the database.
+ */
+@Service
+public class OrderStateStore {
+
+    private final Map<String, Order> orders = new ConcurrentHashMap<>();
+
+    // Terminal orders in the order they became terminal, for eviction
+    private final Queue<String> terminal = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger terminalCount = new AtomicInteger();
+
+    // Filled and canceled orders kept for lookups before they are evicted
+    @Value("${orders.state.terminal-retain:100000}")
+    private int terminalRetain = 100_000;
+
+    /**
+     * The order's current state, or null if it is not held here
+     */
+    public Order get(String orderId) {
+        return orders.get(orderId);
+    }
+
+    /**
+     * Store an order's state as a whole - a new order or an amend's result.
+     * An order is queued for eviction once, when it becomes terminal; later
+     * terminal updates of it replace its state only.
+     */
+    public void put(Order order) {
+        Order previous = orders.put(order.getId(), order);
+        if (isTerminal(order.getStatus()) && (previous == null || !isTerminal(previous.getStatus()))) {
+            retire(order.getId());
+        }
+    }
+
+    /**
+     * Apply a fill of a held order at the execution price, normalized YES;
+     * its average fill price is kept in its own side's terms. A no-op for
+     * orders not held here.
+     * @return the order after the fill, or null if it is not held here
+     * @throws IllegalStateException if the fill is larger than what remains
+     */
+    public Order executed(String orderId, int quantity, int executionPrice) {
+        Order order = orders.get(orderId);
+        if (order == null) {
+            return null;
+        }
+        if (quantity > order.getRemaining_quantity()) {
+            throw new IllegalStateException("Fill of " + quantity + " exceeds the " + order.getRemaining_quantity()
+                                            + " remaining on order " + orderId);
+        }
+        int price = sidePrice(order.getSide(), executionPrice);
+        int filledQuantity = order.getFilled_quantity() + quantity;
+        int remainingQuantity = order.getRemaining_quantity() - quantity;
+        int previousValue = order.getAvg_fill_price() != null ? order.getAvg_fill_price() * order.getFilled_quantity() : 0;
+        Order filled = withState(order, filledQuantity, remainingQuantity,
+                                 (previousValue + price * quantity) / filledQuantity,
+                                 remainingQuantity == 0 ? "filled" : "partially_filled");
+        put(filled);
+        return filled;
+    }
+
+    /**
+     * Mark a held order canceled; its fills are kept
+     * @return the canceled order, or null if it is not held here
+     */
+    public Order canceled(String orderId) {
+        Order order = orders.get(orderId);
+        if (order == null) {
+            return null;
+        }
+        Order canceled = withState(order, order.getFilled_quantity(), 0, order.getAvg_fill_price(), "canceled");
+        put(canceled);
+        return canceled;
+    }
+
+    /**
+     * Hold a stored order as resting with the given quantity, the rest of
+     * its quantity filled - for journal replay, where the rebuilt book knows
+     * better than the database what remains of it
+     * @return the order as held
+     */
+    public Order resting(Order order, int remainingQuantity) {
+        int filledQuantity = order.getQuantity() - remainingQuantity;
+        Order resting = withState(order, filledQuantity, remainingQuantity, order.getAvg_fill_price(),
+                                  filledQuantity == 0 ? "open" : "partially_filled");
+        put(resting);
+        return resting;
+    }
+
+    /**
+     * Number of orders held, live and terminal
+     */
+    public int size() {
+        return orders.size();
+    }
+
+    /**
+     * An execution price, normalized YES, in the terms of an order of the
+     * given side - the space every average fill price is kept in
+     */
+    public static int sidePrice(KalshiSide side, int executionPrice) {
+        return side == KalshiSide.no ? 100 - executionPrice : executionPrice;
+    }
+
+    public static boolean isTerminal(String status) {
+        return "filled".equals(status) || "canceled".equals(status);
+    }
+
+    private void retire(String orderId) {
+        terminal.add(orderId);
+        if (terminalCount.incrementAndGet() > terminalRetain) {
+            String evicted = terminal.poll();
+            if (evicted != null) {
+                terminalCount.decrementAndGet();
+                orders.remove(evicted);
+            }
+        }
+    }
+
+    private static Order withState(Order order, int filledQuantity, int remainingQuantity, Integer avgFillPrice,
+                                   String status) {
+        return new Order(
+            order.getId(),
+            order.getClient_order_id(),
+            order.getUser_id(),
+            order.getSide(),
+            order.getSymbol(),
+            order.getOrder_type(),
+            order.getQuantity(),
+            filledQuantity,
+            remainingQuantity,
+            order.getPrice(),
+            avgFillPrice,
+            status,
+            order.getTime_in_force(),
+            order.getCreated_time(),
+            System.currentTimeMillis(),
+            order.getExpiration_time()
+        );
+    }
+}
@@ -4,24 +4,238 @@ import com.fbg.api.market.KalshiSide;
 import com.fbg.api.rest.Fill;
 import com.fbg.api.rest.Order;
 import com.fbg.api.rest.Position;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
 
+/**
+ * Orders, fills, trades and positions in the database. Writes are immutable
+ * records: in sync mode each is applied before the call returns, in async
+ * mode a write-behind writer applies them in JDBC batches, many per
+ * transaction. Reads first wait for queued writes, so callers always see
+ * their own changes.
+ */
 @Service
 public class PersistenceService {
     
+    private static final Logger logger = LoggerFactory.getLogger(PersistenceService.class);
+    
+    private static final String INSERT_ORDER_SQL = """
+        INSERT INTO orders (
+            order_id, client_order_id, user_id, side, action,
+            market_ticker, order_type, quantity, filled_quantity,
+            remaining_quantity, price, avg_fill_price, status,
+            time_in_force, created_time, updated_time, expiration_time
+        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+    
+    private static final String UPDATE_ORDER_SQL = """
+        UPDATE orders SET
+            client_order_id = ?, user_id = ?, side = ?, action = ?,
+            market_ticker = ?, order_type = ?, quantity = ?,
+            filled_quantity = ?, remaining_quantity = ?, price = ?,
+            avg_fill_price = ?, status = ?, time_in_force = ?,
+            created_time = ?, updated_time = ?, expiration_time = ?
+        WHERE order_id = ?
+    """;
+    
+    private static final String UPDATE_ORDER_STATUS_SQL = """
+        UPDATE orders SET 
+            status = ?, 
+            filled_quantity = ?, 
+            remaining_quantity = ?,
+            avg_fill_price = ?,
+            updated_time = ?
+        WHERE order_id = ?
+    """;
+    
+    // Relative, so a resting order's fills need no read of its row
+    private static final String ORDER_EXECUTED_SQL = """
+        UPDATE orders SET
+            status = CASE WHEN remaining_quantity - ? = 0 THEN 'filled' ELSE 'partially_filled' END,
+            filled_quantity = filled_quantity + ?,
+            remaining_quantity = remaining_quantity - ?,
+            avg_fill_price = (COALESCE(avg_fill_price, 0) * filled_quantity
+                              + (CASE WHEN side = 'no' THEN 100 - ? ELSE ? END) * ?) / (filled_quantity + ?),
+            updated_time = ?
+        WHERE order_id = ?
+    """;
+    
+    private static final String CANCEL_ORDER_SQL = """
+        UPDATE orders SET
+            status = 'canceled',
+            remaining_quantity = 0,
+            updated_time = ?
+        WHERE order_id = ?
+    """;
+    
+    private static final String AMEND_ORDER_SQL = """
+        UPDATE orders SET
+            quantity = ?,
+            price = ?,
+            filled_quantity = ?,
+            remaining_quantity = ?,
+            avg_fill_price = ?,
+            status = ?,
+            updated_time = ?
+        WHERE order_id = ?
+    """;
+    
+    private static final String INSERT_FILL_SQL = """
+        INSERT INTO fills (
+            fill_id, order_id, user_id, market_id, market_ticker,
+            side, price, quantity, is_taker, filled_time, trade_id
+        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+    
+    private static final String SELECT_POSITION_SQL = """
+        SELECT quantity, avg_price, total_cost 
+        FROM positions 
+        WHERE user_id = ? AND market_ticker = ? AND side = ?
+    """;
+    
+    private static final String INSERT_POSITION_SQL = """
+        INSERT INTO positions (
+            user_id, market_id, market_ticker, quantity, avg_price,
+            side, realized_pnl, total_cost, updated_time
+        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+    
+    private static final String UPDATE_POSITION_SQL = """
+        UPDATE positions SET 
+            quantity = ?, 
+            avg_price = ?, 
+            total_cost = ?,
+            updated_time = ?
+        WHERE user_id = ? AND market_ticker = ? AND side = ?
+    """;
+    
+    private static final String SAVE_POSITION_SQL = """
+        UPDATE positions SET 
+            quantity = ?, 
+            avg_price = ?, 
+            total_cost = ?,
+            realized_pnl = ?,
+            updated_time = ?
+        WHERE user_id = ? AND market_ticker = ? AND side = ?
+    """;
+    
+    private static final String POSITIONS_SQL = """
+        SELECT user_id, market_id, market_ticker, side, quantity, avg_price, total_cost, realized_pnl
+        FROM positions
+    """;
+    
+    private static final String INSERT_TRADE_SQL = """
+        INSERT INTO trades (
+            trade_id, market_ticker, taker_order_id, maker_order_id,
+            price, quantity, created_time
+        ) VALUES (?, ?, ?, ?, ?, ?, ?)
+    """;
+    
+    private static final String RESTING_ORDERS_SQL = """
+        SELECT order_id, user_id, market_ticker, side, action, price,
+               remaining_quantity, created_time, expiration_time
+        FROM orders
+        WHERE status IN ('open', 'partially_filled')
+    """;
+    
+    /**
+     * The part of a stored order that rests in a book, as stored: in the
+     * side and price the user sent, not the book's buy-only form
+     */
+    public record RestingOrderRow(String marketTicker, String orderId, String userId, KalshiSide side,
+                                  String action, int price, int remainingQuantity, long createdTime,
+                                  Long expirationTime) {
+    }
+    
+    /**
+     * A position's stored state
+     */
+    public record PositionRow(String userId, String marketId, String marketTicker, KalshiSide side,
+                              int quantity, int avgPrice, int totalCost, int realizedPnl) {
+    }
+    
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    // "sync" applies each write before returning; "async" queues it for the
+    // write-behind writer
+    @Value("${persistence.mode:sync}")
+    private String mode;
+    
+    // Writes the queue holds before the trading path blocks on it
+    @Value("${persistence.write-behind.queue-capacity:65536}")
+    private int queueCapacity;
+    
+    // Rows per round trip when streaming every resting order at startup
+    @Value("${persistence.hydration.fetch-size:10000}")
+    private int hydrationFetchSize = 10000;
+    
+    // Most writes the writer applies in one transaction
+    @Value("${persistence.write-behind.flush-size:500}")
+    private int flushSize;
+    
+    // How long the writer waits for a batch to fill before committing it
+    @Value("${persistence.write-behind.flush-interval-millis:5}")
+    private long flushIntervalMillis;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    // Null in sync mode
+    private WriteBehindQueue<Write> writeBehind;
+    
+    @PostConstruct
+    public void start() {
+        if (transactionManager != null) {
+            transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+        if ("async".equalsIgnoreCase(mode)) {
+            writeBehind = new WriteBehindQueue<>("persistence-writer", queueCapacity, flushSize,
+                                                 flushIntervalMillis, this::flush);
+            writeBehind.start();
+            logger.info("Write-behind persistence: {} writes per batch, {}ms interval, {} queued at most",
+                        flushSize, flushIntervalMillis, queueCapacity);
+        }
+    }
+    
+    /**
+     * Commit whatever is still queued before the database goes away
+     */
+    @PreDestroy
+    public void stop() {
+        if (writeBehind != null) {
+            writeBehind.stop();
+            if (writeBehind.failed() > 0) {
+                logger.error("{} writes could not be written to the database", writeBehind.failed());
+            }
+        }
+    }
+    
     // Order RowMapper
     private final RowMapper<Order> orderRowMapper = new RowMapper<Order>() {
         @Override
@@ -47,6 +261,22 @@ public class PersistenceService {
         }
     };
     
+    private static final RowMapper<RestingOrderRow> restingOrderRowMapper = (rs, rowNum) -> {
+        long expirationTime = rs.getLong("expiration_time");
+        Long expiration = rs.wasNull() ? null : expirationTime;
+        return new RestingOrderRow(
+            rs.getString("market_ticker"),
+            rs.getString("order_id"),
+            rs.getString("user_id"),
+            KalshiSide.valueOf(rs.getString("side")),
+            rs.getString("action"),
+            rs.getInt("price"),
+            rs.getInt("remaining_quantity"),
+            rs.getLong("created_time"),
+            expiration
+        );
+    };
+    
     // Fill RowMapper
     private final RowMapper<Fill> fillRowMapper = new RowMapper<Fill>() {
         @Override
@@ -83,230 +313,128 @@ public class PersistenceService {
     };
     
     // Order operations
-    @Transactional
     public void saveOrder(Order order, String action) {
-        // First check if order exists
-        String checkSql = "SELECT COUNT(*) FROM orders WHERE order_id = ?";
-        int count = jdbcTemplate.queryForObject(checkSql, Integer.class, order.getId());
-        
-        if (count > 0) {
-            // Update existing order
-            String updateSql = """
-                UPDATE orders SET
-                    client_order_id = ?, user_id = ?, side = ?, action = ?,
-                    market_ticker = ?, order_type = ?, quantity = ?,
-                    filled_quantity = ?, remaining_quantity = ?, price = ?,
-                    avg_fill_price = ?, status = ?, time_in_force = ?,
-                    created_time = ?, updated_time = ?, expiration_time = ?
-                WHERE order_id = ?
-            """;
-            
-            jdbcTemplate.update(updateSql,
-                order.getClient_order_id(),
-                order.getUser_id(),
-                order.getSide().name(),
-                action,
-                order.getSymbol(),  // market_ticker uses symbol field
-                order.getOrder_type(),
-                order.getQuantity(),
-                order.getFilled_quantity(),
-                order.getRemaining_quantity(),
-                order.getPrice(),
-                order.getAvg_fill_price(),
-                order.getStatus(),
-                order.getTime_in_force(),
-                order.getCreated_time(),
-                order.getUpdated_time(),
-                order.getExpiration_time(),
-                order.getId()
-            );
-        } else {
-            // Insert new order
-            String insertSql = """
-                INSERT INTO orders (
-                    order_id, client_order_id, user_id, side, action,
-                    market_ticker, order_type, quantity, filled_quantity,
-                    remaining_quantity, price, avg_fill_price, status,
-                    time_in_force, created_time, updated_time, expiration_time
-                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            """;
-            
-            jdbcTemplate.update(insertSql,
-                order.getId(),
-                order.getClient_order_id(),
-                order.getUser_id(),
-                order.getSide().name(),
-                action,
-                order.getSymbol(),  // market_ticker uses symbol field
-                order.getOrder_type(),
-                order.getQuantity(),
-                order.getFilled_quantity(),
-                order.getRemaining_quantity(),
-                order.getPrice(),
-                order.getAvg_fill_price(),
-                order.getStatus(),
-                order.getTime_in_force(),
-                order.getCreated_time(),
-                order.getUpdated_time(),
-                order.getExpiration_time()
-            );
-        }
+        write(new SaveOrder(order, action));
     }
     
     public Order getOrder(String orderId) {
+        awaitWrites();
         String sql = "SELECT * FROM orders WHERE order_id = ?";
         List<Order> orders = jdbcTemplate.query(sql, orderRowMapper, orderId);
         return orders.isEmpty() ? null : orders.get(0);
     }
     
     public List<Order> getUserOrders(String userId) {
+        awaitWrites();
         String sql = "SELECT * FROM orders WHERE user_id = ? ORDER BY created_time DESC";
         return jdbcTemplate.query(sql, orderRowMapper, userId);
     }
     
     public List<Order> getUserOrdersByStatus(String userId, String status) {
+        awaitWrites();
         String sql = "SELECT * FROM orders WHERE user_id = ? AND status = ? ORDER BY created_time DESC";
         return jdbcTemplate.query(sql, orderRowMapper, userId, status);
     }
     
-    public List<Map<String, Object>> getOpenOrdersForMarket(String marketTicker) {
-        String sql = "SELECT *, action FROM orders WHERE market_ticker = ? AND status = 'open' ORDER BY created_time ASC";
-        return jdbcTemplate.queryForList(sql, marketTicker);
+    /**
+     * Open and partially filled orders of one market, oldest first
+     */
+    public List<RestingOrderRow> getRestingOrdersForMarket(String marketTicker) {
+        awaitWrites();
+        String sql = RESTING_ORDERS_SQL + " AND market_ticker = ? ORDER BY created_time ASC";
+        return jdbcTemplate.query(sql, restingOrderRowMapper, marketTicker);
     }
     
-    @Transactional
-    public void updateOrderStatus(String orderId, String status, int filledQuantity, int remainingQuantity, Integer avgFillPrice) {
-        String sql = """
-            UPDATE orders SET 
-                status = ?, 
-                filled_quantity = ?, 
-                remaining_quantity = ?,
-                avg_fill_price = ?,
-                updated_time = ?
-            WHERE order_id = ?
-        """;
+    /**
+     * Hand every open and partially filled order, of every market, to the
+     * consumer, oldest first. One forward-only query streams the rows in
+     * fetch-size chunks, so memory does not grow with the result.
+     */
+    public void streamRestingOrders(Consumer<RestingOrderRow> consumer) {
+        awaitWrites();
+        String sql = RESTING_ORDERS_SQL + " ORDER BY created_time ASC";
+        Runnable query = () -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                                      ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(hydrationFetchSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(restingOrderRowMapper.mapRow(rs, 0)));
         
-        jdbcTemplate.update(sql, status, filledQuantity, remainingQuantity, avgFillPrice, 
-                           System.currentTimeMillis(), orderId);
+        // Postgres only fetches through a cursor inside a transaction
+        if (transactionTemplate != null) {
+            transactionTemplate.executeWithoutResult(status -> query.run());
+        } else {
+            query.run();
+        }
+    }
+    
+    public void updateOrderStatus(String orderId, String status, int filledQuantity, int remainingQuantity, Integer avgFillPrice) {
+        write(new UpdateOrderStatus(orderId, status, filledQuantity, remainingQuantity, avgFillPrice,
+                                    System.currentTimeMillis()));
+    }
+    
+    /**
+     * Record a fill of a resting order against its stored quantities and
+     * average fill price, at the execution price, normalized YES; the average
+     * is kept in the order's own side's terms
+     */
+    public void recordExecution(String orderId, int executedQuantity, int executionPrice) {
+        write(new OrderExecuted(orderId, executedQuantity, executionPrice, System.currentTimeMillis()));
+    }
+    
+    /**
+     * Mark orders canceled in one JDBC batch. Fills are kept; whatever was
+     * still resting is gone.
+     */
+    public void cancelOrders(List<String> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        write(new CancelOrders(List.copyOf(orderIds), System.currentTimeMillis()));
+    }
+    
+    /**
+     * Record an amend: new total count and price, with the fills and status
+     * after any trades the amend caused
+     */
+    public void amendOrder(String orderId, int quantity, int price, int filledQuantity, int remainingQuantity,
+                           Integer avgFillPrice, String status) {
+        write(new AmendOrder(orderId, quantity, price, filledQuantity, remainingQuantity, avgFillPrice, status,
+                             System.currentTimeMillis()));
     }
     
     // Fill operations
-    @Transactional
     public void saveFill(Fill fill, String userId) {
-        String sql = """
-            INSERT INTO fills (
-                fill_id, order_id, user_id, market_id, market_ticker,
-                side, price, quantity, is_taker, filled_time, trade_id
-            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-        """;
-        
-        jdbcTemplate.update(sql,
-            fill.getId(),
-            fill.getOrder_id(),
-            userId,
-            fill.getMarket_id(),
-            fill.getMarket_ticker(),
-            fill.getSide().name(),
-            fill.getPrice(),
-            fill.getCount(),  // quantity uses count field
-            fill.is_taker(),
-            fill.getCreated_time(),  // filled_time uses created_time field
-            fill.getTrade_id()
-        );
+        write(new SaveFill(fill, userId));
     }
     
     public List<Fill> getUserFills(String userId) {
+        awaitWrites();
         String sql = "SELECT * FROM fills WHERE user_id = ? ORDER BY filled_time DESC";
         return jdbcTemplate.query(sql, fillRowMapper, userId);
     }
     
     public List<Fill> getUserFillsByMarket(String userId, String marketTicker) {
+        awaitWrites();
         String sql = "SELECT * FROM fills WHERE user_id = ? AND market_ticker = ? ORDER BY filled_time DESC";
         return jdbcTemplate.query(sql, fillRowMapper, userId, marketTicker);
     }
     
     public List<Fill> getFillsByOrderId(String orderId) {
+        awaitWrites();
         String sql = "SELECT * FROM fills WHERE order_id = ? ORDER BY filled_time DESC";
         return jdbcTemplate.query(sql, fillRowMapper, orderId);
     }
     
     // Position operations
-    @Transactional
     public void updatePosition(String userId, String marketId, String marketTicker, 
                               KalshiSide side, int quantityChange, int price) {
-        // First try to get existing position
-        String selectSql = """
-            SELECT quantity, avg_price, total_cost 
-            FROM positions 
-            WHERE user_id = ? AND market_ticker = ? AND side = ?
-        """;
-        
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(selectSql, userId, marketTicker, side.name());
-        
-        if (results.isEmpty()) {
-            // Create new position
-            String insertSql = """
-                INSERT INTO positions (
-                    user_id, market_id, market_ticker, quantity, avg_price,
-                    side, realized_pnl, total_cost, updated_time
-                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
-            """;
-            
-            int totalCost = Math.abs(quantityChange * price);
-            jdbcTemplate.update(insertSql,
-                userId, marketId, marketTicker, quantityChange, price,
-                side.name(), 0, totalCost, System.currentTimeMillis()
-            );
-        } else {
-            // Update existing position
-            Map<String, Object> currentPosition = results.get(0);
-            int currentQuantity = (int) currentPosition.get("quantity");
-            int currentAvgPrice = (int) currentPosition.get("avg_price");
-            int currentTotalCost = (int) currentPosition.get("total_cost");
-            
-            int newQuantity = currentQuantity + quantityChange;
-            int newTotalCost;
-            int newAvgPrice;
-            
-            if (newQuantity == 0) {
-                newAvgPrice = 0;
-                newTotalCost = 0;
-            } else if ((currentQuantity > 0 && quantityChange > 0) || (currentQuantity < 0 && quantityChange < 0)) {
-                // Increasing position (same direction)
-                // For long: buying more
-                // For short: selling more (both negative)
-                newTotalCost = currentTotalCost + Math.abs(quantityChange * price);
-                newAvgPrice = Math.abs(newTotalCost) / Math.abs(newQuantity);
-            } else if ((currentQuantity > 0 && quantityChange < 0 && Math.abs(quantityChange) <= currentQuantity) ||
-                       (currentQuantity < 0 && quantityChange > 0 && quantityChange <= Math.abs(currentQuantity))) {
-                // Reducing position (partial close)
-                double reductionRatio = (double) Math.abs(newQuantity) / Math.abs(currentQuantity);
-                newTotalCost = (int) (currentTotalCost * reductionRatio);
-                newAvgPrice = currentAvgPrice; // Keep same avg price when reducing
-            } else {
-                // Flipping position (from long to short or vice versa)
-                // The excess quantity becomes the new position
-                newTotalCost = Math.abs(newQuantity * price);
-                newAvgPrice = price; // New position at current price
-            }
-            
-            String updateSql = """
-                UPDATE positions SET 
-                    quantity = ?, 
-                    avg_price = ?, 
-                    total_cost = ?,
-                    updated_time = ?
-                WHERE user_id = ? AND market_ticker = ? AND side = ?
-            """;
-            
-            jdbcTemplate.update(updateSql,
-                newQuantity, newAvgPrice, newTotalCost, System.currentTimeMillis(),
-                userId, marketTicker, side.name()
-            );
-        }
+        write(new UpdatePosition(userId, marketId, marketTicker, side, quantityChange, price,
+                                 System.currentTimeMillis()));
     }
     
     public List<Position> getUserPositions(String userId) {
+        awaitWrites();
         String sql = """
             SELECT * FROM positions 
             WHERE user_id = ? AND quantity != 0 
@@ -315,7 +443,32 @@ public class PersistenceService {
         return jdbcTemplate.query(sql, positionRowMapper, userId);
     }
     
+    /**
+     * Hand every stored position, of every user, to the consumer
+     */
+    public void streamPositions(Consumer<PositionRow> consumer) {
+        awaitWrites();
+        jdbcTemplate.query(POSITIONS_SQL, (RowCallbackHandler) rs -> consumer.accept(new PositionRow(
+            rs.getString("user_id"),
+            rs.getString("market_id"),
+            rs.getString("market_ticker"),
+            KalshiSide.valueOf(rs.getString("side")),
+            rs.getInt("quantity"),
+            rs.getInt("avg_price"),
+            rs.getInt("total_cost"),
+            rs.getInt("realized_pnl"))));
+    }
+    
+    /**
+     * Store positions as they now stand, replacing their rows. Unlike
+     * updatePosition, nothing is read back: the caller holds the state.
+     */
+    public void savePositions(List<PositionRow> rows) {
+        write(new SavePositions(List.copyOf(rows), System.currentTimeMillis()));
+    }
+    
     public Position getUserPosition(String userId, String marketTicker, KalshiSide side) {
+        awaitWrites();
         String sql = """
             SELECT * FROM positions 
             WHERE user_id = ? AND market_ticker = ? AND side = ?
@@ -325,19 +478,370 @@ public class PersistenceService {
     }
     
     // Trade operations
-    @Transactional
     public void saveTrade(String tradeId, String marketTicker, String aggressiveOrderId, 
                          String passiveOrderId, int quantity, int price) {
-        String sql = """
-            INSERT INTO trades (
-                trade_id, market_ticker, taker_order_id, maker_order_id,
-                price, quantity, created_time
-            ) VALUES (?, ?, ?, ?, ?, ?, ?)
-        """;
+        write(new SaveTrade(tradeId, marketTicker, aggressiveOrderId, passiveOrderId, quantity, price,
+                            System.currentTimeMillis()));
+    }
+    
+    /**
+     * Wait until every write made so far is in the database or was given up
+     * on. A no-op when writes are synchronous, where a failed write throws
+     * to its caller instead.
+     * @return the number of writes given up on so far, zero when every one
+     *         of them is in the database
+     */
+    public long awaitWrites() {
+        return writeBehind != null ? writeBehind.awaitFlushed() : 0;
+    }
+    
+    /**
+     * Writes queued for the write-behind writer and not yet committed
+     */
+    public long pendingWrites() {
+        return writeBehind != null ? writeBehind.pending() : 0;
+    }
+    
+    /**
+     * Writes the write-behind writer could not commit and gave up on, so far
+     */
+    public long failedWrites() {
+        return writeBehind != null ? writeBehind.failed() : 0;
+    }
+    
+    private void write(Write write) {
+        if (writeBehind != null) {
+            writeBehind.submit(write);
+        } else {
+            applyWrites(List.of(write));
+        }
+    }
+    
+    // Runs on the write-behind writer: the whole batch commits together, but
+    // if it fails each write is retried alone so one bad row costs only itself.
+    // Returns how many writes could not be committed.
+    private int flush(List<Write> batch) {
+        try {
+            applyWrites(batch);
+            return 0;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                throw e;
+            }
+            logger.warn("Write-behind batch of {} failed, retrying one at a time", batch.size(), e);
+            int failed = 0;
+            for (Write write : batch) {
+                try {
+                    applyWrites(List.of(write));
+                } catch (RuntimeException writeFailed) {
+                    logger.error("Could not write {}", write, writeFailed);
+                    failed++;
+                }
+            }
+            return failed;
+        }
+    }
+    
+    /**
+     * Apply writes in one transaction, one JDBC batch per statement where the
+     * order allows. Order rows are written first and in submission order;
+     * trades and fills follow as single batches, and each position is read
+     * once and written once however many fills changed it.
+     */
+    void applyWrites(List<Write> writes) {
+        if (transactionTemplate == null) {
+            applyWritesInTransaction(writes);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> applyWritesInTransaction(writes));
+    }
+    
+    private void applyWritesInTransaction(List<Write> writes) {
+        List<Object[]> trades = new ArrayList<>();
+        List<Object[]> fills = new ArrayList<>();
+        Map<PositionKey, List<UpdatePosition>> positions = new LinkedHashMap<>();
+        Map<PositionKey, PositionRow> savedPositions = new LinkedHashMap<>();
+        long savedTime = 0;
         
-        jdbcTemplate.update(sql,
-            tradeId, marketTicker, aggressiveOrderId, passiveOrderId,
-            price, quantity, System.currentTimeMillis()
-        );
+        int i = 0;
+        while (i < writes.size()) {
+            Write write = writes.get(i);
+            if (write instanceof SaveTrade trade) {
+                trades.add(new Object[]{trade.tradeId(), trade.marketTicker(), trade.aggressiveOrderId(),
+                    trade.passiveOrderId(), trade.price(), trade.quantity(), trade.createdTime()});
+                i++;
+            } else if (write instanceof SaveFill save) {
+                fills.add(fillRow(save.fill(), save.userId()));
+                i++;
+            } else if (write instanceof UpdatePosition change) {
+                positions.computeIfAbsent(new PositionKey(change.userId(), change.marketTicker(), change.side()),
+                                          key -> new ArrayList<>()).add(change);
+                i++;
+            } else if (write instanceof SavePositions save) {
+                // A later state of the same position replaces an earlier one
+                for (PositionRow row : save.rows()) {
+                    savedPositions.put(new PositionKey(row.userId(), row.marketTicker(), row.side()), row);
+                }
+                savedTime = save.updatedTime();
+                i++;
+            } else {
+                // A run of the same order statement goes out as one batch
+                int end = i + 1;
+                while (end < writes.size() && writes.get(end).getClass() == write.getClass()) {
+                    end++;
+                }
+                applyOrderWrites(writes.subList(i, end));
+                i = end;
+            }
+        }
+        
+        if (!trades.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TRADE_SQL, trades);
+        }
+        if (!fills.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_FILL_SQL, fills);
+        }
+        if (!positions.isEmpty()) {
+            applyPositionChanges(positions);
+        }
+        if (!savedPositions.isEmpty()) {
+            savePositionRows(savedPositions.values(), savedTime);
+        }
     }
-}
\ No newline at end of file
+    
+    private void applyOrderWrites(List<Write> run) {
+        Write first = run.get(0);
+        if (first instanceof SaveOrder) {
+            saveOrders(run);
+            return;
+        }
+        
+        List<Object[]> args = new ArrayList<>(run.size());
+        if (first instanceof UpdateOrderStatus) {
+            for (Write write : run) {
+                UpdateOrderStatus update = (UpdateOrderStatus) write;
+                args.add(new Object[]{update.status(), update.filledQuantity(), update.remainingQuantity(),
+                    update.avgFillPrice(), update.updatedTime(), update.orderId()});
+            }
+            jdbcTemplate.batchUpdate(UPDATE_ORDER_STATUS_SQL, args);
+        } else if (first instanceof OrderExecuted) {
+            for (Write write : run) {
+                OrderExecuted execution = (OrderExecuted) write;
+                // The average is folded the way OrderStateStore.executed folds it
+                args.add(new Object[]{execution.quantity(), execution.quantity(), execution.quantity(),
+                    execution.price(), execution.price(), execution.quantity(), execution.quantity(),
+                    execution.updatedTime(),
+                    execution.orderId()});
+            }
+            jdbcTemplate.batchUpdate(ORDER_EXECUTED_SQL, args);
+        } else if (first instanceof CancelOrders) {
+            for (Write write : run) {
+                CancelOrders cancel = (CancelOrders) write;
+                for (String orderId : cancel.orderIds()) {
+                    args.add(new Object[]{cancel.updatedTime(), orderId});
+                }
+            }
+            jdbcTemplate.batchUpdate(CANCEL_ORDER_SQL, args);
+        } else if (first instanceof AmendOrder) {
+            for (Write write : run) {
+                AmendOrder amend = (AmendOrder) write;
+                args.add(new Object[]{amend.quantity(), amend.price(), amend.filledQuantity(),
+                    amend.remainingQuantity(), amend.avgFillPrice(), amend.status(), amend.updatedTime(),
+                    amend.orderId()});
+            }
+            jdbcTemplate.batchUpdate(AMEND_ORDER_SQL, args);
+        }
+    }
+    
+    // Full-row saves: the last save of an order in the run wins, and one
+    // query finds which of them already exist
+    private void saveOrders(List<Write> run) {
+        Map<String, SaveOrder> latest = new LinkedHashMap<>();
+        for (Write write : run) {
+            SaveOrder save = (SaveOrder) write;
+            latest.put(save.order().getId(), save);
+        }
+        
+        String placeholders = String.join(", ", Collections.nCopies(latest.size(), "?"));
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+            "SELECT order_id FROM orders WHERE order_id IN (" + placeholders + ")",
+            String.class, latest.keySet().toArray()));
+        
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (SaveOrder save : latest.values()) {
+            Order order = save.order();
+            if (existing.contains(order.getId())) {
+                updates.add(new Object[]{
+                    order.getClient_order_id(), order.getUser_id(), order.getSide().name(), save.action(),
+                    order.getSymbol(),  // market_ticker uses symbol field
+                    order.getOrder_type(), order.getQuantity(), order.getFilled_quantity(),
+                    order.getRemaining_quantity(), order.getPrice(), order.getAvg_fill_price(), order.getStatus(),
+                    order.getTime_in_force(), order.getCreated_time(), order.getUpdated_time(),
+                    order.getExpiration_time(), order.getId()
+                });
+            } else {
+                inserts.add(new Object[]{
+                    order.getId(), order.getClient_order_id(), order.getUser_id(), order.getSide().name(),
+                    save.action(),
+                    order.getSymbol(),  // market_ticker uses symbol field
+                    order.getOrder_type(), order.getQuantity(), order.getFilled_quantity(),
+                    order.getRemaining_quantity(), order.getPrice(), order.getAvg_fill_price(), order.getStatus(),
+                    order.getTime_in_force(), order.getCreated_time(), order.getUpdated_time(),
+                    order.getExpiration_time()
+                });
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ORDER_SQL, inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_ORDER_SQL, updates);
+        }
+    }
+    
+    private static Object[] fillRow(Fill fill, String userId) {
+        return new Object[]{
+            fill.getId(),
+            fill.getOrder_id(),
+            userId,
+            fill.getMarket_id(),
+            fill.getMarket_ticker(),
+            fill.getSide().name(),
+            fill.getPrice(),
+            fill.getCount(),  // quantity uses count field
+            fill.is_taker(),
+            fill.getCreated_time(),  // filled_time uses created_time field
+            fill.getTrade_id()
+        };
+    }
+    
+    // Fold every change to a position into its current row, then write each
+    // position once
+    private void applyPositionChanges(Map<PositionKey, List<UpdatePosition>> positions) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Map.Entry<PositionKey, List<UpdatePosition>> entry : positions.entrySet()) {
+            PositionKey key = entry.getKey();
+            List<UpdatePosition> changes = entry.getValue();
+            
+            List<Map<String, Object>> results = jdbcTemplate.queryForList(SELECT_POSITION_SQL,
+                key.userId(), key.marketTicker(), key.side().name());
+            
+            PositionState state = null;
+            if (!results.isEmpty()) {
+                Map<String, Object> currentPosition = results.get(0);
+                state = new PositionState(((Number) currentPosition.get("quantity")).intValue(),
+                                          ((Number) currentPosition.get("avg_price")).intValue(),
+                                          ((Number) currentPosition.get("total_cost")).intValue());
+            }
+            boolean exists = state != null;
+            for (UpdatePosition change : changes) {
+                state = state == null ? PositionState.open(change.quantityChange(), change.price())
+                                      : state.apply(change.quantityChange(), change.price());
+            }
+            
+            UpdatePosition last = changes.get(changes.size() - 1);
+            if (exists) {
+                updates.add(new Object[]{state.quantity(), state.avgPrice(), state.totalCost(), last.updatedTime(),
+                    key.userId(), key.marketTicker(), key.side().name()});
+            } else {
+                inserts.add(new Object[]{key.userId(), changes.get(0).marketId(), key.marketTicker(),
+                    state.quantity(), state.avgPrice(), key.side().name(), 0, state.totalCost(),
+                    last.updatedTime()});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_POSITION_SQL, inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_POSITION_SQL, updates);
+        }
+    }
+    
+    // Overwrite each position's row, inserting the ones the update missed
+    private void savePositionRows(Collection<PositionRow> rows, long updatedTime) {
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        for (PositionRow row : rows) {
+            updates.add(new Object[]{row.quantity(), row.avgPrice(), row.totalCost(), row.realizedPnl(),
+                updatedTime, row.userId(), row.marketTicker(), row.side().name()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(SAVE_POSITION_SQL, updates);
+        
+        List<Object[]> inserts = new ArrayList<>();
+        int index = 0;
+        for (PositionRow row : rows) {
+            if (updated[index++] == 0) {
+                inserts.add(new Object[]{row.userId(), row.marketId(), row.marketTicker(), row.quantity(),
+                    row.avgPrice(), row.side().name(), row.realizedPnl(), row.totalCost(), updatedTime});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_POSITION_SQL, inserts);
+        }
+    }
+    
+    /**
+     * Quantity, average price and cost of one position, and how a fill
+     * changes them. PositionLedger applies the same rules to its positions
+     * in place.
+     */
+    record PositionState(int quantity, int avgPrice, int totalCost) {
+        
+        static PositionState open(int quantityChange, int price) {
+            return new PositionState(quantityChange, price, Math.abs(quantityChange * price));
+        }
+        
+        PositionState apply(int quantityChange, int price) {
+            int newQuantity = quantity + quantityChange;
+            
+            if (newQuantity == 0) {
+                return new PositionState(0, 0, 0);
+            } else if ((quantity > 0 && quantityChange > 0) || (quantity < 0 && quantityChange < 0)) {
+                // Increasing position (same direction)
+                // For long: buying more
+                // For short: selling more (both negative)
+                int newTotalCost = totalCost + Math.abs(quantityChange * price);
+                return new PositionState(newQuantity, Math.abs(newTotalCost) / Math.abs(newQuantity), newTotalCost);
+            } else if ((quantity > 0 && quantityChange < 0 && Math.abs(quantityChange) <= quantity) ||
+                       (quantity < 0 && quantityChange > 0 && quantityChange <= Math.abs(quantity))) {
+                // Reducing position (partial close)
+                double reductionRatio = (double) Math.abs(newQuantity) / Math.abs(quantity);
+                return new PositionState(newQuantity, avgPrice, (int) (totalCost * reductionRatio)); // Keep same avg price when reducing
+            } else {
+                // Flipping position (from long to short or vice versa)
+                // The excess quantity becomes the new position
+                return new PositionState(newQuantity, price, Math.abs(newQuantity * price));
+            }
+        }
+    }
+    
+    private record PositionKey(String userId, String marketTicker, KalshiSide side) {}
+    
+    // Immutable write records: what the trading path hands over, applied
+    // either in the caller's thread or by the write-behind writer
+    sealed interface Write permits SaveOrder, UpdateOrderStatus, OrderExecuted, CancelOrders, AmendOrder,
+                                   SaveFill, UpdatePosition, SavePositions, SaveTrade {}
+    
+    record SaveOrder(Order order, String action) implements Write {}
+    
+    record UpdateOrderStatus(String orderId, String status, int filledQuantity, int remainingQuantity,
+                             Integer avgFillPrice, long updatedTime) implements Write {}
+    
+    record OrderExecuted(String orderId, int quantity, int price, long updatedTime) implements Write {}
+    
+    record CancelOrders(List<String> orderIds, long updatedTime) implements Write {}
+    
+    record AmendOrder(String orderId, int quantity, int price, int filledQuantity, int remainingQuantity,
+                      Integer avgFillPrice, String status, long updatedTime) implements Write {}
+    
+    record SaveFill(Fill fill, String userId) implements Write {}
+    
+    record UpdatePosition(String userId, String marketId, String marketTicker, KalshiSide side,
+                          int quantityChange, int price, long updatedTime) implements Write {}
+    
+    record SavePositions(List<PositionRow> rows, long updatedTime) implements Write {}
+    
+    record SaveTrade(String tradeId, String marketTicker, String aggressiveOrderId, String passiveOrderId,
+                     int quantity, int price, long createdTime) implements Write {}
+}
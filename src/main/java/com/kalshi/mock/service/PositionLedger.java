@@ -0,0 +1,378 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Position;
+import com.kalshi.mock.service.PersistenceService.PositionRow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every user's positions, in memory. Users are spread over lock stripes by
+ * user ID, so fills of users on different stripes apply in parallel, and a
+ * fill never waits on the database.
+ *
+ * A user's positions live in an open-addressing table keyed by an int -
+ * market index and side - over parallel primitive arrays. A fill changes
+ * its position's slots in place, so applying it allocates nothing once the
+ * position exists; rows and Positions are only built to be handed out.
+ * Positions are never removed; a closed one stays at zero, as its database
+ * row does, with the P&L it realized.
+ *
+ * A changed position is marked dirty, and drainDirty hands it over once, at
+ * its latest state, however many fills changed it since the last drain.
+ * Rows that could not be written go back with markDirty, to be handed over
+ * again by the next drain.
+ */
+final class PositionLedger {
+
+    private static final Comparator<Position> BY_MARKET_AND_SIDE =
+        Comparator.comparing(Position::getMarket_ticker).thenComparing(position -> position.getSide().name());
+
+    private record Market(int index, String ticker, String marketId) {
+    }
+
+    private static final class Stripe {
+        private final Map<String, Account> accounts = new HashMap<>();
+        // Accounts with dirty positions, each listed once
+        private final List<Account> dirty = new ArrayList<>();
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    // Markets get a dense index on first sight; the index never changes
+    private final Map<String, Market> markets = new ConcurrentHashMap<>();
+    private final AtomicInteger nextMarketIndex = new AtomicInteger();
+
+    PositionLedger(int stripeCount) {
+        int count = 1;
+        while (count < stripeCount) {
+            count <<= 1;
+        }
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeMask = count - 1;
+    }
+
+    /**
+     * Apply a signed quantity change at a price to the user's position
+     */
+    void apply(String userId, String marketId, String marketTicker, KalshiSide side, int quantityChange, int price) {
+        Market market = market(marketTicker, marketId);
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            Account account = stripe.accounts.computeIfAbsent(userId, Account::new);
+            int key = key(market, side);
+            int slot = account.slot(key);
+            if (account.markets[slot] == null) {
+                slot = account.insert(slot, key, market, quantityChange, price,
+                                      Math.abs(quantityChange * price), 0);
+            } else {
+                account.apply(slot, quantityChange, price);
+            }
+            account.dirty[slot] = true;
+            if (!account.queued) {
+                account.queued = true;
+                stripe.dirty.add(account);
+            }
+        }
+    }
+
+    /**
+     * Take a position as stored, at startup. A position already changed in
+     * memory is kept as it is.
+     */
+    void load(PositionRow row) {
+        Market market = market(row.marketTicker(), row.marketId());
+        Stripe stripe = stripe(row.userId());
+        synchronized (stripe) {
+            Account account = stripe.accounts.computeIfAbsent(row.userId(), Account::new);
+            int key = key(market, row.side());
+            int slot = account.slot(key);
+            if (account.markets[slot] == null) {
+                account.insert(slot, key, market, row.quantity(), row.avgPrice(), row.totalCost(),
+                               row.realizedPnl());
+            }
+        }
+    }
+
+    /**
+     * The user's open positions, by market then side
+     */
+    List<Position> positions(String userId) {
+        List<Position> positions = new ArrayList<>();
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            Account account = stripe.accounts.get(userId);
+            if (account == null) {
+                return positions;
+            }
+            for (int slot = 0; slot < account.markets.length; slot++) {
+                if (account.markets[slot] != null && account.quantity[slot] != 0) {
+                    positions.add(account.position(slot));
+                }
+            }
+        }
+        positions.sort(BY_MARKET_AND_SIDE);
+        return positions;
+    }
+
+    /**
+     * The user's position on one side of a market, closed or not, or null
+     * if the user never had one
+     */
+    Position position(String userId, String marketTicker, KalshiSide side) {
+        Market market = markets.get(marketTicker);
+        if (market == null) {
+            return null;
+        }
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            Account account = stripe.accounts.get(userId);
+            if (account == null) {
+                return null;
+            }
+            int slot = account.slot(key(market, side));
+            return account.markets[slot] != null ? account.position(slot) : null;
+        }
+    }
+
+    /**
+     * Every position changed since the last drain, at its current state
+     */
+    List<PositionRow> drainDirty() {
+        List<PositionRow> rows = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Account account : stripe.dirty) {
+                    for (int slot = 0; slot < account.markets.length; slot++) {
+                        if (account.dirty[slot]) {
+                            account.dirty[slot] = false;
+                            rows.add(account.row(slot));
+                        }
+                    }
+                    account.queued = false;
+                }
+                stripe.dirty.clear();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Mark drained positions dirty again, after writing them failed. Their
+     * next drain hands over their state as of then.
+     */
+    void markDirty(List<PositionRow> rows) {
+        for (PositionRow row : rows) {
+            Market market = markets.get(row.marketTicker());
+            Stripe stripe = stripe(row.userId());
+            synchronized (stripe) {
+                Account account = stripe.accounts.get(row.userId());
+                if (market == null || account == null) {
+                    continue;
+                }
+                int slot = account.slot(key(market, row.side()));
+                if (account.markets[slot] == null) {
+                    continue;
+                }
+                account.dirty[slot] = true;
+                if (!account.queued) {
+                    account.queued = true;
+                    stripe.dirty.add(account);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget every position, as when the positions table is emptied. Market
+     * indexes are kept.
+     */
+    void reset() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.accounts.clear();
+                stripe.dirty.clear();
+            }
+        }
+    }
+
+    private Market market(String marketTicker, String marketId) {
+        Market market = markets.get(marketTicker);
+        if (market != null) {
+            return market;
+        }
+        return markets.computeIfAbsent(marketTicker,
+                                       ticker -> new Market(nextMarketIndex.getAndIncrement(), ticker, marketId));
+    }
+
+    private Stripe stripe(String userId) {
+        int hash = userId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+
+    private static int key(Market market, KalshiSide side) {
+        return market.index() << 1 | (side == KalshiSide.yes ? 0 : 1);
+    }
+
+    /**
+     * One user's positions. Only touched under its stripe's lock.
+     */
+    private static final class Account {
+
+        private static final int MIN_CAPACITY = 8;
+
+        private final String userId;
+        private boolean queued;
+
+        private int[] keys;
+        private Market[] markets; // null marks an empty slot
+        private int[] quantity;
+        private int[] avgPrice;
+        private int[] totalCost;
+        private int[] realizedPnl;
+        private boolean[] dirty;
+        private int mask;
+        private int size;
+
+        private Account(String userId) {
+            this.userId = userId;
+            allocate(MIN_CAPACITY);
+        }
+
+        /**
+         * The slot holding the key, or the empty slot it would go in
+         */
+        private int slot(int key) {
+            for (int slot = hash(key, mask); ; slot = (slot + 1) & mask) {
+                if (markets[slot] == null || keys[slot] == key) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * Apply a fill to the slot in place, by the rules of
+         * PositionState.apply. Whatever the fill closes realizes its P&L
+         * against the share of the cost it releases.
+         */
+        private void apply(int slot, int quantityChange, int price) {
+            int held = quantity[slot];
+            int newQuantity = held + quantityChange;
+
+            if (newQuantity == 0) {
+                realize(slot, Math.abs(held), totalCost[slot], price);
+                avgPrice[slot] = 0;
+                totalCost[slot] = 0;
+            } else if ((held > 0 && quantityChange > 0) || (held < 0 && quantityChange < 0)) {
+                // Increasing position (same direction)
+                totalCost[slot] += Math.abs(quantityChange * price);
+                avgPrice[slot] = totalCost[slot] / Math.abs(newQuantity);
+            } else if ((held > 0 && quantityChange < 0 && -quantityChange <= held) ||
+                       (held < 0 && quantityChange > 0 && quantityChange <= -held)) {
+                // Reducing position (partial close), at the same average price
+                double reductionRatio = (double) Math.abs(newQuantity) / Math.abs(held);
+                int keptCost = (int) (totalCost[slot] * reductionRatio);
+                realize(slot, Math.abs(quantityChange), totalCost[slot] - keptCost, price);
+                totalCost[slot] = keptCost;
+            } else {
+                // Flipping position: the old one closes, the excess opens a new one
+                realize(slot, Math.abs(held), totalCost[slot], price);
+                avgPrice[slot] = price;
+                totalCost[slot] = Math.abs(newQuantity * price);
+            }
+            quantity[slot] = newQuantity;
+        }
+
+        // Before the slot's quantity changes: a long gains what closing
+        // brings in over its cost, a short what it sold for over the cost of
+        // buying back
+        private void realize(int slot, int closed, int releasedCost, int price) {
+            int proceeds = closed * price;
+            realizedPnl[slot] += quantity[slot] > 0 ? proceeds - releasedCost : releasedCost - proceeds;
+        }
+
+        /**
+         * Fill an empty slot
+         * @return the position's slot, which moves if the table grows
+         */
+        private int insert(int slot, int key, Market market, int quantity, int avgPrice, int totalCost,
+                           int realizedPnl) {
+            keys[slot] = key;
+            this.markets[slot] = market;
+            this.quantity[slot] = quantity;
+            this.avgPrice[slot] = avgPrice;
+            this.totalCost[slot] = totalCost;
+            this.realizedPnl[slot] = realizedPnl;
+            if (++size * 2 > this.markets.length) {
+                grow();
+                return slot(key);
+            }
+            return slot;
+        }
+
+        private Position position(int slot) {
+            Market market = markets[slot];
+            return new Position(market.marketId(), market.ticker(), quantity[slot], avgPrice[slot], side(slot),
+                                realizedPnl[slot], totalCost[slot]);
+        }
+
+        private PositionRow row(int slot) {
+            Market market = markets[slot];
+            return new PositionRow(userId, market.marketId(), market.ticker(), side(slot), quantity[slot],
+                                   avgPrice[slot], totalCost[slot], realizedPnl[slot]);
+        }
+
+        private KalshiSide side(int slot) {
+            return (keys[slot] & 1) == 0 ? KalshiSide.yes : KalshiSide.no;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            Market[] oldMarkets = markets;
+            int[] oldQuantity = quantity;
+            int[] oldAvgPrice = avgPrice;
+            int[] oldTotalCost = totalCost;
+            int[] oldRealizedPnl = realizedPnl;
+            boolean[] oldDirty = dirty;
+            allocate(oldMarkets.length << 1);
+            for (int i = 0; i < oldMarkets.length; i++) {
+                if (oldMarkets[i] != null) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    markets[slot] = oldMarkets[i];
+                    quantity[slot] = oldQuantity[i];
+                    avgPrice[slot] = oldAvgPrice[i];
+                    totalCost[slot] = oldTotalCost[i];
+                    realizedPnl[slot] = oldRealizedPnl[i];
+                    dirty[slot] = oldDirty[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            markets = new Market[capacity];
+            quantity = new int[capacity];
+            avgPrice = new int[capacity];
+            totalCost = new int[capacity];
+            realizedPnl = new int[capacity];
+            dirty = new boolean[capacity];
+            mask = capacity - 1;
+        }
+
+        private static int hash(int key, int mask) {
+            // Fibonacci hashing spreads sequential market indexes across the table
+            return (key * 0x9E3779B9 >>> 16) & mask;
+        }
+    }
+}
@@ -3,101 +3,156 @@ package com.kalshi.mock.service;
 import com.fbg.api.market.KalshiSide;
 import com.fbg.api.rest.Fill;
 import com.fbg.api.rest.Position;
+import com.kalshi.mock.service.PersistenceService.PositionRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * User positions, held in memory in a PositionLedger and written to the
+ * database behind the trading path. A fill changes its position under the
+ * lock of the user's stripe only; reads never touch the database. Every
+ * flush interval, each position changed since the last flush is written
+ * once, at its latest state.
+ */
 @Service
 public class PositionsService {
-    
+
+    private static final Logger logger = LoggerFactory.getLogger(PositionsService.class);
+
     @Autowired
     private PersistenceService persistenceService;
-    
-    // Lock for thread-safe position updates
-    private final ReadWriteLock positionLock = new ReentrantReadWriteLock();
-    
+
+    // Lock stripes users are spread over; fills of users on different
+    // stripes apply in parallel
+    @Value("${positions.ledger.stripes:64}")
+    private int stripes = 64;
+
+    // How often changed positions are written to the database
+    @Value("${positions.flush-interval-millis:100}")
+    private long flushIntervalMillis = 100;
+
+    private PositionLedger ledger = new PositionLedger(64);
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public synchronized void start() {
+        ledger = new PositionLedger(stripes);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "position-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                                       TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write what changed since the last flush before the database goes away
+     */
+    @PreDestroy
+    public void stop() {
+        synchronized (this) {
+            if (flusher == null) {
+                return;
+            }
+            flusher.shutdown();
+        }
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+        flush();
+    }
+
+    /**
+     * Load every stored position into memory, at startup before any fill
+     * @return the number of positions loaded
+     */
+    public int loadPositions() {
+        AtomicInteger loaded = new AtomicInteger();
+        persistenceService.streamPositions(row -> {
+            ledger.load(row);
+            loaded.incrementAndGet();
+        });
+        return loaded.get();
+    }
+
+    /**
+     * Write every position changed since the last flush, once each. If the
+     * write fails, the positions stay dirty for the next flush.
+     */
+    public synchronized void flush() {
+        List<PositionRow> changed = ledger.drainDirty();
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            persistenceService.savePositions(changed);
+        } catch (RuntimeException e) {
+            ledger.markDirty(changed);
+            throw e;
+        }
+    }
+
     /**
      * Update user positions based on a fill
      * @param fill the fill to process
      * @param userId the user ID
      * @param isBuy true if this fill is from a buy order, false if from a sell order
      */
-    @Transactional
     public void updatePositionFromFill(Fill fill, String userId, boolean isBuy) {
-        positionLock.writeLock().lock();
-        try {
-            // Determine quantity change based on buy/sell action
-            // Buy increases position (+), Sell decreases position (-)
-            int quantityChange = isBuy ? fill.getCount() : -fill.getCount();
-            
-            // Update position with signed quantity change
-            persistenceService.updatePosition(
-                userId,
-                fill.getMarket_id(),
-                fill.getMarket_ticker(),
-                fill.getSide(),
-                quantityChange,
-                fill.getPrice()
-            );
-            
-        } finally {
-            positionLock.writeLock().unlock();
-        }
+        // Buy increases position (+), Sell decreases position (-)
+        int quantityChange = isBuy ? fill.getCount() : -fill.getCount();
+        ledger.apply(userId, fill.getMarket_id(), fill.getMarket_ticker(), fill.getSide(), quantityChange,
+                     fill.getPrice());
     }
-    
+
     /**
      * Update user positions based on a fill (legacy method for compatibility)
      */
-    @Transactional
     public void updatePositionFromFill(Fill fill, String userId) {
         // Default to buy (positive quantity) for backward compatibility
         updatePositionFromFill(fill, userId, true);
     }
-    
+
     /**
      * Update positions from multiple fills (batch update)
      * Note: This method assumes all fills are from buy orders for backward compatibility
      */
-    @Transactional
     public void updatePositionsFromFills(List<Fill> fills, String userId) {
-        positionLock.writeLock().lock();
-        try {
-            for (Fill fill : fills) {
-                updatePositionFromFill(fill, userId, true); // Default to buy
-            }
-        } finally {
-            positionLock.writeLock().unlock();
+        for (Fill fill : fills) {
+            updatePositionFromFill(fill, userId, true); // Default to buy
         }
     }
-    
+
     /**
      * Get all positions for a user
      */
     public List<Position> getUserPositions(String userId) {
-        positionLock.readLock().lock();
-        try {
-            return persistenceService.getUserPositions(userId);
-        } finally {
-            positionLock.readLock().unlock();
-        }
+        return ledger.positions(userId);
     }
-    
+
     /**
      * Get a specific position for a user
      */
     public Position getUserPosition(String userId, String marketTicker, KalshiSide side) {
-        positionLock.readLock().lock();
-        try {
-            return persistenceService.getUserPosition(userId, marketTicker, side);
-        } finally {
-            positionLock.readLock().unlock();
-        }
+        return ledger.position(userId, marketTicker, side);
     }
-    
+
     /**
      * Calculate the total portfolio value for a user
      * @param userId the user ID
@@ -105,24 +160,19 @@ public class PositionsService {
      * @return total portfolio value in cents
      */
     public int calculatePortfolioValue(String userId, java.util.Map<String, Integer> currentPrices) {
-        positionLock.readLock().lock();
-        try {
-            List<Position> positions = getUserPositions(userId);
-            int totalValue = 0;
-            
-            for (Position position : positions) {
-                Integer currentPrice = currentPrices.get(position.getMarket_ticker());
-                if (currentPrice != null) {
-                    totalValue += position.getQuantity() * currentPrice;
-                }
+        List<Position> positions = getUserPositions(userId);
+        int totalValue = 0;
+
+        for (Position position : positions) {
+            Integer currentPrice = currentPrices.get(position.getMarket_ticker());
+            if (currentPrice != null) {
+                totalValue += position.getQuantity() * currentPrice;
             }
-            
-            return totalValue;
-        } finally {
-            positionLock.readLock().unlock();
         }
+
+        return totalValue;
     }
-    
+
     /**
      * Calculate unrealized P&L for a position
      */
@@ -130,37 +180,38 @@ public class PositionsService {
         if (position.getQuantity() == 0) {
             return 0;
         }
-        
+
         int currentValue = position.getQuantity() * currentPrice;
         int costBasis = position.getTotal_cost();
-        
+
         return currentValue - costBasis;
     }
-    
+
     /**
-     * Close a position (set quantity to 0 and calculate realized P&L)
+     * Close a position (set quantity to 0)
      */
-    @Transactional
     public void closePosition(String userId, String marketTicker, KalshiSide side, int closingPrice) {
-        positionLock.writeLock().lock();
+        Position currentPosition = ledger.position(userId, marketTicker, side);
+        if (currentPosition != null && currentPosition.getQuantity() != 0) {
+            ledger.apply(userId, currentPosition.getMarket_id(), marketTicker, side,
+                         -currentPosition.getQuantity(), // Close entire position
+                         closingPrice);
+        }
+    }
+
+    /**
+     * Forget every position held in memory, for tests that empty the
+     * positions table between them
+     */
+    void reset() {
+        ledger.reset();
+    }
+
+    private void flushQuietly() {
         try {
-            Position currentPosition = persistenceService.getUserPosition(userId, marketTicker, side);
-            if (currentPosition != null && currentPosition.getQuantity() != 0) {
-                // Calculate realized P&L
-                int realizedPnL = calculateUnrealizedPnL(currentPosition, closingPrice);
-                
-                // Update position to closed state
-                persistenceService.updatePosition(
-                    userId,
-                    currentPosition.getMarket_id(),
-                    marketTicker,
-                    side,
-                    -currentPosition.getQuantity(), // Close entire position
-                    closingPrice
-                );
-            }
-        } finally {
-            positionLock.writeLock().unlock();
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Position flush failed", e);
         }
     }
-}
\ No newline at end of file
+}
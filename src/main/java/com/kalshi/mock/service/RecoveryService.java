@@ -0,0 +1,122 @@
+package com.kalshi.mock.service;
+
+import com.kalshi.mock.journal.Checkpoint;
+import com.kalshi.mock.journal.CheckpointStore;
+import com.kalshi.mock.journal.EventJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fast restarts for the order books. While running, every book is
+ * checkpointed at a fixed interval and once more on shutdown; on startup
+ * the books are rebuilt from the latest checkpoint plus the journal events
+ * after it, instead of from the database. Needs the event journal; without
+ * it there is nothing to replay and books load from the database.
+ *
+ * The replay restores the books and the orders' state, and writes the
+ * orders to the database. Trades, fills and positions are not replayed:
+ * any still queued for the database when the process stopped are lost.
+ */
+@Service
+public class RecoveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecoveryService.class);
+
+    @Autowired
+    private OrderBookService orderBookService;
+
+    @Autowired
+    private EventJournal eventJournal;
+
+    @Autowired
+    private CheckpointStore checkpointStore;
+
+    @Value("${journal.checkpoint.interval-seconds:60}")
+    private long checkpointIntervalSeconds;
+
+    private ScheduledExecutorService checkpointer;
+
+    /**
+     * Rebuild the books of the given markets from the latest checkpoint and
+     * the journal
+     * @return false if there is no journal to recover from, in which case
+     *         the caller loads the books from the database
+     */
+    public boolean recover(List<String> marketTickers) {
+        if (!eventJournal.isEnabled()) {
+            return false;
+        }
+        Checkpoint checkpoint = checkpointStore.loadLatest();
+        if (checkpoint == null && eventJournal.lastSequence() == 0) {
+            // A fresh journal: the database is all there is
+            return false;
+        }
+
+        long start = System.nanoTime();
+        long replayed = orderBookService.recoverOrderBooks(marketTickers, checkpoint);
+        logger.info("Recovered {} order books from {} and {} journal events in {} ms", marketTickers.size(),
+            checkpoint != null ? "the checkpoint at sequence " + checkpoint.journalSequence() : "no checkpoint",
+            replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return true;
+    }
+
+    /**
+     * Start checkpointing at the configured interval, once the books are loaded
+     */
+    public synchronized void startCheckpoints() {
+        if (!eventJournal.isEnabled() || checkpointer != null) {
+            return;
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalSeconds,
+                                            checkpointIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (checkpointer == null) {
+            return;
+        }
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpointer = null;
+        // The next start only replays what happens after this
+        checkpointQuietly();
+    }
+
+    /**
+     * Write a checkpoint of every book now
+     */
+    public void checkpoint() {
+        long start = System.nanoTime();
+        Checkpoint checkpoint = orderBookService.checkpoint();
+        checkpointStore.save(checkpoint);
+        logger.info("Checkpointed {} order books at journal sequence {} in {} ms", checkpoint.books().size(),
+            checkpoint.journalSequence(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            logger.error("Checkpoint failed", e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.kalshi.mock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline scheduling for the engine - GTD order expiry, market open and
+ * close - on one hierarchical timing wheel.
+ *
+ * Scheduling and cancelling are O(1). A single timer thread advances the
+ * wheel once per tick and hands each handler everything of its own that
+ * came due in one call, so a handler can apply a tick's worth of
+ * expirations as one command per market. Handlers run on the timer thread
+ * and should queue work (e.g. on the MarketSequencer) rather than block.
+ */
+@Slf4j
+@Service
+public class TimerService {
+
+    /**
+     * Receives the payloads that came due in one tick
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        void onDue(List<T> payloads);
+    }
+
+    /**
+     * A scheduled deadline, for cancelling it
+     */
+    public static final class Timeout {
+        private final TimingWheel.Timeout<Scheduled<?>> entry;
+        private final long deadlineMillis;
+
+        private Timeout(TimingWheel.Timeout<Scheduled<?>> entry, long deadlineMillis) {
+            this.entry = entry;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+
+    private record Scheduled<T>(Handler<T> handler, T payload) {
+    }
+
+    // Wheel resolution; deadlines fire up to one tick late, never early
+    @Value("${orderbook.timer.tick-millis:100}")
+    private long tickMillis = 100;
+
+    private TimingWheel<Scheduled<?>> wheel;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void start() {
+        wheel = new TimingWheel<>(System.currentTimeMillis(), tickMillis);
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "timer-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Call the handler with the payload at the first tick at or after the
+     * deadline (epoch millis). A deadline already passed fires on the next tick.
+     */
+    public <T> Timeout schedule(long deadlineMillis, Handler<T> handler, T payload) {
+        synchronized (wheel) {
+            return new Timeout(wheel.schedule(deadlineMillis, new Scheduled<>(handler, payload)), deadlineMillis);
+        }
+    }
+
+    /**
+     * @return false if the deadline already fired or was cancelled
+     */
+    public boolean cancel(Timeout timeout) {
+        synchronized (wheel) {
+            return wheel.cancel(timeout.entry);
+        }
+    }
+
+    /**
+     * Number of deadlines waiting to fire
+     */
+    public int pending() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    /**
+     * Fire everything due by the given time, one call per handler. Called by
+     * the timer thread each tick; public for tests that drive time themselves.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void advance(long nowMillis) {
+        List<Scheduled<?>> due;
+        synchronized (wheel) {
+            due = wheel.advance(nowMillis);
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        // Group by handler, keeping deadline order within each
+        Map<Handler<?>, List<Object>> byHandler = new LinkedHashMap<>();
+        for (Scheduled<?> scheduled : due) {
+            byHandler.computeIfAbsent(scheduled.handler(), handler -> new ArrayList<>()).add(scheduled.payload());
+        }
+        for (Map.Entry<Handler<?>, List<Object>> entry : byHandler.entrySet()) {
+            try {
+                ((Handler) entry.getKey()).onDue(entry.getValue());
+            } catch (RuntimeException e) {
+                log.error("Timer handler failed for " + entry.getValue().size() + " deadlines", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.kalshi.mock.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: four levels of 64 slots, each level's slot
+ * spanning all 64 slots of the level below.
+ *
+ * A timeout sits in the level whose span covers its distance from now, in a
+ * doubly-linked bucket, so scheduling and cancelling are O(1) whatever the
+ * number of pending timeouts. When the lowest level wraps, the next level's
+ * current slot is cascaded down; each timeout is re-bucketed at most once
+ * per level on its way to firing. Deadlines further out than the wheel spans
+ * (64^4 ticks) wait in the top level and are re-bucketed as it turns.
+ *
+ * Timeouts never fire early: a deadline is rounded up to the next whole tick.
+ *
+ * Not thread-safe on its own; TimerService guards it.
+ */
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    /**
+     * A scheduled payload. Cancel it through the wheel that issued it.
+     */
+    static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineTick;
+        private int bucket = -1; // -1 once fired or cancelled
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        T payload() {
+            return payload;
+        }
+
+        boolean isPending() {
+            return bucket >= 0;
+        }
+    }
+
+    private final long originMillis;
+    private final long tickMillis;
+
+    // Heads of the buckets, level * SLOTS + slot
+    private final Timeout<T>[] buckets;
+
+    // Next tick to process; every pending timeout is due at or after it
+    private long nextTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long originMillis, long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive, got: " + tickMillis);
+        }
+        this.originMillis = originMillis;
+        this.tickMillis = tickMillis;
+        this.buckets = new Timeout[LEVELS * SLOTS];
+        this.nextTick = 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedule a payload to fire at the first tick at or after the deadline.
+     * A deadline already passed fires on the next advance.
+     */
+    Timeout<T> schedule(long deadlineMillis, T payload) {
+        long elapsed = deadlineMillis - originMillis;
+        long deadlineTick = elapsed <= 0 ? 0 : (elapsed + tickMillis - 1) / tickMillis;
+        Timeout<T> timeout = new Timeout<>(payload, Math.max(deadlineTick, nextTick));
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * @return false if the timeout already fired or was cancelled
+     */
+    boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isPending()) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Process every tick up to the given time
+     * @return payloads that came due, in deadline order (ties in no particular order)
+     */
+    List<T> advance(long nowMillis) {
+        long lastTick = (nowMillis - originMillis) / tickMillis;
+        if (lastTick < nextTick) {
+            return List.of();
+        }
+
+        List<T> due = new ArrayList<>();
+        while (nextTick <= lastTick) {
+            if (size == 0) {
+                // Nothing can come due on the way
+                nextTick = lastTick + 1;
+                break;
+            }
+
+            int slot = (int) (nextTick & SLOT_MASK);
+            if (slot == 0) {
+                cascade();
+            }
+
+            Timeout<T> timeout = buckets[slot];
+            buckets[slot] = null;
+            while (timeout != null) {
+                Timeout<T> following = timeout.next;
+                timeout.bucket = -1;
+                timeout.prev = null;
+                timeout.next = null;
+                due.add(timeout.payload);
+                size--;
+                timeout = following;
+            }
+            nextTick++;
+        }
+        return due;
+    }
+
+    /**
+     * Move the timeouts of each upper level's current slot down, for as many
+     * levels as just wrapped
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int slot = (int) ((nextTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            int bucket = level * SLOTS + slot;
+            Timeout<T> timeout = buckets[bucket];
+            buckets[bucket] = null;
+            while (timeout != null) {
+                Timeout<T> following = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                insert(timeout);
+                timeout = following;
+            }
+            if (slot != 0) {
+                break;
+            }
+        }
+    }
+
+    private void insert(Timeout<T> timeout) {
+        long deadlineTick = timeout.deadlineTick;
+        long distance = deadlineTick - nextTick;
+        if (distance >= MAX_SPAN) {
+            // Park in the top level's furthest slot; re-bucketed when it comes round
+            deadlineTick = nextTick + MAX_SPAN - 1;
+            distance = MAX_SPAN - 1;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && distance >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int bucket = level * SLOTS + (int) ((deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+        Timeout<T> head = buckets[bucket];
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        Timeout<T> prev = timeout.prev;
+        Timeout<T> next = timeout.next;
+        if (prev == null) {
+            buckets[timeout.bucket] = next;
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        timeout.bucket = -1;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+}
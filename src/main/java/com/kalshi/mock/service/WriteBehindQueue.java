@@ -0,0 +1,203 @@
+package com.kalshi.mock.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded hand-off between threads that produce writes and the one thread
+ * that applies them. The writer takes whatever has queued up, lingers up to
+ * the flush interval for more, and hands at most flush-size records at a
+ * time to the flusher, so many writes share one round trip and one commit.
+ * <p>
+ * A full queue blocks producers until the writer catches up. Records are
+ * flushed in the order they were submitted. Records the flusher could not
+ * write are counted as failed, not flushed; they no longer hold up
+ * awaitFlushed, which reports them instead.
+ */
+final class WriteBehindQueue<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    interface Flusher<T> {
+        /**
+         * @return how many of the batch's records could not be written; a
+         *         flusher that throws wrote none of them
+         */
+        int flush(List<T> batch);
+    }
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final Flusher<T> flusher;
+
+    // Submission takes this lock so the count always covers a prefix of the queue
+    private final ReentrantLock submitLock = new ReentrantLock();
+    private volatile long submitted;
+
+    // Records written and records given up on so far, only changed under the
+    // lock, with a condition for awaitFlushed. A racing reader can only
+    // undercount their sum, and then waits.
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushedCondition = flushLock.newCondition();
+    private volatile long flushed;
+    private volatile long failed;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    WriteBehindQueue(String name, int capacity, int flushSize, long flushIntervalMillis, Flusher<T> flusher) {
+        if (flushSize < 1 || capacity < flushSize) {
+            throw new IllegalArgumentException("Need 1 <= flush size <= capacity, got " + flushSize + " and " + capacity);
+        }
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.flusher = flusher;
+    }
+
+    void start() {
+        running = true;
+        writer = new Thread(this::run, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop taking records once everything already submitted is flushed
+     */
+    void stop() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queue a record for the writer, blocking while the queue is full
+     */
+    void submit(T record) {
+        if (!running) {
+            throw new IllegalStateException(name + " is not running");
+        }
+        submitLock.lock();
+        try {
+            queue.put(record);
+            submitted++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for space in " + name, e);
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /**
+     * Wait until every record submitted before this call has been flushed
+     * or given up on
+     * @return the number of records given up on so far, these included;
+     *         zero means every one of them was written
+     */
+    long awaitFlushed() {
+        long target = submitted;
+        if (failed + flushed >= target) {
+            return failed;
+        }
+        flushLock.lock();
+        try {
+            while (failed + flushed < target) {
+                flushedCondition.awaitUninterruptibly();
+            }
+            return failed;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Records submitted but not yet flushed or given up on
+     */
+    long pending() {
+        return submitted - flushed - failed;
+    }
+
+    /**
+     * Records the flusher could not write, so far
+     */
+    long failed() {
+        return failed;
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+            } catch (InterruptedException e) {
+                // Nobody interrupts the writer on purpose; flush what we have
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            int lost;
+            try {
+                lost = flusher.flush(batch);
+            } catch (RuntimeException e) {
+                logger.error("{} could not write a batch of {} records", name, batch.size(), e);
+                lost = batch.size();
+            }
+            markFlushed(batch.size() - lost, lost);
+            batch.clear();
+        }
+    }
+
+    // Top the batch up to the flush size, waiting no longer than the flush interval
+    private void fill(List<T> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < flushSize) {
+            if (queue.drainTo(batch, flushSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                return;
+            }
+            T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void markFlushed(int written, int lost) {
+        flushLock.lock();
+        try {
+            failed += lost;
+            flushed += written;
+            flushedCondition.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+}
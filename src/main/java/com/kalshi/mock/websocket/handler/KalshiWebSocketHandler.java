@@ -95,6 +95,30 @@ public class KalshiWebSocketHandler extends TextWebSocketHandler {
                 orderBookService.publishInitialSnapshot(marketTicker, session.getId());
             }
         }
+        
+        // orderbook_delta subscribers start from their own sequenced snapshot,
+        // then apply every delta with a higher seq
+        if (command.getParams() != null && command.getParams().getChannels() != null 
+            && command.getParams().getChannels().contains("orderbook_delta")
+            && command.getParams().getMarketTickers() != null) {
+            for (String marketTicker : command.getParams().getMarketTickers()) {
+                sendDeltaStartSnapshot(session, marketTicker);
+            }
+        }
+    }
+    
+    private void sendDeltaStartSnapshot(WebSocketSession session, String marketTicker) throws IOException {
+        com.kalshi.mock.event.OrderBookEvent.SnapshotData data = orderBookService.getSequencedSnapshot(marketTicker);
+        if (data == null) {
+            return;
+        }
+        
+        WebSocketMessage message = new WebSocketMessage();
+        message.setType("orderbook_snapshot");
+        message.setSeq(data.getSeq());
+        message.setMsg(new OrderbookSnapshot(marketTicker, data.getYesSide(), data.getNoSide()));
+        
+        sendMessage(session.getId(), objectMapper.writeValueAsString(message));
     }
     
     private void handleUnsubscribe(WebSocketSession session, Map<String, Object> payload, Integer id) throws IOException {
@@ -10,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -57,6 +59,57 @@ public class StompBroadcastService implements OrderBookEventListener {
         }
     }
     
+    /**
+     * Broadcast one message per order book command: the resulting snapshot,
+     * with the command's trades and ticker update attached.
+     */
+    @Override
+    public void onOrderBookEvents(List<OrderBookEvent> events) {
+        OrderBookEvent snapshotEvent = null;
+        OrderBookEvent tickerEvent = null;
+        List<Object> trades = new ArrayList<>();
+        for (OrderBookEvent event : events) {
+            switch (event.getType()) {
+                case SNAPSHOT -> snapshotEvent = event;
+                case TICKER_UPDATE -> tickerEvent = event;
+                case TRADE -> trades.add(event.getData());
+                default -> { }
+            }
+        }
+        
+        if (snapshotEvent == null) {
+            OrderBookEventListener.super.onOrderBookEvents(events);
+            return;
+        }
+        
+        try {
+            String market = snapshotEvent.getMarketTicker();
+            OrderBookEvent.SnapshotData snapshot = (OrderBookEvent.SnapshotData) snapshotEvent.getData();
+            
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", snapshotEvent.getType().toString());
+            message.put("market", market);
+            message.put("timestamp", snapshotEvent.getTimestamp());
+            message.put("data", snapshot);
+            message.put("yes", snapshot.getYesSide());
+            message.put("no", snapshot.getNoSide());
+            if (!trades.isEmpty()) {
+                message.put("trades", trades);
+            }
+            if (tickerEvent != null) {
+                message.put("ticker", tickerEvent.getData());
+            }
+            
+            String destination = "/topic/orderbook/" + market;
+            messagingTemplate.convertAndSend(destination, message);
+            
+            logger.info("Broadcasted batch of {} order book events for market {} to {}", events.size(), market, destination);
+            
+        } catch (Exception e) {
+            logger.error("Error broadcasting order book batch for market {}", snapshotEvent.getMarketTicker(), e);
+        }
+    }
+    
     public void broadcastMarketData(String market, Map<String, Object> marketData) {
         try {
             // Broadcast market data updates (trades, last price, etc.)
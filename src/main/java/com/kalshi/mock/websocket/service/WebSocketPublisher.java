@@ -15,6 +15,7 @@ import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
@@ -34,7 +35,14 @@ public class WebSocketPublisher implements OrderBookEventListener {
     @Autowired
     private ObjectMapper objectMapper;
     
-    private final AtomicLong sequenceNumber = new AtomicLong(1);
+    // Per-market message sequences for the channels the book does not number
+    // itself. Orderbook snapshots and deltas carry the book's own delta
+    // sequence; trades and tickers are numbered here, one counter per market
+    // and channel, so a client can spot a gap in any one market's stream and
+    // markets never contend on a shared counter.
+    private final Map<String, AtomicLong> tradeSequences = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> tickerSequences = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> unsequencedBookSequences = new ConcurrentHashMap<>();
     
     @PostConstruct
     public void init() {
@@ -44,43 +52,88 @@ public class WebSocketPublisher implements OrderBookEventListener {
     
     @Override
     public void onOrderBookEvent(OrderBookEvent event) {
-        try {
-            switch (event.getType()) {
-                case SNAPSHOT:
-                    handleSnapshotEvent(event);
-                    break;
-                case DELTA:
-                    handleDeltaEvent(event);
-                    break;
-                case TRADE:
-                    handleTradeEvent(event);
-                    break;
-                case TICKER_UPDATE:
-                    handleTickerEvent(event);
-                    break;
+        onOrderBookEvents(List.of(event));
+    }
+    
+    /**
+     * One frame per subscriber for everything one order book command
+     * produced: the messages of the channels the session subscribes to, in
+     * the order they happened. A single message goes out as it is; several
+     * go out together as a JSON array of those same messages.
+     */
+    @Override
+    public void onOrderBookEvents(List<OrderBookEvent> events) {
+        Map<String, List<String>> framesBySession = new LinkedHashMap<>();
+        for (OrderBookEvent event : events) {
+            try {
+                Set<String> subscribers = subscriptionManager.getSubscribedSessions(
+                    event.getMarketTicker(),
+                    channelOf(event)
+                );
+                
+                if (subscribers.isEmpty()) {
+                    continue;
+                }
+                
+                // Serialized once, however many sessions receive it
+                String jsonMessage = objectMapper.writeValueAsString(toMessage(event));
+                for (String sessionId : subscribers) {
+                    framesBySession.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(jsonMessage);
+                }
+            } catch (Exception e) {
+                logger.error("Error handling order book event", e);
+            }
+        }
+        
+        for (Map.Entry<String, List<String>> entry : framesBySession.entrySet()) {
+            List<String> messages = entry.getValue();
+            String frame = messages.size() == 1 ? messages.get(0) : "[" + String.join(",", messages) + "]";
+            try {
+                webSocketHandler.sendMessage(entry.getKey(), frame);
+            } catch (IOException e) {
+                logger.error("Failed to send {} messages to session: {}", messages.size(), entry.getKey(), e);
             }
-        } catch (Exception e) {
-            logger.error("Error handling order book event", e);
         }
     }
     
-    private void handleSnapshotEvent(OrderBookEvent event) throws IOException {
-        OrderBookEvent.SnapshotData data = (OrderBookEvent.SnapshotData) event.getData();
-        
-        // Get subscribers for this market's orderbook_snapshot channel
-        Set<String> subscribers = subscriptionManager.getSubscribedSessions(
-            event.getMarketTicker(), 
-            "orderbook_snapshot"
-        );
-        
-        if (subscribers.isEmpty()) {
-            return;
+    private static String channelOf(OrderBookEvent event) {
+        switch (event.getType()) {
+            case SNAPSHOT:
+                return "orderbook_snapshot";
+            case DELTA:
+                return "orderbook_delta";
+            case TRADE:
+                return "trade";
+            case TICKER_UPDATE:
+                return "ticker";
+            default:
+                throw new IllegalArgumentException("Unknown event type: " + event.getType());
         }
+    }
+    
+    private WebSocketMessage toMessage(OrderBookEvent event) {
+        switch (event.getType()) {
+            case SNAPSHOT:
+                return snapshotMessage(event);
+            case DELTA:
+                return deltaMessage(event);
+            case TRADE:
+                return tradeMessage(event);
+            case TICKER_UPDATE:
+                return tickerMessage(event);
+            default:
+                throw new IllegalArgumentException("Unknown event type: " + event.getType());
+        }
+    }
+    
+    private WebSocketMessage snapshotMessage(OrderBookEvent event) {
+        OrderBookEvent.SnapshotData data = (OrderBookEvent.SnapshotData) event.getData();
         
         // Create snapshot message
         WebSocketMessage message = new WebSocketMessage();
         message.setType("orderbook_snapshot");
-        message.setSeq(sequenceNumber.getAndIncrement());
+        message.setSeq(data.getSeq() != null ? data.getSeq()
+                                             : nextSequence(unsequencedBookSequences, event.getMarketTicker()));
         
         OrderbookSnapshot snapshot = new OrderbookSnapshot();
         snapshot.setMarketTicker(event.getMarketTicker());
@@ -88,35 +141,19 @@ public class WebSocketPublisher implements OrderBookEventListener {
         snapshot.setNo(data.getNoSide());
         
         message.setMsg(snapshot);
-        
-        // Send to all subscribers
-        String jsonMessage = objectMapper.writeValueAsString(message);
-        for (String sessionId : subscribers) {
-            try {
-                webSocketHandler.sendMessage(sessionId, jsonMessage);
-            } catch (IOException e) {
-                logger.error("Failed to send snapshot to session: {}", sessionId, e);
-            }
-        }
+        return message;
     }
     
-    private void handleDeltaEvent(OrderBookEvent event) throws IOException {
+    private WebSocketMessage deltaMessage(OrderBookEvent event) {
         OrderBookEvent.DeltaData data = (OrderBookEvent.DeltaData) event.getData();
         
-        // Get subscribers for this market's orderbook_delta channel
-        Set<String> subscribers = subscriptionManager.getSubscribedSessions(
-            event.getMarketTicker(), 
-            "orderbook_delta"
-        );
-        
-        if (subscribers.isEmpty()) {
-            return;
-        }
-        
         // Create delta message
         WebSocketMessage message = new WebSocketMessage();
         message.setType("orderbook_delta");
-        message.setSeq(sequenceNumber.getAndIncrement());
+        // Per-market sequence from the book: gap-free, and continues from the
+        // seq of the snapshot the subscriber started from
+        message.setSeq(data.getSeq() != null ? data.getSeq()
+                                             : nextSequence(unsequencedBookSequences, event.getMarketTicker()));
         
         OrderbookDelta delta = new OrderbookDelta();
         delta.setMarketTicker(event.getMarketTicker());
@@ -125,35 +162,16 @@ public class WebSocketPublisher implements OrderBookEventListener {
         delta.setSide(data.getSide());
         
         message.setMsg(delta);
-        
-        // Send to all subscribers
-        String jsonMessage = objectMapper.writeValueAsString(message);
-        for (String sessionId : subscribers) {
-            try {
-                webSocketHandler.sendMessage(sessionId, jsonMessage);
-            } catch (IOException e) {
-                logger.error("Failed to send delta to session: {}", sessionId, e);
-            }
-        }
+        return message;
     }
     
-    private void handleTradeEvent(OrderBookEvent event) throws IOException {
+    private WebSocketMessage tradeMessage(OrderBookEvent event) {
         OrderBookEvent.TradeData data = (OrderBookEvent.TradeData) event.getData();
         
-        // Get subscribers for this market's trade channel
-        Set<String> subscribers = subscriptionManager.getSubscribedSessions(
-            event.getMarketTicker(), 
-            "trade"
-        );
-        
-        if (subscribers.isEmpty()) {
-            return;
-        }
-        
         // Create trade message
         WebSocketMessage message = new WebSocketMessage();
         message.setType("trade");
-        message.setSeq(sequenceNumber.getAndIncrement());
+        message.setSeq(nextSequence(tradeSequences, event.getMarketTicker()));
         
         TradeMessage trade = new TradeMessage();
         trade.setMarketTicker(event.getMarketTicker());
@@ -164,46 +182,18 @@ public class WebSocketPublisher implements OrderBookEventListener {
         trade.setTradeId(data.getTradeId());
         
         message.setMsg(trade);
-        
-        // Send to all subscribers
-        String jsonMessage = objectMapper.writeValueAsString(message);
-        for (String sessionId : subscribers) {
-            try {
-                webSocketHandler.sendMessage(sessionId, jsonMessage);
-            } catch (IOException e) {
-                logger.error("Failed to send trade to session: {}", sessionId, e);
-            }
-        }
+        return message;
     }
     
-    private void handleTickerEvent(OrderBookEvent event) throws IOException {
-        // Get subscribers for this market's ticker channel
-        Set<String> subscribers = subscriptionManager.getSubscribedSessions(
-            event.getMarketTicker(), 
-            "ticker"
-        );
-        
-        if (subscribers.isEmpty()) {
-            return;
-        }
-        
+    private WebSocketMessage tickerMessage(OrderBookEvent event) {
         // Create ticker message
         WebSocketMessage message = new WebSocketMessage();
         message.setType("ticker");
-        message.setSeq(sequenceNumber.getAndIncrement());
+        message.setSeq(nextSequence(tickerSequences, event.getMarketTicker()));
         
         // Cast data to appropriate ticker data type
         message.setMsg(event.getData());
-        
-        // Send to all subscribers
-        String jsonMessage = objectMapper.writeValueAsString(message);
-        for (String sessionId : subscribers) {
-            try {
-                webSocketHandler.sendMessage(sessionId, jsonMessage);
-            } catch (IOException e) {
-                logger.error("Failed to send ticker to session: {}", sessionId, e);
-            }
-        }
+        return message;
     }
     
     public void sendFillToUser(String userId, FillMessage fill) {
@@ -211,4 +201,12 @@ public class WebSocketPublisher implements OrderBookEventListener {
         // This would require tracking user ID to session mapping
         logger.info("Fill message for user {}: {}", userId, fill);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Next gap-free sequence number for one market's stream on a channel,
+     * starting at 1
+     */
+    private static long nextSequence(Map<String, AtomicLong> sequences, String marketTicker) {
+        return sequences.computeIfAbsent(marketTicker, ticker -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,130 @@
+package com.kalshi.mock.benchmark;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.OrderBookEntryPool;
+import com.kalshi.mock.service.ExecutionRing;
+import com.kalshi.mock.service.MatchingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per match: the list-returning matchOrder against the zero-garbage
+ * path (pooled entries, execution ring, deltas discarded), without and with a
+ * listener attached to the book.
+ *
+ * Every invocation rests a YES buy of 10 at 50¢ and then fills it completely
+ * with a YES sell, so the book returns to the same state each time. The
+ * figure to read is gc.alloc.rate.norm (bytes per operation), which should be
+ * 0 for zeroGarbage and zeroGarbageWithListener in steady state. This covers
+ * the book and matcher only: the trades, fills and persistence the service
+ * records per execution still allocate.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.include=MatchingAllocationBenchmark
+ * (the benchmark profile adds -prof gc)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchingAllocationBenchmark {
+
+    private MatchingEngine matchingEngine;
+
+    private ConcurrentOrderBook listBook;
+
+    private ConcurrentOrderBook pooledBook;
+    private OrderBookEntryPool pool;
+    private ExecutionRing ring;
+
+    private ConcurrentOrderBook listenedBook;
+    private OrderBookEntryPool listenedPool;
+    private ExecutionRing listenedRing;
+
+    // Receives every event the way OrderBookService does, without doing anything with it
+    private int events;
+
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        matchingEngine = new MatchingEngine();
+        listBook = new ConcurrentOrderBook("BENCH-LIST");
+
+        pooledBook = new ConcurrentOrderBook("BENCH-POOLED");
+        pool = new OrderBookEntryPool(64);
+        ring = new ExecutionRing(64);
+        pooledBook.setEntryPool(pool);
+
+        listenedBook = new ConcurrentOrderBook("BENCH-LISTENED");
+        listenedPool = new OrderBookEntryPool(64);
+        listenedRing = new ExecutionRing(64);
+        listenedBook.setEntryPool(listenedPool);
+        listenedBook.addListener(new ConcurrentOrderBook.OrderBookListener() {
+            @Override
+            public void onOrderAdded(String marketTicker, OrderBookEntry order) {
+                events++;
+            }
+
+            @Override
+            public void onOrderCanceled(String marketTicker, OrderBookEntry order) {
+                events++;
+            }
+
+            @Override
+            public void onOrderExecuted(String marketTicker, OrderBookEntry order, int executedQuantity) {
+                events++;
+            }
+
+            @Override
+            public void onCrossDetected(String marketTicker, OrderBookEntry order) {
+                events++;
+            }
+        });
+    }
+
+    @Benchmark
+    public int allocating() {
+        OrderBookEntry bid = new OrderBookEntry(++nextId, "MM", KalshiSide.yes, "buy", 50, 10, nextId);
+        listBook.addOrder(bid);
+
+        OrderBookEntry ask = new OrderBookEntry(++nextId, "TAKER", KalshiSide.yes, "sell", 50, 10, nextId);
+        int executions = matchingEngine.matchOrder(ask, listBook).size();
+        listBook.discardDeltas();
+        return executions;
+    }
+
+    @Benchmark
+    public int zeroGarbage() {
+        OrderBookEntry bid = pool.acquire(++nextId, "MM", KalshiSide.yes, "buy", 50, 10, nextId);
+        pooledBook.addOrder(bid);
+
+        OrderBookEntry ask = pool.acquire(++nextId, "TAKER", KalshiSide.yes, "sell", 50, 10, nextId);
+        int executions = matchingEngine.matchOrder(ask, pooledBook, ring);
+        pooledBook.discardDeltas();
+
+        // Fully filled, so the incoming order goes straight back; the book
+        // recycles the resting one once the command is done with it
+        pool.release(ask);
+        pooledBook.recycleRetired();
+        return executions;
+    }
+
+    @Benchmark
+    public int zeroGarbageWithListener() {
+        OrderBookEntry bid = listenedPool.acquire(++nextId, "MM", KalshiSide.yes, "buy", 50, 10, nextId);
+        listenedBook.addOrder(bid);
+
+        OrderBookEntry ask = listenedPool.acquire(++nextId, "TAKER", KalshiSide.yes, "sell", 50, 10, nextId);
+        int executions = matchingEngine.matchOrder(ask, listenedBook, listenedRing);
+        listenedBook.discardDeltas();
+
+        listenedPool.release(ask);
+        listenedBook.recycleRetired();
+        return executions + events;
+    }
+}
@@ -0,0 +1,76 @@
+package com.kalshi.mock.benchmark;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the 1-99 cent price ladder in ConcurrentOrderBook against the
+ * original skip-list book for best-price lookups and level insert/removal.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.include=PriceLadderBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceLadderBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int restingOrders;
+
+    private ConcurrentOrderBook ladderBook;
+    private SkipListOrderBook skipListBook;
+
+    // Re-added and canceled on every invocation; 50¢ is kept empty so each
+    // add creates a new level and each cancel removes it
+    private OrderBookEntry levelOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ladderBook = new ConcurrentOrderBook("BENCH-MARKET");
+        skipListBook = new SkipListOrderBook();
+
+        for (int i = 0; i < restingOrders; i++) {
+            int bidPrice = 1 + (i % 49);   // bids 1-49¢
+            int askPrice = 51 + (i % 49);  // asks 51-99¢
+            OrderBookEntry bid = new OrderBookEntry("BID-" + i, "USER-" + (i % 100), KalshiSide.yes, "buy", bidPrice, 10, i);
+            OrderBookEntry ask = new OrderBookEntry("ASK-" + i, "USER-" + (i % 100), KalshiSide.yes, "sell", askPrice, 10, i);
+            ladderBook.addOrder(bid);
+            ladderBook.addOrder(ask);
+            skipListBook.addOrder(bid);
+            skipListBook.addOrder(ask);
+        }
+
+        levelOrder = new OrderBookEntry("LEVEL-ORDER", "USER-X", KalshiSide.yes, "buy", 50, 10, 0);
+    }
+
+    @Benchmark
+    public Object ladderBestBidAsk() {
+        ladderBook.getBestBid();
+        return ladderBook.getBestAsk();
+    }
+
+    @Benchmark
+    public Object skipListBestBidAsk() {
+        skipListBook.getBestBid();
+        return skipListBook.getBestAsk();
+    }
+
+    @Benchmark
+    public boolean ladderLevelInsertRemove() {
+        ladderBook.addOrder(levelOrder);
+        return ladderBook.cancelOrder(levelOrder.getOrderId());
+    }
+
+    @Benchmark
+    public boolean skipListLevelInsertRemove() {
+        skipListBook.addOrder(levelOrder);
+        return skipListBook.cancelOrder(levelOrder.getOrderId());
+    }
+}
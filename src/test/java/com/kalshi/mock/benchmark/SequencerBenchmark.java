@@ -0,0 +1,114 @@
+package com.kalshi.mock.benchmark;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.service.MarketSequencer;
+import com.kalshi.mock.service.MatchingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order throughput (orders/sec) against the number of markets and threads.
+ *
+ * sequenced: each market is owned by one MarketSequencer shard thread.
+ * globalLock: the same work on a thread pool, serialized on one shared monitor
+ * the way the old synchronized MatchingEngine.matchOrder did.
+ *
+ * Every market alternates a YES buy and a YES sell at 50¢, so half the orders
+ * rest and half execute against them.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.include=SequencerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SequencerBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    @Param({"1", "4", "16", "64"})
+    private int markets;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private Market[] books;
+    private MatchingEngine matchingEngine;
+    private MarketSequencer sequencer;
+    private ExecutorService pool;
+    private final Object globalMonitor = new Object();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        books = new Market[markets];
+        for (int i = 0; i < markets; i++) {
+            books[i] = new Market("BENCH-" + i);
+        }
+        matchingEngine = new MatchingEngine();
+        sequencer = new MarketSequencer(threads);
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sequencer.close();
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void sequenced() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            Market market = books[i % markets];
+            futures[i] = sequencer.submit(market.ticker, () -> market.processNextOrder(matchingEngine));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void globalLock() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            Market market = books[i % markets];
+            futures[i] = CompletableFuture.supplyAsync(() -> {
+                synchronized (globalMonitor) {
+                    return market.processNextOrder(matchingEngine);
+                }
+            }, pool);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private static final class Market {
+        final String ticker;
+        final ConcurrentOrderBook book;
+        long nextOrder;
+
+        Market(String ticker) {
+            this.ticker = ticker;
+            this.book = new ConcurrentOrderBook(ticker);
+        }
+
+        int processNextOrder(MatchingEngine matchingEngine) {
+            long n = nextOrder++;
+            String action = (n & 1) == 0 ? "buy" : "sell";
+            OrderBookEntry order = new OrderBookEntry(ticker + "-" + n, "USER-" + (n % 100), KalshiSide.yes, action, 50, 10, n);
+
+            int executions = matchingEngine.matchOrder(order, book).size();
+            if (order.getQuantity() > 0) {
+                book.addOrder(order);
+            }
+            return executions;
+        }
+    }
+}
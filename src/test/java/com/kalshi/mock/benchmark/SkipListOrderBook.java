@@ -0,0 +1,113 @@
+package com.kalshi.mock.benchmark;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.OrderBookEntry;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The original ConcurrentSkipListMap-backed order book, reduced to the
+ * add (including cross detection)/cancel/best-price paths. Kept only as a
+ * baseline for benchmarks.
+ */
+class SkipListOrderBook {
+    private final ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> bids =
+        new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+    private final ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> asks =
+        new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, OrderBookEntry> orderMap = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    boolean addOrder(OrderBookEntry order) {
+        lock.writeLock().lock();
+        try {
+            if (orderMap.containsKey(order.getOrderId())) {
+                return false;
+            }
+            checkForCross(order);
+            ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> book = order.isNormalizedBuy() ? bids : asks;
+            book.computeIfAbsent(order.getNormalizedPrice(), k -> new LinkedBlockingDeque<>()).offer(order);
+            orderMap.put(order.getOrderId(), order);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean cancelOrder(String orderId) {
+        lock.writeLock().lock();
+        try {
+            OrderBookEntry order = orderMap.remove(orderId);
+            if (order == null) {
+                return false;
+            }
+            ConcurrentSkipListMap<Integer, Queue<OrderBookEntry>> book = order.isNormalizedBuy() ? bids : asks;
+            Queue<OrderBookEntry> priceLevel = book.get(order.getNormalizedPrice());
+            if (priceLevel != null) {
+                priceLevel.remove(order);
+                if (priceLevel.isEmpty()) {
+                    book.remove(order.getNormalizedPrice());
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean checkForCross(OrderBookEntry newOrder) {
+        if (newOrder.isNormalizedBuy()) {
+            Map.Entry<Integer, Queue<OrderBookEntry>> bestAsk = asks.firstEntry();
+            if (bestAsk != null && newOrder.getNormalizedPrice() >= bestAsk.getKey()) {
+                return true;
+            }
+        } else {
+            Map.Entry<Integer, Queue<OrderBookEntry>> bestBid = bids.firstEntry();
+            if (bestBid != null && newOrder.getNormalizedPrice() <= bestBid.getKey()) {
+                return true;
+            }
+        }
+        return checkExternalCross();
+    }
+
+    private boolean checkExternalCross() {
+        Map.Entry<Integer, Queue<OrderBookEntry>> bestBid = bids.firstEntry();
+        if (bestBid == null) return false;
+
+        for (Map.Entry<Integer, Queue<OrderBookEntry>> askLevel : asks.entrySet()) {
+            for (OrderBookEntry order : askLevel.getValue()) {
+                if (order.getSide() == KalshiSide.no && order.getAction().equals("buy")) {
+                    if (bestBid.getKey() + order.getPrice() > 100) {
+                        return true;
+                    }
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    Map.Entry<Integer, Queue<OrderBookEntry>> getBestBid() {
+        lock.readLock().lock();
+        try {
+            return bids.firstEntry();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Map.Entry<Integer, Queue<OrderBookEntry>> getBestAsk() {
+        lock.readLock().lock();
+        try {
+            return asks.firstEntry();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
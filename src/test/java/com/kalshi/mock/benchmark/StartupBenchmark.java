@@ -0,0 +1,135 @@
+package com.kalshi.mock.benchmark;
+
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import com.kalshi.mock.service.OrderBookService;
+import com.kalshi.mock.service.PersistenceService;
+import com.kalshi.mock.service.PositionsService;
+import com.kalshi.mock.service.TimerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load every order book from the database at startup, against the
+ * number of markets. Each market has ORDERS_PER_MARKET resting orders in an
+ * in-memory H2 database, indexed by market.
+ *
+ * perMarketQueries: one query per market, serially, the way startup used to
+ * call createOrderBook for each market.
+ * bulkStreamed: OrderBookService.loadOrderBooks - one streamed query for all
+ * markets, books built in parallel.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.include=StartupBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final int ORDERS_PER_MARKET = 4;
+
+    @Param({"1000", "10000", "100000"})
+    private int markets;
+
+    private List<String> tickers;
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    private OrderBookService orderBookService;
+    private TimerService timerService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:startup-" + markets + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+            CREATE TABLE orders (
+                order_id VARCHAR(50) PRIMARY KEY,
+                user_id VARCHAR(50) NOT NULL,
+                side VARCHAR(10) NOT NULL,
+                action VARCHAR(10),
+                market_ticker VARCHAR(50) NOT NULL,
+                quantity INTEGER NOT NULL,
+                remaining_quantity INTEGER NOT NULL,
+                price INTEGER,
+                status VARCHAR(20) NOT NULL,
+                created_time BIGINT NOT NULL,
+                expiration_time BIGINT
+            )
+            """);
+        jdbcTemplate.execute("CREATE INDEX idx_orders_market_status ON orders (market_ticker, status)");
+
+        tickers = new ArrayList<>(markets);
+        List<Object[]> rows = new ArrayList<>(markets * ORDERS_PER_MARKET);
+        long id = 0;
+        for (int m = 0; m < markets; m++) {
+            String ticker = "BENCH-" + m;
+            tickers.add(ticker);
+            for (int o = 0; o < ORDERS_PER_MARKET; o++) {
+                id++;
+                // YES bids, and YES asks that rest as NO bids, never crossing
+                boolean bid = o % 2 == 0;
+                rows.add(new Object[] {"ORD-" + id, "USER-" + (id % 100), "yes", bid ? "buy" : "sell",
+                                       ticker, 10, 10, bid ? 40 - o : 60 + o, o == 3 ? "partially_filled" : "open",
+                                       id});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO orders (order_id, user_id, side, action, market_ticker, quantity, "
+            + "remaining_quantity, price, status, created_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Setup(Level.Invocation)
+    public void newService() {
+        PersistenceService persistenceService = new PersistenceService();
+        ReflectionTestUtils.setField(persistenceService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(persistenceService, "transactionManager",
+                                     new DataSourceTransactionManager(dataSource));
+        persistenceService.start();
+
+        OrderBookEventPublisher publisher = new OrderBookEventPublisher();
+        publisher.addListener(event -> { });
+
+        timerService = new TimerService();
+        timerService.start();
+
+        orderBookService = new OrderBookService();
+        ReflectionTestUtils.setField(orderBookService, "persistenceService", persistenceService);
+        ReflectionTestUtils.setField(orderBookService, "positionsService", new PositionsService());
+        ReflectionTestUtils.setField(orderBookService, "eventPublisher", publisher);
+        ReflectionTestUtils.setField(orderBookService, "timerService", timerService);
+        orderBookService.startSequencer();
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopService() {
+        orderBookService.stopSequencer();
+        timerService.stop();
+    }
+
+    @Benchmark
+    public OrderBookService perMarketQueries() {
+        for (String ticker : tickers) {
+            orderBookService.createOrderBook(ticker);
+        }
+        return orderBookService;
+    }
+
+    @Benchmark
+    public int bulkStreamed() {
+        return orderBookService.loadOrderBooks(tickers);
+    }
+}
@@ -0,0 +1,97 @@
+package com.kalshi.mock.benchmark;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.TopOfBook;
+import com.kalshi.mock.service.MatchingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-of-book polling while a matcher keeps writing to the same book.
+ *
+ * Each group runs one matcher thread (alternating YES buys and sells around
+ * 50¢, so orders both rest and execute) against several BBO pollers:
+ *
+ * locked: pollers call getBestBid()/getBestAsk(), each taking the book's read
+ * lock and contending with the matcher's write lock.
+ * lockFree: pollers read the TopOfBook record the matcher publishes.
+ *
+ * Compare both the poller and the matcher scores between groups.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.include=TopOfBookBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Group)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopOfBookBenchmark {
+
+    private static final int POLLERS = 3;
+
+    private ConcurrentOrderBook book;
+    private MatchingEngine matchingEngine;
+    private long nextOrder;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        book = new ConcurrentOrderBook("BENCH");
+        matchingEngine = new MatchingEngine();
+        nextOrder = 0;
+
+        // Depth on both sides so the top of book is never empty
+        for (int price = 40; price <= 48; price++) {
+            book.addOrder(new OrderBookEntry("BID-" + price, "MM", KalshiSide.yes, "buy", price, 1_000_000, price));
+            book.addOrder(new OrderBookEntry("ASK-" + price, "MM", KalshiSide.yes, "sell", 100 - price, 1_000_000, price));
+        }
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public int lockedMatcher() {
+        return processNextOrder();
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(POLLERS)
+    public int lockedPoller() {
+        Map.Entry<Integer, Queue<OrderBookEntry>> bid = book.getBestBid();
+        Map.Entry<Integer, Queue<OrderBookEntry>> ask = book.getBestAsk();
+        return (bid == null ? 0 : bid.getKey()) + (ask == null ? 0 : ask.getKey());
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(1)
+    public int lockFreeMatcher() {
+        return processNextOrder();
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(POLLERS)
+    public int lockFreePoller() {
+        TopOfBook top = book.getTopOfBook();
+        return top.getBestBid() + top.getBestAsk();
+    }
+
+    private int processNextOrder() {
+        long n = nextOrder++;
+        String action = (n & 1) == 0 ? "buy" : "sell";
+        OrderBookEntry order = new OrderBookEntry("O-" + n, "USER-" + (n % 100), KalshiSide.yes, action, 50, 10, n);
+
+        int executions = matchingEngine.matchOrder(order, book).size();
+        if (order.getQuantity() > 0) {
+            book.addOrder(order);
+        }
+        return executions;
+    }
+}
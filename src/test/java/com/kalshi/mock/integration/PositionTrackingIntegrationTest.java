@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fbg.api.rest.Position;
 import com.fbg.api.rest.PositionsResponse;
 import com.kalshi.mock.dto.KalshiOrderRequest;
+import com.kalshi.mock.service.PositionsService;
+import com.kalshi.mock.service.TestServices;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -47,6 +49,9 @@ public class PositionTrackingIntegrationTest {
     @Autowired
     private TestHelper testHelper;
     
+    @Autowired
+    private PositionsService positionsService;
+    
     @BeforeEach
     public void setUp() {
         // Initialize test market
@@ -57,6 +62,8 @@ public class PositionTrackingIntegrationTest {
         jdbcTemplate.execute("DELETE FROM orders");
         jdbcTemplate.execute("DELETE FROM fills");
         jdbcTemplate.execute("DELETE FROM trades");
+        // Positions are read from memory, not the table
+        TestServices.resetPositions(positionsService);
     }
     
     @Test
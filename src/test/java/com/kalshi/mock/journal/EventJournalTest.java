@@ -0,0 +1,250 @@
+package com.kalshi.mock.journal;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.journal.JournalEvent.MarketState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the event journal: round trips, segment rolls, replay from a
+ * sequence number and recovery from a torn write.
+ */
+public class EventJournalTest {
+
+    private Path directory;
+    private EventJournal journal;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-test");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.stop();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Every event type reads back as it was appended, in order")
+    public void testRoundTrip() {
+        journal = openJournal("always");
+
+        journal.marketStateChanged("TEST-MARKET", MarketState.AUCTION);
+        journal.orderAccepted("TEST-MARKET", "ORD-1", "client-1", "user-1", KalshiSide.no, "sell", "limit", 35, 10,
+                              "GTD", 1_700_000_000_000L);
+        journal.orderAccepted("TEST-MARKET", "ORD-2", null, "user-2", KalshiSide.yes, "buy", "market", null, 5,
+                              null, null);
+        journal.orderExecuted("TEST-MARKET", "TRD-1", "ORD-2", "ORD-1", 65, 5);
+        journal.orderAmended("TEST-MARKET", "ORD-1", 40, 12, 60, 7);
+        journal.orderCanceled("TEST-MARKET", "ORD-1");
+        journal.marketStateChanged("TEST-MARKET", MarketState.CLOSED);
+        journal.sync();
+
+        List<JournalEvent> events = replay(journal, 1);
+        assertEquals(7, events.size());
+        assertEquals(7, journal.lastSequence());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, events.get(i).sequence());
+            assertEquals("TEST-MARKET", events.get(i).marketTicker());
+        }
+
+        JournalEvent.OrderAccepted accepted = (JournalEvent.OrderAccepted) events.get(1);
+        assertEquals("ORD-1", accepted.orderId());
+        assertEquals("client-1", accepted.clientOrderId());
+        assertEquals("user-1", accepted.userId());
+        assertEquals(KalshiSide.no, accepted.side());
+        assertEquals("sell", accepted.action());
+        assertEquals(35, accepted.price());
+        assertEquals(10, accepted.quantity());
+        assertEquals("GTD", accepted.timeInForce());
+        assertEquals(1_700_000_000_000L, accepted.expirationTime());
+
+        JournalEvent.OrderAccepted market = (JournalEvent.OrderAccepted) events.get(2);
+        assertNull(market.clientOrderId());
+        assertEquals(0, market.price());
+        assertNull(market.timeInForce());
+        assertNull(market.expirationTime());
+
+        assertEquals(new JournalEvent.OrderExecuted(4, events.get(3).timestamp(), "TEST-MARKET", "TRD-1", "ORD-2",
+                                                    "ORD-1", 65, 5), events.get(3));
+        assertEquals(new JournalEvent.OrderAmended(5, events.get(4).timestamp(), "TEST-MARKET", "ORD-1", 40, 12,
+                                                   60, 7),
+                     events.get(4));
+        assertEquals(new JournalEvent.OrderCanceled(6, events.get(5).timestamp(), "TEST-MARKET", "ORD-1"),
+                     events.get(5));
+        assertEquals(MarketState.CLOSED, ((JournalEvent.MarketStateChanged) events.get(6)).state());
+    }
+
+    @Test
+    @DisplayName("Appends carry on from the last event after a restart, and replay can start mid-journal")
+    public void testReopenAndReplayFrom() {
+        journal = openJournal("never");
+        for (int i = 1; i <= 10; i++) {
+            journal.orderCanceled("TEST-MARKET", "ORD-" + i);
+        }
+        journal.stop();
+
+        journal = openJournal("never");
+        assertEquals(10, journal.lastSequence());
+        journal.orderCanceled("TEST-MARKET", "ORD-11");
+
+        List<JournalEvent> events = replay(journal, 8);
+        assertEquals(List.of(8L, 9L, 10L, 11L), events.stream().map(JournalEvent::sequence).toList());
+        assertEquals("ORD-11", ((JournalEvent.OrderCanceled) events.get(3)).orderId());
+    }
+
+    @Test
+    @DisplayName("A full segment rolls into a new file without breaking the sequence")
+    public void testSegmentRoll() throws IOException {
+        try (MappedJournal mapped = new MappedJournal(directory, 1024)) {
+            ByteBuffer payload = ByteBuffer.allocate(100);
+            for (int i = 0; i < 50; i++) {
+                payload.clear().putInt(i).position(100).flip();
+                assertEquals(i + 1, mapped.append((byte) 1, i, payload));
+            }
+
+            List<Integer> replayed = new ArrayList<>();
+            mapped.replay(1, (sequence, timestamp, type, record) -> {
+                assertEquals(sequence - 1, timestamp);
+                replayed.add(record.getInt(0));
+            });
+            assertEquals(50, replayed.size());
+            for (int i = 0; i < replayed.size(); i++) {
+                assertEquals(i, replayed.get(i));
+            }
+
+            List<Long> fromLate = new ArrayList<>();
+            mapped.replay(45, (sequence, timestamp, type, record) -> fromLate.add(sequence));
+            assertEquals(List.of(45L, 46L, 47L, 48L, 49L, 50L), fromLate);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 5, "Expected the journal to span several segments");
+        }
+    }
+
+    @Test
+    @DisplayName("Threads appending at once get distinct, gapless sequence numbers across segment rolls")
+    public void testConcurrentAppends() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        try (MappedJournal mapped = new MappedJournal(directory, 16 * 1024)) {
+            List<Thread> appenders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int writer = t;
+                appenders.add(new Thread(() -> {
+                    // Sizes vary so records straddle the end of segments differently
+                    ByteBuffer payload = ByteBuffer.allocate(64);
+                    for (int i = 0; i < perThread; i++) {
+                        payload.clear().putInt(writer).putInt(i).position(8 + (i % 7) * 8).flip();
+                        mapped.append((byte) 1, i, payload);
+                    }
+                }));
+            }
+            appenders.forEach(Thread::start);
+            for (Thread appender : appenders) {
+                appender.join();
+            }
+            assertEquals((long) threads * perThread, mapped.lastSequence());
+
+            // Every record reads back whole, and each writer's records in its own order
+            int[] next = new int[threads];
+            long[] expected = {1};
+            mapped.replay(1, (sequence, timestamp, type, record) -> {
+                assertEquals(expected[0]++, sequence);
+                int writer = record.getInt(0);
+                assertEquals(next[writer]++, record.getInt(4));
+            });
+            for (int t = 0; t < threads; t++) {
+                assertEquals(perThread, next[t]);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A torn last record is dropped on open and its sequence number reused")
+    public void testTornTailRecovery() throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(32);
+        int end;
+        try (MappedJournal mapped = new MappedJournal(directory, 4096)) {
+            for (int i = 0; i < 3; i++) {
+                payload.clear().position(32).flip();
+                mapped.append((byte) 1, i, payload);
+            }
+            end = 3 * (MappedJournal.HEADER_BYTES + 32);
+        }
+
+        // A crash mid-append: a length and half a header, no valid checksum
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(end);
+            file.writeInt(32);
+            file.writeInt(0xDEADBEEF);
+            file.writeLong(4);
+        }
+
+        try (MappedJournal mapped = new MappedJournal(directory, 4096)) {
+            assertEquals(3, mapped.lastSequence());
+            payload.clear().putInt(99).position(32).flip();
+            assertEquals(4, mapped.append((byte) 2, 3, payload));
+
+            List<Long> sequences = new ArrayList<>();
+            mapped.replay(1, (sequence, timestamp, type, record) -> sequences.add(sequence));
+            assertEquals(List.of(1L, 2L, 3L, 4L), sequences);
+        }
+    }
+
+    @Test
+    @DisplayName("A disabled journal records nothing")
+    public void testDisabled() {
+        journal = new EventJournal();
+        journal.start();
+
+        journal.orderCanceled("TEST-MARKET", "ORD-1");
+        journal.sync();
+
+        assertFalse(journal.isEnabled());
+        assertEquals(0, journal.lastSequence());
+        assertTrue(replay(journal, 1).isEmpty());
+    }
+
+    private EventJournal openJournal(String fsync) {
+        EventJournal opened = new EventJournal();
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "directory", directory.toString());
+        ReflectionTestUtils.setField(opened, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(opened, "fsync", fsync);
+        opened.start();
+        return opened;
+    }
+
+    private static List<JournalEvent> replay(EventJournal journal, long fromSequence) {
+        List<JournalEvent> events = new ArrayList<>();
+        journal.replay(fromSequence, events::add);
+        return events;
+    }
+}
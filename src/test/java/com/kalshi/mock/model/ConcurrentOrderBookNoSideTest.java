@@ -4,6 +4,7 @@ import com.fbg.api.market.KalshiSide;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
 
@@ -207,12 +208,15 @@ public class ConcurrentOrderBookNoSideTest {
         assertEquals(3, orders.size());
         
         // Verify insertion order (not timestamp order)
-        OrderBookEntry first = orders.poll();
-        assertEquals("2", first.getOrderId()); // First inserted
-        OrderBookEntry second = orders.poll();
-        assertEquals("1", second.getOrderId()); // Second inserted
-        OrderBookEntry third = orders.poll();
-        assertEquals("3", third.getOrderId()); // Third inserted
+        Iterator<OrderBookEntry> queue = orders.iterator();
+        assertEquals("2", queue.next().getOrderId()); // First inserted
+        assertEquals("1", queue.next().getOrderId()); // Second inserted
+        assertEquals("3", queue.next().getOrderId()); // Third inserted
+        
+        // The level is a read-only view; orders leave only through the book
+        assertThrows(UnsupportedOperationException.class, orders::poll);
+        assertThrows(UnsupportedOperationException.class, () -> orders.remove(no1));
+        assertEquals(3, orders.size());
     }
     
     // ==================== Cancellation Tests ====================
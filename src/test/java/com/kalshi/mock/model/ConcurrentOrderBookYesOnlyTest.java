@@ -1141,6 +1141,23 @@ class ConcurrentOrderBookYesOnlyTest {
         assertEquals(100, retrievedOrder.getQuantity());
     }
     
+    @Test
+    @DisplayName("Resting orders fill through the book, which removes them once filled")
+    void testFillRestingThroughBook() {
+        String orderId = "test-order";
+        OrderBookEntry order = createBuyYesOrder(orderId, 65, 100);
+        orderBook.addOrder(order);
+        
+        assertThrows(IllegalStateException.class, () -> order.fillIncoming(30));
+        
+        orderBook.fillResting(order, 30);
+        assertEquals(List.of(List.of(65, 70)), orderBook.getOrderbookSnapshotKalshiFormat(10).getYes());
+        
+        orderBook.fillResting(order, 70);
+        assertNull(orderBook.getOrder(orderId));
+        assertNull(orderBook.getBestBid());
+    }
+    
     @Test
     @DisplayName("Quantity update event")
     void testQuantityUpdateEvent() {
@@ -1262,4 +1279,43 @@ class ConcurrentOrderBookYesOnlyTest {
         var snapshot = orderBook.getOrderbookSnapshot(10);
         assertNull(snapshot.getYes());
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Top of book is published after every command")
+    void testTopOfBookPublishedAfterCommands() {
+        TopOfBook empty = orderBook.getTopOfBook();
+        assertFalse(empty.hasBid());
+        assertFalse(empty.hasAsk());
+        
+        orderBook.addOrder(createBuyYesOrder("bid-50", 50, 100));
+        orderBook.addOrder(createBuyYesOrder("bid-49", 49, 40));
+        orderBook.addOrder(createSellYesOrder("ask-55", 55, 30));
+        orderBook.addOrder(new OrderBookEntry("no-40", "user-1", KalshiSide.no, "buy", 40, 20, System.nanoTime()));
+        
+        TopOfBook top = orderBook.getTopOfBook();
+        assertEquals(50, top.getBestBid());
+        assertEquals(100, top.getBestBidSize());
+        assertEquals(55, top.getBestAsk());
+        assertEquals(30, top.getBestAskSize());
+        assertEquals(40, top.getBestNoBid()); // rests as a YES ask at 60
+        assertEquals(20, top.getBestNoBidSize());
+        assertEquals(orderBook.getVersion(), top.getVersion());
+        
+        // A fill against the best bid updates its size and the last trade
+        new com.kalshi.mock.service.MatchingEngine().matchOrder(createSellYesOrder("sell-50", 50, 30), orderBook);
+        top = orderBook.getTopOfBook();
+        assertEquals(50, top.getBestBid());
+        assertEquals(70, top.getBestBidSize());
+        assertEquals(50, top.getLastTradePrice());
+        assertEquals(30, top.getLastTradeQuantity());
+        
+        // Reads without a change return the same record
+        assertSame(top, orderBook.getTopOfBook());
+        
+        orderBook.cancelOrder("bid-50");
+        top = orderBook.getTopOfBook();
+        assertEquals(49, top.getBestBid());
+        assertEquals(40, top.getBestBidSize());
+        assertEquals(50, top.getLastTradePrice());
+    }
+}
@@ -176,4 +176,70 @@ public class OrderBookKalshiFormatTest {
         assertEquals(50, data.getYes().get(0).get(0));
         assertEquals(450, data.getYes().get(0).get(1)); // 100 + 200 + 150
     }
-}
\ No newline at end of file
+    
+    @Test
+    void testAggregatesFollowFillsAndCancels() {
+        // Given: YES bids and a NO bid sharing the 40 ask level with a YES sell
+        orderBook.addOrder(new OrderBookEntry("1", "user1", KalshiSide.yes, "buy", 50, 100, System.nanoTime()));
+        orderBook.addOrder(new OrderBookEntry("2", "user2", KalshiSide.no, "sell", 50, 200, System.nanoTime()));
+        orderBook.addOrder(new OrderBookEntry("3", "user3", KalshiSide.no, "buy", 40, 300, System.nanoTime()));
+        orderBook.addOrder(new OrderBookEntry("4", "user4", KalshiSide.yes, "sell", 60, 50, System.nanoTime()));
+        
+        OrderbookResponse.OrderbookData data = orderBook.getOrderbookSnapshotKalshiFormat(10);
+        assertEquals(List.of(List.of(50, 300)), data.getYes());
+        assertEquals(List.of(List.of(40, 300)), data.getNo()); // YES sell at 60 is not a NO bid
+        
+        // When: Resting orders are partially filled in place and cancelled
+        orderBook.fillResting(orderBook.getOrder("1"), 40);
+        orderBook.fillResting(orderBook.getOrder("3"), 100);
+        orderBook.cancelOrder("2");
+        
+        // Then: The snapshot reflects the running totals
+        data = orderBook.getOrderbookSnapshotKalshiFormat(10);
+        assertEquals(List.of(List.of(50, 60)), data.getYes());
+        assertEquals(List.of(List.of(40, 200)), data.getNo());
+        
+        // When: The last NO bid at the level goes away
+        orderBook.cancelOrder("3");
+        
+        // Then: The NO side is empty but the YES sell still rests at 60
+        data = orderBook.getOrderbookSnapshotKalshiFormat(10);
+        assertTrue(data.getNo().isEmpty());
+        assertEquals(60, orderBook.getBestAsk().getKey());
+    }
+    
+    @Test
+    void testSnapshotIsSharedUntilTheBookChanges() {
+        // Given: A book with a YES bid and a NO bid
+        orderBook.addOrder(new OrderBookEntry("1", "user1", KalshiSide.yes, "buy", 45, 100, System.nanoTime()));
+        orderBook.addOrder(new OrderBookEntry("2", "user2", KalshiSide.no, "buy", 50, 200, System.nanoTime()));
+        long version = orderBook.getVersion();
+        
+        // When: Several readers ask for the book without any change in between
+        BookSnapshot first = orderBook.getSnapshot();
+        BookSnapshot second = orderBook.getSnapshot();
+        OrderbookResponse.OrderbookData data = orderBook.getOrderbookSnapshotKalshiFormat(10);
+        
+        // Then: They all share one snapshot of the current version
+        assertSame(first, second);
+        assertEquals(version, first.getVersion());
+        assertSame(first.getYes(10), data.getYes());
+        assertEquals(List.of(List.of(45, 100)), data.getYes());
+        assertEquals(List.of(List.of(50, 200)), data.getNo());
+        assertThrows(UnsupportedOperationException.class, () -> data.getYes().add(List.of(1, 1)));
+        
+        // When: The book changes
+        orderBook.fillResting(orderBook.getOrder("1"), 40);
+        
+        // Then: The next reader gets a new version with the new totals
+        BookSnapshot third = orderBook.getSnapshot();
+        assertNotSame(first, third);
+        assertTrue(third.getVersion() > version);
+        assertEquals(List.of(List.of(45, 60)), third.getYes(10));
+        assertEquals(List.of(List.of(45, 100)), first.getYes(10)); // old snapshot is unchanged
+        
+        // And: Depth limits are views of the same snapshot
+        assertEquals(1, third.getYes(1).size());
+        assertTrue(third.getNo(0).isEmpty());
+    }
+}
@@ -0,0 +1,156 @@
+package com.kalshi.mock.model;
+
+import com.fbg.api.market.KalshiSide;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the primitive order ID index, the per-user chain index and the
+ * string form used at the edge
+ */
+public class OrderIndexTest {
+
+    @Test
+    @DisplayName("Random puts and removes agree with a HashMap")
+    void testMatchesHashMap() {
+        OrderIndex index = new OrderIndex();
+        Map<Long, OrderBookEntry> expected = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 50_000; i++) {
+            if (!ids.isEmpty() && random.nextInt(3) == 0) {
+                Long id = ids.remove(random.nextInt(ids.size()));
+                assertSame(expected.remove(id), index.remove(id));
+            } else {
+                // Clustered IDs exercise long probe runs and backward shifts
+                long id = 1_700_000_000_000L + random.nextInt(20_000);
+                OrderBookEntry order = order(id);
+                boolean added = index.putIfAbsent(order);
+                assertEquals(!expected.containsKey(id), added);
+                if (added) {
+                    expected.put(id, order);
+                    ids.add(id);
+                }
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<Long, OrderBookEntry> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), index.get(entry.getKey()));
+        }
+        assertNull(index.get(42L));
+        assertNull(index.remove(42L));
+    }
+
+    @Test
+    @DisplayName("Random user chain heads put, replaced and removed agree with a HashMap")
+    void testUserIndexMatchesHashMap() {
+        UserIndex index = new UserIndex();
+        Map<String, OrderBookEntry> expected = new HashMap<>();
+        Random random = new Random(11);
+
+        for (int i = 0; i < 50_000; i++) {
+            String userId = "USER-" + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertSame(expected.remove(userId), index.remove(userId));
+            } else {
+                OrderBookEntry head = new OrderBookEntry(i + 1L, userId, KalshiSide.yes, "buy", 50, 1, i);
+                assertSame(expected.put(userId, head), index.put(head));
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<String, OrderBookEntry> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), index.get(entry.getKey()));
+        }
+        assertNull(index.get("NOBODY"));
+        assertNull(index.remove("NOBODY"));
+    }
+
+    @Test
+    @DisplayName("Engine IDs round-trip through the Kalshi string form")
+    void testOrderIdsRoundTrip() {
+        long id = 1_752_000_000_123L;
+        String orderId = OrderIds.format(id);
+
+        assertEquals("ORD-1752000000123", orderId);
+        assertEquals(id, new OrderIds().lookup(orderId));
+        assertEquals(id, OrderIds.parse(orderId));
+        assertEquals(orderId, order(id).getOrderId());
+    }
+
+    @Test
+    @DisplayName("Other string IDs get a negative ID and keep their string form")
+    void testForeignIds() {
+        OrderBookEntry order = new OrderBookEntry("CLIENT-ABC", "user", KalshiSide.yes, "buy", 50, 10, 1L);
+        assertTrue(order.getId() < 0);
+        assertEquals("CLIENT-ABC", order.getOrderId());
+        assertNotEquals(order.getId(), OrderIds.parse("CLIENT-ABC"));
+
+        OrderIds ids = new OrderIds();
+        assertEquals(OrderIds.UNKNOWN, ids.lookup("CLIENT-ABC"));
+        assertTrue(ids.register(order));
+        assertEquals(order.getId(), ids.lookup("CLIENT-ABC"));
+        assertFalse(ids.register(new OrderBookEntry("CLIENT-ABC", "user", KalshiSide.yes, "buy", 50, 10, 2L)));
+
+        ids.release(order.getId());
+        assertEquals(OrderIds.UNKNOWN, ids.lookup("CLIENT-ABC"));
+        assertEquals(0, ids.foreignCount());
+
+        // Not the canonical form, so not mistaken for engine ID 7
+        assertNotEquals(7L, OrderIds.parse("ORD-07"));
+    }
+
+    @Test
+    @DisplayName("A book only knows the foreign IDs of its resting orders")
+    void testForeignIdsLeaveWithTheirOrders() {
+        ConcurrentOrderBook book = new ConcurrentOrderBook("TEST-MARKET");
+        ConcurrentOrderBook other = new ConcurrentOrderBook("OTHER-MARKET");
+        OrderBookEntry order = new OrderBookEntry("CLIENT-1", "user", KalshiSide.yes, "buy", 50, 10, 1L);
+        assertTrue(book.addOrder(order));
+        assertFalse(book.addOrder(new OrderBookEntry("CLIENT-1", "user", KalshiSide.yes, "buy", 50, 10, 2L)));
+
+        assertSame(order, book.getOrder("CLIENT-1"));
+        assertNull(other.getOrder("CLIENT-1"));
+
+        assertTrue(book.cancelOrder("CLIENT-1"));
+        assertNull(book.getOrder("CLIENT-1"));
+
+        // The string is free again once its order has left
+        OrderBookEntry again = new OrderBookEntry("CLIENT-1", "user", KalshiSide.yes, "buy", 50, 10, 3L);
+        assertTrue(book.addOrder(again));
+        book.removeFilledOrder("CLIENT-1");
+        assertNull(book.getOrder(again.getId()));
+        assertFalse(book.cancelOrder("CLIENT-1"));
+    }
+
+    @Test
+    @DisplayName("The book looks orders up by either form")
+    void testBookLookupByIdAndString() {
+        ConcurrentOrderBook book = new ConcurrentOrderBook("TEST-MARKET");
+        OrderBookEntry order = order(1_752_000_000_456L);
+        assertTrue(book.addOrder(order));
+        assertFalse(book.addOrder(order(1_752_000_000_456L)));
+
+        assertSame(order, book.getOrder(order.getId()));
+        assertSame(order, book.getOrder("ORD-1752000000456"));
+        assertNull(book.getOrder("ORD-1"));
+
+        assertTrue(book.cancelOrder("ORD-1752000000456"));
+        assertNull(book.getOrder(order.getId()));
+        assertFalse(book.cancelOrder(order.getId()));
+    }
+
+    private static OrderBookEntry order(long id) {
+        return new OrderBookEntry(id, "user", KalshiSide.yes, "buy", 50, 10, id);
+    }
+}
@@ -0,0 +1,121 @@
+package com.kalshi.mock.model;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.service.MatchingEngine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for off-heap order storage: the record slab on its own, and an
+ * off-heap book behaving exactly like an on-heap one.
+ */
+public class OrderSlabTest {
+
+    @Test
+    @DisplayName("Records round-trip every field and freed slots are reused")
+    public void testRecordsRoundTripAndSlotsAreReused() {
+        OrderSlab slab = new OrderSlab(64);
+        OrderBookEntry order = new OrderBookEntry(42, "USER-1", KalshiSide.no, "sell", 37, 15, 1234);
+        order.reduceQuantity(5);
+
+        int slot = slab.allocate(order);
+        assertEquals(slot, slab.find(42));
+        assertEquals(OrderSlab.NIL, slab.find(43));
+
+        OrderBookEntry copy = slab.toEntry(slot);
+        assertNotSame(order, copy);
+        assertEquals(42, copy.getId());
+        assertEquals("USER-1", copy.getUserId());
+        assertEquals(KalshiSide.no, copy.getSide());
+        assertEquals("sell", copy.getAction());
+        assertEquals(37, copy.getPrice());
+        assertEquals(10, copy.getQuantity());
+        assertEquals(15, copy.getOriginalQuantity());
+        assertEquals(1234, copy.getTimestamp());
+        assertEquals(order.getSequence(), copy.getSequence());
+        assertEquals(63, slab.normalizedPrice(slot));
+        assertTrue(slab.isNormalizedBuy(slot));
+
+        // Spill into a second chunk, then free and reallocate
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            slots.add(slab.allocate(new OrderBookEntry(1000 + i, "USER-2", KalshiSide.yes, "buy", 50, 1, i)));
+        }
+        assertEquals(101, slab.size());
+        assertEquals(2L * 64 * OrderSlab.RECORD_SIZE, slab.reservedBytes());
+
+        slab.free(slots.get(10));
+        assertEquals(OrderSlab.NIL, slab.find(1010));
+        assertEquals(slots.get(20), slab.find(1020), "Other IDs stay reachable after a delete");
+        assertEquals(slots.get(10), slab.allocate(new OrderBookEntry(7, "USER-3", KalshiSide.yes, "sell", 60, 3, 0)));
+        assertEquals(2L * 64 * OrderSlab.RECORD_SIZE, slab.reservedBytes());
+    }
+
+    @Test
+    @DisplayName("An off-heap book matches, cancels and snapshots like an on-heap book")
+    public void testOffHeapBookMirrorsOnHeapBook() {
+        ConcurrentOrderBook heap = new ConcurrentOrderBook("HEAP");
+        OrderSlab slab = new OrderSlab(64);
+        ConcurrentOrderBook offHeap = new ConcurrentOrderBook("OFF-HEAP", slab);
+        MatchingEngine heapEngine = new MatchingEngine();
+        MatchingEngine offHeapEngine = new MatchingEngine();
+
+        Random random = new Random(7);
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 3000; id++) {
+            if (!ids.isEmpty() && random.nextInt(4) == 0) {
+                long cancel = ids.remove(random.nextInt(ids.size()));
+                assertEquals(heap.cancelOrder(cancel), offHeap.cancelOrder(cancel));
+                continue;
+            }
+
+            KalshiSide side = random.nextBoolean() ? KalshiSide.yes : KalshiSide.no;
+            String action = random.nextBoolean() ? "buy" : "sell";
+            int price = 35 + random.nextInt(31);
+            int quantity = 1 + random.nextInt(20);
+            OrderBookEntry heapOrder = new OrderBookEntry(id, "USER-" + (id % 7), side, action, price, quantity, id);
+            OrderBookEntry offHeapOrder = new OrderBookEntry(id, "USER-" + (id % 7), side, action, price, quantity, id);
+
+            List<MatchingEngine.Execution> expected = heapEngine.matchOrder(heapOrder, heap);
+            List<MatchingEngine.Execution> actual = offHeapEngine.matchOrder(offHeapOrder, offHeap);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getPassive().getId(), actual.get(i).getPassive().getId());
+                assertEquals(expected.get(i).getPassive().getQuantity(), actual.get(i).getPassive().getQuantity());
+                assertEquals(expected.get(i).getQuantity(), actual.get(i).getQuantity());
+                assertEquals(expected.get(i).getExecutionPrice(), actual.get(i).getExecutionPrice());
+            }
+
+            if (heapOrder.getQuantity() > 0) {
+                heap.addOrder(heapOrder);
+                offHeap.addOrder(offHeapOrder);
+                ids.add(id);
+            }
+            assertEquals(heap.drainDeltas().size(), offHeap.drainDeltas().size());
+        }
+
+        assertEquals(heap.getOrderbookSnapshotKalshiFormat(99).getYes(), offHeap.getOrderbookSnapshotKalshiFormat(99).getYes());
+        assertEquals(heap.getOrderbookSnapshotKalshiFormat(99).getNo(), offHeap.getOrderbookSnapshotKalshiFormat(99).getNo());
+        assertEquals(heap.getTopOfBook().getBestBid(), offHeap.getTopOfBook().getBestBid());
+        assertEquals(heap.getTopOfBook().getBestAsk(), offHeap.getTopOfBook().getBestAsk());
+
+        // Resting orders read back as copies in the same FIFO order
+        long resting = ids.stream().filter(id -> heap.getOrder(id) != null).count();
+        assertTrue(resting > 0);
+        assertEquals(resting, slab.size());
+        Queue<OrderBookEntry> heapLevel = heap.getBestBid().getValue();
+        Queue<OrderBookEntry> offHeapLevel = offHeap.getBestBid().getValue();
+        assertEquals(heapLevel.stream().map(OrderBookEntry::getId).toList(),
+            offHeapLevel.stream().map(OrderBookEntry::getId).toList());
+        assertTrue(offHeapLevel.contains(heapLevel.peek()));
+        assertThrows(UnsupportedOperationException.class, offHeapLevel::poll);
+        assertEquals(heap.getOrder(ids.get(0)) == null, offHeap.getOrder(ids.get(0)) == null);
+    }
+}
@@ -271,4 +271,29 @@ public class CrossDetectionTest {
         orderBook.addOrder(noBid);
         assertTrue(crossDetected.get(), "Adding NO bid 38¢ should create arbitrage with YES bid 63¢");
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Best YES bid and best NO bid follow adds and cancels")
+    public void testBestBidsTrackedAcrossUpdates() {
+        orderBook.addOrder(new OrderBookEntry("YES-1", "USER-1", KalshiSide.yes, "buy", 40, 100, 1000));
+        orderBook.addOrder(new OrderBookEntry("NO-1", "USER-2", KalshiSide.no, "buy", 55, 100, 1001));
+        orderBook.addOrder(new OrderBookEntry("NO-2", "USER-3", KalshiSide.no, "buy", 50, 100, 1002));
+        
+        // YES sells rest on the same side as NO bids but never count as a NO bid
+        orderBook.addOrder(new OrderBookEntry("YES-SELL", "USER-4", KalshiSide.yes, "sell", 42, 100, 1003));
+        
+        assertEquals(40, orderBook.getBestYesBidPrice());
+        assertEquals(55, orderBook.getBestNoBidPrice());
+        assertFalse(crossDetected.get());
+        
+        // Cancelling the best NO bid falls back to the next one
+        orderBook.cancelOrder("NO-1");
+        assertEquals(50, orderBook.getBestNoBidPrice());
+        
+        orderBook.cancelOrder("NO-2");
+        assertEquals(0, orderBook.getBestNoBidPrice());
+        
+        orderBook.cancelOrder("YES-1");
+        assertEquals(0, orderBook.getBestYesBidPrice());
+    }
+}
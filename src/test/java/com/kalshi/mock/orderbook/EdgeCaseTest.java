@@ -130,14 +130,14 @@ public class EdgeCaseTest {
         OrderBookEntry order2 = new OrderBookEntry("O2", "U2", KalshiSide.yes, "buy", 60, 100, timestamp);
         OrderBookEntry order3 = new OrderBookEntry("O3", "U3", KalshiSide.yes, "buy", 60, 100, timestamp);
         
-        // Sequence numbers should still maintain order
-        assertTrue(order1.getSequence() < order2.getSequence());
-        assertTrue(order2.getSequence() < order3.getSequence());
-        
         orderBook.addOrder(order1);
         orderBook.addOrder(order2);
         orderBook.addOrder(order3);
         
+        // Sequence numbers should still maintain order
+        assertTrue(order1.getSequence() < order2.getSequence());
+        assertTrue(order2.getSequence() < order3.getSequence());
+        
         // Match and verify FIFO based on sequence
         OrderBookEntry sellOrder = new OrderBookEntry("S1", "U4", KalshiSide.yes, "sell", 60, 250, timestamp + 1);
         List<Execution> executions = matchingEngine.matchOrder(sellOrder, orderBook);
@@ -142,11 +142,42 @@ public class FIFOPriorityTest {
         Thread.sleep(1);
         OrderBookEntry order3 = new OrderBookEntry("O3", "U3", KalshiSide.yes, "buy", 50, 100, System.currentTimeMillis());
         
+        // Sequence numbers are drawn as the orders join the book
+        orderBook.addOrder(order1);
+        orderBook.addOrder(order2);
+        orderBook.addOrder(order3);
+        
         // Verify sequence numbers are strictly increasing
         assertTrue(order1.getSequence() < order2.getSequence());
         assertTrue(order2.getSequence() < order3.getSequence());
     }
     
+    @Test
+    @DisplayName("Each market numbers its own orders, gap-free")
+    public void testSequenceNumbersPerMarket() {
+        ConcurrentOrderBook otherBook = new ConcurrentOrderBook("OTHER-MARKET");
+        OrderBookEntry a1 = new OrderBookEntry("A1", "U1", KalshiSide.yes, "buy", 50, 100, 1000);
+        OrderBookEntry b1 = new OrderBookEntry("B1", "U1", KalshiSide.yes, "buy", 50, 100, 1001);
+        OrderBookEntry a2 = new OrderBookEntry("A2", "U2", KalshiSide.no, "buy", 40, 100, 1002);
+        OrderBookEntry b2 = new OrderBookEntry("B2", "U2", KalshiSide.yes, "buy", 50, 100, 1003);
+        
+        orderBook.addOrder(a1);
+        otherBook.addOrder(b1);
+        orderBook.addOrder(a2);
+        otherBook.addOrder(b2);
+        
+        // Interleaved adds do not leave gaps in either market
+        assertEquals(1, a1.getSequence());
+        assertEquals(2, a2.getSequence());
+        assertEquals(1, b1.getSequence());
+        assertEquals(2, b2.getSequence());
+        
+        // A requeueing amend takes the market's next number
+        assertTrue(otherBook.amendOrder(b1.getId(), 50, 200));
+        assertEquals(3, b1.getSequence());
+        assertEquals(2, a2.getSequence());
+    }
+    
     @Test
     @DisplayName("Partial fills maintain FIFO position")
     public void testPartialFillMaintainsFIFO() {
@@ -201,4 +232,54 @@ public class FIFOPriorityTest {
         assertEquals("O2", executions.get(1).getPassive().getOrderId());
         assertEquals("O3", executions.get(2).getPassive().getOrderId());
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Cancelling from the head, middle and tail of a level keeps FIFO order")
+    public void testCancelPreservesFIFO() {
+        for (int i = 1; i <= 5; i++) {
+            orderBook.addOrder(new OrderBookEntry("O" + i, "USER-" + i, KalshiSide.yes, "buy", 60, 10, 1000 + i));
+        }
+        
+        OrderBookEntry middle = orderBook.getOrder("O3");
+        
+        // Cancel the middle, the head and the tail
+        assertTrue(orderBook.cancelOrder("O3"));
+        assertTrue(orderBook.cancelOrder("O1"));
+        assertTrue(orderBook.cancelOrder("O5"));
+        assertFalse(orderBook.cancelOrder("O3"));
+        
+        Queue<OrderBookEntry> level = orderBook.getBestBid().getValue();
+        assertEquals(2, level.size());
+        assertFalse(level.contains(middle));
+        
+        OrderBookEntry[] remaining = level.toArray(new OrderBookEntry[0]);
+        assertEquals("O2", remaining[0].getOrderId());
+        assertEquals("O4", remaining[1].getOrderId());
+        
+        // New orders still join the back of the queue
+        orderBook.addOrder(new OrderBookEntry("O6", "USER-6", KalshiSide.yes, "buy", 60, 10, 2000));
+        OrderBookEntry sell = new OrderBookEntry("SELL-1", "USER-7", KalshiSide.yes, "sell", 60, 30, 3000);
+        List<Execution> executions = matchingEngine.matchOrder(sell, orderBook);
+        
+        assertEquals(3, executions.size());
+        assertEquals("O2", executions.get(0).getPassive().getOrderId());
+        assertEquals("O4", executions.get(1).getPassive().getOrderId());
+        assertEquals("O6", executions.get(2).getPassive().getOrderId());
+        assertNull(orderBook.getBestBid());
+    }
+    
+    @Test
+    @DisplayName("Cancelling every order at a level empties the level")
+    public void testCancelAllOrdersAtLevel() {
+        orderBook.addOrder(new OrderBookEntry("O1", "USER-1", KalshiSide.yes, "buy", 60, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry("O2", "USER-2", KalshiSide.yes, "buy", 55, 10, 1001));
+        orderBook.addOrder(new OrderBookEntry("O3", "USER-3", KalshiSide.yes, "buy", 60, 10, 1002));
+        
+        orderBook.cancelOrder("O3");
+        orderBook.cancelOrder("O1");
+        
+        // Best bid falls through to the next level
+        assertEquals(55, orderBook.getBestBid().getKey());
+        assertEquals(1, orderBook.getBestBid().getValue().size());
+    }
+}
@@ -0,0 +1,139 @@
+package com.kalshi.mock.orderbook;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookDelta;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.OrderSlab;
+import com.kalshi.mock.service.MatchingEngine;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for cancelling many resting orders in one command - all of a user's,
+ * a given set (expiry) or the whole book (market close) - on both on-heap
+ * and off-heap books.
+ */
+public class MassCancelTest {
+
+    private ConcurrentOrderBook newBook(boolean offHeap) {
+        return offHeap ? new ConcurrentOrderBook("MASS-CANCEL", new OrderSlab(64))
+                       : new ConcurrentOrderBook("MASS-CANCEL");
+    }
+
+    @ParameterizedTest(name = "offHeap={0}")
+    @CsvSource({"false", "true"})
+    public void testCancelsOnlyTheUsersOrders(boolean offHeap) {
+        ConcurrentOrderBook orderBook = newBook(offHeap);
+        orderBook.addOrder(new OrderBookEntry(1, "MM", KalshiSide.yes, "buy", 50, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "OTHER", KalshiSide.yes, "buy", 50, 7, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "MM", KalshiSide.yes, "buy", 50, 5, 1002));
+        orderBook.addOrder(new OrderBookEntry(4, "MM", KalshiSide.no, "buy", 40, 20, 1003));
+        orderBook.addOrder(new OrderBookEntry(5, "MM", KalshiSide.yes, "buy", 48, 3, 1004));
+        orderBook.addOrder(new OrderBookEntry(6, "OTHER", KalshiSide.no, "buy", 40, 1, 1005));
+        orderBook.drainDeltas();
+        long sequenceBefore = orderBook.getDeltaSequence();
+
+        assertEquals(4, orderBook.getUserOrderCount("MM"));
+        List<String> canceled = orderBook.cancelUserOrders("MM");
+
+        assertEquals(4, canceled.size());
+        assertTrue(canceled.containsAll(List.of("ORD-1", "ORD-3", "ORD-4", "ORD-5")));
+        assertEquals(0, orderBook.getUserOrderCount("MM"));
+        assertEquals(2, orderBook.getUserOrderCount("OTHER"));
+        assertNull(orderBook.getOrder(1));
+        assertNotNull(orderBook.getOrder(2));
+
+        // One delta per level touched, numbered without gaps
+        List<OrderBookDelta> deltas = orderBook.drainDeltas();
+        assertEquals(3, deltas.size());
+        assertEquals(sequenceBefore + 3, orderBook.getDeltaSequence());
+        for (int i = 0; i < deltas.size(); i++) {
+            assertEquals(sequenceBefore + 1 + i, deltas.get(i).getSequence());
+        }
+        OrderBookDelta yes50 = deltas.stream()
+            .filter(d -> d.getSide().equals("yes") && d.getPrice() == 50).findFirst().orElseThrow();
+        assertEquals(-15, yes50.getDelta());
+
+        assertEquals(List.of(List.of(50, 7)), orderBook.getOrderbookSnapshotKalshiFormat(10).getYes());
+        assertEquals(List.of(List.of(40, 1)), orderBook.getOrderbookSnapshotKalshiFormat(10).getNo());
+
+        assertTrue(orderBook.cancelUserOrders("MM").isEmpty());
+        assertTrue(orderBook.cancelUserOrders("NOBODY").isEmpty());
+    }
+
+    @ParameterizedTest(name = "offHeap={0}")
+    @CsvSource({"false", "true"})
+    public void testIndexFollowsFillsAndCancels(boolean offHeap) {
+        ConcurrentOrderBook orderBook = newBook(offHeap);
+        MatchingEngine matchingEngine = new MatchingEngine();
+        orderBook.addOrder(new OrderBookEntry(1, "MM", KalshiSide.yes, "buy", 50, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "MM", KalshiSide.yes, "buy", 49, 10, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "MM", KalshiSide.yes, "buy", 48, 10, 1002));
+
+        // Fill the first order completely and cancel the last one on its own
+        orderBook.mutate(() -> matchingEngine.matchOrder(
+            new OrderBookEntry(10, "TAKER", KalshiSide.yes, "sell", 50, 10, 2000), orderBook));
+        assertTrue(orderBook.cancelOrder(3));
+        assertEquals(1, orderBook.getUserOrderCount("MM"));
+
+        assertEquals(List.of("ORD-2"), orderBook.cancelUserOrders("MM"));
+        assertNull(orderBook.getBestBid());
+
+        // The user's chain starts over with their next order
+        orderBook.addOrder(new OrderBookEntry(4, "MM", KalshiSide.yes, "sell", 60, 5, 3000));
+        assertEquals(1, orderBook.getUserOrderCount("MM"));
+    }
+
+    @ParameterizedTest(name = "offHeap={0}")
+    @CsvSource({"false", "true"})
+    public void testCancelOrdersById(boolean offHeap) {
+        ConcurrentOrderBook orderBook = newBook(offHeap);
+        orderBook.addOrder(new OrderBookEntry(1, "A", KalshiSide.yes, "buy", 50, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "B", KalshiSide.yes, "buy", 50, 7, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "C", KalshiSide.no, "buy", 40, 5, 1002));
+        orderBook.drainDeltas();
+        long sequenceBefore = orderBook.getDeltaSequence();
+
+        // 99 never rested and is skipped
+        List<String> canceled = orderBook.cancelOrders(new long[] {1, 99, 2});
+
+        assertEquals(List.of("ORD-1", "ORD-2"), canceled);
+        List<OrderBookDelta> deltas = orderBook.drainDeltas();
+        assertEquals(1, deltas.size());
+        assertEquals(-17, deltas.get(0).getDelta());
+        assertEquals(sequenceBefore + 1, orderBook.getDeltaSequence());
+        assertEquals(0, orderBook.getUserOrderCount("A"));
+        assertNotNull(orderBook.getOrder(3));
+    }
+
+    @ParameterizedTest(name = "offHeap={0}")
+    @CsvSource({"false", "true"})
+    public void testCancelAllOrders(boolean offHeap) {
+        ConcurrentOrderBook orderBook = newBook(offHeap);
+        orderBook.addOrder(new OrderBookEntry(1, "A", KalshiSide.yes, "buy", 50, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "B", KalshiSide.yes, "buy", 50, 7, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "A", KalshiSide.yes, "buy", 45, 3, 1002));
+        orderBook.addOrder(new OrderBookEntry(4, "C", KalshiSide.no, "buy", 40, 5, 1003));
+        orderBook.addOrder(new OrderBookEntry(5, "C", KalshiSide.yes, "sell", 70, 2, 1004));
+        orderBook.drainDeltas();
+
+        List<String> canceled = orderBook.cancelAllOrders();
+
+        assertEquals(5, canceled.size());
+        // One delta per published level; the raw YES ask has no NO-bid level to change
+        assertEquals(3, orderBook.drainDeltas().size());
+        assertNull(orderBook.getBestBid());
+        assertNull(orderBook.getBestAsk());
+        assertEquals(0, orderBook.getUserOrderCount("C"));
+        assertTrue(orderBook.cancelAllOrders().isEmpty());
+
+        // The emptied book takes orders again
+        orderBook.addOrder(new OrderBookEntry(6, "A", KalshiSide.yes, "buy", 50, 1, 2000));
+        assertEquals(1, orderBook.getUserOrderCount("A"));
+    }
+}
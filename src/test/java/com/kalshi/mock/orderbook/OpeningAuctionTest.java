@@ -0,0 +1,117 @@
+package com.kalshi.mock.orderbook;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookDelta;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.OrderSlab;
+import com.kalshi.mock.service.MatchingEngine;
+import com.kalshi.mock.service.MatchingEngine.Execution;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the opening auction: orders queue crossed, then one uncross
+ * trades everything that can trade at the volume-maximizing price.
+ */
+public class OpeningAuctionTest {
+
+    private ConcurrentOrderBook newAuctionBook(boolean offHeap) {
+        ConcurrentOrderBook orderBook = offHeap ? new ConcurrentOrderBook("AUCTION", new OrderSlab(64))
+                                                : new ConcurrentOrderBook("AUCTION");
+        orderBook.setAuction(true);
+        return orderBook;
+    }
+
+    @Test
+    public void testClearingPriceMaximizesVolume() {
+        ConcurrentOrderBook orderBook = newAuctionBook(false);
+        // Bids: 10 @ 60, 10 @ 55, 10 @ 50. Asks (YES sells): 5 @ 48, 10 @ 52, 20 @ 58
+        orderBook.addOrder(new OrderBookEntry(1, "B1", KalshiSide.yes, "buy", 60, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "B2", KalshiSide.yes, "buy", 55, 10, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "B3", KalshiSide.yes, "buy", 50, 10, 1002));
+        orderBook.addOrder(new OrderBookEntry(4, "S1", KalshiSide.yes, "sell", 48, 5, 1003));
+        orderBook.addOrder(new OrderBookEntry(5, "S2", KalshiSide.yes, "sell", 52, 10, 1004));
+        orderBook.addOrder(new OrderBookEntry(6, "S3", KalshiSide.yes, "sell", 58, 20, 1005));
+
+        // 52-55 all trade 15 (20 demand vs 15 supply); 56 and up trade only 10
+        assertEquals(53, orderBook.getClearingPrice(), "Tie on volume and surplus goes to the middle");
+
+        // Without a cross there is nothing to clear
+        ConcurrentOrderBook uncrossed = newAuctionBook(false);
+        uncrossed.addOrder(new OrderBookEntry(7, "B", KalshiSide.yes, "buy", 40, 10, 1000));
+        uncrossed.addOrder(new OrderBookEntry(8, "S", KalshiSide.yes, "sell", 45, 10, 1001));
+        assertEquals(0, uncrossed.getClearingPrice());
+    }
+
+    @Test
+    public void testClearingPriceMinimizesSurplus() {
+        ConcurrentOrderBook orderBook = newAuctionBook(false);
+        orderBook.addOrder(new OrderBookEntry(1, "B", KalshiSide.yes, "buy", 60, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "B", KalshiSide.yes, "buy", 50, 10, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "S", KalshiSide.yes, "sell", 45, 10, 1002));
+        orderBook.addOrder(new OrderBookEntry(4, "S", KalshiSide.yes, "sell", 55, 10, 1003));
+
+        // 10 trades anywhere from 45 to 60; only 51-54 leave no surplus
+        assertEquals(52, orderBook.getClearingPrice());
+    }
+
+    @ParameterizedTest(name = "offHeap={0}")
+    @CsvSource({"false", "true"})
+    public void testUncrossTradesAtOnePrice(boolean offHeap) {
+        ConcurrentOrderBook orderBook = newAuctionBook(offHeap);
+        MatchingEngine matchingEngine = new MatchingEngine();
+        orderBook.addOrder(new OrderBookEntry(1, "B1", KalshiSide.yes, "buy", 60, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "B2", KalshiSide.yes, "buy", 55, 10, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "B3", KalshiSide.yes, "buy", 50, 10, 1002));
+        orderBook.addOrder(new OrderBookEntry(4, "S1", KalshiSide.yes, "sell", 48, 5, 1003));
+        // A NO bid @ 48 is a YES ask @ 52
+        orderBook.addOrder(new OrderBookEntry(5, "S2", KalshiSide.no, "buy", 48, 10, 1004));
+        orderBook.addOrder(new OrderBookEntry(6, "S3", KalshiSide.yes, "sell", 58, 20, 1005));
+        orderBook.drainDeltas();
+        long sequenceBefore = orderBook.getDeltaSequence();
+
+        List<Execution> executions = orderBook.mutateCoalesced(() -> matchingEngine.uncross(orderBook));
+
+        int volume = executions.stream().mapToInt(Execution::getQuantity).sum();
+        assertEquals(15, volume);
+        for (Execution execution : executions) {
+            assertEquals(53, execution.getExecutionPrice());
+        }
+        // The best bid fills first; the later order of each pair is the aggressor
+        assertEquals(1L, executions.get(0).getPassive().getId());
+        assertEquals(4L, executions.get(0).getAggressor().getId());
+
+        // Bid @ 60 filled, bid @ 55 has 5 left; both crossing asks are gone
+        assertNull(orderBook.getOrder(1));
+        assertEquals(5, orderBook.getOrder(2).getQuantity());
+        assertNull(orderBook.getOrder(4));
+        assertNull(orderBook.getOrder(5));
+        assertEquals(55, orderBook.getBestYesBidPrice());
+        assertEquals(0, orderBook.getClearingPrice(), "Nothing left crossed");
+
+        // One delta per level touched: YES 60, YES 55, NO 48 (the YES ask @ 48 has no NO-bid level)
+        List<OrderBookDelta> deltas = orderBook.drainDeltas();
+        assertEquals(3, deltas.size());
+        assertEquals(sequenceBefore + 3, orderBook.getDeltaSequence());
+        assertEquals(53, orderBook.getTopOfBook().getLastTradePrice());
+    }
+
+    @Test
+    public void testAuctionAmendMayCross() {
+        ConcurrentOrderBook orderBook = newAuctionBook(false);
+        orderBook.addOrder(new OrderBookEntry(1, "B", KalshiSide.yes, "buy", 50, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "S", KalshiSide.yes, "sell", 55, 10, 1001));
+
+        assertTrue(orderBook.amendOrder(1, 57, 10));
+        assertEquals(56, orderBook.getClearingPrice());
+
+        orderBook.setAuction(false);
+        assertThrows(IllegalStateException.class, () -> orderBook.amendOrder(1, 58, 10));
+    }
+}
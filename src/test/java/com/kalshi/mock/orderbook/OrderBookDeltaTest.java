@@ -0,0 +1,155 @@
+package com.kalshi.mock.orderbook;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.dto.OrderbookResponse;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookDelta;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.service.MatchingEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the sequenced level deltas recorded by the order book.
+ *
+ * Deltas are in Kalshi's view of the book: "yes" levels are YES bids at their
+ * price, "no" levels are NO bids at the NO price.
+ */
+public class OrderBookDeltaTest {
+
+    private ConcurrentOrderBook orderBook;
+    private MatchingEngine matchingEngine;
+    private long nextOrderId;
+
+    @BeforeEach
+    public void setUp() {
+        orderBook = new ConcurrentOrderBook("TEST-MARKET");
+        matchingEngine = new MatchingEngine();
+    }
+
+    @Test
+    @DisplayName("Adds, fills and cancels produce exact signed deltas with consecutive seqs")
+    public void testDeltasForBasicMutations() {
+        submit(KalshiSide.yes, "buy", 50, 10);
+        submit(KalshiSide.yes, "buy", 49, 5);
+        submit(KalshiSide.no, "buy", 45, 7); // rests as Sell YES @ 55
+        assertDeltas(orderBook.drainDeltas(), 1,
+            "yes", 50, 10,
+            "yes", 49, 5,
+            "no", 45, 7);
+
+        // Sell YES 12 @ 49 sweeps the 50 level and takes 2 from 49
+        submit(KalshiSide.yes, "sell", 49, 12);
+        assertDeltas(orderBook.drainDeltas(), 4,
+            "yes", 50, -10,
+            "yes", 49, -2);
+
+        String noBid = submit(KalshiSide.no, "buy", 40, 3); // rests as Sell YES @ 60
+        assertTrue(orderBook.cancelOrder(noBid));
+        assertDeltas(orderBook.drainDeltas(), 6,
+            "no", 40, 3,
+            "no", 40, -3);
+
+        assertEquals(7, orderBook.getDeltaSequence());
+        assertTrue(orderBook.drainDeltas().isEmpty());
+    }
+
+    @Test
+    @DisplayName("YES asks are not part of Kalshi's view and produce no deltas")
+    public void testYesAsksProduceNoDeltas() {
+        String ask = submit(KalshiSide.yes, "sell", 60, 10);
+        orderBook.cancelOrder(ask);
+
+        assertTrue(orderBook.drainDeltas().isEmpty());
+        assertEquals(0, orderBook.getDeltaSequence());
+    }
+
+    @Test
+    @DisplayName("One snapshot plus the following deltas rebuilds the live book")
+    public void testSnapshotPlusDeltasRebuildsBook() {
+        Random random = new Random(42);
+        List<String> orderIds = new ArrayList<>();
+
+        // Build up some depth before the snapshot
+        for (int i = 0; i < 200; i++) {
+            randomCommand(random, orderIds);
+        }
+
+        OrderbookResponse.OrderbookData snapshot = orderBook.getOrderbookSnapshotKalshiFormat(99);
+        long snapshotSeq = orderBook.getDeltaSequence();
+        orderBook.drainDeltas();
+
+        Map<Integer, Integer> yes = toLevels(snapshot.getYes());
+        Map<Integer, Integer> no = toLevels(snapshot.getNo());
+
+        long expectedSeq = snapshotSeq + 1;
+        for (int i = 0; i < 2000; i++) {
+            randomCommand(random, orderIds);
+
+            for (OrderBookDelta delta : orderBook.drainDeltas()) {
+                assertEquals(expectedSeq++, delta.getSequence(), "Delta sequence must be gap-free");
+                Map<Integer, Integer> side = "yes".equals(delta.getSide()) ? yes : no;
+                int quantity = side.getOrDefault(delta.getPrice(), 0) + delta.getDelta();
+                assertTrue(quantity >= 0, "Level went negative: " + delta);
+                if (quantity == 0) {
+                    side.remove(delta.getPrice());
+                } else {
+                    side.put(delta.getPrice(), quantity);
+                }
+            }
+        }
+
+        OrderbookResponse.OrderbookData live = orderBook.getOrderbookSnapshotKalshiFormat(99);
+        assertEquals(toLevels(live.getYes()), yes);
+        assertEquals(toLevels(live.getNo()), no);
+        assertFalse(yes.isEmpty());
+        assertFalse(no.isEmpty());
+    }
+
+    private void randomCommand(Random random, List<String> orderIds) {
+        if (!orderIds.isEmpty() && random.nextInt(4) == 0) {
+            orderBook.cancelOrder(orderIds.remove(random.nextInt(orderIds.size())));
+            return;
+        }
+
+        KalshiSide side = random.nextBoolean() ? KalshiSide.yes : KalshiSide.no;
+        String action = random.nextBoolean() ? "buy" : "sell";
+        int price = 35 + random.nextInt(31);
+        int quantity = 1 + random.nextInt(20);
+        orderIds.add(submit(side, action, price, quantity));
+    }
+
+    private String submit(KalshiSide side, String action, int price, int quantity) {
+        String orderId = "ORDER-" + (++nextOrderId);
+        OrderBookEntry order = new OrderBookEntry(orderId, "USER-" + (nextOrderId % 7), side, action, price, quantity, nextOrderId);
+        matchingEngine.matchOrder(order, orderBook);
+        if (order.getQuantity() > 0) {
+            orderBook.addOrder(order);
+        }
+        return orderId;
+    }
+
+    private static void assertDeltas(List<OrderBookDelta> deltas, long firstSeq, Object... expected) {
+        assertEquals(expected.length / 3, deltas.size(), "Deltas: " + deltas);
+        for (int i = 0; i < deltas.size(); i++) {
+            OrderBookDelta delta = deltas.get(i);
+            assertEquals(firstSeq + i, delta.getSequence());
+            assertEquals(expected[i * 3], delta.getSide());
+            assertEquals(expected[i * 3 + 1], delta.getPrice());
+            assertEquals(expected[i * 3 + 2], delta.getDelta());
+        }
+    }
+
+    private static Map<Integer, Integer> toLevels(List<List<Integer>> levels) {
+        Map<Integer, Integer> result = new TreeMap<>();
+        for (List<Integer> level : levels) {
+            result.put(level.get(0), level.get(1));
+        }
+        return result;
+    }
+}
@@ -2,7 +2,9 @@ package com.kalshi.mock.orderbook;
 
 import com.fbg.api.market.KalshiSide;
 import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookDelta;
 import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.OrderSlab;
 import com.kalshi.mock.service.MatchingEngine;
 import com.kalshi.mock.service.MatchingEngine.Execution;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,8 +21,10 @@ import static org.junit.jupiter.api.Assertions.*;
  * Tests for order modification behavior.
  * 
  * Key rules:
- * - Size increase/decrease at same price: Maintains position
- * - Price change: Loses priority (cancel and re-add)
+ * - Size decrease at same price: Maintains position
+ * - Size increase or price change: Loses priority (moves to the back)
+ * 
+ * ConcurrentOrderBook.amendOrder applies these rules in place.
  */
 public class OrderModificationTest {
     
@@ -45,10 +49,8 @@ public class OrderModificationTest {
         orderBook.addOrder(order2);
         orderBook.addOrder(order3);
         
-        // Simulate modifying order2's quantity (cancel and re-add with same price)
-        // In a real implementation, this would be done by a modify method
-        // For this test, we'll manually update the quantity
-        order2.reduceQuantity(50); // Reduce by 50, leaving 50
+        // Partially fill order2 in place, leaving 50
+        orderBook.fillResting(order2, 50);
         
         // Match a sell order
         OrderBookEntry sellOrder = new OrderBookEntry("S1", "U4", KalshiSide.yes, "sell", 50, 120, 4000);
@@ -194,4 +196,108 @@ public class OrderModificationTest {
         assertEquals("O2", executions.get(1).getPassive().getOrderId());
         assertEquals(10, executions.get(1).getQuantity());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Amend down keeps FIFO position and emits one delta")
+    public void testAmendDownKeepsPosition() {
+        orderBook.addOrder(new OrderBookEntry("O1", "U1", KalshiSide.yes, "buy", 50, 100, 1000));
+        orderBook.addOrder(new OrderBookEntry("O2", "U2", KalshiSide.yes, "buy", 50, 100, 2000));
+        orderBook.drainDeltas();
+        
+        assertTrue(orderBook.amendOrder(orderBook.getOrder("O1").getId(), 50, 40));
+        
+        List<OrderBookDelta> deltas = orderBook.drainDeltas();
+        assertEquals(1, deltas.size());
+        assertEquals(50, deltas.get(0).getPrice());
+        assertEquals(-60, deltas.get(0).getDelta());
+        assertEquals(40, orderBook.getOrder("O1").getQuantity());
+        assertEquals(0, orderBook.getOrder("O1").getFilledQuantity(), "An amend is not a fill");
+        
+        OrderBookEntry sellOrder = new OrderBookEntry("S1", "U3", KalshiSide.yes, "sell", 50, 60, 3000);
+        List<Execution> executions = matchingEngine.matchOrder(sellOrder, orderBook);
+        assertEquals(2, executions.size());
+        assertEquals("O1", executions.get(0).getPassive().getOrderId());
+        assertEquals(40, executions.get(0).getQuantity());
+        assertEquals("O2", executions.get(1).getPassive().getOrderId());
+    }
+    
+    @Test
+    @DisplayName("Amend up at the same price moves to the back with one delta")
+    public void testAmendUpLosesPosition() {
+        orderBook.addOrder(new OrderBookEntry("O1", "U1", KalshiSide.no, "buy", 40, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry("O2", "U2", KalshiSide.no, "buy", 40, 10, 2000));
+        orderBook.drainDeltas();
+        
+        assertTrue(orderBook.amendOrder(orderBook.getOrder("O1").getId(), 40, 25));
+        
+        List<OrderBookDelta> deltas = orderBook.drainDeltas();
+        assertEquals(1, deltas.size());
+        assertEquals("no", deltas.get(0).getSide());
+        assertEquals(40, deltas.get(0).getPrice());
+        assertEquals(15, deltas.get(0).getDelta());
+        assertEquals(List.of(List.of(40, 35)), orderBook.getOrderbookSnapshotKalshiFormat(10).getNo());
+        
+        // Buy YES @ 60 meets the NO bids resting as YES asks at 60
+        OrderBookEntry buyOrder = new OrderBookEntry("B1", "U3", KalshiSide.yes, "buy", 60, 10, 3000);
+        List<Execution> executions = matchingEngine.matchOrder(buyOrder, orderBook);
+        assertEquals(1, executions.size());
+        assertEquals("O2", executions.get(0).getPassive().getOrderId());
+    }
+    
+    @Test
+    @DisplayName("Amend to a new price requeues at the back of the new level")
+    public void testAmendPriceRequeues() {
+        orderBook.addOrder(new OrderBookEntry("O1", "U1", KalshiSide.yes, "buy", 50, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry("O2", "U2", KalshiSide.yes, "buy", 51, 10, 2000));
+        orderBook.drainDeltas();
+        
+        assertTrue(orderBook.amendOrder(orderBook.getOrder("O1").getId(), 51, 10));
+        
+        List<OrderBookDelta> deltas = orderBook.drainDeltas();
+        assertEquals(2, deltas.size());
+        assertEquals(50, deltas.get(0).getPrice());
+        assertEquals(-10, deltas.get(0).getDelta());
+        assertEquals(51, deltas.get(1).getPrice());
+        assertEquals(10, deltas.get(1).getDelta());
+        
+        OrderBookEntry sellOrder = new OrderBookEntry("S1", "U3", KalshiSide.yes, "sell", 51, 20, 3000);
+        List<Execution> executions = matchingEngine.matchOrder(sellOrder, orderBook);
+        assertEquals("O2", executions.get(0).getPassive().getOrderId());
+        assertEquals("O1", executions.get(1).getPassive().getOrderId());
+    }
+    
+    @Test
+    @DisplayName("Amend to a marketable price is refused and leaves the book unchanged")
+    public void testMarketableAmendRefused() {
+        orderBook.addOrder(new OrderBookEntry("O1", "U1", KalshiSide.yes, "buy", 50, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry("A1", "U2", KalshiSide.yes, "sell", 55, 10, 2000));
+        long id = orderBook.getOrder("O1").getId();
+        
+        assertTrue(orderBook.wouldTrade(KalshiSide.yes, "buy", 55));
+        assertFalse(orderBook.wouldTrade(KalshiSide.yes, "buy", 54));
+        assertThrows(IllegalStateException.class, () -> orderBook.amendOrder(id, 56, 10));
+        assertEquals(50, orderBook.getOrder(id).getPrice());
+        assertEquals(50, orderBook.getBestYesBidPrice());
+        
+        assertFalse(orderBook.amendOrder(12345L, 50, 10));
+        assertThrows(IllegalArgumentException.class, () -> orderBook.amendOrder(id, 50, 0));
+    }
+    
+    @Test
+    @DisplayName("Off-heap books amend with the same priority rules")
+    public void testOffHeapAmend() {
+        ConcurrentOrderBook offHeap = new ConcurrentOrderBook("OFF-HEAP", new OrderSlab(64));
+        offHeap.addOrder(new OrderBookEntry(1, "U1", KalshiSide.yes, "buy", 50, 10, 1000));
+        offHeap.addOrder(new OrderBookEntry(2, "U2", KalshiSide.yes, "buy", 50, 10, 2000));
+        offHeap.addOrder(new OrderBookEntry(3, "U3", KalshiSide.yes, "buy", 50, 10, 3000));
+        
+        assertTrue(offHeap.amendOrder(2, 50, 4));   // keeps its place
+        assertTrue(offHeap.amendOrder(1, 50, 12));  // to the back
+        assertTrue(offHeap.amendOrder(3, 49, 10));  // to another level
+        
+        List<Long> queue = offHeap.getBestBid().getValue().stream().map(OrderBookEntry::getId).toList();
+        assertEquals(List.of(2L, 1L), queue);
+        assertEquals(List.of(List.of(50, 16), List.of(49, 10)), offHeap.getOrderbookSnapshotKalshiFormat(10).getYes());
+        assertEquals(12, offHeap.getOrder(1).getOriginalQuantity());
+    }
+}
@@ -0,0 +1,109 @@
+package com.kalshi.mock.orderbook;
+
+import com.fbg.api.market.KalshiSide;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.service.MatchingEngine;
+import com.kalshi.mock.service.MatchingEngine.Execution;
+import com.kalshi.mock.service.MatchingEngine.TimeInForce;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for IOC and FOK matching, and the aggregated depth check behind FOK.
+ */
+public class TimeInForceTest {
+
+    private ConcurrentOrderBook orderBook;
+    private MatchingEngine matchingEngine;
+
+    @BeforeEach
+    public void setUp() {
+        orderBook = new ConcurrentOrderBook("TIF-TEST");
+        matchingEngine = new MatchingEngine();
+
+        // YES asks 10 @ 55, 10 @ 56; a NO bid @ 43 rests as a YES ask @ 57
+        orderBook.addOrder(new OrderBookEntry(1, "MM", KalshiSide.yes, "sell", 55, 10, 1000));
+        orderBook.addOrder(new OrderBookEntry(2, "MM", KalshiSide.yes, "sell", 56, 10, 1001));
+        orderBook.addOrder(new OrderBookEntry(3, "MM", KalshiSide.no, "buy", 43, 10, 1002));
+        orderBook.drainDeltas();
+    }
+
+    @Test
+    @DisplayName("Fillable quantity sums the levels up to the limit price")
+    public void testFillableQuantity() {
+        assertEquals(0, orderBook.getFillableQuantity(true, 54, 100));
+        assertEquals(10, orderBook.getFillableQuantity(true, 55, 100));
+        assertEquals(20, orderBook.getFillableQuantity(true, 56, 100));
+        assertEquals(30, orderBook.getFillableQuantity(true, 99, 100));
+        assertEquals(15, orderBook.getFillableQuantity(true, 99, 15));
+        assertEquals(0, orderBook.getFillableQuantity(false, 1, 100), "No bids to sell into");
+    }
+
+    @Test
+    @DisplayName("A FOK the book cannot fill is killed without touching the book")
+    public void testFokKilled() {
+        long versionBefore = orderBook.getVersion();
+        OrderBookEntry fok = new OrderBookEntry(10, "TAKER", KalshiSide.yes, "buy", 56, 21, 2000);
+
+        List<Execution> executions = matchingEngine.matchOrder(fok, orderBook, TimeInForce.FOK);
+
+        assertTrue(executions.isEmpty());
+        assertEquals(21, fok.getQuantity());
+        assertEquals(versionBefore, orderBook.getVersion());
+        assertTrue(orderBook.drainDeltas().isEmpty());
+        assertEquals(10, orderBook.getOrder(1).getQuantity());
+    }
+
+    @Test
+    @DisplayName("A FOK the book can fill sweeps as usual")
+    public void testFokFilled() {
+        OrderBookEntry fok = new OrderBookEntry(10, "TAKER", KalshiSide.yes, "buy", 56, 20, 2000);
+
+        List<Execution> executions = matchingEngine.matchOrder(fok, orderBook, TimeInForce.FOK);
+
+        assertEquals(2, executions.size());
+        assertEquals(0, fok.getQuantity());
+        assertNull(orderBook.getOrder(1));
+        assertNull(orderBook.getOrder(2));
+    }
+
+    @Test
+    @DisplayName("A FOK counts NO bids resting on the ask side")
+    public void testFokAgainstNoBids() {
+        // Sell NO @ 43 rests as a YES bid @ 57, so it can take the NO bid
+        OrderBookEntry fok = new OrderBookEntry(10, "TAKER", KalshiSide.no, "sell", 43, 30, 2000);
+        assertTrue(fok.isNormalizedBuy());
+
+        List<Execution> executions = matchingEngine.matchOrder(fok, orderBook, TimeInForce.FOK);
+        assertEquals(3, executions.size());
+        assertEquals(3L, executions.get(2).getPassive().getId());
+    }
+
+    @Test
+    @DisplayName("IOC matches what it can and leaves the rest to the caller")
+    public void testIocPartial() {
+        OrderBookEntry ioc = new OrderBookEntry(10, "TAKER", KalshiSide.yes, "buy", 55, 15, 2000);
+
+        List<Execution> executions = matchingEngine.matchOrder(ioc, orderBook, TimeInForce.IOC);
+
+        assertEquals(1, executions.size());
+        assertEquals(10, executions.get(0).getQuantity());
+        assertEquals(5, ioc.getQuantity());
+        assertNull(orderBook.getOrder(10), "The matcher never rests the remainder");
+    }
+
+    @Test
+    @DisplayName("Time in force parses REST values and defaults to GTC")
+    public void testParse() {
+        assertEquals(TimeInForce.GTC, TimeInForce.of(null));
+        assertEquals(TimeInForce.IOC, TimeInForce.of("IOC"));
+        assertEquals(TimeInForce.FOK, TimeInForce.of("fok"));
+        assertThrows(IllegalArgumentException.class, () -> TimeInForce.of("DAY"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Order;
+import com.fbg.api.rest.OrderRequest;
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.model.OrderBookEntryPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the zero-garbage matching path: executions written into a reused
+ * ring and order entries recycled through the book's entry pool.
+ */
+public class ExecutionRingTest {
+
+    private MatchingEngine matchingEngine;
+    private ConcurrentOrderBook orderBook;
+    private OrderBookEntryPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        matchingEngine = new MatchingEngine();
+        orderBook = new ConcurrentOrderBook("RING-TEST");
+        pool = new OrderBookEntryPool(16);
+        orderBook.setEntryPool(pool);
+    }
+
+    @Test
+    @DisplayName("Ring match produces the same executions as the list API")
+    public void testRingMatchesListApi() {
+        ConcurrentOrderBook listBook = new ConcurrentOrderBook("LIST-TEST");
+        for (ConcurrentOrderBook book : List.of(orderBook, listBook)) {
+            book.addOrder(new OrderBookEntry(1, "MM1", KalshiSide.yes, "sell", 55, 10, 1));
+            book.addOrder(new OrderBookEntry(2, "MM2", KalshiSide.yes, "sell", 55, 5, 2));
+            book.addOrder(new OrderBookEntry(3, "MM3", KalshiSide.no, "buy", 43, 20, 3));
+        }
+
+        ExecutionRing ring = new ExecutionRing(4);
+        int count = matchingEngine.matchOrder(
+            new OrderBookEntry(10, "TAKER", KalshiSide.yes, "buy", 60, 30, 10), orderBook, ring);
+        List<MatchingEngine.Execution> expected = matchingEngine.matchOrder(
+            new OrderBookEntry(10, "TAKER", KalshiSide.yes, "buy", 60, 30, 10), listBook);
+
+        assertEquals(expected.size(), count);
+        assertEquals(count, ring.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected.get(i).getPassive().getId(), ring.get(i).getPassive().getId());
+            assertEquals(expected.get(i).getQuantity(), ring.get(i).getQuantity());
+            assertEquals(expected.get(i).getExecutionPrice(), ring.get(i).getExecutionPrice());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.get(count));
+    }
+
+    @Test
+    @DisplayName("Ring grows when one match needs more records than it holds")
+    public void testRingGrowsForLargeMatch() {
+        for (int i = 1; i <= 5; i++) {
+            orderBook.addOrder(new OrderBookEntry(i, "MM" + i, KalshiSide.yes, "sell", 50 + i, 1, i));
+        }
+
+        ExecutionRing ring = new ExecutionRing(2);
+        int count = matchingEngine.matchOrder(
+            new OrderBookEntry(10, "TAKER", KalshiSide.yes, "buy", 99, 5, 10), orderBook, ring);
+
+        assertEquals(5, count);
+        assertTrue(ring.capacity() >= 5);
+        for (int i = 0; i < count; i++) {
+            assertEquals(51 + i, ring.get(i).getExecutionPrice(), "Executions stay in match order");
+        }
+    }
+
+    @Test
+    @DisplayName("Filled and canceled resting orders are returned to the entry pool")
+    public void testEntriesRecycledAfterFillAndCancel() {
+        OrderBookEntry resting = pool.acquire(1, "MM", KalshiSide.yes, "sell", 50, 10, 1);
+        orderBook.addOrder(resting);
+        OrderBookEntry other = pool.acquire(2, "MM", KalshiSide.yes, "sell", 52, 10, 2);
+        orderBook.addOrder(other);
+
+        ExecutionRing ring = new ExecutionRing(8);
+        OrderBookEntry taker = pool.acquire(3, "TAKER", KalshiSide.yes, "buy", 50, 10, 3);
+        assertEquals(1, matchingEngine.matchOrder(taker, orderBook, ring));
+        assertEquals(0, pool.available(), "Held while the execution still refers to it");
+        assertEquals("ORD-1", ring.get(0).getPassive().getOrderId());
+        orderBook.recycleRetired();
+        assertEquals(1, pool.available(), "Filled resting order goes back to the pool");
+
+        pool.release(taker);
+        assertThrows(IllegalStateException.class, () -> pool.release(other));
+
+        assertTrue(orderBook.cancelOrder(2L));
+        orderBook.recycleRetired();
+        assertEquals(3, pool.available());
+
+        OrderBookEntry reused = pool.acquire(4, "U", KalshiSide.no, "buy", 30, 7, 4);
+        assertEquals(4, reused.getId());
+        assertEquals(7, reused.getQuantity());
+        assertEquals(70, reused.getNormalizedPrice());
+        assertEquals(2, pool.available());
+    }
+
+    @Test
+    @DisplayName("In zero-garbage mode the service records fills against the right orders and recycles them after")
+    public void testServiceZeroGarbageMode() {
+        PersistenceService persistenceService = mock(PersistenceService.class);
+        OrderBookService orderBookService = TestOrderBookServices.orderBookService(persistenceService,
+            mock(OrderBookEventPublisher.class), null, 1, Map.of("zeroGarbage", true, "executionRingSize", 2));
+        try {
+            orderBookService.createOrderBook("ZG-TEST");
+            Order first = orderBookService.createOrder("ZG-TEST",
+                new OrderRequest(KalshiSide.yes, "ZG-TEST", "limit", 10, 50, "GTC", "R1"), "buy", "MM1");
+            Order second = orderBookService.createOrder("ZG-TEST",
+                new OrderRequest(KalshiSide.yes, "ZG-TEST", "limit", 10, 50, "GTC", "R2"), "buy", "MM2");
+
+            // Sweeps both bids; the filled entries must still be the resting orders while fills are recorded
+            Order sweep = orderBookService.createOrder("ZG-TEST",
+                new OrderRequest(KalshiSide.yes, "ZG-TEST", "limit", 20, 50, "GTC", "T1"), "sell", "TAKER");
+            assertEquals("filled", sweep.getStatus());
+            verify(persistenceService).recordExecution(first.getId(), 10, 50);
+            verify(persistenceService).recordExecution(second.getId(), 10, 50);
+            verify(persistenceService).saveTrade(anyString(), eq("ZG-TEST"), eq(sweep.getId()),
+                eq(first.getId()), eq(10), anyInt());
+
+            // Both resting entries and the filled incoming one are back in the pool
+            assertEquals(3, orderBookService.getOrderBook("ZG-TEST").getEntryPool().available());
+
+            // A recycled entry serves the next order
+            Order next = orderBookService.createOrder("ZG-TEST",
+                new OrderRequest(KalshiSide.yes, "ZG-TEST", "limit", 5, 40, "GTC", "R3"), "buy", "MM3");
+            assertEquals(2, orderBookService.getOrderBook("ZG-TEST").getEntryPool().available());
+            assertEquals(5, orderBookService.getOrderBook("ZG-TEST").getOrder(next.getId()).getQuantity());
+        } finally {
+            orderBookService.stopSequencer();
+        }
+    }
+}
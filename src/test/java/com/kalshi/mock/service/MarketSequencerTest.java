@@ -0,0 +1,101 @@
+package com.kalshi.mock.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MarketSequencerTest {
+
+    private MarketSequencer sequencer;
+
+    @BeforeEach
+    public void setUp() {
+        sequencer = new MarketSequencer(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sequencer.close();
+    }
+
+    @Test
+    @DisplayName("Commands for one market run in submission order on a single thread")
+    public void testCommandsForMarketAreOrdered() {
+        List<Integer> seen = new ArrayList<>(); // deliberately not thread-safe
+        List<String> threads = new ArrayList<>();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            final int n = i;
+            futures.add(sequencer.submit("MARKET-A", () -> {
+                seen.add(n);
+                threads.add(Thread.currentThread().getName());
+                return n;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals(1000, seen.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, seen.get(i));
+            assertEquals(i, futures.get(i).join());
+        }
+        assertEquals(1, threads.stream().distinct().count());
+    }
+
+    @Test
+    @DisplayName("Exceptions complete the future instead of killing the shard")
+    public void testExceptionsCompleteFuture() {
+        CompletableFuture<Object> failed = sequencer.submit("MARKET-A", () -> {
+            throw new IllegalArgumentException("bad order");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+
+        // The shard keeps processing commands
+        assertEquals("ok", sequencer.submit("MARKET-A", () -> "ok").join());
+    }
+
+    @Test
+    @DisplayName("A command can submit to its own market without deadlocking")
+    public void testReentrantSubmitRunsInline() {
+        String result = sequencer.submit("MARKET-A", () ->
+            sequencer.submit("MARKET-A", () -> "inner").join()
+        ).join();
+
+        assertEquals("inner", result);
+    }
+
+    @Test
+    @DisplayName("Markets on different shards run in parallel")
+    public void testDifferentShardsRunInParallel() throws Exception {
+        String marketA = "MARKET-A";
+        String marketB = null;
+        for (int i = 0; marketB == null; i++) {
+            if (sequencer.shardFor("MARKET-" + i) != sequencer.shardFor(marketA)) {
+                marketB = "MARKET-" + i;
+            }
+        }
+
+        // Market A blocks until market B has run; with one shared thread this would hang
+        CountDownLatch marketBRan = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocked = sequencer.submit(marketA, () -> marketBRan.await(5, TimeUnit.SECONDS));
+        sequencer.submit(marketB, () -> {
+            marketBRan.countDown();
+            return null;
+        });
+
+        assertTrue(blocked.get(5, TimeUnit.SECONDS));
+    }
+}
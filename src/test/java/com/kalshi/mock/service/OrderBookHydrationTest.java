@@ -0,0 +1,105 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Order;
+import com.fbg.api.rest.OrderRequest;
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import com.kalshi.mock.model.OrderBookEntry;
+import com.kalshi.mock.service.PersistenceService.RestingOrderRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for loading every order book at startup from one streamed query of
+ * the resting orders in the database.
+ */
+public class OrderBookHydrationTest {
+
+    private static final List<String> MARKETS = List.of("HYD-A", "HYD-B", "HYD-EMPTY");
+
+    // Oldest first, as the query returns them, with markets interleaved
+    private static final List<RestingOrderRow> ROWS = List.of(
+        new RestingOrderRow("HYD-A", "ORD-101", "USER-1", KalshiSide.yes, "buy", 45, 10, 1_000L, null),
+        new RestingOrderRow("HYD-B", "ORD-102", "USER-2", KalshiSide.no, "buy", 30, 5, 1_001L, null),
+        new RestingOrderRow("HYD-A", "ORD-103", "USER-2", KalshiSide.yes, "sell", 60, 7, 1_002L, null),
+        new RestingOrderRow("HYD-A", "ORD-104", "USER-3", KalshiSide.yes, "buy", 45, 3, 1_003L,
+                            System.currentTimeMillis() + 3_600_000),
+        new RestingOrderRow("HYD-CLOSED", "ORD-105", "USER-1", KalshiSide.yes, "buy", 50, 1, 1_004L, null)
+    );
+
+    private PersistenceService persistenceService;
+    private OrderBookEventPublisher eventPublisher;
+    private TimerService timerService;
+    private OrderBookService orderBookService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        persistenceService = mock(PersistenceService.class);
+        doAnswer(invocation -> {
+            Consumer<RestingOrderRow> consumer = invocation.getArgument(0);
+            ROWS.forEach(consumer);
+            return null;
+        }).when(persistenceService).streamRestingOrders(any());
+        eventPublisher = mock(OrderBookEventPublisher.class);
+        timerService = new TimerService();
+        timerService.start();
+
+        orderBookService = TestOrderBookServices.orderBookService(persistenceService, eventPublisher, timerService, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        orderBookService.stopSequencer();
+        timerService.stop();
+    }
+
+    @Test
+    @DisplayName("One query fills every listed book in time priority, in buy-only form, with one snapshot each")
+    public void testLoadOrderBooks() {
+        assertEquals(4, orderBookService.loadOrderBooks(MARKETS));
+
+        verify(persistenceService, times(1)).streamRestingOrders(any());
+        verify(persistenceService, never()).getRestingOrdersForMarket(any());
+        verify(eventPublisher, times(MARKETS.size())).publishEvent(any());
+        verify(eventPublisher, never()).publishBatch(any());
+
+        // The YES sell rests as a NO buy at the complementary price
+        List<OrderBookEntry> resting = orderBookService.getOrderBook("HYD-A").getRestingOrders();
+        assertEquals(List.of("ORD-101", "ORD-104", "ORD-103"),
+                     resting.stream().map(OrderBookEntry::getOrderId).toList());
+        OrderBookEntry converted = resting.get(2);
+        assertEquals(KalshiSide.no, converted.getSide());
+        assertEquals("buy", converted.getAction());
+        assertEquals(40, converted.getPrice());
+
+        assertEquals(1, orderBookService.getOrderBook("HYD-B").getRestingOrders().size());
+        assertTrue(orderBookService.getOrderBook("HYD-EMPTY").getRestingOrders().isEmpty());
+        assertNull(orderBookService.getOrderBook("HYD-CLOSED"));
+        assertEquals(1, timerService.pending());
+    }
+
+    @Test
+    @DisplayName("Loaded books trade, and loaded orders can be canceled by user")
+    public void testLoadedBooksAreLive() {
+        orderBookService.loadOrderBooks(MARKETS);
+
+        // Crosses the NO bid at 40 (a YES ask at 60) before anything else
+        Order taker = orderBookService.createOrder("HYD-A",
+            new OrderRequest(KalshiSide.yes, "HYD-A", "limit", 7, 60, "GTC", "C-1"), "buy", "USER-9");
+        assertEquals("filled", taker.getStatus());
+        assertEquals(2, orderBookService.getOrderBook("HYD-A").getRestingOrders().size());
+
+        assertEquals(List.of("ORD-102"), orderBookService.cancelUserOrders("USER-2", null));
+        assertTrue(orderBookService.getOrderBook("HYD-B").getRestingOrders().isEmpty());
+    }
+}
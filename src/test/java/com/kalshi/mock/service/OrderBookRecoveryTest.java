@@ -0,0 +1,276 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Order;
+import com.fbg.api.rest.OrderRequest;
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import com.kalshi.mock.journal.Checkpoint;
+import com.kalshi.mock.journal.CheckpointStore;
+import com.kalshi.mock.journal.EventJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for rebuilding the order books on startup from a checkpoint and the
+ * event journal instead of the database, without publishing along the way,
+ * and for handing what the replay did to orders to the database.
+ */
+public class OrderBookRecoveryTest {
+
+    private static final List<String> MARKETS = List.of("REC-A", "REC-B");
+
+    private Path directory;
+    private EventJournal journal;
+    private final List<OrderBookService> services = new ArrayList<>();
+    private final List<TimerService> timers = new ArrayList<>();
+
+    // Orders as the first service returned them, for cancel and amend lookups
+    private final Map<String, Order> orders = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recovery-test");
+        journal = openJournal();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        services.forEach(OrderBookService::stopSequencer);
+        timers.forEach(TimerService::stop);
+        journal.stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Replaying the journal rebuilds every book, queue order included, without publishing")
+    public void testRecoverFromJournal() {
+        OrderBookService original = newService(mock(PersistenceService.class, this::answerOrders),
+                                               mock(OrderBookEventPublisher.class));
+        MARKETS.forEach(original::createOrderBook);
+        trade(original);
+
+        PersistenceService persistence = mock(PersistenceService.class);
+        OrderBookEventPublisher publisher = mock(OrderBookEventPublisher.class);
+        OrderBookService recovered = newService(persistence, publisher);
+        long replayed = recovered.recoverOrderBooks(MARKETS, null);
+
+        assertEquals(journal.lastSequence(), replayed);
+        assertSameBooks(original, recovered);
+        // Each order is written once, at its last state, and read back from memory
+        List<Order> saved = savedOrders(persistence, orders.size());
+        for (Order order : saved) {
+            assertSameState(original.getOrder(order.getId()), order);
+            assertSameState(original.getOrder(order.getId()), recovered.getOrder(order.getId()));
+        }
+        verify(persistence, never()).getOrder(any());
+        // One snapshot per market once everything is rebuilt, nothing before
+        verify(publisher, times(MARKETS.size())).publishEvent(any());
+        verify(publisher, never()).publishBatch(any());
+    }
+
+    @Test
+    @DisplayName("A checkpoint plus the journal after it rebuilds the same books, replaying only the tail")
+    public void testRecoverFromCheckpoint() {
+        OrderBookService original = newService(mock(PersistenceService.class, this::answerOrders),
+                                               mock(OrderBookEventPublisher.class));
+        MARKETS.forEach(original::createOrderBook);
+        trade(original);
+
+        CheckpointStore store = new CheckpointStore();
+        ReflectionTestUtils.setField(store, "directory", directory.resolve("checkpoints").toString());
+        store.save(original.checkpoint());
+        long checkpointed = journal.lastSequence();
+        // What the database holds of the orders so far
+        orders.replaceAll((orderId, order) -> original.getOrder(orderId));
+
+        // More trading after the checkpoint, in both markets
+        Order late = place(original, "REC-A", KalshiSide.yes, "buy", 20, 30, "GTC", "USER-5");
+        place(original, "REC-B", KalshiSide.no, "buy", 5, 45, "GTC", "USER-6");
+        original.amendOrder(late.getId(), 32, 25);
+        place(original, "REC-A", KalshiSide.yes, "sell", 8, 30, "GTC", "USER-7");
+
+        Checkpoint checkpoint = store.loadLatest();
+        assertNotNull(checkpoint);
+        assertEquals(checkpointed, checkpoint.journalSequence());
+
+        PersistenceService persistence = mock(PersistenceService.class, this::answerOrders);
+        OrderBookService recovered = newService(persistence, mock(OrderBookEventPublisher.class));
+        long replayed = recovered.recoverOrderBooks(MARKETS, checkpoint);
+
+        assertEquals(journal.lastSequence() - checkpointed, replayed);
+        assertSameBooks(original, recovered);
+        // The tail's orders, and those from before it that the tail filled, read from the database once
+        List<Order> saved = savedOrders(persistence, 6);
+        for (Order order : saved) {
+            assertSameState(original.getOrder(order.getId()), order);
+        }
+    }
+
+    @Test
+    @DisplayName("An event that cannot be replayed keeps every recovered book offline")
+    public void testReplayFailureRefusesToGoLive() {
+        OrderBookService original = newService(mock(PersistenceService.class, this::answerOrders),
+                                               mock(OrderBookEventPublisher.class));
+        MARKETS.forEach(original::createOrderBook);
+        place(original, "REC-A", KalshiSide.yes, "buy", 10, 50, "GTC", "USER-1");
+        journal.orderAccepted("REC-B", "BROKEN-1", "C-X", "USER-2", KalshiSide.yes, "hold", "limit", 50, 5, "GTC",
+                              null);
+        journal.sync();
+
+        PersistenceService persistence = mock(PersistenceService.class);
+        OrderBookService recovered = newService(persistence, mock(OrderBookEventPublisher.class));
+
+        assertThrows(IllegalStateException.class, () -> recovered.recoverOrderBooks(MARKETS, null));
+        MARKETS.forEach(market -> assertFalse(recovered.hasOrderBook(market), market));
+        verify(persistence, never()).saveOrder(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("A checkpointed book that cannot be restored keeps every recovered book offline")
+    public void testCorruptCheckpointRefusesToGoLive() {
+        Checkpoint.RestingOrder order = new Checkpoint.RestingOrder("ORD-1", "USER-1", KalshiSide.yes, "buy", 50, 10,
+                                                                    1_000L, null);
+        // The same order twice: the book can only hold one of them
+        Checkpoint checkpoint = new Checkpoint(0, List.of(
+            new Checkpoint.Book("REC-A", 0, false, List.of(order, order)),
+            new Checkpoint.Book("REC-B", 0, false, List.of())));
+
+        PersistenceService persistence = mock(PersistenceService.class);
+        OrderBookService recovered = newService(persistence, mock(OrderBookEventPublisher.class));
+
+        assertThrows(IllegalStateException.class, () -> recovered.recoverOrderBooks(MARKETS, checkpoint));
+        MARKETS.forEach(market -> assertFalse(recovered.hasOrderBook(market), market));
+        verify(persistence, never()).saveOrder(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Recovered orders can be canceled by user and keep their expiry")
+    public void testRecoveredOrdersAreLive() {
+        OrderBookService original = newService(mock(PersistenceService.class, this::answerOrders),
+                                               mock(OrderBookEventPublisher.class));
+        MARKETS.forEach(original::createOrderBook);
+        Order resting = place(original, "REC-A", KalshiSide.yes, "buy", 10, 40, "GTC", "USER-1");
+        Order expiring = original.createOrder("REC-A",
+            new OrderRequest(KalshiSide.no, "REC-A", "limit", 5, 30, "GTD", "C-GTD"), "buy", "USER-2",
+            System.currentTimeMillis() + 3_600_000);
+
+        OrderBookService recovered = newService(mock(PersistenceService.class), mock(OrderBookEventPublisher.class));
+        TimerService timer = timers.get(timers.size() - 1);
+        recovered.recoverOrderBooks(MARKETS, null);
+
+        assertEquals(1, timer.pending());
+        assertEquals(List.of(resting.getId()), recovered.cancelUserOrders("USER-1", null));
+        assertNotNull(recovered.getOrderBook("REC-A").getOrder(expiring.getId()));
+    }
+
+    // Resting, trading, partially filled, canceled and amended orders, and an auction
+    private void trade(OrderBookService service) {
+        place(service, "REC-A", KalshiSide.yes, "buy", 10, 50, "GTC", "USER-1");
+        place(service, "REC-A", KalshiSide.yes, "buy", 7, 50, "GTC", "USER-2");
+        place(service, "REC-A", KalshiSide.yes, "sell", 4, 50, "GTC", "USER-3");
+        Order no = place(service, "REC-A", KalshiSide.no, "buy", 6, 40, "GTC", "USER-3");
+        Order canceled = place(service, "REC-A", KalshiSide.yes, "buy", 3, 45, "GTC", "USER-4");
+        service.cancelOrder(canceled.getId());
+        service.amendOrder(no.getId(), 45, 8);
+        place(service, "REC-A", KalshiSide.yes, "buy", 5, 70, "IOC", "USER-4");
+
+        service.beginAuction("REC-B");
+        place(service, "REC-B", KalshiSide.yes, "buy", 10, 55, "GTC", "USER-1");
+        place(service, "REC-B", KalshiSide.yes, "sell", 6, 52, "GTC", "USER-2");
+        place(service, "REC-B", KalshiSide.no, "buy", 3, 40, "GTC", "USER-3");
+        service.endAuction("REC-B");
+        place(service, "REC-B", KalshiSide.yes, "sell", 2, 55, "GTC", "USER-4");
+    }
+
+    private Order place(OrderBookService service, String market, KalshiSide side, String action, int count,
+                        int price, String timeInForce, String userId) {
+        Order order = service.createOrder(market,
+            new OrderRequest(side, market, "limit", count, price, timeInForce, "C-" + orders.size()), action, userId);
+        orders.put(order.getId(), order);
+        return order;
+    }
+
+    private void assertSameBooks(OrderBookService expected, OrderBookService actual) {
+        for (String market : MARKETS) {
+            assertEquals(expected.getOrderbookKalshiFormat(market, 99).getYes(),
+                         actual.getOrderbookKalshiFormat(market, 99).getYes(), market + " yes levels");
+            assertEquals(expected.getOrderbookKalshiFormat(market, 99).getNo(),
+                         actual.getOrderbookKalshiFormat(market, 99).getNo(), market + " no levels");
+            assertEquals(queueOrder(expected, market), queueOrder(actual, market), market + " queue order");
+            assertEquals(expected.getOrderBook(market).isInAuction(), actual.getOrderBook(market).isInAuction());
+        }
+    }
+
+    private static List<Order> savedOrders(PersistenceService persistence, int count) {
+        ArgumentCaptor<Order> saved = ArgumentCaptor.forClass(Order.class);
+        verify(persistence, times(count)).saveOrder(saved.capture(), anyString());
+        return saved.getAllValues();
+    }
+
+    private static void assertSameState(Order expected, Order actual) {
+        assertEquals(expected.getStatus(), actual.getStatus(), expected.getId() + " status");
+        assertEquals(expected.getQuantity(), actual.getQuantity(), expected.getId() + " quantity");
+        assertEquals(expected.getFilled_quantity(), actual.getFilled_quantity(), expected.getId() + " filled");
+        assertEquals(expected.getRemaining_quantity(), actual.getRemaining_quantity(), expected.getId() + " remaining");
+        assertEquals(expected.getAvg_fill_price(), actual.getAvg_fill_price(), expected.getId() + " average price");
+        assertEquals(expected.getPrice(), actual.getPrice(), expected.getId() + " price");
+    }
+
+    private static List<String> queueOrder(OrderBookService service, String market) {
+        return service.getOrderBook(market).getRestingOrders().stream()
+            .map(order -> order.getOrderId() + "x" + order.getQuantity())
+            .toList();
+    }
+
+    private Object answerOrders(org.mockito.invocation.InvocationOnMock invocation) throws Throwable {
+        if (invocation.getMethod().getName().equals("getOrder")) {
+            return orders.get((String) invocation.getArgument(0));
+        }
+        return Answers.RETURNS_DEFAULTS.answer(invocation);
+    }
+
+    private OrderBookService newService(PersistenceService persistence, OrderBookEventPublisher publisher) {
+        TimerService timer = new TimerService();
+        timer.start();
+        timers.add(timer);
+
+        OrderBookService service = TestOrderBookServices.orderBookService(persistence, publisher, timer, 2,
+            Map.of("eventJournal", journal));
+        services.add(service);
+        return service;
+    }
+
+    private EventJournal openJournal() {
+        EventJournal opened = new EventJournal();
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "directory", directory.resolve("journal").toString());
+        ReflectionTestUtils.setField(opened, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(opened, "fsync", "never");
+        opened.start();
+        return opened;
+    }
+}
@@ -0,0 +1,300 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Order;
+import com.fbg.api.rest.OrderRequest;
+import com.kalshi.mock.event.OrderBookEvent;
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that each order command reaches subscribers as a single batch,
+ * however many resting orders it sweeps.
+ */
+public class OrderBookServiceBatchTest {
+
+    private static final String MARKET_TICKER = "BATCH-TEST";
+
+    private OrderBookService orderBookService;
+    private OrderBookEventPublisher eventPublisher;
+    private PersistenceService persistenceService;
+
+    @BeforeEach
+    public void setUp() {
+        eventPublisher = mock(OrderBookEventPublisher.class);
+        persistenceService = mock(PersistenceService.class);
+        orderBookService = TestOrderBookServices.orderBookService(persistenceService, eventPublisher, null, 1);
+        orderBookService.createOrderBook(MARKET_TICKER);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        orderBookService.stopSequencer();
+    }
+
+    @Test
+    @DisplayName("A sweep of three resting orders publishes one batch with trades, one snapshot and one ticker")
+    @SuppressWarnings("unchecked")
+    public void testSweepPublishesSingleBatch() {
+        for (int i = 1; i <= 3; i++) {
+            orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTC", "REST-" + i), "buy", "USER-" + i);
+        }
+        reset(eventPublisher);
+
+        // Sweeps all three bids and rests 5 more
+        orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 35, 50, "GTC", "SWEEP"), "sell", "USER-4");
+
+        ArgumentCaptor<List<OrderBookEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher, times(1)).publishBatch(captor.capture());
+        verify(eventPublisher, never()).publishEvent(any());
+
+        List<OrderBookEvent> batch = captor.getValue();
+        // 3 trades, a delta per filled level change plus the resting remainder
+        // (which rests as a NO bid), then the snapshot and ticker
+        assertEquals(9, batch.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(OrderBookEvent.EventType.TRADE, batch.get(i).getType());
+        }
+        for (int i = 3; i < 7; i++) {
+            assertEquals(OrderBookEvent.EventType.DELTA, batch.get(i).getType());
+        }
+        OrderBookEvent.DeltaData lastDelta = (OrderBookEvent.DeltaData) batch.get(6).getData();
+        assertEquals("no", lastDelta.getSide());
+        assertEquals(50, lastDelta.getPrice());
+        assertEquals(5, lastDelta.getDelta());
+        assertEquals(OrderBookEvent.EventType.SNAPSHOT, batch.get(7).getType());
+        assertEquals(lastDelta.getSeq(), ((OrderBookEvent.SnapshotData) batch.get(7).getData()).getSeq());
+        assertEquals(OrderBookEvent.EventType.TICKER_UPDATE, batch.get(8).getType());
+
+        OrderBookEvent.TickerData ticker = (OrderBookEvent.TickerData) batch.get(8).getData();
+        assertEquals(30, ticker.getVolume());
+    }
+
+    @Test
+    @DisplayName("An amend down at the same price publishes one delta and the snapshot")
+    @SuppressWarnings("unchecked")
+    public void testAmendPublishesSingleDelta() {
+        Order order = orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTC", "AMEND-1"), "buy", "USER-1");
+        when(persistenceService.getOrder(order.getId())).thenReturn(order);
+        reset(eventPublisher);
+
+        Order amended = orderBookService.amendOrder(order.getId(), null, 4);
+        assertEquals(4, amended.getRemaining_quantity());
+        assertEquals("open", amended.getStatus());
+        verify(persistenceService).amendOrder(eq(order.getId()), eq(4), eq(50), eq(0), eq(4), isNull(), eq("open"));
+
+        ArgumentCaptor<List<OrderBookEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher, times(1)).publishBatch(captor.capture());
+        List<OrderBookEvent> batch = captor.getValue();
+        assertEquals(2, batch.size());
+        assertEquals(OrderBookEvent.EventType.DELTA, batch.get(0).getType());
+        assertEquals(-6, ((OrderBookEvent.DeltaData) batch.get(0).getData()).getDelta());
+        assertEquals(OrderBookEvent.EventType.SNAPSHOT, batch.get(1).getType());
+    }
+
+    @Test
+    @DisplayName("A marketable amend trades under the same order ID")
+    public void testMarketableAmendTrades() {
+        orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 55, "GTC", "ASK"), "sell", "USER-2");
+        Order bid = orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTC", "BID"), "buy", "USER-1");
+        when(persistenceService.getOrder(bid.getId())).thenReturn(bid);
+
+        Order amended = orderBookService.amendOrder(bid.getId(), 55, 10);
+        assertEquals(5, amended.getFilled_quantity());
+        assertEquals(5, amended.getRemaining_quantity());
+        assertEquals("partially_filled", amended.getStatus());
+        assertEquals(55, orderBookService.getOrderBook(MARKET_TICKER).getOrder(bid.getId()).getPrice());
+    }
+
+    @Test
+    @DisplayName("A mass cancel publishes one batch and persists one JDBC batch per market")
+    @SuppressWarnings("unchecked")
+    public void testMassCancelBatchesPerMarket() {
+        orderBookService.createOrderBook("BATCH-OTHER");
+        for (int i = 1; i <= 3; i++) {
+            orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTC", "MM-" + i), "buy", "USER-MM");
+        }
+        orderBookService.createOrder("BATCH-OTHER",
+            new OrderRequest(KalshiSide.no, "BATCH-OTHER", "limit", 10, 30, "GTC", "MM-4"), "buy", "USER-MM");
+        orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 49, "GTC", "OTHER"), "buy", "USER-2");
+        reset(eventPublisher);
+
+        List<String> canceled = orderBookService.cancelUserOrders("USER-MM", null);
+        assertEquals(4, canceled.size());
+
+        ArgumentCaptor<List<OrderBookEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher, times(2)).publishBatch(captor.capture());
+        verify(persistenceService, times(2)).cancelOrders(anyList());
+        for (List<OrderBookEvent> batch : captor.getAllValues()) {
+            // One merged delta for the market's single level, then the snapshot
+            assertEquals(2, batch.size());
+            assertEquals(OrderBookEvent.EventType.DELTA, batch.get(0).getType());
+            assertEquals(OrderBookEvent.EventType.SNAPSHOT, batch.get(1).getType());
+        }
+
+        // Nothing left to cancel, so nothing is published
+        reset(eventPublisher);
+        assertTrue(orderBookService.cancelUserOrders("USER-MM", MARKET_TICKER).isEmpty());
+        verify(eventPublisher, never()).publishBatch(any());
+    }
+
+    @Test
+    @DisplayName("A user's market is forgotten once nothing of theirs rests there, however their orders left")
+    @SuppressWarnings("unchecked")
+    public void testUserMarketsPruned() {
+        Map<String, Set<String>> userMarkets =
+            (Map<String, Set<String>>) ReflectionTestUtils.getField(orderBookService, "userMarkets");
+
+        Order canceled = orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 40, "GTC", "C-1"), "buy", "USER-1");
+        orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTC", "C-2"), "buy", "USER-1");
+        orderBookService.cancelOrder(canceled.getId());
+        assertEquals(Set.of(MARKET_TICKER), userMarkets.get("USER-1"));
+
+        // Filled by another user's sell; the seller never rested
+        orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTC", "C-3"), "sell", "USER-2");
+        assertFalse(userMarkets.containsKey("USER-1"));
+        assertFalse(userMarkets.containsKey("USER-2"));
+    }
+
+    @Test
+    @DisplayName("IOC and FOK remainders are never rested or published")
+    @SuppressWarnings("unchecked")
+    public void testIocAndFokRemaindersDropped() {
+        orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 55, "GTC", "ASK"), "sell", "USER-1");
+        reset(eventPublisher);
+
+        Order fok = orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 11, 55, "FOK", "FOK"), "buy", "USER-2");
+        assertEquals("canceled", fok.getStatus());
+        assertEquals(0, fok.getFilled_quantity());
+        assertEquals(0, fok.getRemaining_quantity());
+        verify(eventPublisher, never()).publishBatch(any());
+
+        Order ioc = orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 15, 55, "IOC", "IOC"), "buy", "USER-2");
+        assertEquals("canceled", ioc.getStatus());
+        assertEquals(10, ioc.getFilled_quantity());
+        assertEquals(0, ioc.getRemaining_quantity());
+
+        // The fill's delta, snapshot and trade - no delta for a resting remainder
+        ArgumentCaptor<List<OrderBookEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher, times(1)).publishBatch(captor.capture());
+        List<OrderBookEvent> batch = captor.getValue();
+        assertEquals(1, batch.stream().filter(e -> e.getType() == OrderBookEvent.EventType.DELTA).count());
+        assertTrue(orderBookService.getOrderbookKalshiFormat(MARKET_TICKER, 10).getYes().isEmpty());
+    }
+
+    @Test
+    @DisplayName("GTD orders still resting at their expiration are canceled as one batch")
+    @SuppressWarnings("unchecked")
+    public void testExpiredOrdersCanceledTogether() {
+        TimerService timerService = new TimerService();
+        timerService.start();
+        ReflectionTestUtils.setField(orderBookService, "timerService", timerService);
+        try {
+            long expiration = System.currentTimeMillis() + 60_000;
+            Order filled = orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 50, "GTD", "GTD-1"), "buy", "USER-1", expiration);
+            Order expiring = orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTD", "GTD-2"), "buy", "USER-2", expiration);
+            orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 49, "GTC", "GTC"), "buy", "USER-3");
+            assertEquals(expiration, expiring.getExpiration_time());
+            assertEquals(2, timerService.pending());
+
+            // Filling the first order takes its expiry off the wheel
+            orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 50, "GTC", "TAKER"), "sell", "USER-4");
+            assertNull(orderBookService.getOrderBook(MARKET_TICKER).getOrder(filled.getId()));
+            assertEquals(1, timerService.pending());
+            reset(eventPublisher);
+
+            timerService.advance(expiration + 1_000);
+
+            verify(persistenceService, timeout(5_000)).cancelOrders(List.of(expiring.getId()));
+            ArgumentCaptor<List<OrderBookEvent>> captor = ArgumentCaptor.forClass(List.class);
+            verify(eventPublisher, timeout(5_000)).publishBatch(captor.capture());
+            assertEquals(OrderBookEvent.EventType.DELTA, captor.getValue().get(0).getType());
+            assertEquals(List.of(List.of(49, 5)), orderBookService.getOrderbookKalshiFormat(MARKET_TICKER, 10).getYes());
+        } finally {
+            timerService.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("GTD needs a future expiration; IOC and FOK cannot have one")
+    public void testExpirationValidated() {
+        long future = System.currentTimeMillis() + 60_000;
+        assertThrows(IllegalArgumentException.class, () -> orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 50, "GTD", "NO-EXPIRY"), "buy", "USER-1"));
+        assertThrows(IllegalArgumentException.class, () -> orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 50, "GTD", "PAST"), "buy", "USER-1",
+            System.currentTimeMillis() - 1));
+        assertThrows(IllegalArgumentException.class, () -> orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 50, "IOC", "IOC"), "buy", "USER-1", future));
+    }
+
+    @Test
+    @DisplayName("Orders queued in the opening auction uncross as one batch at one price")
+    @SuppressWarnings("unchecked")
+    public void testAuctionUncrossPublishesSingleBatch() {
+        orderBookService.beginAuction(MARKET_TICKER);
+        for (int i = 1; i <= 20; i++) {
+            orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 40 + i, "GTC", "BID-" + i), "buy", "BUYER-" + i);
+            orderBookService.createOrder(MARKET_TICKER,
+                new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 61 - i, "GTC", "ASK-" + i), "sell", "SELLER-" + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 50, "IOC", "IOC"), "buy", "USER-1"));
+        reset(eventPublisher);
+
+        // Bids 41-60 and asks 41-60, 5 each: 50 contracts cross at 50 or 51
+        int traded = orderBookService.endAuction(MARKET_TICKER);
+        assertEquals(50, traded);
+
+        ArgumentCaptor<List<OrderBookEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventPublisher, times(1)).publishBatch(captor.capture());
+        List<OrderBookEvent> batch = captor.getValue();
+        List<OrderBookEvent> trades = batch.stream().filter(e -> e.getType() == OrderBookEvent.EventType.TRADE).toList();
+        assertEquals(10, trades.size());
+        Integer price = ((OrderBookEvent.TradeData) trades.get(0).getData()).getPrice();
+        for (OrderBookEvent trade : trades) {
+            assertEquals(price, ((OrderBookEvent.TradeData) trade.getData()).getPrice());
+        }
+        // One delta per level touched, then one snapshot and one ticker
+        assertEquals(20, batch.stream().filter(e -> e.getType() == OrderBookEvent.EventType.DELTA).count());
+        assertEquals(1, batch.stream().filter(e -> e.getType() == OrderBookEvent.EventType.SNAPSHOT).count());
+        assertEquals(OrderBookEvent.EventType.TICKER_UPDATE, batch.get(batch.size() - 1).getType());
+
+        // Continuous matching from here on
+        assertEquals(0, orderBookService.endAuction(MARKET_TICKER));
+        Order taker = orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 5, 99, "IOC", "TAKER"), "buy", "USER-1");
+        assertEquals("filled", taker.getStatus());
+    }
+}
@@ -0,0 +1,89 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Order;
+import com.fbg.api.rest.OrderRequest;
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import com.kalshi.mock.model.ConcurrentOrderBook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that persistence (JDBC) calls and event publishing made while
+ * processing orders never happen while the order book's write lock is held.
+ */
+public class OrderBookServiceLockTest {
+
+    private static final String MARKET_TICKER = "LOCK-TEST";
+
+    private OrderBookService orderBookService;
+    private PersistenceService persistenceService;
+    private OrderBookEventPublisher eventPublisher;
+
+    // Persistence and publisher calls observed while the book was write-locked
+    private final List<String> callsUnderLock = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        persistenceService = mock(PersistenceService.class, invocation -> {
+            recordIfLocked(invocation.getMethod().getName());
+            if (invocation.getMethod().getName().equals("getOrder")) {
+                String orderId = invocation.getArgument(0);
+                return new Order(orderId, null, "USER-1", KalshiSide.yes, MARKET_TICKER, "limit",
+                    10, 0, 10, 50, null, "open", "GTC", 0L, 0L, null);
+            }
+            return Answers.RETURNS_DEFAULTS.answer(invocation);
+        });
+        eventPublisher = mock(OrderBookEventPublisher.class, invocation -> {
+            recordIfLocked(invocation.getMethod().getName());
+            return Answers.RETURNS_DEFAULTS.answer(invocation);
+        });
+
+        orderBookService = TestOrderBookServices.orderBookService(persistenceService, eventPublisher, null, 1);
+        orderBookService.createOrderBook(MARKET_TICKER);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        orderBookService.stopSequencer();
+    }
+
+    private void recordIfLocked(String call) {
+        ConcurrentOrderBook orderBook = orderBookService.getOrderBook(MARKET_TICKER);
+        if (orderBook != null && orderBook.isWriteLocked()) {
+            callsUnderLock.add(call);
+        }
+    }
+
+    @Test
+    @DisplayName("No JDBC call or event publish is made while the book write lock is held")
+    public void testNoPersistenceUnderBookLock() {
+        // Rest, partially execute, then cancel - exercising add, execute and cancel listeners
+        Order resting = orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 10, 50, "GTC", "C-1"), "buy", "USER-1");
+        orderBookService.createOrder(MARKET_TICKER,
+            new OrderRequest(KalshiSide.yes, MARKET_TICKER, "limit", 4, 50, "GTC", "C-2"), "sell", "USER-2");
+        orderBookService.cancelOrder(resting.getId());
+
+        // The listener paths really did hit persistence...
+        verify(persistenceService).recordExecution(resting.getId(), 4, 50);
+        verify(persistenceService, atLeastOnce()).updateOrderStatus(eq(resting.getId()), anyString(), anyInt(), anyInt(), any());
+        verify(persistenceService, atLeastOnce()).saveOrder(any(), anyString());
+        // ...and each command's events went out as one batch...
+        verify(eventPublisher, atLeastOnce()).publishBatch(anyList());
+
+        // ...but never from inside the book's critical section
+        assertFalse(callsUnderLock.contains("publishBatch"), "Events published under the book lock");
+        assertTrue(callsUnderLock.isEmpty(), "Persistence calls made under the book lock: " + callsUnderLock);
+    }
+}
@@ -0,0 +1,200 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Order;
+import com.fbg.api.rest.OrderRequest;
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the in-memory order state: fills, cancels and eviction in the
+ * store itself, and the trading path reading orders from it instead of the
+ * database.
+ */
+public class OrderStateStoreTest {
+
+    private static final String MARKET = "STATE-TEST";
+
+    private OrderStateStore store;
+    private PersistenceService persistenceService;
+    private TimerService timerService;
+    private OrderBookService orderBookService;
+
+    @BeforeEach
+    public void setUp() {
+        store = new OrderStateStore();
+        persistenceService = mock(PersistenceService.class);
+        timerService = new TimerService();
+        timerService.start();
+
+        orderBookService = TestOrderBookServices.orderBookService(persistenceService,
+            mock(OrderBookEventPublisher.class), timerService, 2, Map.of("orderStates", store));
+        orderBookService.createOrderBook(MARKET);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        orderBookService.stopSequencer();
+        timerService.stop();
+    }
+
+    @Test
+    @DisplayName("Fills accumulate quantity and average price until the order is filled")
+    public void testExecuted() {
+        store.put(order("ORD-1", 10, 0, 10, null, "open"));
+
+        Order partial = store.executed("ORD-1", 4, 40);
+        assertEquals(4, partial.getFilled_quantity());
+        assertEquals(6, partial.getRemaining_quantity());
+        assertEquals(40, partial.getAvg_fill_price());
+        assertEquals("partially_filled", partial.getStatus());
+
+        Order filled = store.executed("ORD-1", 6, 45);
+        assertEquals(10, filled.getFilled_quantity());
+        assertEquals(0, filled.getRemaining_quantity());
+        assertEquals(43, filled.getAvg_fill_price());
+        assertEquals("filled", filled.getStatus());
+        assertSame(filled, store.get("ORD-1"));
+
+        assertNull(store.executed("ORD-UNKNOWN", 1, 50));
+    }
+
+    @Test
+    @DisplayName("A fill larger than the remaining quantity is refused")
+    public void testOverfill() {
+        store.put(order("ORD-1", 10, 8, 2, 50, "partially_filled"));
+
+        assertThrows(IllegalStateException.class, () -> store.executed("ORD-1", 3, 50));
+        assertEquals(2, store.get("ORD-1").getRemaining_quantity());
+    }
+
+    @Test
+    @DisplayName("A cancel keeps the fills and drops the remainder")
+    public void testCanceled() {
+        store.put(order("ORD-1", 10, 3, 7, 52, "partially_filled"));
+
+        Order canceled = store.canceled("ORD-1");
+        assertEquals("canceled", canceled.getStatus());
+        assertEquals(3, canceled.getFilled_quantity());
+        assertEquals(0, canceled.getRemaining_quantity());
+        assertEquals(52, canceled.getAvg_fill_price());
+        assertNull(store.canceled("ORD-UNKNOWN"));
+    }
+
+    @Test
+    @DisplayName("Only the newest terminal orders are kept; live orders are never evicted")
+    public void testTerminalEviction() {
+        ReflectionTestUtils.setField(store, "terminalRetain", 2);
+        store.put(order("ORD-LIVE", 10, 0, 10, null, "open"));
+        for (int i = 1; i <= 4; i++) {
+            store.put(order("ORD-" + i, 1, 0, 1, null, "open"));
+            store.canceled("ORD-" + i);
+        }
+
+        assertNull(store.get("ORD-1"));
+        assertNull(store.get("ORD-2"));
+        assertNotNull(store.get("ORD-3"));
+        assertNotNull(store.get("ORD-4"));
+        assertNotNull(store.get("ORD-LIVE"));
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    @DisplayName("A terminal order updated again is queued for eviction only once")
+    public void testRepeatedTerminalUpdates() {
+        ReflectionTestUtils.setField(store, "terminalRetain", 2);
+        store.put(order("ORD-1", 1, 1, 0, 50, "filled"));
+        store.canceled("ORD-1");
+        store.put(order("ORD-1", 1, 1, 0, 50, "filled"));
+        store.put(order("ORD-2", 1, 0, 1, null, "open"));
+        store.canceled("ORD-2");
+
+        // Two terminal orders, within what is retained
+        assertNotNull(store.get("ORD-1"));
+        assertNotNull(store.get("ORD-2"));
+
+        store.put(order("ORD-3", 1, 1, 0, 50, "filled"));
+        assertNull(store.get("ORD-1"));
+        assertNotNull(store.get("ORD-2"));
+        assertNotNull(store.get("ORD-3"));
+    }
+
+    @Test
+    @DisplayName("Lookups, amends and cancels of live orders never read the database")
+    public void testTradingPathReadsNoOrders() {
+        Order maker = place(KalshiSide.yes, "buy", 10, 50, "USER-1");
+        Order taker = place(KalshiSide.yes, "sell", 4, 50, "USER-2");
+        assertEquals("filled", taker.getStatus());
+
+        // The resting order's fill is in its state straight away
+        Order partial = orderBookService.getOrder(maker.getId());
+        assertEquals("partially_filled", partial.getStatus());
+        assertEquals(4, partial.getFilled_quantity());
+        assertEquals(6, partial.getRemaining_quantity());
+        assertEquals(50, partial.getAvg_fill_price());
+
+        Order amended = orderBookService.amendOrder(maker.getId(), 48, 12);
+        assertEquals(8, amended.getRemaining_quantity());
+        assertEquals(4, amended.getFilled_quantity());
+
+        Order canceled = orderBookService.cancelOrder(maker.getId());
+        assertEquals("canceled", canceled.getStatus());
+        assertEquals(4, canceled.getFilled_quantity());
+        assertEquals(canceled, orderBookService.getOrder(maker.getId()));
+
+        verify(persistenceService, never()).getOrder(any());
+        verify(persistenceService).recordExecution(maker.getId(), 4, 50);
+        verify(persistenceService).updateOrderStatus(eq(maker.getId()), eq("canceled"), eq(4), eq(0), eq(50));
+    }
+
+    @Test
+    @DisplayName("Both sides of a fill average in their own side's terms, converted orders included")
+    public void testAverageFillPriceOfConvertedOrders() {
+        // Rests as a buy of NO at 40; crossed by a sell of NO, which matches as a buy of YES at 60
+        Order maker = place(KalshiSide.yes, "sell", 10, 60, "USER-1");
+        Order taker = place(KalshiSide.no, "sell", 4, 40, "USER-2");
+
+        assertEquals("filled", taker.getStatus());
+        assertEquals(40, taker.getAvg_fill_price());
+
+        Order resting = orderBookService.getOrder(maker.getId());
+        assertEquals("partially_filled", resting.getStatus());
+        assertEquals(60, resting.getAvg_fill_price());
+
+        // The database is given the YES execution price and converts it by the order's side
+        verify(persistenceService).recordExecution(maker.getId(), 4, 60);
+    }
+
+    @Test
+    @DisplayName("Orders not held in memory are read from the database")
+    public void testColdOrderFromDatabase() {
+        Order historical = order("ORD-OLD", 5, 5, 0, 30, "filled");
+        when(persistenceService.getOrder("ORD-OLD")).thenReturn(historical);
+
+        assertSame(historical, orderBookService.getOrder("ORD-OLD"));
+        assertThrows(IllegalArgumentException.class, () -> orderBookService.getOrder("ORD-MISSING"));
+        assertThrows(IllegalArgumentException.class, () -> orderBookService.cancelOrder("ORD-MISSING"));
+    }
+
+    private Order place(KalshiSide side, String action, int count, int price, String userId) {
+        return orderBookService.createOrder(MARKET,
+            new OrderRequest(side, MARKET, "limit", count, price, "GTC", "C-" + userId), action, userId);
+    }
+
+    private static Order order(String orderId, int quantity, int filled, int remaining, Integer avgFillPrice,
+                               String status) {
+        return new Order(orderId, "C-" + orderId, "USER-1", KalshiSide.yes, MARKET, "limit", quantity, filled,
+                         remaining, 50, avgFillPrice, status, "GTC", 1_000L, 1_000L, null);
+    }
+}
@@ -224,4 +224,51 @@ public class PersistenceServicePositionTest {
         assertEquals(78, position.getAvg_price()); // Rounded down
         assertEquals(6250, position.getTotal_cost());
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Changes to one position in one batch fold like separate updates")
+    public void testBatchedPositionChanges() {
+        // Buy 100 @ 60¢, buy 50 @ 70¢, sell 50 @ 75¢, all committed together
+        persistenceService.applyWrites(List.of(
+            new PersistenceService.UpdatePosition(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 100, 60, 1000),
+            new PersistenceService.UpdatePosition(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.no, 20, 40, 1001),
+            new PersistenceService.UpdatePosition(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 50, 70, 1002),
+            new PersistenceService.UpdatePosition(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, -50, 75, 1003)
+        ));
+        
+        // Cost 6000 + 3500 = 9500 for 150; selling a third keeps 2/3 of it
+        Position yes = persistenceService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.yes);
+        assertEquals(100, yes.getQuantity());
+        assertEquals(63, yes.getAvg_price());
+        assertEquals(6333, yes.getTotal_cost());
+        
+        Position no = persistenceService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.no);
+        assertEquals(20, no.getQuantity());
+        assertEquals(800, no.getTotal_cost());
+    }
+    
+    @Test
+    @DisplayName("Saved positions overwrite existing rows and insert new ones, the latest state winning")
+    public void testSavePositions() {
+        persistenceService.updatePosition(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 100, 60);
+        
+        persistenceService.applyWrites(List.of(
+            new PersistenceService.SavePositions(List.of(
+                new PersistenceService.PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 40, 60, 2400),
+                new PersistenceService.PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.no, 10, 30, 300)),
+                1000),
+            new PersistenceService.SavePositions(List.of(
+                new PersistenceService.PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.no, 25, 32, 800)),
+                1001)
+        ));
+        
+        Position yes = persistenceService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.yes);
+        assertEquals(40, yes.getQuantity());
+        assertEquals(2400, yes.getTotal_cost());
+        
+        Position no = persistenceService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.no);
+        assertEquals(25, no.getQuantity());
+        assertEquals(32, no.getAvg_price());
+        assertEquals(800, no.getTotal_cost());
+    }
+}
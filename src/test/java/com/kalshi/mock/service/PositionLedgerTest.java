@@ -0,0 +1,168 @@
+package com.kalshi.mock.service;
+
+import com.fbg.api.market.KalshiSide;
+import com.fbg.api.rest.Position;
+import com.kalshi.mock.service.PersistenceService.PositionRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the in-memory position ledger: the same position math as the
+ * database path, one dirty row per changed position, and fills of many
+ * users applied from many threads.
+ */
+public class PositionLedgerTest {
+
+    private final PositionLedger ledger = new PositionLedger(4);
+
+    @Test
+    @DisplayName("Many fills of one position drain as one row at its latest state")
+    public void testDrainCoalesces() {
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 100, 60);
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 50, 70);
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, -50, 75);
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.no, 20, 40);
+
+        // Cost 6000 + 3500 = 9500 for 150; selling a third at 75 keeps 2/3 of it
+        // and realizes 50 * 75 - 3167
+        assertEquals(List.of(
+            new PositionRow("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 100, 63, 6333, 583),
+            new PositionRow("USER-1", "MKT-A", "TICKER-A", KalshiSide.no, 20, 40, 800, 0)),
+            sorted(ledger.drainDirty()));
+        assertTrue(ledger.drainDirty().isEmpty());
+
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.no, -20, 45);
+        assertEquals(List.of(new PositionRow("USER-1", "MKT-A", "TICKER-A", KalshiSide.no, 0, 0, 0, 100)),
+                     ledger.drainDirty());
+    }
+
+    @Test
+    @DisplayName("Fills that close a short or flip it realize P&L against the cost they release")
+    public void testRealizedPnl() {
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, -50, 70);
+        // Buying back 20 of 50 releases 2/5 of the 3500 sold for: 1400 - 20 * 60
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 20, 60);
+        assertEquals(200, ledger.position("USER-1", "TICKER-A", KalshiSide.yes).getRealized_pnl());
+
+        // Flipping closes the other 30, 2100 - 30 * 65, and opens 20 long at 65
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 50, 65);
+        assertEquals(List.of(new PositionRow("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 20, 65, 1300, 350)),
+                     ledger.drainDirty());
+    }
+
+    @Test
+    @DisplayName("Positions marked dirty again drain again, at their state as of the drain")
+    public void testMarkDirty() {
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 10, 50);
+        List<PositionRow> failed = ledger.drainDirty();
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 10, 50);
+
+        ledger.markDirty(failed);
+        assertEquals(List.of(new PositionRow("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 20, 50, 1000, 0)),
+                     ledger.drainDirty());
+        assertTrue(ledger.drainDirty().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Loaded positions are the base for fills and are not written back unchanged")
+    public void testLoad() {
+        ledger.load(new PositionRow("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 100, 60, 6000, 0));
+        assertTrue(ledger.drainDirty().isEmpty());
+
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 100, 70);
+        Position position = ledger.position("USER-1", "TICKER-A", KalshiSide.yes);
+        assertEquals(200, position.getQuantity());
+        assertEquals(65, position.getAvg_price());
+        assertEquals(13000, position.getTotal_cost());
+        assertEquals("MKT-A", position.getMarket_id());
+
+        // A position changed in memory is kept over the stored one
+        ledger.load(new PositionRow("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 5, 50, 250, 0));
+        assertEquals(200, ledger.position("USER-1", "TICKER-A", KalshiSide.yes).getQuantity());
+        assertNull(ledger.position("USER-1", "TICKER-A", KalshiSide.no));
+        assertNull(ledger.position("USER-2", "TICKER-A", KalshiSide.yes));
+    }
+
+    @Test
+    @DisplayName("Reset forgets every position, dirty or not")
+    public void testReset() {
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 10, 50);
+        ledger.reset();
+
+        assertNull(ledger.position("USER-1", "TICKER-A", KalshiSide.yes));
+        assertTrue(ledger.drainDirty().isEmpty());
+
+        ledger.apply("USER-1", "MKT-A", "TICKER-A", KalshiSide.yes, 5, 40);
+        assertEquals(5, ledger.position("USER-1", "TICKER-A", KalshiSide.yes).getQuantity());
+    }
+
+    @Test
+    @DisplayName("A user's positions list open ones only, by market then side, across table growth")
+    public void testPositions() {
+        for (int m = 99; m >= 0; m--) {
+            ledger.apply("USER-1", "MKT-" + m, String.format("TICKER-%03d", m), KalshiSide.no, m + 1, 40);
+            ledger.apply("USER-1", "MKT-" + m, String.format("TICKER-%03d", m), KalshiSide.yes, m + 1, 60);
+        }
+        ledger.apply("USER-1", "MKT-5", "TICKER-005", KalshiSide.yes, -6, 60);
+
+        List<Position> positions = ledger.positions("USER-1");
+        assertEquals(199, positions.size());
+        assertEquals("TICKER-000", positions.get(0).getMarket_ticker());
+        assertEquals(KalshiSide.no, positions.get(0).getSide());
+        assertEquals(KalshiSide.yes, positions.get(1).getSide());
+        assertEquals(100, positions.get(198).getQuantity());
+        assertTrue(positions.stream().noneMatch(p -> p.getMarket_ticker().equals("TICKER-005")
+                                                     && p.getSide() == KalshiSide.yes));
+        assertEquals(200, ledger.drainDirty().size());
+        assertTrue(ledger.positions("USER-2").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Fills of many users from many threads all land")
+    public void testConcurrentFills() throws Exception {
+        int users = 50;
+        int fillsPerUser = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int u = 0; u < users; u++) {
+                String userId = "USER-" + u;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < fillsPerUser; i++) {
+                        ledger.apply(userId, "MKT-" + (i % 5), "TICKER-" + (i % 5), KalshiSide.yes, 1, 50);
+                    }
+                }));
+                // Drains run alongside the fills
+                futures.add(executor.submit(ledger::drainDirty));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int u = 0; u < users; u++) {
+            List<Position> positions = ledger.positions("USER-" + u);
+            assertEquals(5, positions.size());
+            for (Position position : positions) {
+                assertEquals(fillsPerUser / 5, position.getQuantity());
+                assertEquals(50 * fillsPerUser / 5, position.getTotal_cost());
+            }
+        }
+    }
+
+    private static List<PositionRow> sorted(List<PositionRow> rows) {
+        List<PositionRow> sorted = new ArrayList<>(rows);
+        sorted.sort((a, b) -> a.side().compareTo(b.side()));
+        return sorted;
+    }
+}
@@ -3,6 +3,7 @@ package com.kalshi.mock.service;
 import com.fbg.api.market.KalshiSide;
 import com.fbg.api.rest.Fill;
 import com.fbg.api.rest.Position;
+import com.kalshi.mock.service.PersistenceService.PositionRow;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -14,6 +15,7 @@ import org.springframework.test.context.TestPropertySource;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -59,14 +61,16 @@ public class PositionsServiceTest {
         positionsService.updatePositionFromFill(buyFill, USER_ID);
         
         // Verify position was updated with positive quantity
-        verify(persistenceService).updatePosition(
-            eq(USER_ID),
-            eq(MARKET_ID),
-            eq(MARKET_TICKER),
-            eq(KalshiSide.yes),
-            eq(100), // positive quantity for buy
-            eq(65)   // price
-        );
+        Position position = positionsService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.yes);
+        assertEquals(100, position.getQuantity()); // positive quantity for buy
+        assertEquals(65, position.getAvg_price());
+        assertEquals(6500, position.getTotal_cost());
+        verifyNoInteractions(persistenceService);
+        
+        // The flush writes the position as it stands
+        positionsService.flush();
+        verify(persistenceService).savePositions(List.of(
+            new PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 100, 65, 6500, 0)));
     }
     
     @Test
@@ -87,17 +91,12 @@ public class PositionsServiceTest {
         );
         
         // Execute
-        positionsService.updatePositionFromFill(sellFill, USER_ID);
+        positionsService.updatePositionFromFill(sellFill, USER_ID, false);
         
-        // Verify position was updated with the count (PositionsService handles the sign)
-        verify(persistenceService).updatePosition(
-            eq(USER_ID),
-            eq(MARKET_ID),
-            eq(MARKET_TICKER),
-            eq(KalshiSide.yes),
-            eq(50), // The service will determine if this should be negative based on action
-            eq(70)
-        );
+        // Verify the sell opened a short position
+        Position position = positionsService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.yes);
+        assertEquals(-50, position.getQuantity());
+        assertEquals(70, position.getAvg_price());
     }
     
     @Test
@@ -114,34 +113,56 @@ public class PositionsServiceTest {
         positionsService.updatePositionsFromFills(fills, USER_ID);
         
         // Verify each fill was processed
-        verify(persistenceService, times(3)).updatePosition(
-            eq(USER_ID),
-            eq(MARKET_ID),
-            eq(MARKET_TICKER),
-            eq(KalshiSide.yes),
-            anyInt(),
-            anyInt()
-        );
+        Position position = positionsService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.yes);
+        assertEquals(225, position.getQuantity());
+        assertEquals(13675, position.getTotal_cost());
+        
+        // Three fills, one position written once
+        positionsService.flush();
+        verify(persistenceService, times(1)).savePositions(List.of(
+            new PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 225, 60, 13675, 0)));
     }
     
     @Test
     @DisplayName("Get user positions returns correct data")
     public void testGetUserPositions() {
-        // Mock positions
-        Position pos1 = new Position(MARKET_ID, MARKET_TICKER, 100, 65, KalshiSide.yes, 0, 6500);
-        Position pos2 = new Position("MKT-2", "MARKET-2", -50, 70, KalshiSide.no, 100, 3500);
-        List<Position> mockPositions = Arrays.asList(pos1, pos2);
-        
-        when(persistenceService.getUserPositions(USER_ID)).thenReturn(mockPositions);
+        // Stored positions, loaded at startup
+        List<PositionRow> stored = List.of(
+            new PositionRow(USER_ID, "MKT-2", "MARKET-2", KalshiSide.no, -50, 70, 3500, 0),
+            new PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 100, 65, 6500, 0),
+            new PositionRow(USER_ID, "MKT-3", "MARKET-3", KalshiSide.yes, 0, 0, 0, 0));
+        doAnswer(invocation -> {
+            Consumer<PositionRow> consumer = invocation.getArgument(0);
+            stored.forEach(consumer);
+            return null;
+        }).when(persistenceService).streamPositions(any());
+        assertEquals(3, positionsService.loadPositions());
         
         // Execute
         List<Position> positions = positionsService.getUserPositions(USER_ID);
         
-        // Verify
+        // Verify: open positions only, by market
         assertEquals(2, positions.size());
-        assertEquals(100, positions.get(0).getQuantity());
-        assertEquals(-50, positions.get(1).getQuantity()); // Short position
-        verify(persistenceService).getUserPositions(USER_ID);
+        assertEquals(-50, positions.get(0).getQuantity()); // Short position
+        assertEquals(100, positions.get(1).getQuantity());
+        verify(persistenceService, never()).getUserPositions(any());
+    }
+    
+    @Test
+    @DisplayName("A position whose save failed is written again by the next flush")
+    public void testFailedFlushIsRetried() {
+        positionsService.updatePositionFromFill(
+            new Fill("F1", "O1", MARKET_ID, MARKET_TICKER, KalshiSide.yes, 60, 100, true, 1000L, "T1"), USER_ID);
+        List<PositionRow> expected = List.of(
+            new PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 100, 60, 6000, 0));
+        doThrow(new IllegalStateException("database down")).doNothing()
+            .when(persistenceService).savePositions(anyList());
+        
+        assertThrows(IllegalStateException.class, () -> positionsService.flush());
+        positionsService.flush();
+        positionsService.flush();
+        
+        verify(persistenceService, times(2)).savePositions(expected);
     }
     
     @Test
@@ -208,44 +229,33 @@ public class PositionsServiceTest {
     @Test
     @DisplayName("Close position calculates realized P&L")
     public void testClosePosition() {
-        // Mock existing position
-        Position existingPosition = new Position(
-            MARKET_ID,
-            MARKET_TICKER,
-            100,  // long position
-            60,   // avg_price
-            KalshiSide.yes,
-            0,    // realized_pnl
-            6000  // total_cost
-        );
-        
-        when(persistenceService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.yes))
-            .thenReturn(existingPosition);
+        // Existing long position: 100 @ 60¢
+        positionsService.updatePositionFromFill(
+            new Fill("F1", "O1", MARKET_ID, MARKET_TICKER, KalshiSide.yes, 60, 100, true, 1000L, "T1"), USER_ID);
         
         // Close position at 70¢
         positionsService.closePosition(USER_ID, MARKET_TICKER, KalshiSide.yes, 70);
         
-        // Verify position was updated to close
-        verify(persistenceService).updatePosition(
-            eq(USER_ID),
-            eq(MARKET_ID),
-            eq(MARKET_TICKER),
-            eq(KalshiSide.yes),
-            eq(-100), // closing 100 contracts
-            eq(70)    // closing price
-        );
+        // Verify position was closed with (70 - 60) * 100 realized, and is still written as closed
+        Position closed = positionsService.getUserPosition(USER_ID, MARKET_TICKER, KalshiSide.yes);
+        assertEquals(0, closed.getQuantity());
+        assertEquals(1000, closed.getRealized_pnl());
+        assertTrue(positionsService.getUserPositions(USER_ID).isEmpty());
+        positionsService.flush();
+        verify(persistenceService).savePositions(List.of(
+            new PositionRow(USER_ID, MARKET_ID, MARKET_TICKER, KalshiSide.yes, 0, 0, 0, 1000)));
     }
     
     @Test
     @DisplayName("Calculate portfolio value with multiple positions")
     public void testCalculatePortfolioValue() {
-        // Mock positions
-        Position pos1 = new Position("MKT-1", "TICKER-1", 100, 65, KalshiSide.yes, 0, 6500);
-        Position pos2 = new Position("MKT-2", "TICKER-2", -50, 80, KalshiSide.yes, 0, -4000);
-        Position pos3 = new Position("MKT-3", "TICKER-3", 200, 45, KalshiSide.no, 0, 9000);
-        
-        when(persistenceService.getUserPositions(USER_ID))
-            .thenReturn(Arrays.asList(pos1, pos2, pos3));
+        // Positions from fills
+        positionsService.updatePositionFromFill(
+            new Fill("F1", "O1", "MKT-1", "TICKER-1", KalshiSide.yes, 65, 100, true, 1000L, "T1"), USER_ID, true);
+        positionsService.updatePositionFromFill(
+            new Fill("F2", "O2", "MKT-2", "TICKER-2", KalshiSide.yes, 80, 50, true, 2000L, "T2"), USER_ID, false);
+        positionsService.updatePositionFromFill(
+            new Fill("F3", "O3", "MKT-3", "TICKER-3", KalshiSide.no, 45, 200, true, 3000L, "T3"), USER_ID, true);
         
         // Current prices
         java.util.Map<String, Integer> currentPrices = new java.util.HashMap<>();
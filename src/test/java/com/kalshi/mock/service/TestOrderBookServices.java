@@ -0,0 +1,47 @@
+package com.kalshi.mock.service;
+
+import com.kalshi.mock.event.OrderBookEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Builds an OrderBookService for unit tests the way Spring would wire it,
+ * with a mocked PositionsService, and starts its sequencer. Callers stop
+ * the sequencer when done.
+ */
+final class TestOrderBookServices {
+
+    private TestOrderBookServices() {
+    }
+
+    /**
+     * @param timerService timer for order expiries; null for tests without any
+     */
+    static OrderBookService orderBookService(PersistenceService persistenceService,
+                                             OrderBookEventPublisher eventPublisher,
+                                             TimerService timerService, int sequencerThreads) {
+        return orderBookService(persistenceService, eventPublisher, timerService, sequencerThreads, Map.of());
+    }
+
+    /**
+     * @param fields further fields to set before the sequencer starts, by name -
+     *               collaborators such as orderStates or eventJournal, or settings
+     */
+    static OrderBookService orderBookService(PersistenceService persistenceService,
+                                             OrderBookEventPublisher eventPublisher,
+                                             TimerService timerService, int sequencerThreads,
+                                             Map<String, Object> fields) {
+        OrderBookService orderBookService = new OrderBookService();
+        ReflectionTestUtils.setField(orderBookService, "persistenceService", persistenceService);
+        ReflectionTestUtils.setField(orderBookService, "positionsService", mock(PositionsService.class));
+        ReflectionTestUtils.setField(orderBookService, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(orderBookService, "timerService", timerService);
+        ReflectionTestUtils.setField(orderBookService, "sequencerThreads", sequencerThreads);
+        fields.forEach((name, value) -> ReflectionTestUtils.setField(orderBookService, name, value));
+        orderBookService.startSequencer();
+        return orderBookService;
+    }
+}
@@ -0,0 +1,18 @@
+package com.kalshi.mock.service;
+
+/**
+ * Test-only access to service state that production code never resets.
+ */
+public final class TestServices {
+
+    private TestServices() {
+    }
+
+    /**
+     * Forget every position held in memory, as when the positions table is
+     * emptied between tests
+     */
+    public static void resetPositions(PositionsService positionsService) {
+        positionsService.reset();
+    }
+}
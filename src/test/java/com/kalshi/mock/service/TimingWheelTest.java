@@ -0,0 +1,139 @@
+package com.kalshi.mock.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the hierarchical timing wheel behind order expiry and market
+ * transitions: deadlines fire in order, never early, across every level.
+ */
+public class TimingWheelTest {
+
+    private static final long ORIGIN = 1_000_000L;
+    private static final long TICK = 10L;
+
+    private TimingWheel<String> wheel;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new TimingWheel<>(ORIGIN, TICK);
+    }
+
+    @Test
+    @DisplayName("A deadline fires on the first tick at or after it, never before")
+    public void testNeverEarly() {
+        wheel.schedule(ORIGIN + 25, "A");
+
+        assertTrue(wheel.advance(ORIGIN + 29).isEmpty(), "Rounded up to the tick at 30");
+        assertEquals(List.of("A"), wheel.advance(ORIGIN + 30));
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(ORIGIN + 1000).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Deadlines passed in one advance come out in deadline order")
+    public void testDeadlineOrder() {
+        wheel.schedule(ORIGIN + 500, "C");
+        wheel.schedule(ORIGIN + 20, "A");
+        wheel.schedule(ORIGIN + 90_000, "D");
+        wheel.schedule(ORIGIN + 100, "B");
+
+        assertEquals(List.of("A", "B", "C", "D"), wheel.advance(ORIGIN + 100_000));
+    }
+
+    @Test
+    @DisplayName("A cancelled deadline never fires and cancelling twice is refused")
+    public void testCancel() {
+        TimingWheel.Timeout<String> a = wheel.schedule(ORIGIN + 50, "A");
+        wheel.schedule(ORIGIN + 50, "B");
+        TimingWheel.Timeout<String> c = wheel.schedule(ORIGIN + 50, "C");
+
+        assertTrue(wheel.cancel(a));
+        assertTrue(wheel.cancel(c));
+        assertFalse(wheel.cancel(a));
+        assertEquals(1, wheel.size());
+
+        assertEquals(List.of("B"), wheel.advance(ORIGIN + 50));
+        TimingWheel.Timeout<String> fired = wheel.schedule(ORIGIN + 60, "D");
+        wheel.advance(ORIGIN + 60);
+        assertFalse(fired.isPending());
+        assertFalse(wheel.cancel(fired), "Already fired");
+    }
+
+    @Test
+    @DisplayName("Deadlines in the upper levels cascade down and fire on their exact tick")
+    public void testCascadeAcrossLevels() {
+        // One deadline per level, each just past a level boundary
+        long[] ticks = {63, 64, 4097, 262_145, 300_000};
+        for (long tick : ticks) {
+            wheel.schedule(ORIGIN + tick * TICK, "T" + tick);
+        }
+
+        for (long tick : ticks) {
+            assertTrue(wheel.advance(ORIGIN + (tick - 1) * TICK).isEmpty(), "Not before tick " + tick);
+            assertEquals(List.of("T" + tick), wheel.advance(ORIGIN + tick * TICK));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("Deadlines beyond the wheel's span wait in the top level until they are due")
+    public void testBeyondSpan() {
+        long tick = (1L << 24) * 3 + 17;
+        wheel.schedule(ORIGIN + tick * TICK, "FAR");
+        wheel.schedule(ORIGIN + 10 * TICK, "NEAR");
+
+        assertEquals(List.of("NEAR"), wheel.advance(ORIGIN + (tick - 1) * TICK));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("FAR"), wheel.advance(ORIGIN + tick * TICK));
+    }
+
+    @Test
+    @DisplayName("A deadline already passed fires on the next advance")
+    public void testPastDeadline() {
+        wheel.advance(ORIGIN + 1000);
+        wheel.schedule(ORIGIN, "LATE");
+        wheel.schedule(ORIGIN - 5000, "LATER");
+
+        assertEquals(2, wheel.advance(ORIGIN + 1010).size());
+    }
+
+    @Test
+    @DisplayName("Random deadlines all fire exactly once, at or just after their time")
+    public void testRandomDeadlines() {
+        Random random = new Random(17);
+        List<long[]> scheduled = new ArrayList<>();
+        List<TimingWheel.Timeout<String>> timeouts = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            long deadline = ORIGIN + 1 + random.nextInt(5_000_000);
+            scheduled.add(new long[] {deadline, i});
+            timeouts.add(wheel.schedule(deadline, Long.toString(deadline)));
+        }
+        // Cancel every tenth
+        int cancelled = 0;
+        for (int i = 0; i < timeouts.size(); i += 10) {
+            assertTrue(wheel.cancel(timeouts.get(i)));
+            cancelled++;
+        }
+
+        int fired = 0;
+        long now = ORIGIN;
+        while (wheel.size() > 0) {
+            now += 1 + random.nextInt(20_000);
+            for (String payload : wheel.advance(now)) {
+                long deadline = Long.parseLong(payload);
+                assertTrue(deadline <= now, "Fired early: " + deadline + " at " + now);
+                assertTrue(deadline > now - 20_000 - TICK, "Fired late: " + deadline + " at " + now);
+                fired++;
+            }
+        }
+        assertEquals(scheduled.size() - cancelled, fired);
+    }
+}
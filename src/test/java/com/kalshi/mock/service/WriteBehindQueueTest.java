@@ -0,0 +1,162 @@
+package com.kalshi.mock.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the write-behind queue between the trading path and the
+ * database: batching, ordering, backpressure and the read barrier.
+ */
+public class WriteBehindQueueTest {
+
+    private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+    private WriteBehindQueue<Integer> queue;
+
+    @AfterEach
+    public void tearDown() {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Writes queued while the writer is busy go out together, in order, never above the flush size")
+    public void testBatchesInOrder() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        queue = new WriteBehindQueue<>("test-writer", 1000, 50, 0, batch -> {
+            awaitQuietly(release);
+            batches.add(new ArrayList<>(batch));
+            return 0;
+        });
+        queue.start();
+
+        for (int i = 0; i < 120; i++) {
+            queue.submit(i);
+        }
+        release.countDown();
+        queue.awaitFlushed();
+
+        List<Integer> flushed = new ArrayList<>();
+        for (List<Integer> batch : batches) {
+            assertTrue(batch.size() <= 50, "Batch of " + batch.size());
+            flushed.addAll(batch);
+        }
+        assertEquals(120, flushed.size());
+        for (int i = 0; i < flushed.size(); i++) {
+            assertEquals(i, flushed.get(i));
+        }
+        // Only the first batch goes out before the rest have queued up behind it
+        assertTrue(batches.size() <= 4, "Expected group commits, got " + batches.size() + " batches");
+        assertEquals(0, queue.pending());
+    }
+
+    @Test
+    @DisplayName("The writer lingers up to the flush interval for a batch to fill")
+    public void testFlushInterval() {
+        queue = new WriteBehindQueue<>("test-writer", 1000, 100, 200, this::record);
+        queue.start();
+
+        queue.submit(1);
+        queue.submit(2);
+        queue.submit(3);
+        queue.awaitFlushed();
+
+        assertEquals(List.of(List.of(1, 2, 3)), batches);
+    }
+
+    @Test
+    @DisplayName("A full queue blocks producers until the writer catches up")
+    public void testBackpressure() throws InterruptedException {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue = new WriteBehindQueue<>("test-writer", 4, 4, 0, batch -> {
+            flushing.countDown();
+            awaitQuietly(release);
+            batches.add(new ArrayList<>(batch));
+            return 0;
+        });
+        queue.start();
+
+        // One write held by the writer, then four fill the queue
+        queue.submit(0);
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 5; i++) {
+            queue.submit(i);
+        }
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            queue.submit(5);
+            submitted.countDown();
+        });
+        producer.start();
+
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS), "Producer should block on a full queue");
+        release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        queue.awaitFlushed();
+        assertEquals(6, batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    @DisplayName("Records that could not be written release readers and are reported as failed, not flushed")
+    public void testFailedRecordsReported() {
+        queue = new WriteBehindQueue<>("test-writer", 100, 10, 0, batch -> {
+            if (batch.contains(13)) {
+                throw new IllegalStateException("Database down");
+            }
+            batches.add(new ArrayList<>(batch));
+            // Writes 15 and gives up on 16
+            return batch.contains(16) ? 1 : 0;
+        });
+        queue.start();
+
+        queue.submit(13);
+        assertEquals(1, queue.awaitFlushed());
+        queue.submit(14);
+        assertEquals(1, queue.awaitFlushed());
+        queue.submit(15);
+        queue.submit(16);
+        assertEquals(2, queue.awaitFlushed());
+
+        assertEquals(14, batches.get(0).get(0));
+        assertEquals(2, queue.failed());
+        assertEquals(0, queue.pending());
+    }
+
+    @Test
+    @DisplayName("Stopping commits everything already queued")
+    public void testStopDrains() {
+        queue = new WriteBehindQueue<>("test-writer", 1000, 10, 50, this::record);
+        queue.start();
+
+        for (int i = 0; i < 95; i++) {
+            queue.submit(i);
+        }
+        queue.stop();
+
+        assertEquals(95, batches.stream().mapToInt(List::size).sum());
+        assertThrows(IllegalStateException.class, () -> queue.submit(95));
+    }
+
+    private int record(List<Integer> batch) {
+        batches.add(new ArrayList<>(batch));
+        return 0;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}